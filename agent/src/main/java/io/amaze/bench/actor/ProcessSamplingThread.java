@@ -26,7 +26,6 @@ import oshi.json.software.os.OSProcess;
 import static io.amaze.bench.actor.WatcherActorConstants.UNIT_BYTES;
 import static io.amaze.bench.actor.WatcherActorConstants.UNIT_MILLIS;
 import static io.amaze.bench.api.metric.Metric.metric;
-import static java.lang.String.format;
 
 /**
  * Task that will be periodically executed to watch process-specific metrics such as CPU, memory, etc.
@@ -71,28 +70,31 @@ final class ProcessSamplingThread implements Runnable {
     }
 
     private static Metric virtualSize(final ProcessWatcherActorInput message) {
-        return metric(format("proc.%s.mem.virtualSize", message.getMetricKeyPrefix()), UNIT_BYTES) //
-                .label("Virtual memory usage " + message.getMetricLabelSuffix()).minValue(0).build();
+        return processMetric(message, "mem.virtualSize", UNIT_BYTES, "Virtual memory usage");
     }
 
     private static Metric residentSet(final ProcessWatcherActorInput message) {
-        return metric(format("proc.%s.mem.residentRet", message.getMetricKeyPrefix()), UNIT_BYTES) //
-                .label(format("RAM usage %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric(message, "mem.residentRet", UNIT_BYTES, "RAM usage");
     }
 
     private static Metric kernelTime(final ProcessWatcherActorInput message) {
-        return metric(format("proc.%s.cpu.kernelTime", message.getMetricKeyPrefix()), UNIT_MILLIS) //
-                .label(format("CPU sys time %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric(message, "cpu.kernelTime", UNIT_MILLIS, "CPU sys time");
     }
 
     private static Metric userTime(final ProcessWatcherActorInput message) {
-        return metric(format("proc.%s.cpu.userTime", message.getMetricKeyPrefix()), UNIT_MILLIS) //
-                .label(format("CPU user time %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric(message, "cpu.userTime", UNIT_MILLIS, "CPU user time");
     }
 
     private static Metric threadCount(final ProcessWatcherActorInput message) {
-        return metric(format("proc.%s.threadCount", message.getMetricKeyPrefix()), "threads") //
-                .label("Thread count " + message.getMetricLabelSuffix()).minValue(0).build();
+        return processMetric(message, "threadCount", "threads", "Thread count");
+    }
+
+    private static Metric processMetric(final ProcessWatcherActorInput message,
+                                        final String name,
+                                        final String unit,
+                                        final String label) {
+        return metric("proc." + message.getMetricKeyPrefix() + "." + name, unit) //
+                .label(label + " " + message.getMetricLabelSuffix()).minValue(0).build();
     }
 
     private OSProcess processOrNull() {
@@ -132,7 +132,7 @@ public final class ProcessWatcherActorInput implements Serializable {
     }
 
     private static String defaultLabelSuffix(final int pid) {
-        return String.format("pid:%d", pid);
+        return "pid:" + pid;
     }
 
     enum Command {
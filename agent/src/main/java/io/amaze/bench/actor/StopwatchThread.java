@@ -31,7 +31,6 @@ import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterrup
 import static io.amaze.bench.actor.WatcherActorConstants.UNIT_BYTES;
 import static io.amaze.bench.actor.WatcherActorConstants.UNIT_MILLIS;
 import static io.amaze.bench.api.metric.Metric.metric;
-import static java.lang.String.format;
 
 /**
  * One-time task that will measure the difference between process metrics between calls to startWatch and stopWatch.
@@ -136,67 +135,59 @@ final class StopwatchThread implements Runnable {
     }
 
     private Metric beforeVirtualSize() {
-        return metric(format("proc.%s.before.mem.virtualSize", message.getMetricKeyPrefix()), UNIT_BYTES) //
-                .label(format("Virtual memory usage before %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("before.mem.virtualSize", UNIT_BYTES, "Virtual memory usage before");
     }
 
     private Metric afterVirtualSize() {
-        return metric(format("proc.%s.after.mem.virtualSize", message.getMetricKeyPrefix()), UNIT_BYTES) //
-                .label(format("Virtual memory usage after %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("after.mem.virtualSize", UNIT_BYTES, "Virtual memory usage after");
     }
 
     private Metric deltaVirtualSize() {
-        return metric(format("proc.%s.delta.mem.virtualSize", message.getMetricKeyPrefix()), UNIT_BYTES) //
-                .label(format("Virtual memory usage delta %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("delta.mem.virtualSize", UNIT_BYTES, "Virtual memory usage delta");
     }
 
     private Metric beforeResidentSet() {
-        return metric(format("proc.%s.before.mem.residentRet", message.getMetricKeyPrefix()), UNIT_BYTES) //
-                .label(format("RAM usage before %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("before.mem.residentRet", UNIT_BYTES, "RAM usage before");
     }
 
     private Metric afterResidentSet() {
-        return metric(format("proc.%s.after.mem.residentRet", message.getMetricKeyPrefix()), UNIT_BYTES) //
-                .label(format("RAM usage after %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("after.mem.residentRet", UNIT_BYTES, "RAM usage after");
     }
 
     private Metric deltaResidentSet() {
-        return metric(format("proc.%s.delta.mem.residentRet", message.getMetricKeyPrefix()), UNIT_BYTES) //
-                .label(format("RAM usage delta %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("delta.mem.residentRet", UNIT_BYTES, "RAM usage delta");
     }
 
     private Metric beforeKernelTime() {
-        return metric(format("proc.%s.before.cpu.kernelTime", message.getMetricKeyPrefix()), UNIT_MILLIS) //
-                .label(format("CPU sys time before %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("before.cpu.kernelTime", UNIT_MILLIS, "CPU sys time before");
     }
 
     private Metric afterKernelTime() {
-        return metric(format("proc.%s.after.cpu.kernelTime", message.getMetricKeyPrefix()), UNIT_MILLIS) //
-                .label(format("CPU sys time after %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("after.cpu.kernelTime", UNIT_MILLIS, "CPU sys time after");
     }
 
     private Metric deltaKernelTime() {
-        return metric(format("proc.%s.delta.cpu.kernelTime", message.getMetricKeyPrefix()), UNIT_MILLIS) //
-                .label(format("CPU sys time delta %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("delta.cpu.kernelTime", UNIT_MILLIS, "CPU sys time delta");
     }
 
     private Metric beforeUserTime() {
-        return metric(format("proc.%s.before.cpu.userTime", message.getMetricKeyPrefix()), UNIT_MILLIS) //
-                .label(format("CPU user time before %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("before.cpu.userTime", UNIT_MILLIS, "CPU user time before");
     }
 
     private Metric afterUserTime() {
-        return metric(format("proc.%s.after.cpu.userTime", message.getMetricKeyPrefix()), UNIT_MILLIS) //
-                .label(format("CPU user time after %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("after.cpu.userTime", UNIT_MILLIS, "CPU user time after");
     }
 
     private Metric deltaUserTime() {
-        return metric(format("proc.%s.delta.cpu.userTime", message.getMetricKeyPrefix()), UNIT_MILLIS) //
-                .label(format("CPU user time delta %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("delta.cpu.userTime", UNIT_MILLIS, "CPU user time delta");
     }
 
     private Metric elapsed() {
-        return metric(format("proc.%s.elapsed", message.getMetricKeyPrefix()), UNIT_MILLIS) //
-                .label(format("Elapsed time %s", message.getMetricLabelSuffix())).minValue(0).build();
+        return processMetric("elapsed", UNIT_MILLIS, "Elapsed time");
+    }
+
+    private Metric processMetric(final String name, final String unit, final String label) {
+        return metric("proc." + message.getMetricKeyPrefix() + "." + name, unit) //
+                .label(label + " " + message.getMetricLabelSuffix()).minValue(0).build();
     }
 }
@@ -23,6 +23,9 @@ import com.typesafe.config.ConfigRenderOptions;
 import io.amaze.bench.api.ActorKey;
 import io.amaze.bench.cluster.AgentClusterClientFactory;
 import io.amaze.bench.cluster.ClusterClients;
+import io.amaze.bench.cluster.actor.DeployConfig;
+import io.amaze.bench.cluster.actor.ExecutionMode;
+import io.amaze.bench.cluster.actor.MailboxOverflowPolicy;
 import io.amaze.bench.cluster.actor.RuntimeActor;
 import io.amaze.bench.cluster.actor.ValidationException;
 import io.amaze.bench.cluster.agent.Constants;
@@ -33,7 +36,9 @@ import org.apache.logging.log4j.Logger;
 import javax.lang.model.SourceVersion;
 import javax.validation.constraints.NotNull;
 import java.io.Closeable;
+import java.util.Collections;
 
+import static io.amaze.bench.cluster.actor.DeployConfig.deployConfig;
 import static io.amaze.bench.shared.util.Files.checkFilePath;
 import static io.amaze.bench.shared.util.Files.readAndDelete;
 import static java.util.Objects.requireNonNull;
@@ -58,6 +63,8 @@ public class ActorBootstrap implements Closeable {
 
     /**
      * @param args [actorName] [className] [temporaryClusterConfigFile] [temporaryActorConfigFile]
+     *             ([metricsFlushIntervalMs] [metricsMaxBufferedValues] [mailboxCapacity] [mailboxOverflowPolicy]
+     *             [executionMode])
      */
     public static void main(final String[] args) {
         requireNonNull(args);
@@ -94,10 +101,12 @@ public class ActorBootstrap implements Closeable {
      */
     @VisibleForTesting
     static void mainInternal(final String... args) throws ValidationException {
-        if (args.length != 4) {
+        if (args.length < 4 || args.length > 9) {
             log.error("Usage:");
             log.error("ActorBootstrap <actorName> <className> " + //
-                              "<tmpClusterConfigFile> <tmpActorConfigFile>");
+                              "<tmpClusterConfigFile> <tmpActorConfigFile> " + //
+                              "[metricsFlushIntervalMs] [metricsMaxBufferedValues] " + //
+                              "[mailboxCapacity] [mailboxOverflowPolicy] [executionMode]");
             throw new IllegalArgumentException();
         }
 
@@ -105,6 +114,20 @@ public class ActorBootstrap implements Closeable {
         String className = checkClassName(args[1]);
         String tmpClusterConfig = checkFilePath(args[2]);
         String tmpActorConfig = checkFilePath(args[3]);
+        long metricsFlushIntervalMs = args.length >= 5 ? checkFlushInterval(args[4]) : 0;
+        int metricsMaxBufferedValues = args.length >= 6 ? checkMaxBufferedValues(args[5]) : 0;
+        int mailboxCapacity = args.length >= 7 ? checkMailboxCapacity(args[6]) : 0;
+        MailboxOverflowPolicy overflowPolicy = args.length >= 8 ? //
+                MailboxOverflowPolicy.valueOf(args[7]) : MailboxOverflowPolicy.DROP;
+        ExecutionMode executionMode = args.length == 9 ? //
+                ExecutionMode.valueOf(args[8]) : ExecutionMode.PLATFORM_THREADS;
+        DeployConfig deployConfig = deployConfig(true) //
+                .metricsFlushIntervalMs(metricsFlushIntervalMs) //
+                .metricsMaxBufferedValues(metricsMaxBufferedValues) //
+                .mailboxCapacity(mailboxCapacity) //
+                .mailboxOverflowPolicy(overflowPolicy) //
+                .executionMode(executionMode) //
+                .build();
 
         log.info("{} starting...", actorKey);
 
@@ -122,7 +145,7 @@ public class ActorBootstrap implements Closeable {
                                                                             new ActorRegistry());
 
         ActorBootstrap actorBootstrap = new ActorBootstrap(clientFactory);
-        RuntimeActor actor = actorBootstrap.createActor(actorKey, className, jsonActorConfig);
+        RuntimeActor actor = actorBootstrap.createActor(actorKey, className, jsonActorConfig, deployConfig);
 
         installShutdownHook(actorBootstrap, actor);
 
@@ -132,11 +155,45 @@ public class ActorBootstrap implements Closeable {
     RuntimeActor createActor(final ActorKey key, //
                              final String className, //
                              final String jsonConfig) throws ValidationException {
-        actor = actors.create(key, className, jsonConfig);
+        return createActor(key, className, jsonConfig, new DeployConfig(true, Collections.emptyList()));
+    }
+
+    RuntimeActor createActor(final ActorKey key, //
+                             final String className, //
+                             final String jsonConfig, //
+                             final DeployConfig deployConfig) throws ValidationException {
+        actor = actors.create(key, className, jsonConfig, deployConfig);
         actor.init();
         return actor;
     }
 
+    private static long checkFlushInterval(@NotNull final String flushInterval) {
+        requireNonNull(flushInterval);
+        long intervalMs = Long.parseLong(flushInterval);
+        if (intervalMs < 0) {
+            throw new IllegalArgumentException("Metrics flush interval " + flushInterval + " is invalid.");
+        }
+        return intervalMs;
+    }
+
+    private static int checkMaxBufferedValues(@NotNull final String maxBufferedValues) {
+        requireNonNull(maxBufferedValues);
+        int max = Integer.parseInt(maxBufferedValues);
+        if (max < 0) {
+            throw new IllegalArgumentException("Metrics max buffered values " + maxBufferedValues + " is invalid.");
+        }
+        return max;
+    }
+
+    private static int checkMailboxCapacity(@NotNull final String mailboxCapacity) {
+        requireNonNull(mailboxCapacity);
+        int capacity = Integer.parseInt(mailboxCapacity);
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Mailbox capacity " + mailboxCapacity + " is invalid.");
+        }
+        return capacity;
+    }
+
     private static String checkClassName(@NotNull final String className) {
         requireNonNull(className);
         if (!SourceVersion.isName(className)) {
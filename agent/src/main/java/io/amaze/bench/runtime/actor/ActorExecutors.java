@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.amaze.bench.cluster.actor.ExecutionMode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Provides the executors draining the actors' mailboxes, one per {@link ExecutionMode}, shared by the actors
+ * of this JVM.
+ * <p>
+ * Virtual threads are looked up by reflection, as the code base targets Java 8: on a runtime without them,
+ * {@link ExecutionMode#VIRTUAL_THREADS} falls back to the platform threads pool.
+ *
+ * @see ActorMailbox
+ */
+final class ActorExecutors {
+
+    private static final Logger log = LogManager.getLogger();
+    private static final String PLATFORM_THREAD_NAME_FORMAT = "actor-mailbox-%d";
+    private static final String VIRTUAL_THREAD_NAME_PREFIX = "actor-mailbox-virtual-";
+
+    private ActorExecutors() {
+        // Should not be instantiated
+    }
+
+    /**
+     * @param mode Requested execution mode.
+     * @return The shared executor for this mode, or the platform threads one if it is not supported.
+     */
+    static Executor forMode(final ExecutionMode mode) {
+        requireNonNull(mode);
+        if (mode == ExecutionMode.VIRTUAL_THREADS) {
+            if (VirtualHolder.FACTORY != null) {
+                return VirtualHolder.EXECUTOR;
+            }
+            log.warn("Virtual threads are not supported by this runtime, falling back to platform threads.");
+        }
+        return PlatformHolder.EXECUTOR;
+    }
+
+    /**
+     * @param executor Executor of a mailbox.
+     * @return true if the executor starts a new thread for each task, in which case a mailbox keeps the thread
+     * of its drain rather than starting one per drain.
+     */
+    static boolean startsThreadPerTask(final Executor executor) {
+        return VirtualHolder.FACTORY != null && executor == VirtualHolder.EXECUTOR;
+    }
+
+    /**
+     * @return true if this runtime can start virtual threads.
+     */
+    static boolean virtualThreadsSupported() {
+        return VirtualHolder.FACTORY != null;
+    }
+
+    /**
+     * @return A factory of virtual threads, or null if the runtime does not support them.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, VIRTUAL_THREAD_NAME_PREFIX, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) { // NOSONAR - Unsupported, whatever the reason
+            log.debug("Virtual threads are not available: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Daemon threads are started when needed, and kept for a while once idle.
+     */
+    private static final class PlatformHolder {
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat(PLATFORM_THREAD_NAME_FORMAT).build());
+    }
+
+    /**
+     * Virtual threads are cheap to create and to park: each mailbox gets its own, started on its first task
+     * and parked while the mailbox is empty.
+     */
+    private static final class VirtualHolder {
+        private static final ThreadFactory FACTORY = virtualThreadFactory();
+        private static final Executor EXECUTOR = command -> FACTORY.newThread(command).start();
+    }
+}
@@ -17,11 +17,14 @@ package io.amaze.bench.runtime.actor;
 
 import com.google.common.annotations.VisibleForTesting;
 import io.amaze.bench.api.*;
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.api.metric.Metrics;
 import io.amaze.bench.cluster.actor.ActorClusterClient;
 import io.amaze.bench.cluster.actor.ActorDeployInfo;
 import io.amaze.bench.cluster.actor.ActorLifecycleMessage;
+import io.amaze.bench.cluster.actor.ExecutionMode;
+import io.amaze.bench.cluster.actor.MailboxOverflowPolicy;
 import io.amaze.bench.cluster.actor.RuntimeActor;
-import io.amaze.bench.cluster.metric.MetricValuesMessage;
 import io.amaze.bench.runtime.actor.metric.MetricsInternal;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -32,8 +35,11 @@ import java.io.Serializable;
 import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static io.amaze.bench.api.metric.Metric.metric;
 import static io.amaze.bench.cluster.actor.ActorLifecycleMessage.*;
 import static java.util.Objects.requireNonNull;
 
@@ -46,9 +52,23 @@ import static java.util.Objects.requireNonNull;
  * <li>Send state notifications to the actor registry topic</li>
  * <li>Allows to send metrics to the metrics topic</li>
  * </ul>
+ * If a metrics flush interval is given, metric values are also streamed to the metrics topic periodically,
+ * as incremental chunks, and one last time when the actor is closed.
+ * <p>
+ * If a mailbox capacity is given, messages and bootstrap requests are queued in an {@link ActorMailbox} and handed
+ * to the reactor on the mailbox executor, instead of on the transport thread that delivered them.
+ * A slow reactor then no longer holds up the other actors sharing the transport.
+ * A close requested by a CLOSE command is queued behind the pending messages as well.
+ * The depth of the mailbox is reported as the {@link #METRIC_MAILBOX_DEPTH} gauge,
+ * and messages rejected because the mailbox is full are counted in {@link #METRIC_MAILBOX_DROPPED}.
  */
 public class ActorInternal implements RuntimeActor {
 
+    public static final Metric METRIC_MAILBOX_DEPTH = metric("actor.mailbox.depth", "messages") //
+            .label("Mailbox depth").minValue(0).build();
+    public static final Metric METRIC_MAILBOX_DROPPED = metric("actor.mailbox.dropped", "messages") //
+            .label("Messages dropped by the mailbox").minValue(0).build();
+
     private static final Logger log = LogManager.getLogger();
     private static final String ERROR_INVOKING_METHOD = "{} Error while invoking {} method.";
 
@@ -61,7 +81,15 @@ public class ActorInternal implements RuntimeActor {
     private final Method afterMethod;
     private final Method bootstrapMethod;
 
+    private final Object metricsLock = new Object();
+    private final ScheduledFuture<?> periodicFlush;
+
+    private final ActorMailbox mailbox;
+    private final MailboxOverflowPolicy overflowPolicy;
+    private final Metrics.Counter droppedMessages;
+
     private final AtomicBoolean running = new AtomicBoolean(true);
+    private final AtomicBoolean overflowFailed = new AtomicBoolean(false);
 
     public ActorInternal(@NotNull final ActorKey actorKey,
                          @NotNull final MetricsInternal metrics,
@@ -70,6 +98,51 @@ public class ActorInternal implements RuntimeActor {
                          final Method beforeMethod,
                          final Method afterMethod,
                          final Method bootstrapMethod) {
+        this(actorKey, metrics, instance, client, beforeMethod, afterMethod, bootstrapMethod, 0);
+    }
+
+    /**
+     * @param metricsFlushIntervalMs Interval in milliseconds between periodic metrics flushes, 0 to disable them.
+     */
+    public ActorInternal(@NotNull final ActorKey actorKey,
+                         @NotNull final MetricsInternal metrics,
+                         @NotNull final Reactor<Serializable> instance,
+                         @NotNull final ActorClusterClient client,
+                         final Method beforeMethod,
+                         final Method afterMethod,
+                         final Method bootstrapMethod,
+                         final long metricsFlushIntervalMs) {
+        this(actorKey,
+             metrics,
+             instance,
+             client,
+             beforeMethod,
+             afterMethod,
+             bootstrapMethod,
+             metricsFlushIntervalMs,
+             0,
+             MailboxOverflowPolicy.DROP,
+             ActorExecutors.forMode(ExecutionMode.PLATFORM_THREADS));
+    }
+
+    /**
+     * @param metricsFlushIntervalMs Interval in milliseconds between periodic metrics flushes, 0 to disable them.
+     * @param mailboxCapacity        Maximum number of messages waiting for the reactor,
+     *                               0 to call the reactor directly on the delivering thread.
+     * @param overflowPolicy         What to do with a message delivered when the mailbox is full.
+     * @param mailboxExecutor        Executor calling the reactor when a mailbox is used.
+     */
+    public ActorInternal(@NotNull final ActorKey actorKey,
+                         @NotNull final MetricsInternal metrics,
+                         @NotNull final Reactor<Serializable> instance,
+                         @NotNull final ActorClusterClient client,
+                         final Method beforeMethod,
+                         final Method afterMethod,
+                         final Method bootstrapMethod,
+                         final long metricsFlushIntervalMs,
+                         final int mailboxCapacity,
+                         @NotNull final MailboxOverflowPolicy overflowPolicy,
+                         @NotNull final Executor mailboxExecutor) {
 
         this.actorKey = requireNonNull(actorKey);
         this.metrics = requireNonNull(metrics);
@@ -80,6 +153,26 @@ public class ActorInternal implements RuntimeActor {
         this.afterMethod = afterMethod;
         this.bootstrapMethod = bootstrapMethod;
 
+        this.overflowPolicy = requireNonNull(overflowPolicy);
+        requireNonNull(mailboxExecutor);
+        if (mailboxCapacity > 0) {
+            mailbox = new ActorMailbox(actorKey.getName(),
+                                       mailboxCapacity,
+                                       overflowPolicy == MailboxOverflowPolicy.BLOCK,
+                                       mailboxExecutor);
+            metrics.gauge(METRIC_MAILBOX_DEPTH, mailbox::depth);
+            droppedMessages = metrics.counter(METRIC_MAILBOX_DROPPED);
+        } else {
+            mailbox = null;
+            droppedMessages = null;
+        }
+
+        if (metricsFlushIntervalMs > 0) {
+            periodicFlush = MetricsFlushScheduler.schedule(this::streamMetrics, metricsFlushIntervalMs);
+        } else {
+            periodicFlush = null;
+        }
+
         // Plug the reactor listener to the cluster messaging system
         // Should be done last!
         client.startActorListener(this);
@@ -118,32 +211,19 @@ public class ActorInternal implements RuntimeActor {
 
     @Override
     public void bootstrap() {
-        log.info("{} Bootstrapping scenario...", this);
-
-        log.debug("{} Invoking bootstrap method...", this);
-        try {
-            if (bootstrapMethod == null) {
-                throw new IllegalStateException(
-                        "Bootstrap called on a Reactor class that does not declare a @Bootstrap method.");
-            }
-
-            bootstrapMethod.invoke(instance);
-        } catch (Exception e) { // NOSONAR - We want to catch everything here
-            log.warn(ERROR_INVOKING_METHOD, this, "bootstrap", e);
-            try {
-                after();
-            } catch (InvocationTargetException | IllegalAccessException ex) {
-                log.debug(ERROR_INVOKING_METHOD, this, "bootstrap", ex);
-            }
-            actorFailure(e);
+        if (mailbox == null) {
+            runBootstrap();
+        } else {
+            mailbox.submit(this::runBootstrap);
         }
     }
 
     @Override
     public final void dumpAndFlushMetrics() {
         try {
-            MetricValuesMessage metricValues = this.metrics.dumpAndFlush();
-            client.sendMetrics(metricValues);
+            synchronized (metricsLock) {
+                this.metrics.dumpAndFlush(client::sendMetrics);
+            }
         } catch (RuntimeException e) {
             actorFailure(e);
         }
@@ -154,27 +234,40 @@ public class ActorInternal implements RuntimeActor {
         requireNonNull(from);
         requireNonNull(message);
 
-        try {
-            instance.onMessage(from, message);
+        if (mailbox == null) {
+            deliver(from, message);
+        } else if (!mailbox.offer(() -> deliver(from, message))) {
+            onMailboxOverflow(from, message);
+        }
+    }
 
-        } catch (RecoverableException e) {
-            //Recoverable exception, the Reactor code is supposed to be fine, just log the exception.
-            log.warn("{} Recoverable exception caught on message:{}, from:{}", this, message, from, e);
+    @Override
+    public boolean offerMessage(@NotNull final String from, @NotNull final Serializable message) {
+        requireNonNull(from);
+        requireNonNull(message);
 
-        } catch (TerminationException ignored) { // NOSONAR
-            // This is a graceful termination, just perform a regular close on the actor.
-            close();
+        if (mailbox == null) {
+            deliver(from, message);
+            return true;
+        }
+        return mailbox.tryOffer(() -> deliver(from, message));
+    }
 
-        } catch (RuntimeException | ReactorException e) {
-            // In the case of a non-recoverable error of the actor, we need to clean-up by calling after,
-            // and notifying the failure.
-            try {
-                after();
-            } catch (InvocationTargetException | IllegalAccessException afterException) {
-                log.warn(ERROR_INVOKING_METHOD, this, "after", afterException);
-            }
+    @Override
+    public boolean hasMailbox() {
+        return mailbox != null;
+    }
 
-            actorFailure(e);
+    /**
+     * With a mailbox, the close is queued behind the messages already delivered,
+     * so that they are handled before the {@link After} method is called.
+     */
+    @Override
+    public void requestClose() {
+        if (mailbox == null) {
+            close();
+        } else {
+            mailbox.submit(this::close);
         }
     }
 
@@ -186,6 +279,18 @@ public class ActorInternal implements RuntimeActor {
 
         log.debug("{} Invoking close...", this);
 
+        if (mailbox != null) {
+            int discarded = mailbox.close();
+            if (discarded > 0) {
+                log.info("{} Discarded {} pending messages.", this, discarded);
+            }
+        }
+
+        if (periodicFlush != null) {
+            periodicFlush.cancel(false);
+            streamMetrics();
+        }
+
         try {
             if (!tryToCallAfterMethod()) {
                 return;
@@ -200,6 +305,7 @@ public class ActorInternal implements RuntimeActor {
             } catch (Exception e) { // NOSONAR - We want to catch everything
                 log.warn("{} Error while closing client.", this, e);
             }
+            metrics.close();
         }
     }
 
@@ -213,6 +319,80 @@ public class ActorInternal implements RuntimeActor {
         return instance;
     }
 
+    private void runBootstrap() {
+        log.info("{} Bootstrapping scenario...", this);
+
+        log.debug("{} Invoking bootstrap method...", this);
+        try {
+            if (bootstrapMethod == null) {
+                throw new IllegalStateException(
+                        "Bootstrap called on a Reactor class that does not declare a @Bootstrap method.");
+            }
+
+            bootstrapMethod.invoke(instance);
+        } catch (Exception e) { // NOSONAR - We want to catch everything here
+            log.warn(ERROR_INVOKING_METHOD, this, "bootstrap", e);
+            try {
+                after();
+            } catch (InvocationTargetException | IllegalAccessException ex) {
+                log.debug(ERROR_INVOKING_METHOD, this, "bootstrap", ex);
+            }
+            actorFailure(e);
+        }
+    }
+
+    private void deliver(final String from, final Serializable message) {
+        try {
+            instance.onMessage(from, message);
+
+        } catch (RecoverableException e) {
+            //Recoverable exception, the Reactor code is supposed to be fine, just log the exception.
+            log.warn("{} Recoverable exception caught on message:{}, from:{}", this, message, from, e);
+
+        } catch (TerminationException ignored) { // NOSONAR
+            // This is a graceful termination, just perform a regular close on the actor.
+            close();
+
+        } catch (RuntimeException | ReactorException e) {
+            // In the case of a non-recoverable error of the actor, we need to clean-up by calling after,
+            // and notifying the failure.
+            try {
+                after();
+            } catch (InvocationTargetException | IllegalAccessException afterException) {
+                log.warn(ERROR_INVOKING_METHOD, this, "after", afterException);
+            }
+
+            actorFailure(e);
+        }
+    }
+
+    private void onMailboxOverflow(final String from, final Serializable message) {
+        droppedMessages.increment();
+        if (overflowPolicy == MailboxOverflowPolicy.FAIL && overflowFailed.compareAndSet(false, true)) {
+            actorFailure(new IllegalStateException("Mailbox is full, message from " + from + " rejected."));
+            return;
+        }
+        log.debug("{} Mailbox is full, dropped message:{}, from:{}", this, message, from);
+    }
+
+    /**
+     * Sends the metric values produced since the previous flush, if any.
+     * A failure to send is only logged and the chunk is dropped, it does not fail the actor.
+     */
+    private void streamMetrics() {
+        try {
+            synchronized (metricsLock) {
+                this.metrics.dumpAndFlush(metricValues -> {
+                    if (!metricValues.isEmpty()) {
+                        client.sendMetrics(metricValues);
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            log.warn("{} Error while streaming metrics.", this, e);
+        }
+    }
+
     private ActorDeployInfo deployInfo() {
         int pid = new SystemInfo().getOperatingSystem().getProcessId();
         return new ActorDeployInfo(client.localEndpoint(),
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bounded queue of the tasks to be run on behalf of an actor, fed by any number of transport threads
+ * and drained by an {@link Executor}.
+ * <p>
+ * At most one task of a given mailbox runs at a time, in submission order, so that the reactor keeps seeing
+ * a single thread at a time. Tasks are drained in batches of {@link #DRAIN_BATCH_SIZE} before yielding the
+ * executor's thread, which allows many mailboxes to share a small executor fairly.
+ * <p>
+ * When the executor starts a new thread for each task, as the virtual threads one does, the mailbox rather keeps
+ * a single thread for its whole life, parked while the mailbox is empty. Recording threads keep per-thread
+ * metrics state (see {@link io.amaze.bench.runtime.actor.metric.MetricsInternal}): a new thread per drain
+ * would register new state for each drain.
+ * <p>
+ * A single lock guards the queue and the drain state: offering a task takes it once, and so does taking
+ * the next task to run, which also records the completion of the previous one.
+ * Explicit locks are used rather than monitors: a virtual thread blocking while holding a monitor would pin
+ * its carrier thread.
+ *
+ * @see ActorInternal
+ */
+final class ActorMailbox {
+
+    static final int DRAIN_BATCH_SIZE = 64;
+
+    private static final Logger log = LogManager.getLogger();
+    // Returned instead of a task when the batch is over and tasks are left
+    private static final Runnable YIELD = () -> {
+    };
+
+    private final String owner;
+    private final int capacity;
+    private final boolean blockWhenFull;
+    private final Executor executor;
+    private final boolean dedicatedThread;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    // Guarded by lock
+    private boolean scheduled;
+    private boolean running;
+    private boolean closed;
+    // Set while a drain is in progress, cleared under lock when it ends
+    private volatile Thread drainingThread;
+
+    /**
+     * @param owner         Name of the owner, used in logs.
+     * @param capacity      Maximum number of tasks pending in the mailbox.
+     * @param blockWhenFull If true, {@link #offer(Runnable)} waits for room when the mailbox is full,
+     *                      otherwise it returns immediately.
+     * @param executor      Executor running the drain of the mailbox.
+     */
+    ActorMailbox(final String owner, final int capacity, final boolean blockWhenFull, final Executor executor) {
+        this(owner, capacity, blockWhenFull, executor, ActorExecutors.startsThreadPerTask(executor));
+    }
+
+    /**
+     * @param dedicatedThread If true, the drain keeps running on the thread of the executor, parked while
+     *                        the mailbox is empty, until the mailbox is closed.
+     */
+    @VisibleForTesting
+    ActorMailbox(final String owner,
+                 final int capacity,
+                 final boolean blockWhenFull,
+                 final Executor executor,
+                 final boolean dedicatedThread) {
+        checkArgument(capacity > 0, "Mailbox capacity must be strictly positive.");
+        this.owner = requireNonNull(owner);
+        this.capacity = capacity;
+        this.blockWhenFull = blockWhenFull;
+        this.executor = requireNonNull(executor);
+        this.dedicatedThread = dedicatedThread;
+    }
+
+    /**
+     * Queues a task if the mailbox has room for it. If the mailbox is full and blocking, waits until room is made.
+     * A task offered from the thread draining this mailbox is always accepted, as waiting would never end.<br>
+     * Tasks offered after {@link #close()} are silently discarded.
+     *
+     * @param task Task to be run.
+     * @return false if the task was rejected because the mailbox is full.
+     */
+    boolean offer(final Runnable task) {
+        return offer(task, blockWhenFull);
+    }
+
+    /**
+     * Same as {@link #offer(Runnable)}, but never waits for room, even if the mailbox is blocking.
+     *
+     * @param task Task to be run.
+     * @return false if the task was rejected because the mailbox is full.
+     */
+    boolean tryOffer(final Runnable task) {
+        return offer(task, false);
+    }
+
+    private boolean offer(final Runnable task, final boolean block) {
+        requireNonNull(task);
+        boolean fromDrain = Thread.currentThread() == drainingThread;
+        boolean schedule;
+        lock.lock();
+        try {
+            if (block && !fromDrain) {
+                while (!closed && tasks.size() >= capacity) {
+                    notFull.await();
+                }
+            }
+            if (closed) {
+                return true;
+            }
+            if (tasks.size() >= capacity && !fromDrain) {
+                return false;
+            }
+            schedule = enqueue(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+        if (schedule) {
+            scheduleDrain();
+        }
+        return true;
+    }
+
+    /**
+     * Queues a task regardless of the mailbox's capacity, for the few control tasks that must not be lost.
+     *
+     * @param task Task to be run.
+     */
+    void submit(final Runnable task) {
+        requireNonNull(task);
+        boolean schedule;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            schedule = enqueue(task);
+        } finally {
+            lock.unlock();
+        }
+        if (schedule) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * @return The number of tasks waiting to be run.
+     */
+    int depth() {
+        lock.lock();
+        try {
+            return tasks.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards the pending tasks and waits for the running one, if any, to complete.
+     * It can be called from a running task.
+     *
+     * @return The number of discarded tasks.
+     */
+    int close() {
+        boolean fromDrain = Thread.currentThread() == drainingThread;
+        lock.lock();
+        try {
+            closed = true;
+            int discarded = tasks.size();
+            tasks.clear();
+            notFull.signalAll();
+            notEmpty.signalAll();
+            while (running && !fromDrain) {
+                idle.awaitUninterruptibly();
+            }
+            return discarded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called with the lock held.
+     *
+     * @return true if a drain must be scheduled for the task.
+     */
+    private boolean enqueue(final Runnable task) {
+        tasks.add(task);
+        if (dedicatedThread) {
+            notEmpty.signal();
+        }
+        if (scheduled) {
+            return false;
+        }
+        scheduled = true;
+        return true;
+    }
+
+    private void scheduleDrain() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            int pending;
+            lock.lock();
+            try {
+                scheduled = false;
+                pending = tasks.size();
+            } finally {
+                lock.unlock();
+            }
+            log.warn("{} Mailbox executor rejected the drain, {} tasks are pending.", owner, pending, e);
+        }
+    }
+
+    private void drain() {
+        drainingThread = Thread.currentThread();
+        int ran = 0;
+        Runnable task = next(ran);
+        while (task != null && task != YIELD) {
+            run(task);
+            task = next(++ran);
+        }
+        if (task == YIELD) {
+            // Yield the executor's thread to other mailboxes before going on
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Records the completion of the previous task, and takes the next one.
+     * With a dedicated thread, waits for a task while the mailbox is empty.
+     *
+     * @param ran Number of tasks run so far by this drain.
+     * @return The next task, {@link #YIELD} if the batch is over while tasks are left, or null if the drain is over.
+     */
+    private Runnable next(final int ran) {
+        lock.lock();
+        try {
+            running = false;
+            if (dedicatedThread) {
+                while (!closed && tasks.isEmpty()) {
+                    idle.signalAll();
+                    notEmpty.awaitUninterruptibly();
+                }
+            }
+            if (!closed && !tasks.isEmpty()) {
+                if (dedicatedThread || ran < DRAIN_BATCH_SIZE) {
+                    running = true;
+                    notFull.signal();
+                    return tasks.poll();
+                }
+                // Stays scheduled: the drain goes on from a new task of the executor
+                endDrain();
+                return YIELD;
+            }
+            scheduled = false;
+            endDrain();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void endDrain() {
+        drainingThread = null;
+        idle.signalAll();
+    }
+
+    private void run(final Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.warn("{} Uncaught exception in mailbox task.", owner, e);
+        }
+    }
+}
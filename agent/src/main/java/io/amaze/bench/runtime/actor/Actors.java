@@ -23,7 +23,8 @@ import io.amaze.bench.api.metric.Metrics;
 import io.amaze.bench.cluster.AgentClusterClientFactory;
 import io.amaze.bench.cluster.ClusterClient;
 import io.amaze.bench.cluster.actor.ActorClusterClient;
-import io.amaze.bench.cluster.actor.ActorInputMessage;
+import io.amaze.bench.cluster.actor.DeployConfig;
+import io.amaze.bench.cluster.actor.ExecutionMode;
 import io.amaze.bench.cluster.actor.RuntimeActor;
 import io.amaze.bench.cluster.actor.ValidationException;
 import io.amaze.bench.cluster.agent.Constants;
@@ -34,7 +35,10 @@ import org.picocontainer.MutablePicoContainer;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 import static io.amaze.bench.shared.util.Reflection.findAtMostOneAnnotatedMethod;
 import static java.util.Objects.requireNonNull;
@@ -57,14 +61,42 @@ import static java.util.Objects.requireNonNull;
 public class Actors {
 
     private final AgentClusterClientFactory clientFactory;
+    private final Function<ExecutionMode, Executor> mailboxExecutors;
 
     Actors(@NotNull final AgentClusterClientFactory clientFactory) {
+        this(clientFactory, ActorExecutors::forMode);
+    }
+
+    /**
+     * @param mailboxExecutor Executor handing the queued messages to the actors created with a mailbox,
+     *                        whatever their execution mode.
+     */
+    Actors(@NotNull final AgentClusterClientFactory clientFactory, @NotNull final Executor mailboxExecutor) {
+        this(clientFactory, mode -> mailboxExecutor);
+        requireNonNull(mailboxExecutor);
+    }
+
+    private Actors(final AgentClusterClientFactory clientFactory,
+                   final Function<ExecutionMode, Executor> mailboxExecutors) {
         this.clientFactory = requireNonNull(clientFactory);
+        this.mailboxExecutors = mailboxExecutors;
     }
 
     public final RuntimeActor create(@NotNull final ActorKey actorKey,
                                      @NotNull final String className,
                                      @NotNull final String jsonConfig) throws ValidationException {
+        return create(actorKey, className, jsonConfig, new DeployConfig(false, Collections.emptyList()));
+    }
+
+    /**
+     * Creates an actor with the metrics, mailbox and execution settings of the given deployment configuration,
+     * the placement settings are ignored.
+     */
+    public final RuntimeActor create(@NotNull final ActorKey actorKey,
+                                     @NotNull final String className,
+                                     @NotNull final String jsonConfig,
+                                     @NotNull final DeployConfig deployConfig) throws ValidationException {
+        requireNonNull(deployConfig);
 
         // Fail-fast
         Class<? extends Reactor> clazz = ActorValidators.get().loadAndValidate(className);
@@ -74,7 +106,7 @@ public class Actors {
         Optional<Method> afterMethod = findAtMostOneAnnotatedMethod(clazz, After.class);
         Optional<Method> bootstrapMethod = findAtMostOneAnnotatedMethod(clazz, Bootstrap.class);
 
-        MetricsInternal metrics = MetricsInternal.create(actorKey);
+        MetricsInternal metrics = MetricsInternal.create(actorKey, deployConfig.getMetricsMaxBufferedValues());
 
         ActorClusterClient client = clientFactory.createForActor(actorKey);
         Reactor<Serializable> reactor = createReactor(actorKey, metrics, clazz, client, config);
@@ -85,7 +117,11 @@ public class Actors {
                                  client,
                                  beforeMethod.orElse(null),
                                  afterMethod.orElse(null),
-                                 bootstrapMethod.orElse(null));
+                                 bootstrapMethod.orElse(null),
+                                 deployConfig.getMetricsFlushIntervalMs(),
+                                 deployConfig.getMailboxCapacity(),
+                                 deployConfig.getMailboxOverflowPolicy(),
+                                 mailboxExecutors.apply(deployConfig.getExecutionMode()));
     }
 
     private static Config parseConfig(@NotNull final String jsonConfig) throws ValidationException {
@@ -111,12 +147,7 @@ public class Actors {
 
         pico.addComponent(config);
 
-        pico.addComponent((Sender) (to, payload) -> {
-            requireNonNull(to);
-            requireNonNull(payload);
-
-            client.actorSender().send(new ActorKey(to), ActorInputMessage.message(key.getName(), payload));
-        });
+        pico.addComponent(Sender.class, new ClusterSender(key, client));
 
         pico.addComponent(metrics);
 
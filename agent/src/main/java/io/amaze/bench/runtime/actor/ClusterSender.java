@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor;
+
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.ActorRef;
+import io.amaze.bench.api.Sender;
+import io.amaze.bench.cluster.actor.ActorClusterClient;
+import io.amaze.bench.cluster.actor.ActorInputMessage;
+import io.amaze.bench.cluster.actor.ActorSender;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link Sender} injected in reactors, it sends messages on behalf of an actor using its cluster client.
+ * <p>
+ * References returned by {@link #resolve(String)} hold the route to their target,
+ * as resolved by the cluster's {@link ActorSender}: sending through them does not look the target up again.
+ *
+ * @see Actors
+ */
+final class ClusterSender implements Sender {
+
+    private final ActorKey from;
+    private final ActorClusterClient client;
+
+    ClusterSender(final ActorKey from, final ActorClusterClient client) {
+        this.from = requireNonNull(from);
+        this.client = requireNonNull(client);
+    }
+
+    @Override
+    public void send(@NotNull final String to, @NotNull final Serializable message) {
+        requireNonNull(to);
+        requireNonNull(message);
+
+        client.actorSender().send(new ActorKey(to), ActorInputMessage.message(from.getName(), message));
+    }
+
+    @NotNull
+    @Override
+    public ActorRef resolve(@NotNull final String to) {
+        requireNonNull(to);
+
+        return new ResolvedActorRef(to, client.actorSender().resolve(new ActorKey(to)));
+    }
+
+    private final class ResolvedActorRef implements ActorRef {
+        private final String name;
+        private final ActorSender.Route route;
+
+        private ResolvedActorRef(final String name, final ActorSender.Route route) {
+            this.name = name;
+            this.route = route;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public void send(@NotNull final Serializable message) {
+            requireNonNull(message);
+
+            route.send(ActorInputMessage.message(from.getName(), message));
+        }
+
+        @Override
+        public String toString() {
+            return "{\"ActorRef\":\"" + name + "\"}";
+        }
+    }
+}
@@ -47,7 +47,10 @@ public class EmbeddedActorManager implements ActorManager {
         requireNonNull(actorConfig);
 
         final ActorKey key = actorConfig.getKey();
-        final RuntimeActor actor = actors.create(key, actorConfig.getClassName(), actorConfig.getActorJsonConfig());
+        final RuntimeActor actor = actors.create(key,
+                                                 actorConfig.getClassName(),
+                                                 actorConfig.getActorJsonConfig(),
+                                                 actorConfig.getDeployConfig());
         actor.init();
 
         return new ManagedActor() {
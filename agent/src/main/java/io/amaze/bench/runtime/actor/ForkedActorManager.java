@@ -24,6 +24,7 @@ import com.typesafe.config.ConfigRenderOptions;
 import io.amaze.bench.api.ActorKey;
 import io.amaze.bench.cluster.ClusterConfigFactory;
 import io.amaze.bench.cluster.actor.ActorConfig;
+import io.amaze.bench.cluster.actor.DeployConfig;
 import io.amaze.bench.cluster.actor.ValidationException;
 import io.amaze.bench.shared.util.Files;
 import org.apache.logging.log4j.LogManager;
@@ -186,14 +187,21 @@ final class ForkedActorManager implements ActorManager, ProcessTerminationListen
                                        final String actorConfigFile,
                                        final String clusterConfigFile) {
 
+        DeployConfig deployConfig = actorConfig.getDeployConfig();
+
         List<String> tokens = new ArrayList<>();
         tokens.add(JAVA_HOME.value() + JAVA_CMD_PATH);// Using current JAVA_HOME for the new JVM
-        tokens.addAll(actorConfig.getDeployConfig().getJvmArguments()); // Custom JVM args if any
+        tokens.addAll(deployConfig.getJvmArguments()); // Custom JVM args if any
         tokens.add(ActorBootstrap.class.getName());   // Main class
         tokens.add(actorConfig.getKey().getName());   // arg[0]
         tokens.add(actorConfig.getClassName());       // arg[1]
         tokens.add(clusterConfigFile);                // arg[2]
         tokens.add(actorConfigFile);                  // arg[3]
+        tokens.add(Long.toString(deployConfig.getMetricsFlushIntervalMs()));     // arg[4]
+        tokens.add(Integer.toString(deployConfig.getMetricsMaxBufferedValues()));// arg[5]
+        tokens.add(Integer.toString(deployConfig.getMailboxCapacity()));         // arg[6]
+        tokens.add(deployConfig.getMailboxOverflowPolicy().name());              // arg[7]
+        tokens.add(deployConfig.getExecutionMode().name());                      // arg[8]
         return tokens;
     }
 
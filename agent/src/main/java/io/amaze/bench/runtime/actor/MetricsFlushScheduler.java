@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Triggers the periodic metrics flush of the actors living in this JVM, using a single daemon thread.
+ *
+ * @see ActorInternal
+ */
+final class MetricsFlushScheduler {
+
+    private static final String THREAD_NAME_FORMAT = "actor-metrics-flush-%d";
+
+    private MetricsFlushScheduler() {
+        // Should not be instantiated
+    }
+
+    /**
+     * @param flush      Task flushing the metrics of an actor, it should not throw.
+     * @param intervalMs Delay in milliseconds between the end of a flush and the start of the next one.
+     * @return The scheduled task, to be cancelled when the actor is closed.
+     */
+    static ScheduledFuture<?> schedule(final Runnable flush, final long intervalMs) {
+        requireNonNull(flush);
+        checkArgument(intervalMs > 0, "Interval must be strictly positive.");
+        return Holder.SCHEDULER.scheduleWithFixedDelay(flush, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The scheduler thread is only started when the first actor opts in for periodic flush.
+     */
+    private static final class Holder {
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat(THREAD_NAME_FORMAT).build());
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import io.amaze.bench.cluster.metric.MetricValue;
+
+import java.util.Optional;
+
+/**
+ * A metric aggregated inside the actor in constant memory, producing at most one value per metrics flush.
+ *
+ * @see MetricsInternal#dumpAndFlush(java.util.function.Consumer)
+ */
+interface AggregatedMetric {
+
+    /**
+     * Called once per metrics flush, by a single thread at a time.
+     *
+     * @param timeStamp Java timestamp of the flush.
+     * @return The value aggregated since the previous flush, if any.
+     */
+    Optional<MetricValue> sample(long timeStamp);
+}
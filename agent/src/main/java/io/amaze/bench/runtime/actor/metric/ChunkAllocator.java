@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decides where the chunks of the {@link ThreadBuffer}s of an actor are stored.
+ * <p>
+ * Chunks are kept in memory until the actor buffers the configured number of values, further chunks are then
+ * blocks of an append-only memory-mapped spill file. Spill files are split in segments of fixed size:
+ * a segment is deleted once all of its blocks have been drained, and all of them when the allocator is closed.
+ * If the spill file cannot be written, chunks are kept in memory rather than losing values.
+ */
+final class ChunkAllocator {
+
+    static final int BLOCK_BYTES = ThreadBuffer.CHUNK_SIZE * (1 + 2 * Long.BYTES);
+    static final int SEGMENT_BLOCKS = 1024;
+
+    private static final Logger log = LogManager.getLogger();
+    private static final String SPILL_FILE_SUFFIX = ".spill";
+
+    private final int maxMemoryChunks;
+    private final File spillDirectory;
+    private final String spillFilePrefix;
+    private final AtomicInteger memoryChunks = new AtomicInteger();
+    private final List<Segment> segments = new ArrayList<>();
+
+    private Segment current;
+    private int segmentIndex;
+    private boolean spillFailed;
+    private boolean closed;
+
+    private ChunkAllocator(final int maxMemoryChunks, final File spillDirectory, final String spillFilePrefix) {
+        this.maxMemoryChunks = maxMemoryChunks;
+        this.spillDirectory = spillDirectory;
+        this.spillFilePrefix = spillFilePrefix;
+    }
+
+    /**
+     * @return An allocator keeping every chunk in memory.
+     */
+    static ChunkAllocator unbounded() {
+        return new ChunkAllocator(Integer.MAX_VALUE, null, null);
+    }
+
+    /**
+     * @param maxBufferedValues Number of values that can be buffered in memory before spilling to disk.
+     * @param spillDirectory    Directory to create spill files in.
+     * @param spillFilePrefix   Prefix of the spill files names.
+     * @return An allocator spilling chunks to disk past the given number of values.
+     */
+    static ChunkAllocator spilling(final int maxBufferedValues,
+                                   final File spillDirectory,
+                                   final String spillFilePrefix) {
+        if (maxBufferedValues <= 0) {
+            throw new IllegalArgumentException("Max buffered values must be > 0, got " + maxBufferedValues);
+        }
+        int maxMemoryChunks = (maxBufferedValues + ThreadBuffer.CHUNK_SIZE - 1) / ThreadBuffer.CHUNK_SIZE;
+        return new ChunkAllocator(maxMemoryChunks, requireNonNull(spillDirectory), requireNonNull(spillFilePrefix));
+    }
+
+    /**
+     * @return A new empty chunk, in memory or in the spill file.
+     */
+    ThreadBuffer.Chunk newChunk() {
+        if (tryReserveMemoryChunk()) {
+            return new ThreadBuffer.Chunk();
+        }
+        ThreadBuffer.Chunk spilled = newSpilledChunk();
+        if (spilled != null) {
+            return spilled;
+        }
+        memoryChunks.incrementAndGet();
+        return new ThreadBuffer.Chunk();
+    }
+
+    /**
+     * Gives back a chunk that is not referenced anymore.
+     */
+    void release(final ThreadBuffer.Chunk chunk) {
+        if (chunk.segment == null) {
+            memoryChunks.decrementAndGet();
+        } else if (chunk.segment.released.incrementAndGet() == SEGMENT_BLOCKS) {
+            synchronized (this) {
+                segments.remove(chunk.segment);
+            }
+            chunk.segment.delete();
+        }
+    }
+
+    /**
+     * Deletes the spill files, chunks must not be accessed anymore.
+     * Chunks allocated afterwards are kept in memory, no spill file is created anymore.
+     */
+    synchronized void close() {
+        closed = true;
+        segments.forEach(Segment::delete);
+        segments.clear();
+        current = null;
+    }
+
+    int memoryChunks() {
+        return memoryChunks.get();
+    }
+
+    synchronized int spillSegments() {
+        return segments.size();
+    }
+
+    private boolean tryReserveMemoryChunk() {
+        int count;
+        do {
+            count = memoryChunks.get();
+            if (count >= maxMemoryChunks) {
+                return false;
+            }
+        } while (!memoryChunks.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    private synchronized ThreadBuffer.Chunk newSpilledChunk() {
+        if (spillFailed || closed) {
+            return null;
+        }
+        try {
+            if (current == null || current.allocated == SEGMENT_BLOCKS) {
+                current = mapSegment();
+                segments.add(current);
+            }
+            return new ThreadBuffer.Chunk(current, current.allocateBlock());
+        } catch (IOException e) {
+            log.warn("Cannot spill metric values to {}, keeping them in memory.", spillDirectory, e);
+            spillFailed = true;
+            return null;
+        }
+    }
+
+    private Segment mapSegment() throws IOException {
+        if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+            throw new IOException("Cannot create directory " + spillDirectory);
+        }
+        File file = new File(spillDirectory, spillFilePrefix + "-" + segmentIndex++ + SPILL_FILE_SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            long size = (long) BLOCK_BYTES * SEGMENT_BLOCKS;
+            return new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    /**
+     * A fixed size mapped region of the spill file, blocks are allocated sequentially.
+     */
+    static final class Segment {
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger released = new AtomicInteger();
+        private int allocated;
+
+        private Segment(final File file, final MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        private ByteBuffer allocateBlock() {
+            ByteBuffer block = buffer.duplicate();
+            int offset = allocated++ * BLOCK_BYTES;
+            block.position(offset);
+            block.limit(offset + BLOCK_BYTES);
+            return block.slice();
+        }
+
+        private void delete() {
+            if (file.exists() && !file.delete()) {
+                log.warn("Could not delete spill file {}.", file);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import io.amaze.bench.api.metric.Metrics;
+import io.amaze.bench.cluster.metric.HistogramLayout;
+import io.amaze.bench.cluster.metric.MetricHistogram;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Internal implementation of API interface {@link io.amaze.bench.api.metric.Metrics.Histogram}
+ * <p>
+ * Recording is a single atomic increment of the value's bucket: it takes constant time, does not allocate
+ * and does not lock. The memory footprint only depends on the {@link HistogramLayout}.
+ *
+ * @see MetricsInternal
+ */
+final class HistogramRecorder implements Metrics.Histogram {
+
+    private final HistogramLayout layout;
+    private final AtomicLongArray counts;
+
+    HistogramRecorder(final HistogramLayout layout) {
+        this.layout = requireNonNull(layout);
+        this.counts = new AtomicLongArray(layout.countsLength());
+    }
+
+    @Override
+    public Metrics.Histogram record(final long value) {
+        counts.incrementAndGet(layout.indexOf(value));
+        return this;
+    }
+
+    @Override
+    public Metrics.Histogram record(final long value, final long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative: " + count);
+        }
+        counts.addAndGet(layout.indexOf(value), count);
+        return this;
+    }
+
+    @Override
+    public Metrics.Histogram recordWithExpectedInterval(final long value, final long expectedInterval) {
+        if (expectedInterval < 0) {
+            throw new IllegalArgumentException("Expected interval cannot be negative: " + expectedInterval);
+        }
+        record(value);
+        if (expectedInterval == 0) {
+            return this;
+        }
+
+        // Missing values are value - interval, value - 2 * interval, ... down to the interval:
+        // all of those falling in the same bucket are counted at once.
+        long missing = value - expectedInterval;
+        while (missing >= expectedInterval) {
+            int index = layout.indexOf(missing);
+            long lowest = Math.max(layout.lowestValueAt(index), expectedInterval);
+            long count = (missing - lowest) / expectedInterval + 1;
+            counts.addAndGet(index, count);
+            missing -= count * expectedInterval;
+        }
+        return this;
+    }
+
+    /**
+     * Collects the counts recorded since the previous call, and resets them.
+     * Values recorded concurrently are either part of the returned histogram or of the next one, never lost.
+     *
+     * @return The recorded counts, or {@code null} if nothing was recorded.
+     */
+    MetricHistogram drain() {
+        long[] drained = null;
+        for (int i = 0; i < counts.length(); i++) {
+            if (counts.get(i) != 0) {
+                if (drained == null) {
+                    drained = new long[counts.length()];
+                }
+                drained[i] = counts.getAndSet(i, 0);
+            }
+        }
+        return drained != null ? new MetricHistogram(layout, drained) : null;
+    }
+
+    /**
+     * @return The counts recorded since the previous drain, without resetting them.
+     */
+    MetricHistogram copy() {
+        long[] copy = new long[counts.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new MetricHistogram(layout, copy);
+    }
+}
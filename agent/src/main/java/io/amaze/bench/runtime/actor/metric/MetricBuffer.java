@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import io.amaze.bench.cluster.metric.MetricValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Values recorded for one metric, striped by recording thread.
+ * <p>
+ * Each thread appends to its own {@link ThreadBuffer} without taking any lock.
+ * Dumping and copying are serialized by the caller ({@link MetricsInternal}) and only read what was published.
+ */
+final class MetricBuffer {
+
+    private final List<ThreadBuffer> buffers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<ThreadBuffer> localBuffer = ThreadLocal.withInitial(this::register);
+    private final MetricSink sink = new MetricSink(this);
+    private final ChunkAllocator allocator;
+
+    MetricBuffer(final ChunkAllocator allocator) {
+        this.allocator = requireNonNull(allocator);
+    }
+
+    MetricSink sink() {
+        return sink;
+    }
+
+    /**
+     * @return The buffer owned by the calling thread, to append to.
+     */
+    ThreadBuffer local() {
+        return localBuffer.get();
+    }
+
+    /**
+     * Must not be called concurrently with {@link #copy()} or another call to {@link #drain()}.
+     */
+    List<MetricValue> drain() {
+        return drain(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Must not be called concurrently with {@link #copy()} or another call to {@link #drain()}.
+     *
+     * @param max Maximum number of values to drain, so that spilled values are read back a batch at a time.
+     * @return The drained values, fewer than {@code max} only if every published value was drained.
+     */
+    List<MetricValue> drain(final int max) {
+        List<MetricValue> out = new ArrayList<>(Math.min(max, ThreadBuffer.CHUNK_SIZE));
+        for (ThreadBuffer buffer : buffers) {
+            if (out.size() == max) {
+                break;
+            }
+            buffer.drainTo(out, max - out.size());
+            if (buffer.isDisposable()) {
+                buffers.remove(buffer);
+                buffer.dispose();
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Must not be called concurrently with {@link #drain()}.
+     */
+    List<MetricValue> copy() {
+        List<MetricValue> out = new ArrayList<>();
+        for (ThreadBuffer buffer : buffers) {
+            buffer.copyTo(out);
+        }
+        return out;
+    }
+
+    private ThreadBuffer register() {
+        ThreadBuffer buffer = new ThreadBuffer(Thread.currentThread(), allocator);
+        buffers.add(buffer);
+        return buffer;
+    }
+}
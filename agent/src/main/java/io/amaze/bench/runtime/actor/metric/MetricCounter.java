@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import io.amaze.bench.api.metric.Metrics;
+import io.amaze.bench.cluster.metric.MetricTimedValue;
+import io.amaze.bench.cluster.metric.MetricValue;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Internal implementation of API interface {@link io.amaze.bench.api.metric.Metrics.Counter}
+ * <p>
+ * Updates are spread over cells to avoid contention, the running total is produced on each flush.
+ *
+ * @see MetricsInternal
+ */
+final class MetricCounter implements Metrics.Counter, AggregatedMetric {
+
+    private final LongAdder total = new LongAdder();
+
+    @Override
+    public Metrics.Counter increment() {
+        total.increment();
+        return this;
+    }
+
+    @Override
+    public Metrics.Counter add(final long delta) {
+        total.add(delta);
+        return this;
+    }
+
+    @Override
+    public Optional<MetricValue> sample(final long timeStamp) {
+        return Optional.of(new MetricTimedValue(timeStamp, total.sum()));
+    }
+}
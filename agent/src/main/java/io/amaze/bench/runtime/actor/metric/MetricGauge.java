@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import io.amaze.bench.cluster.metric.MetricTimedValue;
+import io.amaze.bench.cluster.metric.MetricValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A gauge registered through {@link io.amaze.bench.api.metric.Metrics#gauge}, sampled on each flush.
+ * <p>
+ * A failing supplier or a {@code null} value does not prevent other metrics from being flushed,
+ * no value is produced for this flush.
+ *
+ * @see MetricsInternal
+ */
+final class MetricGauge implements AggregatedMetric {
+
+    private static final Logger log = LogManager.getLogger();
+
+    private final Supplier<? extends Number> supplier;
+
+    MetricGauge(final Supplier<? extends Number> supplier) {
+        this.supplier = requireNonNull(supplier);
+    }
+
+    @Override
+    public Optional<MetricValue> sample(final long timeStamp) {
+        Number value;
+        try {
+            value = supplier.get();
+        } catch (RuntimeException e) {
+            log.warn("Gauge supplier failed.", e);
+            return Optional.empty();
+        }
+        return Optional.ofNullable(value).map(number -> new MetricTimedValue(timeStamp, number));
+    }
+}
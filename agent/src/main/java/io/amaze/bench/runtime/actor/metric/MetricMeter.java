@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import io.amaze.bench.api.metric.Metrics;
+import io.amaze.bench.cluster.metric.MetricTimedValue;
+import io.amaze.bench.cluster.metric.MetricValue;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Internal implementation of API interface {@link io.amaze.bench.api.metric.Metrics.Meter}
+ * <p>
+ * Events are counted without contention, each flush produces their rate per second since the previous one.
+ *
+ * @see MetricsInternal
+ */
+final class MetricMeter implements Metrics.Meter, AggregatedMetric {
+
+    private final LongAdder events = new LongAdder();
+    private long lastSampleNanos = System.nanoTime();
+
+    @Override
+    public Metrics.Meter mark() {
+        events.increment();
+        return this;
+    }
+
+    @Override
+    public Metrics.Meter mark(final long count) {
+        events.add(count);
+        return this;
+    }
+
+    @Override
+    public Optional<MetricValue> sample(final long timeStamp) {
+        long now = System.nanoTime();
+        long elapsedNanos = Math.max(now - lastSampleNanos, 1);
+        lastSampleNanos = now;
+
+        double ratePerSecond = events.sumThenReset() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        return Optional.of(new MetricTimedValue(timeStamp, ratePerSecond));
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import io.amaze.bench.api.metric.Metrics;
+import io.amaze.bench.cluster.metric.MetricReservoir;
+import io.amaze.bench.cluster.metric.MetricTimedValue;
+import io.amaze.bench.cluster.metric.MetricValue;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Internal implementation of a sampled {@link io.amaze.bench.api.metric.Metrics.Sink}.
+ * <p>
+ * Each recording thread owns a stripe, holding exact running moments (Welford's algorithm) and a reservoir
+ * filled with Algorithm R: the n-th value replaces a random sample with a probability of capacity / n.
+ * Values that are not sampled are not boxed nor allocated.
+ * <p>
+ * As for {@link ThreadBuffer}, only the owner thread writes to its stripe, without taking any lock.
+ * Draining swaps the reservoir of each stripe for an empty one, waits for a value being added to the previous
+ * one if any, then merges the reservoirs of all stripes in a single {@link MetricReservoir}.
+ * Drains must be serialized by the caller ({@link MetricsInternal}).
+ *
+ * @see MetricsInternal
+ */
+final class MetricReservoirSink implements Metrics.Sink {
+
+    private final int capacity;
+    private final List<Stripe> stripes = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Stripe> localStripe = ThreadLocal.withInitial(this::register);
+
+    MetricReservoirSink(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Reservoir size must be > 0, got " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    @Override
+    public Metrics.Sink add(@NotNull final Number value) {
+        requireNonNull(value);
+        localStripe.get().addNumber(false, 0, value);
+        return this;
+    }
+
+    @Override
+    public Metrics.Sink add(final long value) {
+        localStripe.get().addLong(false, 0, value);
+        return this;
+    }
+
+    @Override
+    public Metrics.Sink add(final double value) {
+        localStripe.get().addDouble(false, 0, value);
+        return this;
+    }
+
+    @Override
+    public Metrics.Sink timed(final long timeStamp, @NotNull final Number value) {
+        requireNonNull(value);
+        localStripe.get().addNumber(true, timeStamp, value);
+        return this;
+    }
+
+    @Override
+    public Metrics.Sink timed(final long timeStamp, final long value) {
+        localStripe.get().addLong(true, timeStamp, value);
+        return this;
+    }
+
+    @Override
+    public Metrics.Sink timed(final long timeStamp, final double value) {
+        localStripe.get().addDouble(true, timeStamp, value);
+        return this;
+    }
+
+    @Override
+    public Metrics.Sink timed(@NotNull final Number value) {
+        return timed(System.currentTimeMillis(), value);
+    }
+
+    @Override
+    public Metrics.Sink timed(final long value) {
+        return timed(System.currentTimeMillis(), value);
+    }
+
+    @Override
+    public Metrics.Sink timed(final double value) {
+        return timed(System.currentTimeMillis(), value);
+    }
+
+    /**
+     * Collects the values added since the previous call, and resets the stripes.
+     * Must not be called concurrently with another call to {@link #drain()}.
+     *
+     * @return The merged reservoir of all stripes, or {@code null} if no value was added.
+     */
+    MetricReservoir drain() {
+        MetricReservoir merged = null;
+        for (Stripe stripe : stripes) {
+            MetricReservoir reservoir = stripe.drain();
+            if (reservoir != null) {
+                merged = merged == null ? reservoir : merged.mergeWith(reservoir);
+            }
+            if (!stripe.owner.isAlive()) {
+                stripes.remove(stripe);
+            }
+        }
+        return merged;
+    }
+
+    private Stripe register() {
+        Stripe stripe = new Stripe(Thread.currentThread(), capacity);
+        stripes.add(stripe);
+        return stripe;
+    }
+
+    /**
+     * Reservoir of one thread, double buffered: the owner thread adds to the active reservoir while the spare one
+     * belongs to the drainer.
+     */
+    private static final class Stripe {
+        private static final AtomicLongFieldUpdater<Stripe> WRITES = AtomicLongFieldUpdater.newUpdater(Stripe.class,
+                                                                                                       "writes");
+
+        private final Thread owner;
+        private volatile Reservoir active;
+        private Reservoir spare;
+        // Odd while the owner thread is adding a value
+        private volatile long writes;
+
+        Stripe(final Thread owner, final int capacity) {
+            this.owner = owner;
+            this.active = new Reservoir(capacity);
+            this.spare = new Reservoir(capacity);
+        }
+
+        /**
+         * Called by the owner thread only.
+         */
+        void addLong(final boolean timed, final long timeStamp, final long value) {
+            Reservoir reservoir = enter();
+            int slot = reservoir.offer(value);
+            if (slot >= 0) {
+                reservoir.samples[slot] = timed ? new MetricTimedValue(timeStamp, value) : new MetricValue(value);
+            }
+            exit();
+        }
+
+        /**
+         * Called by the owner thread only.
+         */
+        void addDouble(final boolean timed, final long timeStamp, final double value) {
+            Reservoir reservoir = enter();
+            int slot = reservoir.offer(value);
+            if (slot >= 0) {
+                reservoir.samples[slot] = timed ? new MetricTimedValue(timeStamp, value) : new MetricValue(value);
+            }
+            exit();
+        }
+
+        /**
+         * Called by the owner thread only.
+         */
+        void addNumber(final boolean timed, final long timeStamp, final Number value) {
+            Reservoir reservoir = enter();
+            int slot = reservoir.offer(value.doubleValue());
+            if (slot >= 0) {
+                reservoir.samples[slot] = timed ? new MetricTimedValue(timeStamp, value) : new MetricValue(value);
+            }
+            exit();
+        }
+
+        MetricReservoir drain() {
+            Reservoir drained = active;
+            active = spare;
+            // The owner thread may still be adding a value to the reservoir it read before the swap
+            long observed = writes;
+            while ((observed & 1) != 0 && writes == observed) {
+                Thread.yield();
+            }
+            spare = drained;
+            return drained.drain();
+        }
+
+        /**
+         * The volatile write is ordered before the read of the active reservoir,
+         * so that the drainer sees the write in progress if the swap happened after the read.
+         */
+        private Reservoir enter() {
+            writes = writes + 1;
+            return active;
+        }
+
+        private void exit() {
+            WRITES.lazySet(this, writes + 1);
+        }
+    }
+
+    private static final class Reservoir {
+        private final MetricValue[] samples;
+        private int size;
+        private long count;
+        private double min;
+        private double max;
+        private double mean;
+        private double squaredDeviations;
+
+        Reservoir(final int capacity) {
+            this.samples = new MetricValue[capacity];
+        }
+
+        MetricReservoir drain() {
+            if (count == 0) {
+                return null;
+            }
+            List<MetricValue> sampled = new ArrayList<>(Arrays.asList(samples).subList(0, size));
+            MetricReservoir reservoir = new MetricReservoir(samples.length, count, min, max, mean,
+                                                            squaredDeviations, sampled);
+            Arrays.fill(samples, 0, size, null);
+            size = 0;
+            count = 0;
+            mean = 0;
+            squaredDeviations = 0;
+            return reservoir;
+        }
+
+        /**
+         * Updates the moments with the given value.
+         *
+         * @return The index of the sample to be replaced by the value, or -1 if it is not sampled.
+         */
+        private int offer(final double value) {
+            count++;
+            if (count == 1) {
+                min = value;
+                max = value;
+            } else {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            double delta = value - mean;
+            mean += delta / count;
+            squaredDeviations += delta * (value - mean);
+
+            if (size < samples.length) {
+                return size++;
+            }
+            long index = ThreadLocalRandom.current().nextLong(count);
+            return index < samples.length ? (int) index : -1;
+        }
+    }
+}
@@ -15,46 +15,64 @@
  */
 package io.amaze.bench.runtime.actor.metric;
 
-import io.amaze.bench.api.metric.Metric;
 import io.amaze.bench.api.metric.Metrics;
-import io.amaze.bench.cluster.metric.MetricTimedValue;
-import io.amaze.bench.cluster.metric.MetricValue;
 
 import javax.validation.constraints.NotNull;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Internal implementation of API interface {@link io.amaze.bench.api.metric.Metrics.Sink}
+ * <p>
+ * Recording does not take any lock, values are appended to a buffer owned by the calling thread.
+ * Primitive overloads are stored as is and do not allocate.
  *
  * @see MetricsInternal
+ * @see MetricBuffer
  */
 final class MetricSink implements Metrics.Sink {
 
-    private final Collection<MetricValue> metricsValues;
-    private final Map<Metric, List<MetricValue>> valuesMap;
+    private final MetricBuffer buffer;
 
-    MetricSink(final Map<Metric, List<MetricValue>> valuesMap, final List<MetricValue> metricsValues) {
-        this.valuesMap = requireNonNull(valuesMap);
-        this.metricsValues = requireNonNull(metricsValues);
+    MetricSink(final MetricBuffer buffer) {
+        this.buffer = requireNonNull(buffer);
     }
 
     @Override
     public Metrics.Sink add(@NotNull final Number value) {
-        synchronized (valuesMap) {
-            metricsValues.add(new MetricValue(value));
-        }
+        requireNonNull(value);
+        buffer.local().appendNumber(false, 0, value);
+        return this;
+    }
+
+    @Override
+    public Metrics.Sink add(final long value) {
+        buffer.local().appendLong(value);
+        return this;
+    }
+
+    @Override
+    public Metrics.Sink add(final double value) {
+        buffer.local().appendDouble(value);
         return this;
     }
 
     @Override
     public Metrics.Sink timed(@NotNull final long timeStamp, @NotNull final Number value) {
-        synchronized (valuesMap) {
-            metricsValues.add(new MetricTimedValue(timeStamp, value));
-        }
+        requireNonNull(value);
+        buffer.local().appendNumber(true, timeStamp, value);
+        return this;
+    }
+
+    @Override
+    public Metrics.Sink timed(final long timeStamp, final long value) {
+        buffer.local().appendTimedLong(timeStamp, value);
+        return this;
+    }
+
+    @Override
+    public Metrics.Sink timed(final long timeStamp, final double value) {
+        buffer.local().appendTimedDouble(timeStamp, value);
         return this;
     }
 
@@ -62,4 +80,14 @@ final class MetricSink implements Metrics.Sink {
     public Metrics.Sink timed(@NotNull final Number value) {
         return timed(System.currentTimeMillis(), value);
     }
+
+    @Override
+    public Metrics.Sink timed(final long value) {
+        return timed(System.currentTimeMillis(), value);
+    }
+
+    @Override
+    public Metrics.Sink timed(final double value) {
+        return timed(System.currentTimeMillis(), value);
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import io.amaze.bench.api.metric.Metrics;
+
+import javax.validation.constraints.NotNull;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Internal implementation of API interface {@link io.amaze.bench.api.metric.Metrics.Timer}
+ * <p>
+ * Durations are measured with {@link System#nanoTime()} and recorded to a histogram,
+ * with the coordinated omission correction of {@link Metrics.Histogram#recordWithExpectedInterval(long, long)}.
+ *
+ * @see MetricsInternal
+ * @see HistogramRecorder
+ */
+final class MetricTimer implements Metrics.Timer {
+
+    private final Metrics.Histogram histogram;
+    private final long expectedIntervalNanos;
+
+    MetricTimer(final Metrics.Histogram histogram, final long expectedIntervalNanos) {
+        if (expectedIntervalNanos < 0) {
+            throw new IllegalArgumentException("Expected interval cannot be negative: " + expectedIntervalNanos);
+        }
+        this.histogram = requireNonNull(histogram);
+        this.expectedIntervalNanos = expectedIntervalNanos;
+    }
+
+    @Override
+    public Context start() {
+        return new TimerContext(System.nanoTime());
+    }
+
+    @Override
+    public Metrics.Timer record(final long durationNanos) {
+        histogram.recordWithExpectedInterval(durationNanos, expectedIntervalNanos);
+        return this;
+    }
+
+    @Override
+    public void time(@NotNull final Runnable task) {
+        requireNonNull(task);
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> T time(@NotNull final Supplier<T> task) {
+        requireNonNull(task);
+        long start = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    private final class TimerContext implements Context {
+
+        private final long startNanos;
+        private long durationNanos = -1;
+
+        TimerContext(final long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public long stop() {
+            if (durationNanos < 0) {
+                durationNanos = System.nanoTime() - startNanos;
+                record(durationNanos);
+            }
+            return durationNanos;
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
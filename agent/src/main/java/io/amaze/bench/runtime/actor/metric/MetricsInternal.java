@@ -19,59 +19,323 @@ import com.google.common.annotations.VisibleForTesting;
 import io.amaze.bench.api.ActorKey;
 import io.amaze.bench.api.metric.Metric;
 import io.amaze.bench.api.metric.Metrics;
+import io.amaze.bench.cluster.agent.Constants;
+import io.amaze.bench.cluster.metric.HistogramLayout;
+import io.amaze.bench.cluster.metric.MetricHistogram;
+import io.amaze.bench.cluster.metric.MetricReservoir;
 import io.amaze.bench.cluster.metric.MetricValue;
 import io.amaze.bench.cluster.metric.MetricValuesMessage;
 
 import javax.validation.constraints.NotNull;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Internal implementation of {@link Metrics} interface provided to actors.
+ * <p>
+ * Recording threads append to per-thread buffers and never block,
+ * {@link #dumpAndFlush(Consumer)} collects what was published so far without stalling them.
+ * Histograms only ship the bucket counts recorded since the previous flush, sampled sinks their reservoir,
+ * counters, gauges and meters are aggregated in place and produce a single timed value per flush.<br>
+ * A metric is recorded by a single kind of instrument: requesting another kind for it is rejected.
+ * <p>
+ * If created with a maximum number of buffered values, values recorded past it are spilled to memory-mapped files
+ * in the {@link Constants#LOG_DIRECTORY_NAME} directory until the next flush, which reads them back
+ * and sends them a batch at a time.
+ * Memory usage then stays flat however long the actor records between two flushes.
  *
  * @see MetricSink
+ * @see MetricBuffer
+ * @see HistogramRecorder
+ * @see MetricReservoirSink
+ * @see AggregatedMetric
  */
-public final class MetricsInternal implements Metrics {
+public final class MetricsInternal implements Metrics, AutoCloseable {
 
-    private final Map<Metric, List<MetricValue>> values = new HashMap<>();
+    /**
+     * Maximum number of metric values in each message of {@link #dumpAndFlush(Consumer)}.
+     */
+    public static final int MAX_VALUES_PER_MESSAGE = 64 * 1024;
+
+    private final ConcurrentMap<Metric, MetricBuffer> buffers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Metric, HistogramRecorder> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Metric, MetricReservoirSink> reservoirs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Metric, AggregatedMetric> aggregates = new ConcurrentHashMap<>();
+    // Instrument each metric was first requested as, histograms include timers
+    private final ConcurrentMap<Metric, Class<?>> kinds = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
     private final ActorKey actor;
+    private final ChunkAllocator allocator;
 
-    private MetricsInternal(@NotNull final ActorKey actor) {
+    private MetricsInternal(@NotNull final ActorKey actor, @NotNull final ChunkAllocator allocator) {
         this.actor = requireNonNull(actor);
+        this.allocator = requireNonNull(allocator);
     }
 
     public static MetricsInternal create(@NotNull final ActorKey actorKey) {
-        return new MetricsInternal(actorKey);
+        return new MetricsInternal(actorKey, ChunkAllocator.unbounded());
+    }
+
+    /**
+     * @param actorKey          Key of the actor recording the metrics.
+     * @param maxBufferedValues Number of values buffered in memory before spilling to disk, 0 for no limit.
+     * @return A new instance, to be closed once metrics are not recorded anymore.
+     */
+    public static MetricsInternal create(@NotNull final ActorKey actorKey, final int maxBufferedValues) {
+        return create(actorKey, maxBufferedValues, new File(Constants.LOG_DIRECTORY_NAME));
+    }
+
+    @VisibleForTesting
+    static MetricsInternal create(@NotNull final ActorKey actorKey,
+                                  final int maxBufferedValues,
+                                  @NotNull final File spillDirectory) {
+        requireNonNull(actorKey);
+        requireNonNull(spillDirectory);
+        if (maxBufferedValues < 0) {
+            throw new IllegalArgumentException("Max buffered values cannot be negative: " + maxBufferedValues);
+        }
+        if (maxBufferedValues == 0) {
+            return new MetricsInternal(actorKey, ChunkAllocator.unbounded());
+        }
+        String spillFilePrefix = actorKey.getName() + "-metrics";
+        return new MetricsInternal(actorKey,
+                                   ChunkAllocator.spilling(maxBufferedValues, spillDirectory, spillFilePrefix));
     }
 
     @Override
     public Sink sinkFor(@NotNull final Metric metric) {
         requireNonNull(metric);
-        synchronized (values) {
-            List<MetricValue> metricsValues = values.computeIfAbsent(metric, k -> new ArrayList<>());
-            return new MetricSink(values, metricsValues);
+        MetricBuffer buffer = buffers.get(metric);
+        if (buffer == null) {
+            register(metric, MetricBuffer.class);
+            buffer = buffers.computeIfAbsent(metric, k -> new MetricBuffer(allocator));
         }
+        return buffer.sink();
     }
 
-    public MetricValuesMessage dumpAndFlush() {
-        Map<Metric, List<MetricValue>> copy = new HashMap<>();
-        synchronized (values) {
-            values.forEach((metric, metricValues) -> {
-                if (!metricValues.isEmpty()) {
-                    copy.put(metric, new ArrayList<>(metricValues));
-                    metricValues.clear();
+    @Override
+    public Sink sampledSinkFor(@NotNull final Metric metric, final int reservoirSize) {
+        requireNonNull(metric);
+        if (reservoirSize <= 0) {
+            throw new IllegalArgumentException("Reservoir size must be > 0, got " + reservoirSize);
+        }
+        MetricReservoirSink sink = reservoirs.get(metric);
+        if (sink == null) {
+            register(metric, MetricReservoirSink.class);
+            sink = reservoirs.computeIfAbsent(metric, k -> new MetricReservoirSink(reservoirSize));
+        }
+        return sink;
+    }
+
+    @Override
+    public Histogram histogram(@NotNull final Metric metric) {
+        return histogram(metric, HistogramLayout.DEFAULT_SIGNIFICANT_DIGITS);
+    }
+
+    @Override
+    public Histogram histogram(@NotNull final Metric metric, final int significantDigits) {
+        return histogram(metric, significantDigits, HistogramLayout.DEFAULT_HIGHEST_TRACKABLE_VALUE);
+    }
+
+    @Override
+    public Histogram histogram(@NotNull final Metric metric,
+                               final int significantDigits,
+                               final long highestTrackableValue) {
+        requireNonNull(metric);
+        HistogramRecorder recorder = histograms.get(metric);
+        if (recorder == null) {
+            register(metric, HistogramRecorder.class);
+            HistogramLayout layout = new HistogramLayout(significantDigits, highestTrackableValue);
+            recorder = histograms.computeIfAbsent(metric, k -> new HistogramRecorder(layout));
+        }
+        return recorder;
+    }
+
+    @Override
+    public Timer timer(@NotNull final Metric metric) {
+        return timer(metric, 0);
+    }
+
+    @Override
+    public Timer timer(@NotNull final Metric metric, final long expectedIntervalNanos) {
+        return new MetricTimer(histogram(metric), expectedIntervalNanos);
+    }
+
+    @Override
+    public Counter counter(@NotNull final Metric metric) {
+        requireNonNull(metric);
+        return aggregate(metric, MetricCounter.class, MetricCounter::new);
+    }
+
+    @Override
+    public void gauge(@NotNull final Metric metric, @NotNull final Supplier<? extends Number> supplier) {
+        requireNonNull(metric);
+        requireNonNull(supplier);
+        register(metric, MetricGauge.class);
+        aggregates.put(metric, new MetricGauge(supplier));
+    }
+
+    @Override
+    public Meter meter(@NotNull final Metric metric) {
+        requireNonNull(metric);
+        return aggregate(metric, MetricMeter.class, MetricMeter::new);
+    }
+
+    /**
+     * Collects everything recorded since the previous flush, and hands it to the given consumer as several messages
+     * holding at most {@link #MAX_VALUES_PER_MESSAGE} metric values each: spilled values are read back and sent
+     * one batch at a time, instead of being brought back to the heap all at once.<br>
+     * Histograms, reservoirs and aggregated values are part of the first message.
+     * The consumer is called at least once, with an empty message if nothing was recorded.
+     *
+     * @param consumer Called with each message, from the calling thread.
+     */
+    public void dumpAndFlush(@NotNull final Consumer<MetricValuesMessage> consumer) {
+        requireNonNull(consumer);
+
+        synchronized (flushLock) {
+            Map<Metric, MetricHistogram> histogramsCopy = new HashMap<>();
+            histograms.forEach((metric, recorder) -> {
+                MetricHistogram histogram = recorder.drain();
+                if (histogram != null) {
+                    histogramsCopy.put(metric, histogram);
+                }
+            });
+            Map<Metric, MetricReservoir> reservoirsCopy = new HashMap<>();
+            reservoirs.forEach((metric, sink) -> {
+                MetricReservoir reservoir = sink.drain();
+                if (reservoir != null) {
+                    reservoirsCopy.put(metric, reservoir);
                 }
             });
+            Map<Metric, List<MetricValue>> sampled = new HashMap<>();
+            long now = System.currentTimeMillis();
+            aggregates.forEach((metric, aggregate) -> aggregate.sample(now).ifPresent( //
+                    value -> sampled.computeIfAbsent(metric, k -> new ArrayList<>()).add(value)));
+
+            // Spilled values are moved to new maps once a message is full, the first one holding the aggregates
+            Map<Metric, List<MetricValue>> values = sampled;
+            MetricValuesMessage message = new MetricValuesMessage(actor, values, histogramsCopy, reservoirsCopy);
+            int count = values.size();
+            boolean sent = false;
+            for (Map.Entry<Metric, MetricBuffer> entry : buffers.entrySet()) {
+                while (true) {
+                    List<MetricValue> batch = entry.getValue().drain(MAX_VALUES_PER_MESSAGE - count);
+                    if (!batch.isEmpty()) {
+                        values.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(batch);
+                        count += batch.size();
+                    }
+                    if (count < MAX_VALUES_PER_MESSAGE) {
+                        break;
+                    }
+                    consumer.accept(message);
+                    sent = true;
+                    values = new HashMap<>();
+                    message = new MetricValuesMessage(actor, values);
+                    count = 0;
+                }
+            }
+            if (!sent || !message.isEmpty()) {
+                consumer.accept(message);
+            }
         }
-        return new MetricValuesMessage(actor, copy);
     }
 
+    /**
+     * Collects everything recorded since the previous flush as a single message, merging the messages of
+     * {@link #dumpAndFlush(Consumer)}: all the values, spilled ones included, are then held in memory at once.
+     */
+    @VisibleForTesting
+    MetricValuesMessage dumpAndFlush() {
+        Map<Metric, List<MetricValue>> values = new HashMap<>();
+        Map<Metric, MetricHistogram> histogramsCopy = new HashMap<>();
+        Map<Metric, MetricReservoir> reservoirsCopy = new HashMap<>();
+        dumpAndFlush(message -> {
+            message.metrics().forEach((metric, batch) -> values.computeIfAbsent(metric, k -> new ArrayList<>())
+                                                                .addAll(batch));
+            histogramsCopy.putAll(message.histograms());
+            reservoirsCopy.putAll(message.reservoirs());
+        });
+        return new MetricValuesMessage(actor, values, histogramsCopy, reservoirsCopy);
+    }
+
+    /**
+     * Deletes the spill files if any, values that were not flushed are lost.
+     */
+    @Override
+    public void close() {
+        synchronized (flushLock) {
+            allocator.close();
+        }
+    }
+
+    private <T extends AggregatedMetric> T aggregate(final Metric metric,
+                                                     final Class<T> kind,
+                                                     final Supplier<T> factory) {
+        AggregatedMetric aggregate = aggregates.get(metric);
+        if (aggregate == null) {
+            register(metric, kind);
+            aggregate = aggregates.computeIfAbsent(metric, k -> factory.get());
+        }
+        checkKind(metric, aggregate.getClass(), kind);
+        return kind.cast(aggregate);
+    }
+
+    /**
+     * Records the kind of instrument of the given metric when first requested.
+     *
+     * @throws IllegalArgumentException if the metric is already recorded by another kind of instrument.
+     */
+    private void register(final Metric metric, final Class<?> kind) {
+        Class<?> existing = kinds.putIfAbsent(metric, kind);
+        if (existing != null) {
+            checkKind(metric, existing, kind);
+        }
+    }
+
+    private static void checkKind(final Metric metric, final Class<?> existing, final Class<?> kind) {
+        if (existing != kind) {
+            throw new IllegalArgumentException(
+                    String.format("Metric %s is already registered as a %s.", metric.getKey(),
+                                  existing.getSimpleName()));
+        }
+    }
+
+    /**
+     * @return A snapshot of the values recorded and not flushed yet, for each metric.
+     */
     @VisibleForTesting
     Map<Metric, List<MetricValue>> getValues() {
-        return values;
+        Map<Metric, List<MetricValue>> copy = new HashMap<>();
+        synchronized (flushLock) {
+            buffers.forEach((metric, buffer) -> copy.put(metric, buffer.copy()));
+        }
+        return copy;
+    }
+
+    @VisibleForTesting
+    ChunkAllocator getAllocator() {
+        return allocator;
+    }
+
+    /**
+     * @return A snapshot of the histogram counts recorded and not flushed yet, for each metric.
+     */
+    @VisibleForTesting
+    Map<Metric, MetricHistogram> getHistograms() {
+        Map<Metric, MetricHistogram> copy = new HashMap<>();
+        synchronized (flushLock) {
+            histograms.forEach((metric, recorder) -> copy.put(metric, recorder.copy()));
+        }
+        return copy;
     }
 }
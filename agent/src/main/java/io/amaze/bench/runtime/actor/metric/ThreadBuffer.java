@@ -0,0 +1,354 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import io.amaze.bench.cluster.metric.MetricTimedValue;
+import io.amaze.bench.cluster.metric.MetricValue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Single-writer append buffer owned by one recording thread.
+ * <ul>
+ * <li>Only the owner thread appends, values are stored in fixed size chunks of primitive columns linked together,</li>
+ * <li>The size of a chunk is published after the value is written, so a reader never sees a partial write,</li>
+ * <li>Readers must be serialized externally (see {@link MetricBuffer}), they never block the writer,</li>
+ * <li>Chunks fully read are handed back to the writer, so that steady state recording does not allocate.</li>
+ * <li>New chunks come from the actor's {@link ChunkAllocator}: past its memory capacity,
+ * they are blocks of a memory-mapped spill file, which are released once read instead of being recycled.</li>
+ * </ul>
+ */
+final class ThreadBuffer {
+
+    static final int CHUNK_SIZE = 256;
+    static final int MAX_FREE_CHUNKS = 8;
+
+    private static final byte LONG = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte INTEGER = 2;
+    private static final byte FLOAT = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte OBJECT = 6;
+    private static final byte TIMED = 0x10;
+    private static final byte KIND_MASK = 0x0F;
+
+    private final Thread owner;
+    private final ChunkAllocator allocator;
+
+    // Chunks handed back by the reader, popped by the writer only
+    private final AtomicReference<Chunk> freeChunks = new AtomicReference<>();
+    private final AtomicInteger freeCount = new AtomicInteger();
+
+    // Writer side
+    private Chunk tail;
+    private int writeIndex;
+
+    // Reader side
+    private Chunk head;
+    private int readIndex;
+
+    ThreadBuffer(final Thread owner, final ChunkAllocator allocator) {
+        this.owner = requireNonNull(owner);
+        this.allocator = requireNonNull(allocator);
+        this.tail = allocator.newChunk();
+        this.head = tail;
+    }
+
+    /**
+     * Called by the owner thread only.
+     */
+    void appendLong(final long value) {
+        append(LONG, 0, value);
+    }
+
+    /**
+     * Called by the owner thread only.
+     */
+    void appendDouble(final double value) {
+        append(DOUBLE, 0, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Called by the owner thread only.
+     */
+    void appendTimedLong(final long timeStamp, final long value) {
+        append((byte) (LONG | TIMED), timeStamp, value);
+    }
+
+    /**
+     * Called by the owner thread only.
+     */
+    void appendTimedDouble(final long timeStamp, final double value) {
+        append((byte) (DOUBLE | TIMED), timeStamp, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Called by the owner thread only, keeps the type of standard boxed numbers.
+     */
+    void appendNumber(final boolean timed, final long timeStamp, final Number value) {
+        byte flags = timed ? TIMED : 0;
+        if (value instanceof Long) {
+            append((byte) (LONG | flags), timeStamp, value.longValue());
+        } else if (value instanceof Integer) {
+            append((byte) (INTEGER | flags), timeStamp, value.longValue());
+        } else if (value instanceof Double) {
+            append((byte) (DOUBLE | flags), timeStamp, Double.doubleToRawLongBits(value.doubleValue()));
+        } else if (value instanceof Float) {
+            append((byte) (FLOAT | flags), timeStamp, Double.doubleToRawLongBits(value.doubleValue()));
+        } else if (value instanceof Short) {
+            append((byte) (SHORT | flags), timeStamp, value.longValue());
+        } else if (value instanceof Byte) {
+            append((byte) (BYTE | flags), timeStamp, value.longValue());
+        } else {
+            Chunk chunk = writableChunk();
+            if (chunk.objects == null) {
+                chunk.objects = new Number[CHUNK_SIZE];
+            }
+            chunk.objects[writeIndex] = value;
+            publish(chunk, (byte) (OBJECT | flags), timeStamp, 0);
+        }
+    }
+
+    /**
+     * Moves all published values to the given list, and recycles the chunks that were fully read.
+     */
+    void drainTo(final List<MetricValue> out) {
+        drainTo(out, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Moves at most {@code max} published values to the given list, and recycles the chunks that were fully read.
+     *
+     * @return The number of values moved, lower than {@code max} only if every published value was read.
+     */
+    int drainTo(final List<MetricValue> out, final int max) {
+        Chunk chunk = head;
+        int index = readIndex;
+        int drained = 0;
+        while (true) {
+            int size = chunk.size;
+            int end = size - index <= max - drained ? size : index + (max - drained);
+            for (int i = index; i < end; i++) {
+                out.add(chunk.valueAt(i));
+            }
+            drained += end - index;
+            index = end;
+
+            Chunk next = chunk.next;
+            if (index < size || size < CHUNK_SIZE || next == null) {
+                break;
+            }
+            if (chunk.segment != null) {
+                allocator.release(chunk);
+            } else {
+                recycle(chunk);
+            }
+            chunk = next;
+            index = 0;
+            if (drained == max) {
+                break;
+            }
+        }
+        head = chunk;
+        readIndex = index;
+        return drained;
+    }
+
+    /**
+     * Copies all published values to the given list without consuming them.
+     */
+    void copyTo(final List<MetricValue> out) {
+        Chunk chunk = head;
+        int index = readIndex;
+        while (chunk != null) {
+            int size = chunk.size;
+            for (int i = index; i < size; i++) {
+                out.add(chunk.valueAt(i));
+            }
+            chunk = size == CHUNK_SIZE ? chunk.next : null;
+            index = 0;
+        }
+    }
+
+    /**
+     * @return {@code true} if the owner thread is gone and every value it recorded was drained.
+     */
+    boolean isDisposable() {
+        return !owner.isAlive() && readIndex == head.size && head.next == null;
+    }
+
+    /**
+     * Gives the chunks still held back to the allocator, the buffer must be disposable.
+     */
+    void dispose() {
+        allocator.release(head);
+        Chunk free = freeChunks.getAndSet(null);
+        while (free != null) {
+            allocator.release(free);
+            free = free.nextFree;
+        }
+    }
+
+    private void append(final byte kind, final long timeStamp, final long bits) {
+        publish(writableChunk(), kind, timeStamp, bits);
+    }
+
+    private Chunk writableChunk() {
+        if (writeIndex < CHUNK_SIZE) {
+            return tail;
+        }
+        Chunk next = takeFreeChunk();
+        tail.next = next;
+        tail = next;
+        writeIndex = 0;
+        return next;
+    }
+
+    private void publish(final Chunk chunk, final byte kind, final long timeStamp, final long bits) {
+        int index = writeIndex++;
+        chunk.write(index, kind, timeStamp, bits);
+        Chunk.SIZE.lazySet(chunk, index + 1);
+    }
+
+    /**
+     * Writer side: only the owner thread pops, so the stack cannot suffer from ABA.
+     */
+    private Chunk takeFreeChunk() {
+        Chunk top;
+        do {
+            top = freeChunks.get();
+            if (top == null) {
+                return allocator.newChunk();
+            }
+        } while (!freeChunks.compareAndSet(top, top.nextFree));
+        freeCount.decrementAndGet();
+        top.nextFree = null;
+        return top;
+    }
+
+    /**
+     * Reader side: the writer moved past this chunk, it can be reset and handed back.
+     */
+    private void recycle(final Chunk chunk) {
+        if (freeCount.get() >= MAX_FREE_CHUNKS) {
+            allocator.release(chunk);
+            return;
+        }
+        chunk.next = null;
+        chunk.size = 0;
+        if (chunk.objects != null) {
+            Arrays.fill(chunk.objects, null);
+        }
+        freeCount.incrementAndGet();
+        Chunk top;
+        do {
+            top = freeChunks.get();
+            chunk.nextFree = top;
+        } while (!freeChunks.compareAndSet(top, chunk));
+    }
+
+    /**
+     * Primitive columns of values, either on the heap or in a block of the spill file
+     * (kinds, then time stamps, then values).
+     */
+    static final class Chunk {
+        static final AtomicIntegerFieldUpdater<Chunk> SIZE = AtomicIntegerFieldUpdater.newUpdater(Chunk.class,
+                                                                                                   "size");
+
+        private static final int TIME_STAMPS_OFFSET = CHUNK_SIZE;
+        private static final int VALUES_OFFSET = TIME_STAMPS_OFFSET + CHUNK_SIZE * Long.BYTES;
+
+        final ChunkAllocator.Segment segment;
+        private final ByteBuffer block;
+        private final byte[] kinds;
+        private final long[] timeStamps;
+        private final long[] values;
+        Number[] objects;
+
+        volatile int size;
+        volatile Chunk next;
+        Chunk nextFree;
+
+        Chunk() {
+            segment = null;
+            block = null;
+            kinds = new byte[CHUNK_SIZE];
+            timeStamps = new long[CHUNK_SIZE];
+            values = new long[CHUNK_SIZE];
+        }
+
+        Chunk(final ChunkAllocator.Segment segment, final ByteBuffer block) {
+            this.segment = requireNonNull(segment);
+            this.block = requireNonNull(block);
+            kinds = null;
+            timeStamps = null;
+            values = null;
+        }
+
+        void write(final int index, final byte kind, final long timeStamp, final long bits) {
+            if (block == null) {
+                kinds[index] = kind;
+                timeStamps[index] = timeStamp;
+                values[index] = bits;
+            } else {
+                block.put(index, kind);
+                block.putLong(TIME_STAMPS_OFFSET + index * Long.BYTES, timeStamp);
+                block.putLong(VALUES_OFFSET + index * Long.BYTES, bits);
+            }
+        }
+
+        MetricValue valueAt(final int index) {
+            byte kind = block == null ? kinds[index] : block.get(index);
+            Number value = numberAt(kind & KIND_MASK, index);
+            if ((kind & TIMED) != 0) {
+                return new MetricTimedValue(timeStampAt(index), value);
+            }
+            return new MetricValue(value);
+        }
+
+        private long timeStampAt(final int index) {
+            return block == null ? timeStamps[index] : block.getLong(TIME_STAMPS_OFFSET + index * Long.BYTES);
+        }
+
+        private Number numberAt(final int kind, final int index) {
+            long bits = block == null ? values[index] : block.getLong(VALUES_OFFSET + index * Long.BYTES);
+            switch (kind) {
+                case LONG:
+                    return bits;
+                case DOUBLE:
+                    return Double.longBitsToDouble(bits);
+                case INTEGER:
+                    return (int) bits;
+                case FLOAT:
+                    return (float) Double.longBitsToDouble(bits);
+                case SHORT:
+                    return (short) bits;
+                case BYTE:
+                    return (byte) bits;
+                default:
+                    return objects[index];
+            }
+        }
+    }
+}
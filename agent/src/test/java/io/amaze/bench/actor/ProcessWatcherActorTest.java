@@ -98,7 +98,7 @@ public final class ProcessWatcherActorTest {
         sleepUninterruptibly(5, TimeUnit.SECONDS);
         actorWithExecutor.onMessage(FROM, stopSampling(ownPid()));
 
-        verify(mockedSink, atLeastOnce()).timed(anyLong(), any(Number.class));
+        verify(mockedSink, atLeastOnce()).timed(anyLong(), anyLong());
         actorWithExecutor.closeThreads();
     }
 
@@ -159,6 +159,76 @@ public final class ActorBootstrapTest {
                      actorConfigFile.getAbsolutePath());
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void main_invalid_metrics_flush_interval_throws() throws IOException, ValidationException {
+        File actorConfigFile = writeActorConfig();
+        File clusterConfigFile = writeClusterConfigFile();
+
+        mainInternal(DUMMY_ACTOR.getName(), //
+                     DUMMY, //
+                     clusterConfigFile.getAbsolutePath(), //
+                     actorConfigFile.getAbsolutePath(), //
+                     "-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void main_invalid_metrics_max_buffered_values_throws() throws IOException, ValidationException {
+        File actorConfigFile = writeActorConfig();
+        File clusterConfigFile = writeClusterConfigFile();
+
+        mainInternal(DUMMY_ACTOR.getName(), //
+                     DUMMY, //
+                     clusterConfigFile.getAbsolutePath(), //
+                     actorConfigFile.getAbsolutePath(), //
+                     "0", //
+                     "-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void main_invalid_mailbox_capacity_throws() throws IOException, ValidationException {
+        File actorConfigFile = writeActorConfig();
+        File clusterConfigFile = writeClusterConfigFile();
+
+        mainInternal(DUMMY_ACTOR.getName(), //
+                     DUMMY, //
+                     clusterConfigFile.getAbsolutePath(), //
+                     actorConfigFile.getAbsolutePath(), //
+                     "0", //
+                     "0", //
+                     "-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void main_invalid_mailbox_overflow_policy_throws() throws IOException, ValidationException {
+        File actorConfigFile = writeActorConfig();
+        File clusterConfigFile = writeClusterConfigFile();
+
+        mainInternal(DUMMY_ACTOR.getName(), //
+                     DUMMY, //
+                     clusterConfigFile.getAbsolutePath(), //
+                     actorConfigFile.getAbsolutePath(), //
+                     "0", //
+                     "0", //
+                     "10", //
+                     "IGNORE");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void main_invalid_execution_mode_throws() throws IOException, ValidationException {
+        File actorConfigFile = writeActorConfig();
+        File clusterConfigFile = writeClusterConfigFile();
+
+        mainInternal(DUMMY_ACTOR.getName(), //
+                     DUMMY, //
+                     clusterConfigFile.getAbsolutePath(), //
+                     actorConfigFile.getAbsolutePath(), //
+                     "0", //
+                     "0", //
+                     "10", //
+                     "BLOCK", //
+                     "GREEN_THREADS");
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void main_invalid_class_throws() throws IOException, ValidationException {
         File actorConfigFile = writeActorConfig();
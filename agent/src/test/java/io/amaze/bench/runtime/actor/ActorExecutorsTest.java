@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor;
+
+import io.amaze.bench.cluster.actor.ExecutionMode;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class ActorExecutorsTest {
+
+    @Test
+    public void platform_threads_executor_is_shared_and_uses_daemon_threads() throws InterruptedException {
+        Executor executor = ActorExecutors.forMode(ExecutionMode.PLATFORM_THREADS);
+
+        Thread thread = runOn(executor);
+
+        assertThat(ActorExecutors.forMode(ExecutionMode.PLATFORM_THREADS), sameInstance(executor));
+        assertTrue(thread.isDaemon());
+        assertTrue(thread.getName().startsWith("actor-mailbox-"));
+    }
+
+    @Test
+    public void virtual_threads_executor_falls_back_to_platform_threads_when_unsupported()
+            throws InterruptedException {
+        Executor platform = ActorExecutors.forMode(ExecutionMode.PLATFORM_THREADS);
+        Executor virtual = ActorExecutors.forMode(ExecutionMode.VIRTUAL_THREADS);
+
+        Thread thread = runOn(virtual);
+
+        if (ActorExecutors.virtualThreadsSupported()) {
+            assertThat(virtual, not(sameInstance(platform)));
+            assertTrue(thread.getName().startsWith("actor-mailbox-virtual-"));
+        } else {
+            assertThat(virtual, is(sameInstance(platform)));
+        }
+    }
+
+    private static Thread runOn(final Executor executor) throws InterruptedException {
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        CountDownLatch ran = new CountDownLatch(1);
+        executor.execute(() -> {
+            thread.set(Thread.currentThread());
+            ran.countDown();
+        });
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        return thread.get();
+    }
+}
@@ -37,14 +37,18 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 
 import static io.amaze.bench.cluster.actor.ActorLifecycleMessage.State;
+import static io.amaze.bench.cluster.actor.DeployConfig.deployConfig;
 import static io.amaze.bench.runtime.actor.TestActor.*;
 import static io.amaze.bench.runtime.actor.TestActorMetrics.DUMMY_METRIC_A;
 import static io.amaze.bench.runtime.actor.TestActorMetrics.DUMMY_METRIC_B;
 import static io.amaze.bench.util.Matchers.isActorState;
+import static java.util.Collections.singletonList;
 import static junit.framework.TestCase.assertFalse;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -57,6 +61,8 @@ import static org.mockito.Mockito.*;
 @RunWith(MockitoJUnitRunner.class)
 public final class ActorInternalTest {
 
+    private final Queue<Runnable> mailboxTasks = new ArrayDeque<>();
+
     private DummyClientFactory clientFactory;
     private Actors factory;
 
@@ -296,6 +302,32 @@ public final class ActorInternalTest {
         }
     }
 
+    @Test
+    public void periodic_flush_streams_metrics() throws Exception {
+        try (ActorInternal actor = createActor(TestActorMetrics.class, 10)) {
+            actor.onMessage(DUMMY_ACTOR.getName(), TestActorMetrics.PRODUCE_METRICS_MSG);
+
+            verify(actorClient, timeout(5000)).sendMetrics(argThat(new ArgumentMatcher<MetricValuesMessage>() {
+                @Override
+                public boolean matches(final Object argument) {
+                    return ((MetricValuesMessage) argument).metrics().size() == 2;
+                }
+            }));
+        }
+    }
+
+    @Test
+    public void periodic_flush_does_not_send_empty_chunks_and_close_sends_the_last_one() throws Exception {
+        ActorInternal actor = createActor(TestActorMetrics.class, 10);
+        Thread.sleep(50);
+        verify(actorClient, never()).sendMetrics(any(MetricValuesMessage.class));
+
+        actor.onMessage(DUMMY_ACTOR.getName(), TestActorMetrics.PRODUCE_METRICS_MSG);
+        actor.close();
+
+        verify(actorClient, timeout(5000)).sendMetrics(any(MetricValuesMessage.class));
+    }
+
     @Test
     public void create_dump_metrics_sends_message_to_metrics_actor() throws Exception {
         try (ActorInternal actor = createActor(TestActorMetrics.class)) {
@@ -312,9 +344,9 @@ public final class ActorInternalTest {
                     Map<Metric, List<MetricValue>> metricsMap = msg.metrics();
                     assertThat(metricsMap.size(), is(2));
                     assertThat(metricsMap.get(DUMMY_METRIC_A).size(), is(1));
-                    assertThat(metricsMap.get(DUMMY_METRIC_A).get(0).getValue(), is(10));
+                    assertThat(metricsMap.get(DUMMY_METRIC_A).get(0).getValue(), is(10L));
                     assertThat(metricsMap.get(DUMMY_METRIC_B).size(), is(1));
-                    assertThat(metricsMap.get(DUMMY_METRIC_B).get(0).getValue(), is(1));
+                    assertThat(metricsMap.get(DUMMY_METRIC_B).get(0).getValue(), is(1L));
                     return true;
                 }
             };
@@ -325,6 +357,101 @@ public final class ActorInternalTest {
         }
     }
 
+    @Test
+    public void mailbox_hands_messages_to_the_reactor_on_its_executor() throws Exception {
+        try (ActorInternal actor = createActorWithMailbox(TestActorBootstrap.class, 10, MailboxOverflowPolicy.BLOCK)) {
+            TestActorBootstrap reactor = (TestActorBootstrap) actor.getInstance();
+
+            actor.bootstrap();
+            actor.onMessage(DUMMY_ACTOR.getName(), "");
+
+            assertFalse(reactor.isBootstrapCalled());
+            runMailboxTasks();
+
+            assertTrue(reactor.isBootstrapCalled());
+            assertThat(reactor.awaitFirstAndReturnMessages().size(), is(1));
+        }
+    }
+
+    @Test
+    public void full_mailbox_with_drop_policy_counts_dropped_messages() throws Exception {
+        try (ActorInternal actor = createActorWithMailbox(TestActor.class, 1, MailboxOverflowPolicy.DROP)) {
+            actor.onMessage(DUMMY_ACTOR.getName(), "");
+            actor.onMessage(DUMMY_ACTOR.getName(), "");
+
+            actor.dumpAndFlushMetrics();
+
+            verify(actorClient).sendMetrics(argThat(new ArgumentMatcher<MetricValuesMessage>() {
+                @Override
+                public boolean matches(final Object argument) {
+                    Map<Metric, List<MetricValue>> metricsMap = ((MetricValuesMessage) argument).metrics();
+                    return metricsMap.get(ActorInternal.METRIC_MAILBOX_DEPTH).get(0).getValue().equals(1) && //
+                            metricsMap.get(ActorInternal.METRIC_MAILBOX_DROPPED).get(0).getValue().equals(1L);
+                }
+            }));
+            verify(actorRegistrySender, never()).send(argThat(isActorState(State.FAILED)));
+        }
+    }
+
+    @Test
+    public void offered_message_does_not_wait_for_a_full_blocking_mailbox() throws Exception {
+        try (ActorInternal actor = createActorWithMailbox(TestActor.class, 1, MailboxOverflowPolicy.BLOCK)) {
+            assertTrue(actor.offerMessage(DUMMY_ACTOR.getName(), ""));
+            assertFalse(actor.offerMessage(DUMMY_ACTOR.getName(), ""));
+
+            verify(actorRegistrySender, never()).send(argThat(isActorState(State.FAILED)));
+        }
+    }
+
+    @Test
+    public void full_mailbox_with_fail_policy_reports_a_failure_once() throws Exception {
+        try (ActorInternal actor = createActorWithMailbox(TestActor.class, 1, MailboxOverflowPolicy.FAIL)) {
+            actor.onMessage(DUMMY_ACTOR.getName(), "");
+            actor.onMessage(DUMMY_ACTOR.getName(), "");
+            actor.onMessage(DUMMY_ACTOR.getName(), "");
+
+            verify(actorRegistrySender).send(argThat(isActorState(State.FAILED)));
+        }
+    }
+
+    @Test
+    public void close_discards_messages_pending_in_the_mailbox() throws Exception {
+        ActorInternal actor = createActorWithMailbox(TestActor.class, 10, MailboxOverflowPolicy.BLOCK);
+        actor.onMessage(DUMMY_ACTOR.getName(), FAIL_MSG);
+
+        actor.close();
+        runMailboxTasks();
+
+        verify(actorRegistrySender).send(argThat(isActorState(State.CLOSED)));
+        verify(actorRegistrySender, never()).send(argThat(isActorState(State.FAILED)));
+    }
+
+    @Test
+    public void requested_close_is_queued_behind_messages_pending_in_the_mailbox() throws Exception {
+        ActorInternal actor = createActorWithMailbox(TestActor.class, 10, MailboxOverflowPolicy.DROP);
+        TestActor reactor = (TestActor) actor.getInstance();
+        actor.onMessage(DUMMY_ACTOR.getName(), "first");
+
+        actor.requestClose();
+        actor.onMessage(DUMMY_ACTOR.getName(), "second");
+
+        assertFalse(reactor.isAfterCalled());
+        runMailboxTasks();
+
+        assertThat(reactor.awaitFirstAndReturnMessages().get(DUMMY_ACTOR.getName()), is(singletonList("first")));
+        assertTrue(reactor.isAfterCalled());
+        verify(actorRegistrySender).send(argThat(isActorState(State.CLOSED)));
+    }
+
+    @Test
+    public void requested_close_without_mailbox_closes_right_away() throws Exception {
+        ActorInternal actor = defaultTestActor();
+
+        actor.requestClose();
+
+        assertTrue(((TestActor) actor.getInstance()).isAfterCalled());
+    }
+
     @Test
     public void close_actor_and_closing_client_throws() throws Exception {
         clientFactory = new DummyClientFactory(null, null, actorClient, actorRegistryClient, null, null);
@@ -415,13 +542,38 @@ public final class ActorInternalTest {
     }
 
     private ActorInternal createActor(final Class<?> actorClass) throws ValidationException {
+        return createActor(actorClass, 0);
+    }
+
+    private ActorInternal createActor(final Class<?> actorClass, final long metricsFlushIntervalMs)
+            throws ValidationException {
+        DeployConfig deployConfig = deployConfig(false).metricsFlushIntervalMs(metricsFlushIntervalMs).build();
         ActorInternal actorInternal = (ActorInternal) factory.create(DUMMY_ACTOR,
                                                                      actorClass.getName(),
-                                                                     DUMMY_JSON_CONFIG);
+                                                                     DUMMY_JSON_CONFIG,
+                                                                     deployConfig);
         verify(actorClient).startActorListener(actorInternal);
         return actorInternal;
     }
 
+    private ActorInternal createActorWithMailbox(final Class<?> actorClass,
+                                                 final int capacity,
+                                                 final MailboxOverflowPolicy overflowPolicy)
+            throws ValidationException {
+        Actors actors = new Actors(clientFactory, mailboxTasks::add);
+        DeployConfig deployConfig = deployConfig(false) //
+                .mailboxCapacity(capacity) //
+                .mailboxOverflowPolicy(overflowPolicy) //
+                .build();
+        return (ActorInternal) actors.create(DUMMY_ACTOR, actorClass.getName(), DUMMY_JSON_CONFIG, deployConfig);
+    }
+
+    private void runMailboxTasks() {
+        while (!mailboxTasks.isEmpty()) {
+            mailboxTasks.poll().run();
+        }
+    }
+
     private ActorInternal defaultTestActor() throws ValidationException {
         return createActor(TestActor.class);
     }
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor;
+
+import io.amaze.bench.api.Actor;
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.Reactor;
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.api.metric.Metrics;
+import io.amaze.bench.cluster.Endpoint;
+import io.amaze.bench.cluster.actor.ActorClusterClient;
+import io.amaze.bench.cluster.actor.ActorRegistrySender;
+import io.amaze.bench.cluster.actor.ActorSender;
+import io.amaze.bench.cluster.actor.DeployConfig;
+import io.amaze.bench.cluster.actor.ExecutionMode;
+import io.amaze.bench.cluster.actor.MailboxOverflowPolicy;
+import io.amaze.bench.cluster.actor.RuntimeActor;
+import io.amaze.bench.cluster.actor.ValidationException;
+import io.amaze.bench.cluster.metric.MetricValue;
+import io.amaze.bench.cluster.metric.MetricValuesMessage;
+import io.amaze.bench.runtime.agent.DummyClientFactory;
+
+import javax.validation.constraints.NotNull;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static io.amaze.bench.cluster.actor.DeployConfig.deployConfig;
+
+/**
+ * Measures how embedded actors with a mailbox scale with the number of actors living on one agent,
+ * for each {@link ExecutionMode}.
+ * <p>
+ * Actors are real {@link ActorInternal}s created by {@link Actors}, as the {@link EmbeddedActorManager} does,
+ * with their metrics and mailbox. Only the cluster client is stubbed: messages are handed to the actors as the
+ * transport's listeners would, and nothing is sent back. Each actor receives a few messages, and its reactor waits
+ * {@link #THINK_TIME_MS} per message as a client waiting for a remote service would, then records its latency
+ * to a metric sink.
+ * With platform threads, every waiting actor holds a thread, which caps the number of actors an agent can host.
+ * <p>
+ * Metrics recording state is kept per recording thread: the heap used once every message was handled shows
+ * that it stays bounded by the number of mailbox threads, not by the number of drains. The metrics of each actor
+ * are then flushed, and the number of values received checked.
+ * <p>
+ * Not a unit test, run it manually: the output shows the message rate, the peak number of platform threads
+ * and the heap used before the metrics flush for each number of actors.
+ * Virtual threads need a Java 21 runtime, older ones fall back to platform threads.
+ */
+public final class ActorMailboxScalingBenchmark {
+
+    private static final int[] ACTOR_COUNTS = {100, 1_000, 10_000, 100_000};
+    private static final int MAX_PLATFORM_ACTORS = 10_000;
+    private static final int MESSAGES_PER_ACTOR = 10;
+    private static final int MAILBOX_CAPACITY = 16;
+    private static final long THINK_TIME_MS = 1;
+
+    private static final Metric LATENCY = Metric.metric("latency", "ns").build();
+
+    private static volatile CountDownLatch handled;
+
+    private ActorMailboxScalingBenchmark() {
+        // Should not be instantiated
+    }
+
+    public static void main(final String[] args) throws ValidationException {
+        System.out.println("Virtual threads supported: " + ActorExecutors.virtualThreadsSupported());
+        System.out.println(String.format("%18s %8s %14s %14s %10s",
+                                         "mode",
+                                         "actors",
+                                         "msgs/sec",
+                                         "peak threads",
+                                         "heap MB"));
+        StubActorClusterClient client = new StubActorClusterClient();
+        Actors actors = new Actors(new DummyClientFactory(null, null, client, null, null, null));
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            for (int nbActors : ACTOR_COUNTS) {
+                boolean platformThreads = mode == ExecutionMode.PLATFORM_THREADS || //
+                        !ActorExecutors.virtualThreadsSupported();
+                if (platformThreads && nbActors > MAX_PLATFORM_ACTORS) {
+                    System.out.println(String.format("%18s %8d %14s %14s %10s", mode, nbActors, "skipped", "-", "-"));
+                    continue;
+                }
+                run(actors, client, mode, nbActors); // Warm-up
+                ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                threads.resetPeakThreadCount();
+                Result result = run(actors, client, mode, nbActors);
+                System.out.println(String.format("%18s %8d %14.0f %14d %10d",
+                                                 mode,
+                                                 nbActors,
+                                                 result.msgsPerSec,
+                                                 threads.getPeakThreadCount(),
+                                                 result.heapBytes / (1024 * 1024)));
+            }
+        }
+    }
+
+    private static Result run(final Actors actors,
+                              final StubActorClusterClient client,
+                              final ExecutionMode mode,
+                              final int nbActors) throws ValidationException {
+        DeployConfig deployConfig = deployConfig(false) //
+                .mailboxCapacity(MAILBOX_CAPACITY) //
+                .mailboxOverflowPolicy(MailboxOverflowPolicy.BLOCK) //
+                .executionMode(mode) //
+                .build();
+        List<RuntimeActor> created = new ArrayList<>(nbActors);
+        for (int i = 0; i < nbActors; i++) {
+            created.add(actors.create(new ActorKey("actor-" + i),
+                                      ThinkingReactor.class.getName(),
+                                      "{}",
+                                      deployConfig));
+        }
+        handled = new CountDownLatch(nbActors * MESSAGES_PER_ACTOR);
+
+        long start = System.nanoTime();
+        for (int message = 0; message < MESSAGES_PER_ACTOR; message++) {
+            for (RuntimeActor actor : created) {
+                actor.onMessage("client", "request");
+            }
+        }
+        awaitUninterruptibly(handled);
+        long elapsedNs = System.nanoTime() - start;
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long heapBytes = runtime.totalMemory() - runtime.freeMemory();
+
+        client.flushedValues.set(0);
+        created.forEach(RuntimeActor::dumpAndFlushMetrics);
+        if (client.flushedValues.get() != (long) nbActors * MESSAGES_PER_ACTOR) {
+            throw new IllegalStateException("Expected " + nbActors * MESSAGES_PER_ACTOR + " metric values, got " + //
+                                                    client.flushedValues.get());
+        }
+        created.forEach(RuntimeActor::close);
+        return new Result((double) nbActors * MESSAGES_PER_ACTOR / elapsedNs * TimeUnit.SECONDS.toNanos(1),
+                          heapBytes);
+    }
+
+    private static final class Result {
+        private final double msgsPerSec;
+        private final long heapBytes;
+
+        Result(final double msgsPerSec, final long heapBytes) {
+            this.msgsPerSec = msgsPerSec;
+            this.heapBytes = heapBytes;
+        }
+    }
+
+    @Actor
+    public static final class ThinkingReactor implements Reactor<String> {
+
+        private final Metrics.Sink latency;
+
+        public ThinkingReactor(final Metrics metrics) {
+            this.latency = metrics.sinkFor(LATENCY);
+        }
+
+        @Override
+        public void onMessage(@NotNull final String from, @NotNull final String message) {
+            long start = System.nanoTime();
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(THINK_TIME_MS));
+            latency.add(System.nanoTime() - start);
+            handled.countDown();
+        }
+    }
+
+    /**
+     * Stands for the transport: nothing is sent.
+     */
+    private static final class StubActorClusterClient implements ActorClusterClient {
+
+        private final AtomicLong flushedValues = new AtomicLong();
+
+        @Override
+        public void startActorListener(@NotNull final RuntimeActor actor) {
+            // Messages are handed to the actors by the benchmark
+        }
+
+        @Override
+        public void sendMetrics(@NotNull final MetricValuesMessage message) {
+            List<MetricValue> latencies = message.metrics().get(LATENCY);
+            if (latencies != null) {
+                flushedValues.addAndGet(latencies.size());
+            }
+        }
+
+        @NotNull
+        @Override
+        public Endpoint localEndpoint() {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public ActorSender actorSender() {
+            return (to, message) -> {
+                // Nothing to send
+            };
+        }
+
+        @NotNull
+        @Override
+        public ActorRegistrySender actorRegistrySender() {
+            return message -> {
+                // Nothing to send
+            };
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class ActorMailboxTest {
+
+    private final QueuedExecutor executor = new QueuedExecutor();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zero_capacity_throws() {
+        new ActorMailbox("test", 0, false, executor);
+    }
+
+    @Test
+    public void tasks_run_on_the_executor_in_submission_order() {
+        ActorMailbox mailbox = new ActorMailbox("test", 10, false, executor);
+        List<Integer> ran = new ArrayList<>();
+
+        mailbox.offer(() -> ran.add(1));
+        mailbox.submit(() -> ran.add(2));
+        mailbox.offer(() -> ran.add(3));
+
+        assertTrue(ran.isEmpty());
+        assertThat(mailbox.depth(), is(3));
+        assertThat(executor.pending(), is(1));
+
+        executor.runAll();
+
+        assertThat(ran.toString(), is("[1, 2, 3]"));
+        assertThat(mailbox.depth(), is(0));
+    }
+
+    @Test
+    public void offer_to_full_mailbox_is_rejected() {
+        ActorMailbox mailbox = new ActorMailbox("test", 1, false, executor);
+
+        assertTrue(mailbox.offer(() -> {
+        }));
+        assertFalse(mailbox.offer(() -> {
+        }));
+        assertThat(mailbox.depth(), is(1));
+    }
+
+    @Test
+    public void submit_ignores_capacity() {
+        ActorMailbox mailbox = new ActorMailbox("test", 1, false, executor);
+        mailbox.offer(() -> {
+        });
+
+        mailbox.submit(() -> {
+        });
+
+        assertThat(mailbox.depth(), is(2));
+    }
+
+    @Test
+    public void offer_from_the_draining_thread_ignores_capacity() {
+        ActorMailbox mailbox = new ActorMailbox("test", 1, true, executor);
+        AtomicBoolean accepted = new AtomicBoolean();
+        List<Integer> ran = new ArrayList<>();
+        mailbox.offer(() -> {
+            mailbox.offer(() -> ran.add(1));
+            accepted.set(mailbox.offer(() -> ran.add(2)));
+        });
+
+        executor.runAll();
+
+        assertTrue(accepted.get());
+        assertThat(ran.toString(), is("[1, 2]"));
+    }
+
+    @Test
+    public void blocking_offer_waits_for_room() throws InterruptedException {
+        ActorMailbox mailbox = new ActorMailbox("test", 1, true, executor);
+        mailbox.offer(() -> {
+        });
+        CountDownLatch offered = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            mailbox.offer(() -> {
+            });
+            offered.countDown();
+        });
+
+        producer.start();
+        assertFalse(offered.await(50, TimeUnit.MILLISECONDS));
+
+        executor.runNext();
+
+        assertTrue(offered.await(5, TimeUnit.SECONDS));
+        producer.join();
+    }
+
+    @Test
+    public void interrupted_blocking_offer_is_rejected() {
+        ActorMailbox mailbox = new ActorMailbox("test", 1, true, executor);
+        mailbox.offer(() -> {
+        });
+
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(mailbox.offer(() -> {
+            }));
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test
+    public void drain_yields_the_executor_after_a_batch() {
+        ActorMailbox mailbox = new ActorMailbox("test", 1000, false, executor);
+        List<Integer> ran = new ArrayList<>();
+        for (int i = 0; i < ActorMailbox.DRAIN_BATCH_SIZE + 1; i++) {
+            mailbox.offer(() -> ran.add(0));
+        }
+
+        executor.runNext();
+
+        assertThat(ran.size(), is(ActorMailbox.DRAIN_BATCH_SIZE));
+        assertThat(executor.pending(), is(1));
+
+        executor.runAll();
+
+        assertThat(ran.size(), is(ActorMailbox.DRAIN_BATCH_SIZE + 1));
+    }
+
+    @Test
+    public void failing_task_does_not_stop_the_drain() {
+        ActorMailbox mailbox = new ActorMailbox("test", 10, false, executor);
+        AtomicBoolean ran = new AtomicBoolean();
+        mailbox.offer(() -> {
+            throw new IllegalStateException();
+        });
+        mailbox.offer(() -> ran.set(true));
+
+        executor.runAll();
+
+        assertTrue(ran.get());
+    }
+
+    @Test
+    public void close_discards_pending_tasks() {
+        ActorMailbox mailbox = new ActorMailbox("test", 10, false, executor);
+        AtomicBoolean ran = new AtomicBoolean();
+        mailbox.offer(() -> ran.set(true));
+        mailbox.offer(() -> ran.set(true));
+
+        assertThat(mailbox.close(), is(2));
+        assertTrue(mailbox.offer(() -> ran.set(true)));
+        executor.runAll();
+
+        assertFalse(ran.get());
+        assertThat(mailbox.depth(), is(0));
+    }
+
+    @Test
+    public void close_waits_for_the_running_task() throws InterruptedException {
+        ActorMailbox mailbox = new ActorMailbox("test", 10, false, command -> new Thread(command).start());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean completed = new AtomicBoolean();
+        mailbox.offer(() -> {
+            started.countDown();
+            awaitUninterruptibly(release);
+            completed.set(true);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Thread closer = new Thread(mailbox::close);
+        closer.start();
+        closer.join(50);
+        assertTrue(closer.isAlive());
+
+        release.countDown();
+        closer.join();
+        assertTrue(completed.get());
+    }
+
+    @Test
+    public void dedicated_thread_runs_every_task_and_ends_on_close() throws InterruptedException {
+        List<Thread> started = new CopyOnWriteArrayList<>();
+        Executor threadPerTask = command -> {
+            Thread thread = new Thread(command);
+            started.add(thread);
+            thread.start();
+        };
+        ActorMailbox mailbox = new ActorMailbox("test", 10, false, threadPerTask, true);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        for (int i = 0; i < ActorMailbox.DRAIN_BATCH_SIZE * 2; i++) {
+            CountDownLatch ran = new CountDownLatch(1);
+            mailbox.offer(() -> {
+                threads.add(Thread.currentThread());
+                ran.countDown();
+            });
+            // The mailbox is empty again between two tasks
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+        }
+        mailbox.close();
+
+        assertThat(started.size(), is(1));
+        assertThat(threads.size(), is(1));
+        started.get(0).join(5000);
+        assertFalse(started.get(0).isAlive());
+    }
+
+    @Test
+    public void close_from_a_running_task_does_not_wait() {
+        ActorMailbox mailbox = new ActorMailbox("test", 10, false, executor);
+        mailbox.offer(mailbox::close);
+        mailbox.offer(() -> {
+        });
+
+        executor.runAll();
+
+        assertThat(mailbox.depth(), is(0));
+    }
+
+    @Test
+    public void rejected_drain_can_be_scheduled_again() {
+        QueuedExecutor rejecting = new QueuedExecutor();
+        rejecting.reject = true;
+        ActorMailbox mailbox = new ActorMailbox("test", 10, false, rejecting);
+        AtomicBoolean ran = new AtomicBoolean();
+        mailbox.offer(() -> ran.set(true));
+
+        rejecting.reject = false;
+        mailbox.offer(() -> {
+        });
+        rejecting.runAll();
+
+        assertTrue(ran.get());
+    }
+
+    private static final class QueuedExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean reject;
+
+        @Override
+        public synchronized void execute(final Runnable command) {
+            if (reject) {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(command);
+        }
+
+        synchronized int pending() {
+            return tasks.size();
+        }
+
+        void runNext() {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.poll();
+            }
+            task.run();
+        }
+
+        void runAll() {
+            while (pending() > 0) {
+                runNext();
+            }
+        }
+    }
+}
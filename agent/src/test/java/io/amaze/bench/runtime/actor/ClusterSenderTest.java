@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor;
+
+import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.ActorRef;
+import io.amaze.bench.cluster.actor.ActorClusterClient;
+import io.amaze.bench.cluster.actor.ActorInputMessage;
+import io.amaze.bench.cluster.actor.ActorSender;
+import io.amaze.bench.shared.test.Json;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class ClusterSenderTest {
+
+    private static final ActorKey OTHER = new ActorKey("other");
+
+    @Mock
+    private ActorClusterClient client;
+    @Mock
+    private ActorSender actorSender;
+    @Mock
+    private ActorSender.Route route;
+
+    private ClusterSender sender;
+
+    @Before
+    public void init() {
+        when(client.actorSender()).thenReturn(actorSender);
+        when(actorSender.resolve(OTHER)).thenReturn(route);
+        sender = new ClusterSender(DUMMY_ACTOR, client);
+    }
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+
+        tester.testAllPublicInstanceMethods(sender);
+        tester.testAllPublicInstanceMethods(sender.resolve(OTHER.getName()));
+    }
+
+    @Test
+    public void send_wraps_the_payload_in_a_message_from_the_actor() {
+        sender.send(OTHER.getName(), "hello");
+
+        verify(actorSender).send(OTHER, ActorInputMessage.message(DUMMY_ACTOR.getName(), "hello"));
+    }
+
+    @Test
+    public void resolved_ref_sends_through_a_route_resolved_once() {
+        ActorRef ref = sender.resolve(OTHER.getName());
+
+        ref.send("first");
+        ref.send("second");
+
+        verify(actorSender, times(1)).resolve(OTHER);
+        verify(route).send(ActorInputMessage.message(DUMMY_ACTOR.getName(), "first"));
+        verify(route).send(ActorInputMessage.message(DUMMY_ACTOR.getName(), "second"));
+        verifyNoMoreInteractions(actorSender);
+    }
+
+    @Test
+    public void resolved_ref_has_the_target_name() {
+        assertThat(sender.resolve(OTHER.getName()).name(), is(OTHER.getName()));
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(sender.resolve(OTHER.getName()).toString()));
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+public final class ChunkAllocatorTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacity_must_be_positive() {
+        ChunkAllocator.spilling(0, folder.getRoot(), "test");
+    }
+
+    @Test
+    public void unbounded_allocator_keeps_chunks_in_memory() {
+        ChunkAllocator allocator = ChunkAllocator.unbounded();
+
+        for (int i = 0; i < 100; i++) {
+            assertNull(allocator.newChunk().segment);
+        }
+        assertThat(allocator.memoryChunks(), is(100));
+    }
+
+    @Test
+    public void chunks_are_spilled_past_capacity_and_released_chunks_give_capacity_back() {
+        ChunkAllocator allocator = ChunkAllocator.spilling(ThreadBuffer.CHUNK_SIZE, folder.getRoot(), "test");
+
+        ThreadBuffer.Chunk inMemory = allocator.newChunk();
+        ThreadBuffer.Chunk spilled = allocator.newChunk();
+
+        assertNull(inMemory.segment);
+        assertNotNull(spilled.segment);
+        assertThat(allocator.spillSegments(), is(1));
+
+        allocator.release(inMemory);
+        assertNull(allocator.newChunk().segment);
+    }
+
+    @Test
+    public void segment_is_deleted_once_all_its_blocks_are_released() {
+        ChunkAllocator allocator = ChunkAllocator.spilling(1, folder.getRoot(), "test");
+        allocator.newChunk();
+
+        List<ThreadBuffer.Chunk> spilled = new ArrayList<>();
+        for (int i = 0; i < ChunkAllocator.SEGMENT_BLOCKS + 1; i++) {
+            spilled.add(allocator.newChunk());
+        }
+        assertThat(allocator.spillSegments(), is(2));
+        assertThat(spillFiles().length, is(2));
+
+        for (int i = 0; i < ChunkAllocator.SEGMENT_BLOCKS; i++) {
+            allocator.release(spilled.get(i));
+        }
+
+        assertThat(allocator.spillSegments(), is(1));
+        assertThat(spillFiles().length, is(1));
+    }
+
+    @Test
+    public void close_deletes_spill_files() {
+        ChunkAllocator allocator = ChunkAllocator.spilling(1, folder.getRoot(), "test");
+        allocator.newChunk();
+        allocator.newChunk();
+
+        allocator.close();
+
+        assertThat(allocator.spillSegments(), is(0));
+        assertThat(spillFiles().length, is(0));
+    }
+
+    @Test
+    public void chunks_allocated_after_close_are_kept_in_memory() {
+        ChunkAllocator allocator = ChunkAllocator.spilling(1, folder.getRoot(), "test");
+        allocator.newChunk();
+        allocator.close();
+
+        assertNull(allocator.newChunk().segment);
+        assertNull(allocator.newChunk().segment);
+
+        assertThat(allocator.spillSegments(), is(0));
+        assertThat(spillFiles().length, is(0));
+    }
+
+    @Test
+    public void chunks_are_kept_in_memory_when_spill_directory_cannot_be_created() throws Exception {
+        File notADirectory = folder.newFile();
+        ChunkAllocator allocator = ChunkAllocator.spilling(1, notADirectory, "test");
+        allocator.newChunk();
+
+        assertNull(allocator.newChunk().segment);
+        assertThat(allocator.memoryChunks(), is(2));
+    }
+
+    private File[] spillFiles() {
+        return folder.getRoot().listFiles((dir, name) -> name.endsWith(".spill"));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.api.metric.Metrics;
+import io.amaze.bench.runtime.actor.TestActor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static io.amaze.bench.api.metric.Metric.metric;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that recording primitive values does not allocate once {@link MetricsInternal} reached its steady state,
+ * using the per-thread allocated bytes counter of the JVM.
+ */
+public final class MetricsInternalAllocationTest {
+
+    private static final Metric LATENCY = metric("latency", "ns").build();
+    private static final int VALUES_PER_ROUND = ThreadBuffer.CHUNK_SIZE * 3 + 17;
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 200;
+
+    private final MetricsInternal metrics = MetricsInternal.create(TestActor.DUMMY_ACTOR);
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    @Before
+    public void init() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void steady_state_primitive_recording_does_not_allocate() {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            recordRound(round);
+            metrics.dumpAndFlush();
+        }
+        long counterOverhead = counterOverhead();
+
+        long allocated = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long before = allocatedBytes();
+            recordRound(round);
+            allocated += allocatedBytes() - before - counterOverhead;
+
+            metrics.dumpAndFlush();
+        }
+
+        assertThat(allocated, is(0L));
+    }
+
+    @Test
+    public void histogram_recording_does_not_allocate() {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            recordHistogramRound(round);
+        }
+        long counterOverhead = counterOverhead();
+
+        long allocated = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long before = allocatedBytes();
+            recordHistogramRound(round);
+            allocated += allocatedBytes() - before - counterOverhead;
+        }
+
+        assertThat(allocated, is(0L));
+    }
+
+    private void recordHistogramRound(final int round) {
+        for (int i = 0; i < VALUES_PER_ROUND; i++) {
+            metrics.histogram(LATENCY).record((long) round * i);
+        }
+    }
+
+    private void recordRound(final int round) {
+        for (int i = 0; i < VALUES_PER_ROUND; i++) {
+            Metrics.Sink sink = metrics.sinkFor(LATENCY);
+            switch (i & 3) {
+                case 0:
+                    sink.add(i);
+                    break;
+                case 1:
+                    sink.add(i * 0.5d);
+                    break;
+                case 2:
+                    sink.timed(round, i);
+                    break;
+                default:
+                    sink.timed(round, i * 0.5d);
+                    break;
+            }
+        }
+    }
+
+    private long counterOverhead() {
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            long before = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - before);
+        }
+        return overhead;
+    }
+
+    private long allocatedBytes() {
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -17,6 +17,7 @@ package io.amaze.bench.runtime.actor.metric;
 
 import io.amaze.bench.api.metric.Metric;
 import io.amaze.bench.api.metric.Metrics;
+import io.amaze.bench.cluster.metric.MetricReservoir;
 import io.amaze.bench.cluster.metric.MetricValuesMessage;
 import io.amaze.bench.runtime.actor.TestActor;
 import org.junit.After;
@@ -26,6 +27,7 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
 import static io.amaze.bench.api.metric.Metric.metric;
@@ -98,6 +100,41 @@ public final class MetricsInternalConcurrencyTest {
         }
     }
 
+    @Test
+    public void threads_producing_sampled_values_while_dumpAndFlush_happens_count_every_value()
+            throws InterruptedException, ExecutionException {
+        AtomicLong counted = new AtomicLong();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < NB_THREADS; i++) {
+            tasks.add(() -> {
+                Metrics.Sink sink = metricsInternal.sampledSinkFor(DUMMY, 16);
+                for (int j = 0; j < ITERATIONS; j++) {
+                    sink.add(j);
+                }
+                return null;
+            });
+        }
+        tasks.add(() -> {
+            for (int j = 0; j < ITERATIONS; j++) {
+                counted.addAndGet(sampledCount(metricsInternal.dumpAndFlush()));
+            }
+            return null;
+        });
+
+        List<Future<Void>> futures = executorService.invokeAll(tasks);
+
+        for (Future<Void> future : futures) {
+            getUninterruptibly(future);
+        }
+        counted.addAndGet(sampledCount(metricsInternal.dumpAndFlush()));
+        assertThat(counted.get(), is((long) NB_THREADS * ITERATIONS));
+    }
+
+    private static long sampledCount(final MetricValuesMessage message) {
+        MetricReservoir reservoir = message.reservoirs().get(DUMMY);
+        return reservoir != null ? reservoir.count() : 0;
+    }
+
     private List<Callable<Void>> producerTasks() {
         List<Callable<Void>> tasks = new ArrayList<>();
         for (int i = 0; i < NB_THREADS; i++) {
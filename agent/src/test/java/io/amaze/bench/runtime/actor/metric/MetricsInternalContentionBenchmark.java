@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.api.metric.Metrics;
+import io.amaze.bench.runtime.actor.TestActor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static com.google.common.util.concurrent.Uninterruptibles.joinUninterruptibly;
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static io.amaze.bench.api.metric.Metric.metric;
+
+/**
+ * Measures the recording throughput of {@link MetricsInternal} when several threads record values
+ * for the same metric, while another thread keeps dumping them.
+ * <p>
+ * Not a unit test, run it manually: the output shows how throughput scales with the number of recording threads.
+ */
+public final class MetricsInternalContentionBenchmark {
+
+    private static final Metric LATENCY = metric("latency", "ns").build();
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+    private static final int WARMUP_OPS = 2_000_000;
+    private static final int MEASURE_OPS = 4_000_000;
+    private static final long FLUSH_PERIOD_MS = 1;
+
+    private MetricsInternalContentionBenchmark() {
+        // Should not be instantiated
+    }
+
+    public static void main(final String[] args) {
+        System.out.println(String.format("%8s %16s %20s", "threads", "ops/sec", "ops/sec/thread"));
+        for (int threads : THREAD_COUNTS) {
+            run(threads, WARMUP_OPS);
+            double opsPerSec = run(threads, MEASURE_OPS);
+            System.out.println(String.format("%8d %16.0f %20.0f", threads, opsPerSec, opsPerSec / threads));
+        }
+    }
+
+    /**
+     * The total number of operations is split between threads, so that the amount of values waiting
+     * to be flushed stays bounded whatever the thread count.
+     */
+    private static double run(final int nbThreads, final int totalOps) {
+        MetricsInternal metrics = MetricsInternal.create(TestActor.DUMMY_ACTOR);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(nbThreads + 1);
+        int opsPerThread = totalOps / nbThreads;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < nbThreads; i++) {
+            threads.add(new Thread(() -> {
+                started.countDown();
+                awaitUninterruptibly(started);
+                for (int ops = 0; ops < opsPerThread; ops++) {
+                    Metrics.Sink sink = metrics.sinkFor(LATENCY);
+                    sink.add(ops);
+                }
+            }, "recorder-" + i));
+        }
+        Thread flusher = new Thread(() -> {
+            while (running.get()) {
+                metrics.dumpAndFlush();
+                sleepUninterruptibly(FLUSH_PERIOD_MS, TimeUnit.MILLISECONDS);
+            }
+        }, "flusher");
+
+        threads.forEach(Thread::start);
+        flusher.start();
+        long start = System.nanoTime();
+        started.countDown();
+        threads.forEach(Uninterruptibles::joinUninterruptibly);
+        long elapsed = System.nanoTime() - start;
+        running.set(false);
+        joinUninterruptibly(flusher);
+
+        return (opsPerThread * (double) nbThreads) / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+}
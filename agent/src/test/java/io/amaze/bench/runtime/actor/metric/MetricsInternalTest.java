@@ -18,15 +18,30 @@ package io.amaze.bench.runtime.actor.metric;
 import com.google.common.testing.NullPointerTester;
 import io.amaze.bench.api.metric.Metric;
 import io.amaze.bench.api.metric.Metrics;
+import io.amaze.bench.cluster.metric.HistogramLayout;
+import io.amaze.bench.cluster.metric.MetricHistogram;
+import io.amaze.bench.cluster.metric.MetricReservoir;
 import io.amaze.bench.cluster.metric.MetricTimedValue;
+import io.amaze.bench.cluster.metric.MetricValue;
 import io.amaze.bench.cluster.metric.MetricValuesMessage;
 import io.amaze.bench.runtime.actor.TestActor;
 import io.amaze.bench.shared.test.Json;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.amaze.bench.api.metric.Metric.metric;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -38,6 +53,9 @@ public final class MetricsInternalTest {
     private static final Metric DUMMY_METRIC = metric("elapsed", "ms").build();
     private static final Metric ANOTHER_METRIC = metric("elapsed2", "ms").build();
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     private MetricsInternal metrics;
 
     @Before
@@ -54,6 +72,106 @@ public final class MetricsInternalTest {
         tester.testAllPublicInstanceMethods(metrics);
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void negative_max_buffered_values_throws() {
+        MetricsInternal.create(TestActor.DUMMY_ACTOR, -1);
+    }
+
+    @Test
+    public void values_past_capacity_are_spilled_and_flushed_in_order() {
+        int nbValues = ThreadBuffer.CHUNK_SIZE * 10 + 3;
+        try (MetricsInternal spilling = MetricsInternal.create(TestActor.DUMMY_ACTOR,
+                                                               ThreadBuffer.CHUNK_SIZE,
+                                                               folder.getRoot())) {
+            Metrics.Sink sink = spilling.sinkFor(DUMMY_METRIC);
+            for (int i = 0; i < nbValues; i++) {
+                sink.timed(i, (long) i);
+            }
+            sink.add(new BigDecimal("1.5"));
+
+            assertThat(spilling.getAllocator().memoryChunks(), is(1));
+            assertThat(spilling.getAllocator().spillSegments(), is(1));
+
+            List<MetricValue> values = spilling.dumpAndFlush().metrics().get(DUMMY_METRIC);
+            assertThat(values.size(), is(nbValues + 1));
+            for (int i = 0; i < nbValues; i++) {
+                assertThat(values.get(i), is(new MetricTimedValue(i, (long) i)));
+            }
+            assertThat(values.get(nbValues).getValue(), is(new BigDecimal("1.5")));
+        }
+        assertThat(folder.getRoot().list().length, is(0));
+    }
+
+    @Test
+    public void streamed_flush_splits_values_into_bounded_messages() {
+        int nbValues = MetricsInternal.MAX_VALUES_PER_MESSAGE * 2 + 10;
+        Metrics.Sink sink = metrics.sinkFor(DUMMY_METRIC);
+        for (int i = 0; i < nbValues; i++) {
+            sink.add((long) i);
+        }
+        metrics.counter(ANOTHER_METRIC).increment();
+
+        List<MetricValuesMessage> messages = new ArrayList<>();
+        metrics.dumpAndFlush(messages::add);
+
+        assertThat(messages.size(), is(3));
+        assertThat(messages.get(0).metrics().get(ANOTHER_METRIC).size(), is(1));
+        int next = 0;
+        for (MetricValuesMessage message : messages) {
+            assertFalse(message != messages.get(0) && message.metrics().containsKey(ANOTHER_METRIC));
+            List<MetricValue> values = message.metrics().get(DUMMY_METRIC);
+            assertTrue(message.metrics().values().stream().mapToInt(List::size).sum()
+                               <= MetricsInternal.MAX_VALUES_PER_MESSAGE);
+            for (MetricValue value : values) {
+                assertThat(value.getValue(), is((long) next++));
+            }
+        }
+        assertThat(next, is(nbValues));
+    }
+
+    @Test
+    public void streamed_flush_sends_one_empty_message_when_nothing_was_recorded() {
+        List<MetricValuesMessage> messages = new ArrayList<>();
+        metrics.dumpAndFlush(messages::add);
+
+        assertThat(messages.size(), is(1));
+        assertTrue(messages.get(0).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sampled_sink_needs_a_positive_reservoir_size() {
+        metrics.sampledSinkFor(DUMMY_METRIC, 0);
+    }
+
+    @Test
+    public void sampled_sink_keeps_exact_statistics_and_a_bounded_sample() throws InterruptedException {
+        Metrics.Sink sink = metrics.sampledSinkFor(DUMMY_METRIC, 100);
+        assertSame(sink, metrics.sampledSinkFor(DUMMY_METRIC, 10));
+
+        Thread other = new Thread(() -> {
+            for (int i = 5_000; i < 10_000; i++) {
+                sink.timed(i, (long) i);
+            }
+        });
+        other.start();
+        for (int i = 0; i < 5_000; i++) {
+            sink.add((double) i);
+        }
+        other.join();
+
+        MetricValuesMessage values = metrics.dumpAndFlush();
+        MetricReservoir reservoir = values.reservoirs().get(DUMMY_METRIC);
+        assertThat(reservoir.count(), is(10_000L));
+        assertThat(reservoir.min(), is(0d));
+        assertThat(reservoir.max(), is(9_999d));
+        assertThat(reservoir.mean(), is(4_999.5d));
+        assertEquals((10_000d * 10_000d - 1) / 12, reservoir.variance(), 1e-3);
+        assertThat(reservoir.samples().size(), is(100));
+        assertTrue(values.metrics().isEmpty());
+
+        assertTrue(metrics.dumpAndFlush().reservoirs().isEmpty());
+    }
+
     @Test
     public void call_to_add_adds_a_metric() {
         Metrics.Sink sink = metrics.sinkFor(DUMMY_METRIC);
@@ -64,7 +182,7 @@ public final class MetricsInternalTest {
         assertThat(values.fromActor(), is(TestActor.DUMMY_ACTOR));
         assertThat(values.metrics().size(), is(1));
         assertThat(values.metrics().get(DUMMY_METRIC).size(), is(1));
-        assertThat(values.metrics().get(DUMMY_METRIC).get(0).getValue(), is(10));
+        assertThat(values.metrics().get(DUMMY_METRIC).get(0).getValue(), is(10L));
     }
 
     @Test
@@ -78,12 +196,42 @@ public final class MetricsInternalTest {
         assertThat(values.fromActor(), is(TestActor.DUMMY_ACTOR));
         assertThat(values.metrics().size(), is(1));
         assertThat(values.metrics().get(DUMMY_METRIC).size(), is(2));
-        assertThat(values.metrics().get(DUMMY_METRIC).get(0).getValue(), is(10));
+        assertThat(values.metrics().get(DUMMY_METRIC).get(0).getValue(), is(10L));
         assertTrue(((MetricTimedValue) values.metrics().get(DUMMY_METRIC).get(0)).getTimestamp() > 0);
-        assertThat(values.metrics().get(DUMMY_METRIC).get(1).getValue(), is(11));
+        assertThat(values.metrics().get(DUMMY_METRIC).get(1).getValue(), is(11L));
         assertThat(((MetricTimedValue) values.metrics().get(DUMMY_METRIC).get(1)).getTimestamp(), is(1337L));
     }
 
+    @Test
+    public void primitive_values_are_dumped_with_their_type() {
+        Metrics.Sink sink = metrics.sinkFor(DUMMY_METRIC);
+
+        sink.add(10L).add(1.5d).timed(1337L, 11L).timed(1338L, 2.5d);
+
+        List<MetricValue> values = metrics.dumpAndFlush().metrics().get(DUMMY_METRIC);
+        assertThat(values.size(), is(4));
+        assertThat(values.get(0), is(new MetricValue(10L)));
+        assertThat(values.get(1), is(new MetricValue(1.5d)));
+        assertThat(values.get(2), is(new MetricTimedValue(1337L, 11L)));
+        assertThat(values.get(3), is(new MetricTimedValue(1338L, 2.5d)));
+    }
+
+    @Test
+    public void boxed_values_keep_their_type() {
+        Metrics.Sink sink = metrics.sinkFor(DUMMY_METRIC);
+
+        sink.add((Number) 10).add((Number) 1.5f).add((Number) (short) 2).add((Number) (byte) 3);
+        sink.timed(1337L, (Number) 11).timed(1338L, BigDecimal.ONE);
+
+        List<MetricValue> values = metrics.dumpAndFlush().metrics().get(DUMMY_METRIC);
+        assertThat(values.get(0), is(new MetricValue(10)));
+        assertThat(values.get(1), is(new MetricValue(1.5f)));
+        assertThat(values.get(2), is(new MetricValue((short) 2)));
+        assertThat(values.get(3), is(new MetricValue((byte) 3)));
+        assertThat(values.get(4), is(new MetricTimedValue(1337L, 11)));
+        assertThat(values.get(5), is(new MetricTimedValue(1338L, BigDecimal.ONE)));
+    }
+
     @Test
     public void adding_two_metrics_to_the_same_list_using_sinkFor() {
         metrics.sinkFor(DUMMY_METRIC).add(10);
@@ -93,8 +241,8 @@ public final class MetricsInternalTest {
         assertThat(values.fromActor(), is(TestActor.DUMMY_ACTOR));
         assertThat(values.metrics().size(), is(1));
         assertThat(values.metrics().get(DUMMY_METRIC).size(), is(2));
-        assertThat(values.metrics().get(DUMMY_METRIC).get(0).getValue(), is(10));
-        assertThat(values.metrics().get(DUMMY_METRIC).get(1).getValue(), is(11));
+        assertThat(values.metrics().get(DUMMY_METRIC).get(0).getValue(), is(10L));
+        assertThat(values.metrics().get(DUMMY_METRIC).get(1).getValue(), is(11L));
     }
 
     @Test
@@ -130,6 +278,185 @@ public final class MetricsInternalTest {
         assertThat(flushed.metrics().size(), is(1));
     }
 
+    @Test
+    public void histogram_counts_are_dumped_and_reset() {
+        Metrics.Histogram histogram = metrics.histogram(DUMMY_METRIC, 3, 10_000);
+
+        histogram.record(10).record(20);
+        histogram.record(5000, 3);
+
+        MetricValuesMessage values = metrics.dumpAndFlush();
+        assertTrue(values.metrics().isEmpty());
+        assertThat(values.histograms().get(DUMMY_METRIC),
+                   is(MetricHistogram.of(new HistogramLayout(3, 10_000), 10, 20, 5000, 5000, 5000)));
+        assertTrue(metrics.dumpAndFlush().histograms().isEmpty());
+    }
+
+    @Test
+    public void histogram_returns_the_same_instance_for_a_metric() {
+        Metrics.Histogram histogram = metrics.histogram(DUMMY_METRIC);
+
+        assertSame(histogram, metrics.histogram(DUMMY_METRIC, 4));
+        assertThat(metrics.getHistograms().get(DUMMY_METRIC).layout(), is(HistogramLayout.defaultLayout()));
+    }
+
+    @Test
+    public void histogram_snapshot_does_not_reset_counts() {
+        metrics.histogram(DUMMY_METRIC).record(42);
+
+        assertThat(metrics.getHistograms().get(DUMMY_METRIC).totalCount(), is(1L));
+        assertThat(metrics.dumpAndFlush().histograms().get(DUMMY_METRIC).totalCount(), is(1L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void histogram_rejects_negative_values() {
+        metrics.histogram(DUMMY_METRIC).record(-1);
+    }
+
+    @Test
+    public void expected_interval_back_fills_like_a_value_by_value_loop() {
+        long[][] cases = {{10_000, 100}, {1_000_000, 7}, {99, 100}, {5000, 5000}, {Long.MAX_VALUE / 2, 1L << 57}};
+        for (long[] valueAndInterval : cases) {
+            MetricsInternal expected = MetricsInternal.create(TestActor.DUMMY_ACTOR);
+            long value = valueAndInterval[0];
+            long interval = valueAndInterval[1];
+            expected.histogram(DUMMY_METRIC).record(value);
+            for (long missing = value - interval; missing >= interval; missing -= interval) {
+                expected.histogram(DUMMY_METRIC).record(missing);
+            }
+
+            MetricsInternal actual = MetricsInternal.create(TestActor.DUMMY_ACTOR);
+            actual.histogram(DUMMY_METRIC).recordWithExpectedInterval(value, interval);
+
+            assertThat(actual.getHistograms(), is(expected.getHistograms()));
+        }
+    }
+
+    @Test
+    public void timer_records_nanoseconds_to_the_metric_histogram() throws Exception {
+        Metrics.Timer timer = metrics.timer(DUMMY_METRIC);
+
+        long measured;
+        try (Metrics.Timer.Context context = timer.start()) {
+            Thread.sleep(2);
+            measured = context.stop();
+        }
+        timer.time(() -> {
+        });
+        String result = timer.time(() -> "result");
+        timer.record(1000);
+
+        assertThat(result, is("result"));
+        MetricHistogram histogram = metrics.getHistograms().get(DUMMY_METRIC);
+        assertThat(histogram.totalCount(), is(4L));
+        assertTrue(histogram.max() >= TimeUnit.MILLISECONDS.toNanos(2));
+        assertThat(histogram.countAtValue(measured), is(1L));
+    }
+
+    @Test
+    public void timer_with_expected_interval_back_fills_missing_samples() {
+        metrics.timer(DUMMY_METRIC, 100).record(1000);
+
+        assertThat(metrics.getHistograms().get(DUMMY_METRIC).totalCount(), is(10L));
+    }
+
+    @Test
+    public void counter_produces_its_total_on_each_flush() {
+        Metrics.Counter counter = metrics.counter(DUMMY_METRIC);
+
+        counter.increment().add(41);
+        assertThat(metrics.dumpAndFlush().metrics().get(DUMMY_METRIC).get(0).getValue(), is(42L));
+
+        metrics.counter(DUMMY_METRIC).add(-2);
+        List<MetricValue> values = metrics.dumpAndFlush().metrics().get(DUMMY_METRIC);
+        assertThat(values.size(), is(1));
+        assertThat(values.get(0).getValue(), is(40L));
+        assertTrue(values.get(0) instanceof MetricTimedValue);
+    }
+
+    @Test
+    public void gauge_is_sampled_on_each_flush() {
+        AtomicInteger depth = new AtomicInteger(3);
+        metrics.gauge(DUMMY_METRIC, depth::get);
+
+        assertThat(metrics.dumpAndFlush().metrics().get(DUMMY_METRIC).get(0).getValue(), is(3));
+        depth.set(5);
+        assertThat(metrics.dumpAndFlush().metrics().get(DUMMY_METRIC).get(0).getValue(), is(5));
+    }
+
+    @Test
+    public void failing_gauge_does_not_prevent_flush() {
+        metrics.gauge(DUMMY_METRIC, () -> {
+            throw new IllegalStateException();
+        });
+        metrics.gauge(ANOTHER_METRIC, () -> null);
+        metrics.counter(metric("other", "events").build()).increment();
+
+        MetricValuesMessage values = metrics.dumpAndFlush();
+
+        assertThat(values.metrics().size(), is(1));
+    }
+
+    @Test
+    public void meter_produces_a_rate_and_resets() {
+        metrics.meter(DUMMY_METRIC).mark().mark(9);
+
+        double rate = (Double) metrics.dumpAndFlush().metrics().get(DUMMY_METRIC).get(0).getValue();
+        assertTrue(String.valueOf(rate), rate > 0);
+        assertThat(metrics.dumpAndFlush().metrics().get(DUMMY_METRIC).get(0).getValue(), is(0d));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void metric_cannot_be_registered_as_two_kinds() {
+        metrics.counter(DUMMY_METRIC);
+
+        metrics.meter(DUMMY_METRIC);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sink_metric_cannot_be_registered_as_a_counter() {
+        metrics.sinkFor(DUMMY_METRIC);
+
+        metrics.counter(DUMMY_METRIC);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void gauge_metric_cannot_be_recorded_by_a_sink() {
+        metrics.gauge(DUMMY_METRIC, () -> 1);
+
+        metrics.sinkFor(DUMMY_METRIC);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void histogram_metric_cannot_be_registered_as_a_gauge() {
+        metrics.histogram(DUMMY_METRIC);
+
+        metrics.gauge(DUMMY_METRIC, () -> 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sampled_sink_metric_cannot_be_recorded_by_a_histogram() {
+        metrics.sampledSinkFor(DUMMY_METRIC, 10);
+
+        metrics.histogram(DUMMY_METRIC);
+    }
+
+    @Test
+    public void timer_records_to_the_histogram_of_its_metric() {
+        metrics.histogram(DUMMY_METRIC);
+        metrics.timer(DUMMY_METRIC).record(42);
+
+        assertThat(metrics.dumpAndFlush().histograms().get(DUMMY_METRIC).totalCount(), is(1L));
+    }
+
+    @Test
+    public void gauge_can_be_registered_again() {
+        metrics.gauge(DUMMY_METRIC, () -> 1);
+        metrics.gauge(DUMMY_METRIC, () -> 2);
+
+        assertThat(metrics.dumpAndFlush().metrics().get(DUMMY_METRIC).get(0).getValue(), is(2));
+    }
+
     @Test
     public void toString_yields_valid_json() {
         assertTrue(Json.isValid(DUMMY_METRIC.toString()));
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.runtime.actor.metric;
+
+import io.amaze.bench.cluster.metric.MetricTimedValue;
+import io.amaze.bench.cluster.metric.MetricValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.util.concurrent.Uninterruptibles.joinUninterruptibly;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class ThreadBufferTest {
+
+    private ThreadBuffer buffer;
+
+    @Before
+    public void init() {
+        buffer = new ThreadBuffer(Thread.currentThread(), ChunkAllocator.unbounded());
+    }
+
+    @Test
+    public void values_spanning_several_chunks_are_drained_in_order() {
+        int count = ThreadBuffer.CHUNK_SIZE * 3 + 7;
+        appendValues(0, count);
+
+        List<MetricValue> drained = new ArrayList<>();
+        buffer.drainTo(drained);
+
+        assertValuesInOrder(drained, 0, count);
+    }
+
+    @Test
+    public void drained_values_are_not_drained_twice() {
+        appendValues(0, ThreadBuffer.CHUNK_SIZE);
+        buffer.drainTo(new ArrayList<>());
+        appendValues(ThreadBuffer.CHUNK_SIZE, 10);
+
+        List<MetricValue> drained = new ArrayList<>();
+        buffer.drainTo(drained);
+
+        assertValuesInOrder(drained, ThreadBuffer.CHUNK_SIZE, 10);
+    }
+
+    @Test
+    public void bounded_drain_resumes_where_it_stopped() {
+        int count = ThreadBuffer.CHUNK_SIZE * 2 + 5;
+        appendValues(0, count);
+
+        List<MetricValue> first = new ArrayList<>();
+        assertThat(buffer.drainTo(first, ThreadBuffer.CHUNK_SIZE + 3), is(ThreadBuffer.CHUNK_SIZE + 3));
+        List<MetricValue> rest = new ArrayList<>();
+        assertThat(buffer.drainTo(rest, count), is(count - ThreadBuffer.CHUNK_SIZE - 3));
+
+        assertValuesInOrder(first, 0, ThreadBuffer.CHUNK_SIZE + 3);
+        assertValuesInOrder(rest, ThreadBuffer.CHUNK_SIZE + 3, count - ThreadBuffer.CHUNK_SIZE - 3);
+    }
+
+    @Test
+    public void copy_does_not_consume_values() {
+        appendValues(0, ThreadBuffer.CHUNK_SIZE + 1);
+
+        List<MetricValue> copy = new ArrayList<>();
+        buffer.copyTo(copy);
+        List<MetricValue> drained = new ArrayList<>();
+        buffer.drainTo(drained);
+
+        assertValuesInOrder(copy, 0, ThreadBuffer.CHUNK_SIZE + 1);
+        assertValuesInOrder(drained, 0, ThreadBuffer.CHUNK_SIZE + 1);
+    }
+
+    @Test
+    public void recycled_chunks_do_not_leak_previous_values() {
+        for (int round = 0; round < ThreadBuffer.MAX_FREE_CHUNKS * 2; round++) {
+            int from = round * 1000;
+            appendValues(from, ThreadBuffer.CHUNK_SIZE * 2 + round);
+
+            List<MetricValue> drained = new ArrayList<>();
+            buffer.drainTo(drained);
+
+            assertValuesInOrder(drained, from, ThreadBuffer.CHUNK_SIZE * 2 + round);
+        }
+    }
+
+    @Test
+    public void timed_and_object_values_are_restored() {
+        buffer.appendTimedLong(1L, 2L);
+        buffer.appendTimedDouble(3L, 4.5d);
+        buffer.appendNumber(true, 5L, BigDecimal.TEN);
+        buffer.appendNumber(false, 0, BigDecimal.ONE);
+
+        List<MetricValue> drained = new ArrayList<>();
+        buffer.drainTo(drained);
+
+        assertThat(drained.get(0), is(new MetricTimedValue(1L, 2L)));
+        assertThat(drained.get(1), is(new MetricTimedValue(3L, 4.5d)));
+        assertThat(drained.get(2), is(new MetricTimedValue(5L, BigDecimal.TEN)));
+        assertThat(drained.get(3), is(new MetricValue(BigDecimal.ONE)));
+    }
+
+    @Test
+    public void buffer_of_a_live_thread_is_not_disposable() {
+        assertFalse(buffer.isDisposable());
+    }
+
+    @Test
+    public void buffer_of_a_dead_thread_is_disposable_once_drained() {
+        Thread thread = new Thread(() -> buffer = appendFromNewBuffer());
+        thread.start();
+        joinUninterruptibly(thread);
+
+        assertFalse(buffer.isDisposable());
+        buffer.drainTo(new ArrayList<>());
+        assertTrue(buffer.isDisposable());
+    }
+
+    private static ThreadBuffer appendFromNewBuffer() {
+        ThreadBuffer threadBuffer = new ThreadBuffer(Thread.currentThread(), ChunkAllocator.unbounded());
+        threadBuffer.appendLong(1);
+        return threadBuffer;
+    }
+
+    private void appendValues(final int from, final int count) {
+        for (int i = from; i < from + count; i++) {
+            buffer.appendLong(i);
+        }
+    }
+
+    private static void assertValuesInOrder(final List<MetricValue> values, final int from, final int count) {
+        assertThat(values.size(), is(count));
+        for (int i = 0; i < count; i++) {
+            assertThat(values.get(i).getValue(), is((long) from + i));
+        }
+    }
+}
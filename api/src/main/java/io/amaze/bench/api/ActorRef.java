@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.api;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+
+/**
+ * Handle to another {@link Reactor}, obtained once using {@link Sender#resolve(String)}
+ * and then used to send it any number of messages.<br>
+ * <br>
+ * The runtime caches whatever it needs to reach the target in the handle, such as its location in the cluster:
+ * sending through a reference avoids the lookups made by {@link Sender#send(String, Serializable)}.
+ * The cached location is refreshed transparently when the target moves, leaves or joins the cluster.
+ * <ul>
+ * <li>As for {@link Sender}, no check is performed on the existence of the target, and no delivery guarantee is made.</li>
+ * <li>A reference can be kept for the whole life of the actor that resolved it.</li>
+ * </ul>
+ *
+ * @see Sender
+ */
+public interface ActorRef {
+
+    /**
+     * @return Name of the target reactor.
+     */
+    @NotNull
+    String name();
+
+    /**
+     * Sends an arbitrary message to the target reactor.<br>
+     * No guarantee is made on the delivery.
+     *
+     * @param message Payload to send
+     */
+    void send(@NotNull final Serializable message);
+
+}
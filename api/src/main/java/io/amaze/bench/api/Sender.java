@@ -18,6 +18,8 @@ package io.amaze.bench.api;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * Interface to send arbitrary messages to another {@link Reactor}.<br>
  * <br>
@@ -27,8 +29,11 @@ import java.io.Serializable;
  * <li>No check is performed on the destination address (The destination reactor may not exist).</li>
  * <li>No delivery guarantee, the message is sent synchronously.</li>
  * </ul>
+ * Actors sending many messages to the same reactor should {@link #resolve(String)} it once
+ * and send through the returned {@link ActorRef}.
  *
  * @see Reactor
+ * @see ActorRef
  */
 @FunctionalInterface
 public interface Sender {
@@ -42,4 +47,32 @@ public interface Sender {
      */
     void send(@NotNull final String to, @NotNull final Serializable message);
 
+    /**
+     * Resolves a reference to another {@link Reactor}, to be used for repeated sends.<br>
+     * The default implementation returns a reference delegating to {@link #send(String, Serializable)}.
+     *
+     * @param to Destination reactor's name, identifies uniquely a reactor in the cluster
+     * @return A reference to the destination reactor, it does not check for its existence.
+     */
+    @NotNull
+    default ActorRef resolve(@NotNull final String to) {
+        requireNonNull(to);
+        return new ActorRef() {
+            @Override
+            public String name() {
+                return to;
+            }
+
+            @Override
+            public void send(@NotNull final Serializable message) {
+                Sender.this.send(to, message);
+            }
+
+            @Override
+            public String toString() {
+                return "{\"ActorRef\":\"" + to + "\"}";
+            }
+        };
+    }
+
 }
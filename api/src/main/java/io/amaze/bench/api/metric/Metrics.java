@@ -17,12 +17,17 @@ package io.amaze.bench.api.metric;
 
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
+import java.util.function.Supplier;
 
 /**
  * Provides the ability for an actor to produce metric values to be collected and centralized asynchronously.
  *
  * @see Metric Represent a metric for which multiple {@link Number} values can be produced.
- * @see Metrics Provides a way to create a {@link Sink} instance.
+ * @see Metrics Provides a way to create a {@link Sink}, a sampled sink, a {@link Histogram}, a {@link Timer},
+ * a {@link Counter} or a {@link Meter}.
+ * <p>
+ * Only {@link #sinkFor(Metric)} must be implemented: the other instruments have default implementations
+ * that delegate to it or to one another, or throw {@link UnsupportedOperationException}.
  */
 @FunctionalInterface
 public interface Metrics extends Serializable {
@@ -33,12 +38,156 @@ public interface Metrics extends Serializable {
      */
     Sink sinkFor(@NotNull Metric metric);
 
+    /**
+     * Returns a sink that does not keep every value: between two metrics flushes, it keeps a uniform random
+     * sample of at most the given number of values (reservoir sampling), along with the exact count, min, max,
+     * mean and variance of all the values added. Both the memory used and the volume sent are bounded,
+     * whatever the rate of values.<br>
+     * Subsequent calls for the same metric return the existing sink, whatever the requested size.<br>
+     * By default, values are not sampled and the sink of {@link #sinkFor(Metric)} is returned.
+     *
+     * @param metric        Metric for which to get a sampled {@link Sink} instance for.
+     * @param reservoirSize Maximum number of values kept per flush, must be strictly positive.
+     * @return A sampled sink instance of this particular {@link Metric}.
+     */
+    default Sink sampledSinkFor(@NotNull Metric metric, int reservoirSize) {
+        return sinkFor(metric);
+    }
+
+    /**
+     * Same as {@link #histogram(Metric, int, long)} with 2 significant digits and no upper bound.
+     *
+     * @param metric Metric for which to get a {@link Histogram} instance for.
+     * @return A histogram instance of this particular {@link Metric}.
+     */
+    default Histogram histogram(@NotNull Metric metric) {
+        return histogram(metric, 2);
+    }
+
+    /**
+     * Same as {@link #histogram(Metric, int, long)} with no upper bound.
+     *
+     * @param metric            Metric for which to get a {@link Histogram} instance for.
+     * @param significantDigits Number of significant decimal digits to keep, between 0 and 5.
+     * @return A histogram instance of this particular {@link Metric}.
+     */
+    default Histogram histogram(@NotNull Metric metric, int significantDigits) {
+        return histogram(metric, significantDigits, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the histogram of the given metric, creating it with the given precision on first call.
+     * Subsequent calls for the same metric return the existing histogram, whatever the requested precision.
+     * <p>
+     * The memory footprint of a histogram grows with its precision and range:
+     * 2 significant digits covering the full {@code long} range take about 60KB.
+     *
+     * @param metric                Metric for which to get a {@link Histogram} instance for.
+     * @param significantDigits     Number of significant decimal digits to keep, between 0 and 5.
+     * @param highestTrackableValue Values above it are recorded as this value, must be at least 2.
+     * @return A histogram instance of this particular {@link Metric}.
+     * @throws UnsupportedOperationException if this implementation does not support histograms.
+     */
+    default Histogram histogram(@NotNull Metric metric, int significantDigits, long highestTrackableValue) {
+        throw new UnsupportedOperationException("Histograms are not supported by " + getClass().getName());
+    }
+
+    /**
+     * Same as {@link #timer(Metric, long)} without expected interval.
+     *
+     * @param metric Metric for which to get a {@link Timer} instance for, its unit should be nanoseconds.
+     * @return A timer instance recording to the histogram of this particular {@link Metric}.
+     */
+    default Timer timer(@NotNull Metric metric) {
+        return timer(metric, 0);
+    }
+
+    /**
+     * Returns a timer measuring durations with {@link System#nanoTime()} and recording them in nanoseconds
+     * to the histogram of the given metric, as returned by {@link #histogram(Metric)}.<br>
+     * To choose the precision of the histogram, create it through {@link #histogram(Metric, int, long)} first.
+     * <p>
+     * When measured operations are expected to start at a regular interval (e.g. a sender with a target rate),
+     * a measure longer than this interval means the following operations were delayed: their missing samples
+     * are back-filled to avoid coordinated omission, see {@link Histogram#recordWithExpectedInterval(long, long)}.
+     *
+     * @param metric                Metric for which to get a {@link Timer} instance for, its unit should be
+     *                              nanoseconds.
+     * @param expectedIntervalNanos Expected interval between two measured operations in nanoseconds,
+     *                              0 to disable the correction.
+     * @return A timer instance recording to the histogram of this particular {@link Metric}.
+     * @throws UnsupportedOperationException if this implementation does not support timers.
+     */
+    default Timer timer(@NotNull Metric metric, long expectedIntervalNanos) {
+        throw new UnsupportedOperationException("Timers are not supported by " + getClass().getName());
+    }
+
+    /**
+     * A counter only keeps its running total, which is produced once per metrics flush.
+     *
+     * @param metric Metric for which to get a {@link Counter} instance for.
+     * @return A counter instance of this particular {@link Metric}.
+     * @throws IllegalArgumentException      if the metric is already recorded by another kind of instrument.
+     * @throws UnsupportedOperationException if this implementation does not support counters.
+     */
+    default Counter counter(@NotNull Metric metric) {
+        throw new UnsupportedOperationException("Counters are not supported by " + getClass().getName());
+    }
+
+    /**
+     * Registers a gauge: the given supplier is sampled once per metrics flush and its value produced.<br>
+     * Registering a gauge again for the same metric replaces the previous supplier.<br>
+     * The supplier is called from the flushing thread, it must be thread safe.
+     *
+     * @param metric   Metric for which to register the gauge.
+     * @param supplier Provides the current value of the gauge.
+     * @throws IllegalArgumentException      if the metric is already recorded by another kind of instrument.
+     * @throws UnsupportedOperationException if this implementation does not support gauges.
+     */
+    default void gauge(@NotNull Metric metric, @NotNull Supplier<? extends Number> supplier) {
+        throw new UnsupportedOperationException("Gauges are not supported by " + getClass().getName());
+    }
+
+    /**
+     * A meter counts events, and produces their rate per second since the previous metrics flush.
+     *
+     * @param metric Metric for which to get a {@link Meter} instance for.
+     * @return A meter instance of this particular {@link Metric}.
+     * @throws IllegalArgumentException      if the metric is already recorded by another kind of instrument.
+     * @throws UnsupportedOperationException if this implementation does not support meters.
+     */
+    default Meter meter(@NotNull Metric metric) {
+        throw new UnsupportedOperationException("Meters are not supported by " + getClass().getName());
+    }
+
     /**
      * Offers a facade to produce metrics values.<br>
-     * Metrics produced through the {@link Sink} instance are then collected and centralized.
+     * Metrics produced through the {@link Sink} instance are then collected and centralized.<br>
+     * Primitive overloads do not allocate, they should be preferred in hot recording loops.
+     * By default, they box the value and call the {@link Number} overloads.
      */
     interface Sink {
 
+        /**
+         * Add a primitive long value to this sink, without boxing it.
+         *
+         * @param value Value to be added
+         * @return This instance for chaining calls.
+         */
+        default Sink add(long value) {
+            return add((Number) value);
+        }
+
+        /**
+         * Add a primitive double value to this sink, without boxing it.
+         *
+         * @param value Value to be added
+         * @return This instance for chaining calls.
+         */
+        default Sink add(double value) {
+            return add((Number) value);
+        }
+
         /**
          * Add an arbitrary {@link Number} value to this sink.
          *
@@ -56,6 +205,28 @@ public interface Metrics extends Serializable {
          */
         Sink timed(@NotNull long timeStamp, @NotNull Number value);
 
+        /**
+         * Add a primitive timed long value to this sink, without boxing it.
+         *
+         * @param timeStamp Java timestamp
+         * @param value     Value to be added
+         * @return This instance for chaining calls.
+         */
+        default Sink timed(long timeStamp, long value) {
+            return timed(timeStamp, (Number) value);
+        }
+
+        /**
+         * Add a primitive timed double value to this sink, without boxing it.
+         *
+         * @param timeStamp Java timestamp
+         * @param value     Value to be added
+         * @return This instance for chaining calls.
+         */
+        default Sink timed(long timeStamp, double value) {
+            return timed(timeStamp, (Number) value);
+        }
+
         /**
          * Add an arbitrary {@link Number} value to this sink.<br>
          * The current timestamp will be assigned behind the scenes.
@@ -64,5 +235,177 @@ public interface Metrics extends Serializable {
          * @return This instance for chaining calls.
          */
         Sink timed(@NotNull Number value);
+
+        /**
+         * Add a primitive long value to this sink, without boxing it.<br>
+         * The current timestamp will be assigned behind the scenes.
+         *
+         * @param value Value to be added
+         * @return This instance for chaining calls.
+         */
+        default Sink timed(long value) {
+            return timed((Number) value);
+        }
+
+        /**
+         * Add a primitive double value to this sink, without boxing it.<br>
+         * The current timestamp will be assigned behind the scenes.
+         *
+         * @param value Value to be added
+         * @return This instance for chaining calls.
+         */
+        default Sink timed(double value) {
+            return timed((Number) value);
+        }
+    }
+
+    /**
+     * Records the distribution of positive values into log-linear buckets (HdrHistogram style),
+     * in constant time and constant memory whatever the number of recorded values.<br>
+     * Only bucket counts are collected and centralized, allowing percentiles to be computed cluster-wide
+     * without shipping raw values.<br>
+     * Values are kept with a relative precision of the configured number of significant decimal digits.
+     */
+    interface Histogram {
+
+        /**
+         * Record a value in this histogram.
+         *
+         * @param value Positive value to be recorded
+         * @return This instance for chaining calls.
+         * @throws IllegalArgumentException if the value is negative.
+         */
+        Histogram record(long value);
+
+        /**
+         * Record the same value several times in this histogram.
+         *
+         * @param value Positive value to be recorded
+         * @param count Number of occurrences of this value
+         * @return This instance for chaining calls.
+         * @throws IllegalArgumentException if the value or count is negative.
+         */
+        Histogram record(long value, long count);
+
+        /**
+         * Record a value in this histogram, back-filling the values that would have been recorded if the
+         * recording of values was not delayed by this one, in the fashion of HdrHistogram: if the value is
+         * larger than the expected interval, values decreasing by steps of this interval are also recorded,
+         * down to the expected interval.<br>
+         * The back-fill takes a time proportional to the number of buckets spanned, not to the number of values.
+         *
+         * @param value            Positive value to be recorded
+         * @param expectedInterval Expected interval between two recorded values, 0 to disable the back-fill.
+         * @return This instance for chaining calls.
+         * @throws IllegalArgumentException if the value or expected interval is negative.
+         */
+        Histogram recordWithExpectedInterval(long value, long expectedInterval);
+    }
+
+    /**
+     * Measures durations with a monotonic nanosecond clock, and records them to a {@link Histogram}.
+     * Usable with try-with-resources:
+     * <pre>
+     * try (Metrics.Timer.Context ignored = timer.start()) {
+     *     // Measured code
+     * }
+     * </pre>
+     * or with lambdas through {@link #time(Runnable)} and {@link #time(Supplier)}.
+     */
+    interface Timer {
+
+        /**
+         * Starts measuring, the measure is recorded when the returned context is stopped or closed.
+         *
+         * @return A context for this measure.
+         */
+        Context start();
+
+        /**
+         * Records a duration measured elsewhere.
+         *
+         * @param durationNanos Duration in nanoseconds
+         * @return This instance for chaining calls.
+         */
+        Timer record(long durationNanos);
+
+        /**
+         * Runs and measures the given task.
+         *
+         * @param task Task to be measured
+         */
+        void time(@NotNull Runnable task);
+
+        /**
+         * Runs and measures the given task.
+         *
+         * @param task Task to be measured
+         * @param <T>  Type of the result of the task
+         * @return The result of the task.
+         */
+        <T> T time(@NotNull Supplier<T> task);
+
+        /**
+         * A running measure.
+         */
+        interface Context extends AutoCloseable {
+
+            /**
+             * Stops measuring and records the measure, only the first call records it.
+             *
+             * @return The measured duration in nanoseconds.
+             */
+            long stop();
+
+            /**
+             * Same as {@link #stop()}.
+             */
+            @Override
+            void close();
+        }
+    }
+
+    /**
+     * Keeps a running total in constant memory, whatever the number of updates.
+     * Only the total is collected and centralized, once per metrics flush.
+     */
+    interface Counter {
+
+        /**
+         * Adds 1 to the counter.
+         *
+         * @return This instance for chaining calls.
+         */
+        Counter increment();
+
+        /**
+         * Adds the given delta to the counter.
+         *
+         * @param delta Value to be added, may be negative.
+         * @return This instance for chaining calls.
+         */
+        Counter add(long delta);
+    }
+
+    /**
+     * Counts events in constant memory, only their rate per second is collected and centralized,
+     * once per metrics flush.
+     */
+    interface Meter {
+
+        /**
+         * Marks the occurrence of one event.
+         *
+         * @return This instance for chaining calls.
+         */
+        Meter mark();
+
+        /**
+         * Marks the occurrence of several events.
+         *
+         * @param count Number of events
+         * @return This instance for chaining calls.
+         */
+        Meter mark(long count);
     }
 }
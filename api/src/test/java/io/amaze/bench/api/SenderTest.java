@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.api;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public final class SenderTest {
+
+    @Test
+    public void default_resolve_returns_a_ref_delegating_to_send() {
+        List<Serializable> sent = new ArrayList<>();
+        Sender sender = (to, message) -> sent.add(to + ":" + message);
+
+        ActorRef ref = sender.resolve("other");
+        ref.send("hello");
+
+        assertThat(ref.name(), is("other"));
+        assertThat(sent, is(Arrays.<Serializable>asList("other:hello")));
+    }
+
+}
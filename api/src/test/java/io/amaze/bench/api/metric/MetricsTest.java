@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.api.metric;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class MetricsTest {
+
+    private static final Metric DUMMY = Metric.metric("latency", "ns").build();
+
+    @Mock
+    private Metrics.Sink sink;
+
+    private Metrics metrics;
+
+    @Before
+    public void init() {
+        metrics = metric -> sink;
+    }
+
+    @Test
+    public void sampled_sink_defaults_to_the_sink_of_the_metric() {
+        assertThat(metrics.sampledSinkFor(DUMMY, 10), is(sameInstance(sink)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void histograms_are_not_supported_by_default() {
+        metrics.histogram(DUMMY);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void timers_are_not_supported_by_default() {
+        metrics.timer(DUMMY);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void counters_are_not_supported_by_default() {
+        metrics.counter(DUMMY);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void gauges_are_not_supported_by_default() {
+        metrics.gauge(DUMMY, () -> 1);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void meters_are_not_supported_by_default() {
+        metrics.meter(DUMMY);
+    }
+
+    @Test
+    public void primitive_values_are_boxed_by_default() {
+        List<Number> added = new ArrayList<>();
+        Metrics.Sink boxingSink = new Metrics.Sink() {
+            @Override
+            public Metrics.Sink add(final Number value) {
+                added.add(value);
+                return this;
+            }
+
+            @Override
+            public Metrics.Sink timed(final long timeStamp, final Number value) {
+                added.add(value);
+                return this;
+            }
+
+            @Override
+            public Metrics.Sink timed(final Number value) {
+                added.add(value);
+                return this;
+            }
+        };
+
+        boxingSink.add(1L).add(2.5).timed(0, 3L).timed(0, 4.5).timed(5L).timed(6.5);
+
+        assertThat(added, is(Arrays.<Number>asList(1L, 2.5, 3L, 4.5, 5L, 6.5)));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.actor;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Frame packing several {@link ActorInputMessage} bound for the same actor, sent as a single transport message.
+ * The receiving side hands each of them to the actor, in order.
+ *
+ * @see ActorSender#sendBatch(io.amaze.bench.api.ActorKey, List)
+ */
+public final class ActorInputBatch implements Serializable {
+
+    private final List<ActorInputMessage> messages;
+
+    public ActorInputBatch(@NotNull final List<ActorInputMessage> messages) {
+        requireNonNull(messages);
+        checkArgument(!messages.isEmpty(), "A batch cannot be empty.");
+
+        this.messages = Collections.unmodifiableList(new ArrayList<>(messages));
+    }
+
+    /**
+     * @return The messages of the batch, in sending order.
+     */
+    public List<ActorInputMessage> getMessages() {
+        return messages;
+    }
+
+    @Override
+    public int hashCode() {
+        return messages.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ActorInputBatch that = (ActorInputBatch) o;
+        return messages.equals(that.messages);
+    }
+
+    @Override
+    public String toString() {
+        return "{\"ActorInputBatch\":{\"size\":" + messages.size() + "}}";
+    }
+}
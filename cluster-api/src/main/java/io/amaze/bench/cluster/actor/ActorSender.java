@@ -18,6 +18,9 @@ package io.amaze.bench.cluster.actor;
 import io.amaze.bench.api.ActorKey;
 
 import javax.validation.constraints.NotNull;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * Allows a client to send messages to an actor instance in the cluster.
@@ -34,4 +37,58 @@ public interface ActorSender {
      */
     void send(@NotNull final ActorKey to, @NotNull final ActorInputMessage message);
 
+    /**
+     * Sends the given messages to the target actor {@code to}, in order.
+     * Implementations pack them in a single {@link ActorInputBatch} frame when the messaging system allows it.<br>
+     * The default implementation sends them one by one.
+     *
+     * @param to       Target actor key
+     * @param messages Payloads to send
+     */
+    default void sendBatch(@NotNull final ActorKey to, @NotNull final List<ActorInputMessage> messages) {
+        requireNonNull(to);
+        requireNonNull(messages);
+        messages.forEach(message -> send(to, message));
+    }
+
+    /**
+     * Resolves a route to the target actor {@code to}, to be used for repeated sends.
+     * Implementations cache in the route what is needed to reach the actor, and refresh it when the actor moves.<br>
+     * The default implementation returns a route delegating to {@link #send(ActorKey, ActorInputMessage)}.
+     *
+     * @param to Target actor key
+     * @return A route to the target actor, it does not check for its existence.
+     */
+    @NotNull
+    default Route resolve(@NotNull final ActorKey to) {
+        requireNonNull(to);
+        return message -> send(to, message);
+    }
+
+    /**
+     * Resolved route to a given actor.
+     */
+    @FunctionalInterface
+    interface Route {
+
+        /**
+         * Sends the given message to the actor this route was resolved for.
+         *
+         * @param message Payload to send
+         */
+        void send(@NotNull final ActorInputMessage message);
+
+        /**
+         * Sends the given messages to the actor this route was resolved for, in order.<br>
+         * The default implementation sends them one by one.
+         *
+         * @param messages Payloads to send
+         * @see ActorSender#sendBatch(ActorKey, List)
+         */
+        default void sendBatch(@NotNull final List<ActorInputMessage> messages) {
+            requireNonNull(messages);
+            messages.forEach(this::send);
+        }
+
+    }
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.actor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.amaze.bench.api.ActorKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Packs the messages bound for the same actor into {@link ActorInputBatch} frames, sent using
+ * {@link ActorSender#sendBatch(ActorKey, List)}: the messaging system's per-message overhead is paid once per frame.
+ * <p>
+ * Frames are bounded by a {@link CoalescingWindow}. Commands other than messages are not delayed:
+ * the pending frame of their target is sent first, then they are sent on their own, so that ordering is kept.<br>
+ * Routes returned by {@link #resolve(ActorKey)} append to the frame of their target directly.
+ * <p>
+ * The frame of an actor is dropped once its delay expired and it was sent, unless a route was resolved for it:
+ * actors that are no longer sent messages do not hold memory.
+ * <p>
+ * Pending frames are sent by {@link #flush()} and {@link #close()}. Frames sent once their delay expires are sent
+ * by a daemon thread shared by the JVM, failures are then logged.
+ */
+public final class CoalescingActorSender implements ActorSender, AutoCloseable {
+
+    private static final Logger log = LogManager.getLogger();
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("actor-coalescing-%d").build());
+
+    private final ActorSender remote;
+    private final CoalescingWindow window;
+    private final ConcurrentMap<ActorKey, Frame> frames = new ConcurrentHashMap<>();
+
+    CoalescingActorSender(final ActorSender remote, final CoalescingWindow window) {
+        this.remote = requireNonNull(remote);
+        this.window = requireNonNull(window);
+    }
+
+    @Override
+    public void send(@NotNull final ActorKey to, @NotNull final ActorInputMessage message) {
+        requireNonNull(to);
+        requireNonNull(message);
+
+        if (!window.isEnabled()) {
+            remote.send(to, message);
+            return;
+        }
+        Frame frame = frameTo(to);
+        while (!frame.offer(message)) {
+            // The frame was dropped meanwhile
+            frame = frameTo(to);
+        }
+    }
+
+    @Override
+    public void sendBatch(@NotNull final ActorKey to, @NotNull final List<ActorInputMessage> messages) {
+        requireNonNull(to);
+        requireNonNull(messages);
+
+        if (!window.isEnabled()) {
+            remote.sendBatch(to, messages);
+            return;
+        }
+        Frame frame = frameTo(to);
+        while (!frame.offerAll(messages)) {
+            // The frame was dropped meanwhile
+            frame = frameTo(to);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Route resolve(@NotNull final ActorKey to) {
+        requireNonNull(to);
+
+        if (!window.isEnabled()) {
+            return remote.resolve(to);
+        }
+        Frame frame = frameTo(to);
+        while (!frame.pin()) {
+            frame = frameTo(to);
+        }
+        return frame;
+    }
+
+    /**
+     * Sends the pending frames.
+     */
+    public void flush() {
+        frames.values().forEach(Frame::flush);
+    }
+
+    /**
+     * Sends the pending frames, the sender can still be used afterwards.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    @VisibleForTesting
+    int pendingMessages(final ActorKey to) {
+        Frame frame = frames.get(to);
+        return frame != null ? frame.pendingMessages() : 0;
+    }
+
+    @VisibleForTesting
+    boolean hasFrame(final ActorKey to) {
+        return frames.containsKey(to);
+    }
+
+    private Frame frameTo(final ActorKey to) {
+        Frame frame = frames.get(to);
+        if (frame == null) {
+            frame = frames.computeIfAbsent(to, Frame::new);
+        }
+        return frame;
+    }
+
+    private final class Frame implements Route {
+        private final ActorKey to;
+        private final Route route;
+        private List<ActorInputMessage> pending = new ArrayList<>();
+        private int pendingBytes;
+        private boolean pinned;
+        private boolean dropped;
+
+        private Frame(final ActorKey to) {
+            this.to = to;
+            this.route = remote.resolve(to);
+        }
+
+        /**
+         * Only called on pinned frames, which are never dropped.
+         */
+        @Override
+        public synchronized void send(@NotNull final ActorInputMessage message) {
+            requireNonNull(message);
+            append(message);
+        }
+
+        @Override
+        public synchronized void sendBatch(@NotNull final List<ActorInputMessage> messages) {
+            requireNonNull(messages);
+            messages.forEach(this::append);
+        }
+
+        /**
+         * @return false if the frame was dropped, the message must then be appended to a new one.
+         */
+        synchronized boolean offer(final ActorInputMessage message) {
+            if (dropped) {
+                return false;
+            }
+            append(message);
+            return true;
+        }
+
+        synchronized boolean offerAll(final List<ActorInputMessage> messages) {
+            if (dropped) {
+                return false;
+            }
+            messages.forEach(this::append);
+            return true;
+        }
+
+        /**
+         * Keeps the frame for as long as the sender is used, as it is handed out as a route.
+         *
+         * @return false if the frame was dropped.
+         */
+        synchronized boolean pin() {
+            pinned = !dropped;
+            return pinned;
+        }
+
+        private void append(final ActorInputMessage message) {
+            if (message.getCommand() != ActorInputMessage.Command.MESSAGE) {
+                flush();
+                route.send(message);
+                return;
+            }
+
+            int size = window.estimatedSizeOf(message);
+            int maxBytes = window.getMaxBytes();
+            if (maxBytes > 0 && !pending.isEmpty() && pendingBytes + size > maxBytes) {
+                flush();
+            }
+            pending.add(message);
+            pendingBytes += size;
+            if (pending.size() >= window.getMaxMessages() || (maxBytes > 0 && pendingBytes >= maxBytes)) {
+                flush();
+            } else if (pending.size() == 1) {
+                SCHEDULER.schedule(this::flushOnDelay, window.getMaxDelayMs(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<ActorInputMessage> messages = pending;
+            pending = new ArrayList<>();
+            pendingBytes = 0;
+
+            if (messages.size() == 1) {
+                route.send(messages.get(0));
+            } else {
+                route.sendBatch(messages);
+            }
+        }
+
+        synchronized int pendingMessages() {
+            return pending.size();
+        }
+
+        private synchronized void flushOnDelay() {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.warn("Could not send the pending frame to {}.", to, e);
+            }
+            if (!pinned && pending.isEmpty()) {
+                dropped = true;
+                frames.remove(to, this);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.actor;
+
+import com.typesafe.config.Config;
+import io.amaze.bench.cluster.codec.Codec;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bounds of the frames packed by a {@link CoalescingActorSender}: a frame is sent as soon as it holds
+ * {@link #MAX_MESSAGES} messages, or {@link #MAX_BYTES} bytes of payload, or when its first message has waited for
+ * {@link #MAX_DELAY_MS} milliseconds.
+ * <p>
+ * Settings are read from the cluster client factory's configuration:
+ * <ul>
+ * <li>{@link #MAX_MESSAGES}: coalescing is disabled unless it is greater than 1</li>
+ * <li>{@link #MAX_BYTES}: 0 by default, frames are then not bounded by size.
+ * Payload sizes are estimated without encoding them: strings and byte arrays from their length,
+ * other payloads from the encoded size of the first payload of their class.</li>
+ * <li>{@link #MAX_DELAY_MS}: {@link #DEFAULT_MAX_DELAY_MS} by default</li>
+ * </ul>
+ */
+public final class CoalescingWindow {
+
+    public static final String MAX_MESSAGES = "coalescingMaxMessages";
+    public static final String MAX_BYTES = "coalescingMaxBytes";
+    public static final String MAX_DELAY_MS = "coalescingMaxDelayMs";
+
+    public static final long DEFAULT_MAX_DELAY_MS = 1;
+
+    private static final int PAYLOAD_HEADER_BYTES = 2;
+    private static final CoalescingWindow DISABLED = new CoalescingWindow(1, 0, 0, null);
+
+    private final int maxMessages;
+    private final int maxBytes;
+    private final long maxDelayMs;
+    private final Codec codec;
+    private final ConcurrentMap<Class<?>, Integer> sizeByPayloadClass = new ConcurrentHashMap<>();
+
+    private CoalescingWindow(final int maxMessages, final int maxBytes, final long maxDelayMs, final Codec codec) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.maxDelayMs = maxDelayMs;
+        this.codec = codec;
+    }
+
+    /**
+     * @param maxMessages Maximum number of messages in a frame, greater than 1.
+     * @param maxBytes    Maximum size of the encoded payloads of a frame, 0 for no limit.
+     * @param maxDelayMs  Maximum time a message waits for its frame to be sent, in milliseconds.
+     * @param codec       Codec of the cluster, used to estimate payload sizes when a maximum size is set.
+     * @return An enabled coalescing window.
+     */
+    @NotNull
+    public static CoalescingWindow of(final int maxMessages,
+                                      final int maxBytes,
+                                      final long maxDelayMs,
+                                      @NotNull final Codec codec) {
+        requireNonNull(codec);
+        checkArgument(maxMessages > 1, "Frames must hold at least 2 messages.");
+        checkArgument(maxBytes >= 0, "Maximum frame size cannot be negative.");
+        checkArgument(maxDelayMs > 0, "Maximum delay must be strictly positive.");
+
+        return new CoalescingWindow(maxMessages, maxBytes, maxDelayMs, codec);
+    }
+
+    /**
+     * @return A window letting every message be sent on its own.
+     */
+    @NotNull
+    public static CoalescingWindow disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * @param factoryConfig Configuration of a cluster client factory.
+     * @param codec         Codec of the cluster, used to estimate payload sizes.
+     * @return The window configured using the {@link #MAX_MESSAGES}, {@link #MAX_BYTES} and {@link #MAX_DELAY_MS} keys.
+     */
+    @NotNull
+    public static CoalescingWindow fromConfig(@NotNull final Config factoryConfig, @NotNull final Codec codec) {
+        requireNonNull(factoryConfig);
+        requireNonNull(codec);
+
+        if (!factoryConfig.hasPath(MAX_MESSAGES) || factoryConfig.getInt(MAX_MESSAGES) <= 1) {
+            return disabled();
+        }
+        int maxBytes = factoryConfig.hasPath(MAX_BYTES) ? factoryConfig.getInt(MAX_BYTES) : 0;
+        long maxDelayMs = factoryConfig.hasPath(MAX_DELAY_MS) ? //
+                factoryConfig.getLong(MAX_DELAY_MS) : DEFAULT_MAX_DELAY_MS;
+        return of(factoryConfig.getInt(MAX_MESSAGES), maxBytes, maxDelayMs, codec);
+    }
+
+    /**
+     * @param remote Sender of the frames.
+     * @return A sender packing the messages bound for the same actor within this window,
+     * or passing them through if it is disabled.
+     */
+    @NotNull
+    public CoalescingActorSender coalesce(@NotNull final ActorSender remote) {
+        return new CoalescingActorSender(requireNonNull(remote), this);
+    }
+
+    public boolean isEnabled() {
+        return maxMessages > 1;
+    }
+
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    /**
+     * @return The estimated encoded size of the given message's payload, 0 when frames are not bounded by size.
+     */
+    int estimatedSizeOf(final ActorInputMessage message) {
+        if (maxBytes == 0) {
+            return 0;
+        }
+        Serializable payload = message.getPayload();
+        if (payload instanceof String) {
+            return PAYLOAD_HEADER_BYTES + ((String) payload).length();
+        } else if (payload instanceof byte[]) {
+            return PAYLOAD_HEADER_BYTES + ((byte[]) payload).length;
+        } else if (payload == null) {
+            return 1;
+        }
+        Integer size = sizeByPayloadClass.get(payload.getClass());
+        if (size == null) {
+            size = codec.encode(payload).length;
+            sizeByPayloadClass.putIfAbsent(payload.getClass(), size);
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "{\"CoalescingWindow\":{" + //
+                "\"maxMessages\":" + maxMessages + ", " + //
+                "\"maxBytes\":" + maxBytes + ", " + //
+                "\"maxDelayMs\":" + maxDelayMs + "}}";
+    }
+}
@@ -21,16 +21,24 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 /**
  * Deployment configuration for actors.
+ *
+ * @see #deployConfig(boolean)
  */
 public final class DeployConfig implements Serializable {
 
     private final boolean forked;
     private final List<String> preferredHosts;
     private final List<String> jvmArguments;
+    private final long metricsFlushIntervalMs;
+    private final int metricsMaxBufferedValues;
+    private final int mailboxCapacity;
+    private final MailboxOverflowPolicy mailboxOverflowPolicy;
+    private final ExecutionMode executionMode;
 
     public DeployConfig(final boolean forked, @NotNull final List<String> preferredHosts) {
         this(forked, preferredHosts, Collections.emptyList());
@@ -39,9 +47,46 @@ public final class DeployConfig implements Serializable {
     public DeployConfig(final boolean forked,
                         @NotNull final List<String> preferredHosts,
                         @NotNull final List<String> jvmArguments) {
+        this(forked,
+             preferredHosts,
+             jvmArguments,
+             0,
+             0,
+             0,
+             MailboxOverflowPolicy.DROP,
+             ExecutionMode.PLATFORM_THREADS);
+    }
+
+    DeployConfig(final boolean forked,
+                 @NotNull final List<String> preferredHosts,
+                 @NotNull final List<String> jvmArguments,
+                 final long metricsFlushIntervalMs,
+                 final int metricsMaxBufferedValues,
+                 final int mailboxCapacity,
+                 @NotNull final MailboxOverflowPolicy mailboxOverflowPolicy,
+                 @NotNull final ExecutionMode executionMode) {
+        checkArgument(metricsFlushIntervalMs >= 0, "Metrics flush interval cannot be negative.");
+        checkArgument(metricsMaxBufferedValues >= 0, "Metrics max buffered values cannot be negative.");
+        checkArgument(mailboxCapacity >= 0, "Mailbox capacity cannot be negative.");
+        checkArgument(mailboxCapacity > 0 || executionMode != ExecutionMode.VIRTUAL_THREADS,
+                      "Virtual threads execution requires a mailbox.");
         this.forked = forked;
         this.preferredHosts = requireNonNull(preferredHosts);
         this.jvmArguments = requireNonNull(jvmArguments);
+        this.metricsFlushIntervalMs = metricsFlushIntervalMs;
+        this.metricsMaxBufferedValues = metricsMaxBufferedValues;
+        this.mailboxCapacity = mailboxCapacity;
+        this.mailboxOverflowPolicy = requireNonNull(mailboxOverflowPolicy);
+        this.executionMode = requireNonNull(executionMode);
+    }
+
+    /**
+     * @param forked true if the actor instance must be created in its own JVM.
+     * @return A builder of deployment configurations, to set the metrics, mailbox and execution settings.
+     */
+    @NotNull
+    public static DeployConfigBuilder deployConfig(final boolean forked) {
+        return new DeployConfigBuilder(forked);
     }
 
     /**
@@ -74,9 +119,66 @@ public final class DeployConfig implements Serializable {
         return jvmArguments;
     }
 
+    /**
+     * If strictly positive, the actor instance will send its metric values to the cluster at this interval,
+     * in small incremental chunks, on top of the dumps requested by the leader.
+     *
+     * @return The interval in milliseconds between two metrics flushes, 0 if periodic flush is disabled.
+     */
+    public long getMetricsFlushIntervalMs() {
+        return metricsFlushIntervalMs;
+    }
+
+    /**
+     * If strictly positive, the actor instance will keep at most this number of metric values in memory
+     * between two flushes, further values being spilled to disk in the agent's logs directory.
+     *
+     * @return The maximum number of metric values buffered in memory, 0 if unbounded.
+     */
+    public int getMetricsMaxBufferedValues() {
+        return metricsMaxBufferedValues;
+    }
+
+    /**
+     * If strictly positive, messages to the actor instance are queued in a mailbox of this capacity,
+     * and handed to the reactor on a dedicated executor rather than on the transport's delivery thread.
+     *
+     * @return The maximum number of messages waiting to be handled by the actor, 0 if it has no mailbox.
+     */
+    public int getMailboxCapacity() {
+        return mailboxCapacity;
+    }
+
+    /**
+     * Only relevant if the actor has a mailbox, see {@link #getMailboxCapacity()}.
+     *
+     * @return What the actor does with a message delivered when its mailbox is full.
+     */
+    @NotNull
+    public MailboxOverflowPolicy getMailboxOverflowPolicy() {
+        return mailboxOverflowPolicy;
+    }
+
+    /**
+     * Only relevant if the actor has a mailbox, see {@link #getMailboxCapacity()}.
+     *
+     * @return The kind of threads handing the queued messages to the actor.
+     */
+    @NotNull
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
     @Override
     public int hashCode() {
-        return Objects.hash(forked, preferredHosts, jvmArguments);
+        return Objects.hash(forked,
+                            preferredHosts,
+                            jvmArguments,
+                            metricsFlushIntervalMs,
+                            metricsMaxBufferedValues,
+                            mailboxCapacity,
+                            mailboxOverflowPolicy,
+                            executionMode);
     }
 
     @Override
@@ -90,7 +192,12 @@ public final class DeployConfig implements Serializable {
         DeployConfig that = (DeployConfig) o;
         return forked == that.forked && //
                 Objects.equals(preferredHosts, that.preferredHosts) && //
-                Objects.equals(jvmArguments, that.jvmArguments);
+                Objects.equals(jvmArguments, that.jvmArguments) && //
+                metricsFlushIntervalMs == that.metricsFlushIntervalMs && //
+                metricsMaxBufferedValues == that.metricsMaxBufferedValues && //
+                mailboxCapacity == that.mailboxCapacity && //
+                mailboxOverflowPolicy == that.mailboxOverflowPolicy && //
+                executionMode == that.executionMode;
     }
 
     @Override
@@ -98,6 +205,11 @@ public final class DeployConfig implements Serializable {
         return "{\"DeployConfig\":{" + //
                 "\"forked\":\"" + forked + "\"" + ", " + //
                 "\"preferredHosts\":" + preferredHosts + ", " + //
-                "\"jvmArguments\":" + jvmArguments + "}}";
+                "\"jvmArguments\":" + jvmArguments + ", " + //
+                "\"metricsFlushIntervalMs\":" + metricsFlushIntervalMs + ", " + //
+                "\"metricsMaxBufferedValues\":" + metricsMaxBufferedValues + ", " + //
+                "\"mailboxCapacity\":" + mailboxCapacity + ", " + //
+                "\"mailboxOverflowPolicy\":\"" + mailboxOverflowPolicy + "\", " + //
+                "\"executionMode\":\"" + executionMode + "\"}}";
     }
 }
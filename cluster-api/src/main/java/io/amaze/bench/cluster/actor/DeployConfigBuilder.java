@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.actor;
+
+import javax.validation.constraints.NotNull;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Utility to help create a new instance of {@link DeployConfig}, settings that are not set keep their default.
+ * <br>
+ * Example:<br>
+ * To run an embedded actor behind a mailbox of 1024 messages, flushing its metrics every second:
+ * <pre> {@code
+ * DeployConfig.deployConfig(false)
+ *     .metricsFlushIntervalMs(1000)
+ *     .mailboxCapacity(1024)
+ *     .mailboxOverflowPolicy(MailboxOverflowPolicy.BLOCK)
+ *     .build();
+ * } </pre>
+ */
+public final class DeployConfigBuilder {
+
+    private final boolean forked;
+    private List<String> preferredHosts = Collections.emptyList();
+    private List<String> jvmArguments = Collections.emptyList();
+    private long metricsFlushIntervalMs;
+    private int metricsMaxBufferedValues;
+    private int mailboxCapacity;
+    private MailboxOverflowPolicy mailboxOverflowPolicy = MailboxOverflowPolicy.DROP;
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM_THREADS;
+
+    DeployConfigBuilder(final boolean forked) {
+        this.forked = forked;
+    }
+
+    /**
+     * @param preferredHosts Hosts to spawn the actor on if possible, none by default.
+     * @return The builder instance
+     * @see DeployConfig#getPreferredHosts()
+     */
+    public DeployConfigBuilder preferredHosts(@NotNull final List<String> preferredHosts) {
+        this.preferredHosts = requireNonNull(preferredHosts);
+        return this;
+    }
+
+    /**
+     * @param jvmArguments Arguments of the JVM of a forked actor, none by default.
+     * @return The builder instance
+     * @see DeployConfig#getJvmArguments()
+     */
+    public DeployConfigBuilder jvmArguments(@NotNull final List<String> jvmArguments) {
+        this.jvmArguments = requireNonNull(jvmArguments);
+        return this;
+    }
+
+    /**
+     * @param metricsFlushIntervalMs Interval between two periodic metrics flushes, 0 (the default) to disable them.
+     * @return The builder instance
+     * @see DeployConfig#getMetricsFlushIntervalMs()
+     */
+    public DeployConfigBuilder metricsFlushIntervalMs(final long metricsFlushIntervalMs) {
+        this.metricsFlushIntervalMs = metricsFlushIntervalMs;
+        return this;
+    }
+
+    /**
+     * @param metricsMaxBufferedValues Number of metric values buffered before spilling to disk,
+     *                                 0 (the default) for no limit.
+     * @return The builder instance
+     * @see DeployConfig#getMetricsMaxBufferedValues()
+     */
+    public DeployConfigBuilder metricsMaxBufferedValues(final int metricsMaxBufferedValues) {
+        this.metricsMaxBufferedValues = metricsMaxBufferedValues;
+        return this;
+    }
+
+    /**
+     * @param mailboxCapacity Capacity of the actor's mailbox, 0 (the default) for no mailbox.
+     * @return The builder instance
+     * @see DeployConfig#getMailboxCapacity()
+     */
+    public DeployConfigBuilder mailboxCapacity(final int mailboxCapacity) {
+        this.mailboxCapacity = mailboxCapacity;
+        return this;
+    }
+
+    /**
+     * @param mailboxOverflowPolicy What to do with messages delivered to a full mailbox,
+     *                              {@link MailboxOverflowPolicy#DROP} by default.
+     * @return The builder instance
+     * @see DeployConfig#getMailboxOverflowPolicy()
+     */
+    public DeployConfigBuilder mailboxOverflowPolicy(@NotNull final MailboxOverflowPolicy mailboxOverflowPolicy) {
+        this.mailboxOverflowPolicy = requireNonNull(mailboxOverflowPolicy);
+        return this;
+    }
+
+    /**
+     * @param executionMode Kind of threads handing the queued messages to the actor,
+     *                      {@link ExecutionMode#PLATFORM_THREADS} by default.
+     * @return The builder instance
+     * @see DeployConfig#getExecutionMode()
+     */
+    public DeployConfigBuilder executionMode(@NotNull final ExecutionMode executionMode) {
+        this.executionMode = requireNonNull(executionMode);
+        return this;
+    }
+
+    /**
+     * @return A new {@link DeployConfig} instance.
+     * @throws IllegalArgumentException if a setting is invalid, or if virtual threads are requested
+     *                                  without a mailbox.
+     */
+    @NotNull
+    public DeployConfig build() {
+        return new DeployConfig(forked,
+                                preferredHosts,
+                                jvmArguments,
+                                metricsFlushIntervalMs,
+                                metricsMaxBufferedValues,
+                                mailboxCapacity,
+                                mailboxOverflowPolicy,
+                                executionMode);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.actor;
+
+/**
+ * Kind of threads handing the messages queued in an actor's mailbox to its reactor.
+ *
+ * @see DeployConfig#getExecutionMode()
+ */
+public enum ExecutionMode {
+
+    /**
+     * Messages are handled on a pool of platform threads shared by the actors of the JVM.
+     */
+    PLATFORM_THREADS,
+
+    /**
+     * Messages are handled on virtual threads, so that a reactor blocking in its message handling only parks
+     * a lightweight thread. Falls back to {@link #PLATFORM_THREADS} on runtimes without virtual threads.
+     */
+    VIRTUAL_THREADS
+}
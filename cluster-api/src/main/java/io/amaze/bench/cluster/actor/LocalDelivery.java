@@ -0,0 +1,270 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.actor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.typesafe.config.Config;
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.cluster.codec.Codec;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Short-circuits the transport for messages between actors living in the same JVM.
+ * <p>
+ * Actor cluster clients {@link #register(RuntimeActor)} their actor in a directory shared by the JVM,
+ * and wrap their {@link ActorSender} using {@link #localFirst(ActorSender)}:
+ * messages to a registered actor are handed straight to it, without being encoded nor going through the network.
+ * All the commands are delivered this way, not only messages, so that a target sees the commands and messages of
+ * a given sender in the order they were sent, whatever the way they were sent.
+ * Only actors with a mailbox are registered, so that the sender never runs the target's reactor on its own thread.
+ * <p>
+ * Messages are offered to the target's mailbox without waiting, whatever its {@link MailboxOverflowPolicy}: two
+ * actors sending to each other would otherwise wait for each other forever once their mailboxes are full.
+ * A message that does not fit in the target's mailbox is sent through the transport instead, whose listener
+ * applies the target's overflow policy. It may then reach the target after messages sent locally later on.
+ * <p>
+ * The payload object is shared between the sender and the target, unless copy-on-send is enabled:
+ * it is then copied through the cluster's codec, as it would be over the network.
+ * <p>
+ * Settings are read from the cluster client factory's configuration:
+ * <ul>
+ * <li>{@link #LOCAL_DELIVERY}: true by default</li>
+ * <li>{@link #COPY_ON_SEND}: false by default</li>
+ * </ul>
+ */
+public final class LocalDelivery {
+
+    public static final String LOCAL_DELIVERY = "localDelivery";
+    public static final String COPY_ON_SEND = "localDeliveryCopyOnSend";
+
+    private static final ConcurrentMap<ActorKey, RuntimeActor> LOCAL_ACTORS = new ConcurrentHashMap<>();
+    private static final AtomicLong LOCAL_ACTORS_VERSION = new AtomicLong();
+    private static final LocalDelivery DISABLED = new LocalDelivery(false, false, null);
+
+    private final boolean enabled;
+    private final boolean copyOnSend;
+    private final Codec codec;
+
+    private LocalDelivery(final boolean enabled, final boolean copyOnSend, final Codec codec) {
+        this.enabled = enabled;
+        this.copyOnSend = copyOnSend;
+        this.codec = codec;
+    }
+
+    /**
+     * @param codec      Codec of the cluster, used to copy payloads.
+     * @param copyOnSend If true, the target receives a copy of the payload.
+     * @return An enabled local delivery.
+     */
+    @NotNull
+    public static LocalDelivery enabled(@NotNull final Codec codec, final boolean copyOnSend) {
+        return new LocalDelivery(true, copyOnSend, requireNonNull(codec));
+    }
+
+    /**
+     * @return A local delivery that neither registers actors nor short-circuits messages.
+     */
+    @NotNull
+    public static LocalDelivery disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * @param factoryConfig Configuration of a cluster client factory.
+     * @param codec         Codec of the cluster, used to copy payloads.
+     * @return The local delivery configured using the {@link #LOCAL_DELIVERY} and {@link #COPY_ON_SEND} keys.
+     */
+    @NotNull
+    public static LocalDelivery fromConfig(@NotNull final Config factoryConfig, @NotNull final Codec codec) {
+        requireNonNull(factoryConfig);
+        requireNonNull(codec);
+
+        if (factoryConfig.hasPath(LOCAL_DELIVERY) && !factoryConfig.getBoolean(LOCAL_DELIVERY)) {
+            return disabled();
+        }
+        boolean copyOnSend = factoryConfig.hasPath(COPY_ON_SEND) && factoryConfig.getBoolean(COPY_ON_SEND);
+        return enabled(codec, copyOnSend);
+    }
+
+    /**
+     * Makes the given actor reachable by the local senders, if it has a mailbox.
+     *
+     * @param actor Actor living in this JVM.
+     */
+    public void register(@NotNull final RuntimeActor actor) {
+        requireNonNull(actor);
+        if (enabled && actor.hasMailbox()) {
+            LOCAL_ACTORS.put(actor.getKey(), actor);
+            LOCAL_ACTORS_VERSION.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param actor Actor previously registered, the call has no effect otherwise.
+     */
+    public void unregister(@NotNull final RuntimeActor actor) {
+        requireNonNull(actor);
+        if (LOCAL_ACTORS.remove(actor.getKey(), actor)) {
+            LOCAL_ACTORS_VERSION.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param remote Sender used for targets living outside this JVM.
+     * @return A sender delivering messages to the actors of this JVM directly,
+     * its routes cache whether the target lives in this JVM until an actor is registered or unregistered.
+     */
+    @NotNull
+    public ActorSender localFirst(@NotNull final ActorSender remote) {
+        requireNonNull(remote);
+        if (!enabled) {
+            return remote;
+        }
+        return new LocalFirstSender(remote);
+    }
+
+    @VisibleForTesting
+    static boolean isRegistered(final ActorKey key) {
+        return LOCAL_ACTORS.containsKey(key);
+    }
+
+    private boolean tryDeliver(final ActorKey to, final ActorInputMessage message) {
+        requireNonNull(to);
+        requireNonNull(message);
+        RuntimeActor target = LOCAL_ACTORS.get(to);
+        if (target == null) {
+            return false;
+        }
+
+        return deliver(target, message);
+    }
+
+    /**
+     * Dispatches the command as the transport's listeners would, without waiting for room in the target's mailbox.
+     *
+     * @return false if the message was not delivered because the target's mailbox is full.
+     */
+    private boolean deliver(final RuntimeActor target, final ActorInputMessage message) {
+        switch (message.getCommand()) {
+            case BOOTSTRAP:
+                target.bootstrap();
+                break;
+            case CLOSE:
+                target.requestClose();
+                break;
+            case DUMP_METRICS:
+                target.dumpAndFlushMetrics();
+                break;
+            case MESSAGE:
+                Serializable payload = copyOnSend ? //
+                        codec.decode(codec.encode(message.getPayload())) : message.getPayload();
+                return target.offerMessage(message.getFrom(), payload);
+            default:
+                throw new UnsupportedOperationException("Unsupported command " + message.getCommand());
+        }
+        return true;
+    }
+
+    private static final class LocalTarget {
+        private final long version;
+        private final RuntimeActor actor;
+
+        private LocalTarget(final long version, final RuntimeActor actor) {
+            this.version = version;
+            this.actor = actor;
+        }
+    }
+
+    private final class LocalFirstSender implements ActorSender {
+        private final ActorSender remote;
+
+        private LocalFirstSender(final ActorSender remote) {
+            this.remote = remote;
+        }
+
+        @Override
+        public void send(@NotNull final ActorKey to, @NotNull final ActorInputMessage message) {
+            if (!tryDeliver(to, message)) {
+                remote.send(to, message);
+            }
+        }
+
+        @Override
+        public void sendBatch(@NotNull final ActorKey to, @NotNull final List<ActorInputMessage> messages) {
+            requireNonNull(to);
+            requireNonNull(messages);
+            if (!LOCAL_ACTORS.containsKey(to)) {
+                remote.sendBatch(to, messages);
+                return;
+            }
+            messages.forEach(message -> send(to, message));
+        }
+
+        @NotNull
+        @Override
+        public ActorSender.Route resolve(@NotNull final ActorKey to) {
+            return new LocalFirstRoute(requireNonNull(to), remote.resolve(to));
+        }
+    }
+
+    private final class LocalFirstRoute implements ActorSender.Route {
+        private final ActorKey to;
+        private final ActorSender.Route remote;
+        private volatile LocalTarget target;
+
+        private LocalFirstRoute(final ActorKey to, final ActorSender.Route remote) {
+            this.to = to;
+            this.remote = remote;
+        }
+
+        @Override
+        public void send(@NotNull final ActorInputMessage message) {
+            requireNonNull(message);
+            RuntimeActor actor = localActor();
+            if (actor == null || !deliver(actor, message)) {
+                remote.send(message);
+            }
+        }
+
+        @Override
+        public void sendBatch(@NotNull final List<ActorInputMessage> messages) {
+            requireNonNull(messages);
+            if (localActor() == null) {
+                remote.sendBatch(messages);
+                return;
+            }
+            messages.forEach(this::send);
+        }
+
+        private RuntimeActor localActor() {
+            long version = LOCAL_ACTORS_VERSION.get();
+            LocalTarget current = target;
+            if (current == null || current.version != version) {
+                current = new LocalTarget(version, LOCAL_ACTORS.get(to));
+                target = current;
+            }
+            return current.actor;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.actor;
+
+/**
+ * What an actor does with an incoming message when its mailbox is full.
+ *
+ * @see DeployConfig#getMailboxCapacity()
+ */
+public enum MailboxOverflowPolicy {
+
+    /**
+     * The delivering thread waits until the actor made room in its mailbox.<br>
+     * It is the transport's receiving thread, which then stops delivering messages to all the actors it serves:
+     * only use it for actors that must not lose messages and have the transport to themselves.
+     * Messages sent by actors of the same JVM never wait: they go through the transport when the mailbox is full
+     * (see {@link LocalDelivery}).
+     */
+    BLOCK,
+
+    /**
+     * The message is discarded, and counted in the actor's mailbox metrics. This is the default.
+     */
+    DROP,
+
+    /**
+     * The message is discarded and the actor is reported as failed.
+     */
+    FAIL
+}
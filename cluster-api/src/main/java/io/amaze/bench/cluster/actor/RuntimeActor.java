@@ -64,8 +64,40 @@ public interface RuntimeActor extends Closeable {
      */
     void onMessage(@NotNull String from, @NotNull Serializable message);
 
+    /**
+     * Hands a message to the actor if that does not make the caller wait, used to deliver messages between actors
+     * of the same JVM.<br>
+     * When the actor's mailbox is full, the message is left to the caller whatever the actor's
+     * {@link MailboxOverflowPolicy}: neither waiting, dropped nor counted as a failure.
+     *
+     * @param from    Source actor
+     * @param message Payload
+     * @return false if the message was not handed to the actor because its mailbox is full.
+     */
+    default boolean offerMessage(@NotNull String from, @NotNull Serializable message) {
+        onMessage(from, message);
+        return true;
+    }
+
+    /**
+     * @return true if messages given to {@link #onMessage(String, Serializable)} are queued and handled on the
+     * actor's own threads, rather than on the caller's.
+     */
+    default boolean hasMailbox() {
+        return false;
+    }
+
+    /**
+     * Closes the actor as requested by a CLOSE command, once the messages delivered before it are handled.<br>
+     * Actors without a mailbox are closed right away, see {@link #close()}.
+     */
+    default void requestClose() {
+        close();
+    }
+
     /**
      * Closes the actor and invokes the {@link Reactor} method annotated with @{@link After}.<br>
+     * Messages still pending in its mailbox, if any, are discarded: this is meant for shutdowns.<br>
      * Will send failure messages to the registry.<br>
      * Send "closed" lifecycle notification if successful.<br>
      */
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import javax.validation.constraints.NotNull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Default {@link Codec}: each object is written as the identifier of its type followed by the fields written
+ * by its {@link PayloadSerializer}. Types without serializer fall back to Java serialization.
+ * <p>
+ * Strings, boxed primitives, byte arrays and the framework's messages have built-in serializers.
+ * Serializers of user payloads are discovered using {@link ServiceLoader}, see {@link PayloadSerializer}.
+ * Instances can be shared by any number of threads: each thread encodes into its own pooled buffer,
+ * and decoding reads the given bytes in place.
+ */
+public final class BinaryCodec implements Codec {
+
+    public static final int FIRST_USER_TYPE_ID = 64;
+
+    static final int NULL_ID = 0;
+    static final int JAVA_SERIALIZED_ID = 1;
+
+    private static final int JAVA_SERIALIZATION_CAPACITY = 256;
+    private static final int POOLED_CAPACITY = 1024;
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+
+    private final Map<Class<?>, PayloadSerializer<?>> serializersByType;
+    private final PayloadSerializer<?>[] serializersById;
+    private final ThreadLocal<CodecOutput> pooledOutputs = new ThreadLocal<>();
+
+    /**
+     * Creates a codec using the built-in serializers, and the serializers registered as services.
+     */
+    public BinaryCodec() {
+        this(loadServices());
+    }
+
+    /**
+     * @param userSerializers Serializers of user payloads, their identifiers must be at least
+     *                        {@link #FIRST_USER_TYPE_ID}.
+     */
+    public BinaryCodec(@NotNull final Collection<PayloadSerializer<?>> userSerializers) {
+        requireNonNull(userSerializers);
+
+        List<PayloadSerializer<?>> serializers = new ArrayList<>(BuiltInSerializers.all());
+        serializers.addAll(ControlMessageSerializers.all());
+        for (PayloadSerializer<?> serializer : userSerializers) {
+            checkArgument(serializer.typeId() >= FIRST_USER_TYPE_ID,
+                          "Type identifier %s of %s is reserved.", serializer.typeId(), serializer.type());
+            serializers.add(serializer);
+        }
+
+        int maxId = 0;
+        serializersByType = new HashMap<>(serializers.size() * 2);
+        for (PayloadSerializer<?> serializer : serializers) {
+            if (serializersByType.put(serializer.type(), serializer) != null) {
+                throw new IllegalArgumentException("Several serializers registered for " + serializer.type());
+            }
+            maxId = Math.max(maxId, serializer.typeId());
+        }
+        serializersById = new PayloadSerializer<?>[maxId + 1];
+        for (PayloadSerializer<?> serializer : serializers) {
+            if (serializersById[serializer.typeId()] != null) {
+                throw new IllegalArgumentException("Type identifier " + serializer.typeId() + " is registered " + //
+                                                           "for several types.");
+            }
+            serializersById[serializer.typeId()] = serializer;
+        }
+    }
+
+    private static Collection<PayloadSerializer<?>> loadServices() {
+        List<PayloadSerializer<?>> serializers = new ArrayList<>();
+        for (PayloadSerializer<?> serializer : ServiceLoader.load(PayloadSerializer.class)) {
+            serializers.add(serializer);
+        }
+        return Collections.unmodifiableList(serializers);
+    }
+
+    @NotNull
+    @Override
+    public byte[] encode(final Serializable object) {
+        CodecOutput out = acquireOutput();
+        try {
+            write(out, object);
+            return out.toByteArray();
+        } finally {
+            releaseOutput(out);
+        }
+    }
+
+    @Override
+    public <E extends Exception> void encodeTo(final Serializable object, @NotNull final ByteSink<E> sink) throws E {
+        requireNonNull(sink);
+
+        CodecOutput out = acquireOutput();
+        try {
+            write(out, object);
+            sink.write(out.buffer(), 0, out.size());
+        } finally {
+            releaseOutput(out);
+        }
+    }
+
+    @Override
+    public <T extends Serializable> T decode(@NotNull final byte[] bytes, final int offset, final int length) {
+        requireNonNull(bytes);
+        CodecInput in = new CodecInput(this, bytes, offset, length);
+        T object = read(in);
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException("Unexpected trailing bytes after the encoded object.");
+        }
+        return object;
+    }
+
+    /**
+     * The pooled output is removed from the thread local while in use,
+     * so that an object encoding another one during its Java serialization gets its own output.
+     */
+    private CodecOutput acquireOutput() {
+        CodecOutput out = pooledOutputs.get();
+        if (out == null) {
+            return new CodecOutput(this, POOLED_CAPACITY);
+        }
+        pooledOutputs.set(null);
+        return out;
+    }
+
+    private void releaseOutput(final CodecOutput out) {
+        if (out.capacity() <= MAX_POOLED_CAPACITY) {
+            out.reset();
+            pooledOutputs.set(out);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void write(final CodecOutput out, final Serializable object) {
+        if (object == null) {
+            out.writeVarInt(NULL_ID);
+            return;
+        }
+        PayloadSerializer<Serializable> serializer = (PayloadSerializer<Serializable>) serializersByType.get(
+                object.getClass());
+        if (serializer != null) {
+            out.writeVarInt(serializer.typeId());
+            serializer.write(object, out);
+        } else {
+            out.writeVarInt(JAVA_SERIALIZED_ID);
+            out.writeBytes(javaSerialize(object));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends Serializable> T read(final CodecInput in) {
+        int typeId = in.readVarInt();
+        if (typeId == NULL_ID) {
+            return null;
+        }
+        if (typeId == JAVA_SERIALIZED_ID) {
+            int length = in.readLength();
+            int start = in.position();
+            in.skip(length);
+            return (T) javaDeserialize(in.buffer(), start, length); // NOSONAR
+        }
+        if (typeId < 0 || typeId >= serializersById.length || serializersById[typeId] == null) {
+            throw new IllegalArgumentException("No serializer registered for type identifier " + typeId + ".");
+        }
+        return (T) serializersById[typeId].read(in);
+    }
+
+    static byte[] javaSerialize(final Serializable object) {
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream(JAVA_SERIALIZATION_CAPACITY);
+             ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot serialize " + object.getClass() + ".", e);
+        }
+    }
+
+    static Serializable javaDeserialize(final byte[] bytes, final int offset, final int length) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+            return (Serializable) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw new IllegalArgumentException("Cannot deserialize object.", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{\"BinaryCodec\":{\"types\":" + serializersByType.size() + "}}";
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import javax.validation.constraints.NotNull;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads what was written to a {@link BinaryOutput}, in place.
+ * Throws {@link IllegalArgumentException} when the input is truncated or corrupted.
+ * <p>
+ * Input is read from arrays or from buffers such as memory-mapped files, without being copied.
+ * The position of the buffer is left untouched.
+ */
+public class BinaryInput {
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+
+    public BinaryInput(@NotNull final byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public BinaryInput(@NotNull final byte[] buffer, final int offset, final int length) {
+        this(ByteBuffer.wrap(buffer), offset, length);
+    }
+
+    public BinaryInput(@NotNull final ByteBuffer buffer, final int offset, final int length) {
+        this.buffer = requireNonNull(buffer);
+        if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+            throw new IllegalArgumentException("Invalid range [" + offset + ", " + (offset + length) + "[ " + //
+                                                       "of " + buffer.limit() + " bytes.");
+        }
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    public final int readByte() {
+        checkAvailable(1);
+        return buffer.get(position++) & 0xFF;
+    }
+
+    public final boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public final long readVarLong() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int current = readByte();
+            result |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable length value.");
+    }
+
+    public final int readVarInt() {
+        long value = readVarLong();
+        if (value < 0 || value > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Variable length value too large: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a length, or a count of elements each encoded on at least one byte, checking it fits in the input left.
+     */
+    public final int readLength() {
+        int length = readVarInt();
+        checkAvailable(length);
+        return length;
+    }
+
+    public final long readZigZag() {
+        long encoded = readVarLong();
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    public final long readLong() {
+        checkAvailable(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer.get(position++) & 0xFF);
+        }
+        return value;
+    }
+
+    public final double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @NotNull
+    public final String readString() {
+        int length = readLength();
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        readRaw(bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads bytes written by {@link BinaryOutput#writeBytes(byte[])}.
+     */
+    @NotNull
+    public final byte[] readBytes() {
+        int length = readLength();
+        byte[] bytes = new byte[length];
+        readRaw(bytes, 0, length);
+        return bytes;
+    }
+
+    public final void readRaw(@NotNull final byte[] dest, final int offset, final int length) {
+        checkAvailable(length);
+        ByteBuffer source = buffer.duplicate();
+        source.position(position);
+        source.get(dest, offset, length);
+        position += length;
+    }
+
+    public final void skip(final int length) {
+        checkAvailable(length);
+        position += length;
+    }
+
+    /**
+     * @return The absolute position of the next byte to read in the underlying array or buffer.
+     */
+    public final int position() {
+        return position;
+    }
+
+    public final boolean hasRemaining() {
+        return position < limit;
+    }
+
+    private void checkAvailable(final int length) {
+        if (length < 0 || length > limit - position) {
+            throw new IllegalArgumentException("Truncated input, expected " + length + " more byte(s).");
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Growable byte array with variable length integer primitives, so that small values use few bytes.
+ * It is the writer shared by the message codec and the metric values encoding.
+ *
+ * @see BinaryInput
+ */
+public class BinaryOutput {
+
+    private byte[] buffer;
+    private int size;
+
+    public BinaryOutput(final int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public final void writeByte(final int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    public final void writeBoolean(final boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Writes an unsigned LEB128 value, 7 bits per byte.
+     */
+    public final void writeVarLong(final long value) {
+        ensureCapacity(10);
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        buffer[size++] = (byte) remaining;
+    }
+
+    public final void writeVarInt(final int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes a signed value so that small absolute values use few bytes.
+     */
+    public final void writeZigZag(final long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public final void writeLong(final long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    public final void writeDouble(final double value) {
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Writes the UTF-8 form of the given string, ASCII strings are copied without intermediate array.
+     */
+    public final void writeString(@NotNull final String value) {
+        int length = value.length();
+        ensureCapacity(length + 5);
+        int start = size;
+        writeVarInt(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                size = start;
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length);
+                writeRaw(bytes, 0, bytes.length);
+                return;
+            }
+            buffer[size++] = (byte) c;
+        }
+    }
+
+    /**
+     * Writes the length of the given bytes followed by them.
+     */
+    public final void writeBytes(@NotNull final byte[] bytes) {
+        writeVarInt(bytes.length);
+        writeRaw(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Appends the given bytes as they are, without their length.
+     */
+    public final void writeRaw(@NotNull final byte[] bytes, final int offset, final int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+    }
+
+    /**
+     * Appends what was written to the other output so far, without its length.
+     */
+    public final void writeRaw(@NotNull final BinaryOutput other) {
+        requireNonNull(other);
+        writeRaw(other.buffer, 0, other.size);
+    }
+
+    public final int size() {
+        return size;
+    }
+
+    public final void reset() {
+        size = 0;
+    }
+
+    @NotNull
+    public final byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    final int capacity() {
+        return buffer.length;
+    }
+
+    final byte[] buffer() {
+        return buffer;
+    }
+
+    private void ensureCapacity(final int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.cluster.Message;
+import io.amaze.bench.cluster.metric.EncodedMetricValuesSerializer;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Serializers of the types {@link BinaryCodec} handles out of the box.
+ * Identifiers are part of the wire format: they must never be reused for another type.
+ */
+final class BuiltInSerializers {
+
+    private static final List<PayloadSerializer<?>> ALL = Collections.unmodifiableList(Arrays.asList( //
+            serializer(2, String.class, (value, out) -> out.writeString(value), CodecInput::readString), //
+            serializer(3, Integer.class, (value, out) -> out.writeZigZag(value), in -> (int) in.readZigZag()), //
+            serializer(4, Long.class, (value, out) -> out.writeZigZag(value), CodecInput::readZigZag), //
+            serializer(5, Double.class, (value, out) -> out.writeDouble(value), CodecInput::readDouble), //
+            serializer(6, Boolean.class, (value, out) -> out.writeBoolean(value), CodecInput::readBoolean), //
+            serializer(7, byte[].class, (value, out) -> out.writeBytes(value), CodecInput::readBytes), //
+            serializer(16, ActorKey.class, //
+                       (key, out) -> out.writeString(key.getName()), //
+                       in -> new ActorKey(in.readString())), //
+            serializer(17, Message.class, BuiltInSerializers::writeMessage, BuiltInSerializers::readMessage), //
+            new EncodedMetricValuesSerializer(18)));
+
+    private BuiltInSerializers() {
+        // Should not be instantiated
+    }
+
+    static List<PayloadSerializer<?>> all() {
+        return ALL;
+    }
+
+    static <T extends Serializable> PayloadSerializer<T> serializer(final int typeId,
+                                                                        final Class<T> type,
+                                                                        final BiConsumer<T, CodecOutput> writer,
+                                                                        final Function<CodecInput, T> reader) {
+        return new SimpleSerializer<>(typeId, type, writer, reader);
+    }
+
+    private static void writeMessage(final Message message, final CodecOutput out) {
+        out.writeString(message.from());
+        out.writeObject(message.data());
+    }
+
+    private static Message readMessage(final CodecInput in) {
+        String from = in.readString();
+        Serializable data = in.readObject();
+        if (data == null) {
+            throw new IllegalArgumentException("Message data cannot be null.");
+        }
+        return new Message<>(from, data);
+    }
+
+    private static final class SimpleSerializer<T extends Serializable> implements PayloadSerializer<T> {
+
+        private final int typeId;
+        private final Class<T> type;
+        private final BiConsumer<T, CodecOutput> writer;
+        private final Function<CodecInput, T> reader;
+
+        SimpleSerializer(final int typeId,
+                         final Class<T> type,
+                         final BiConsumer<T, CodecOutput> writer,
+                         final Function<CodecInput, T> reader) {
+            this.typeId = typeId;
+            this.type = requireNonNull(type);
+            this.writer = requireNonNull(writer);
+            this.reader = requireNonNull(reader);
+        }
+
+        @Override
+        public int typeId() {
+            return typeId;
+        }
+
+        @Override
+        public Class<T> type() {
+            return type;
+        }
+
+        @Override
+        public void write(final T object, final CodecOutput out) {
+            writer.accept(object, out);
+        }
+
+        @Override
+        public T read(final CodecInput in) {
+            return reader.apply(in);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Receives the bytes of an encoded object, see {@link Codec#encodeTo(java.io.Serializable, ByteSink)}.
+ *
+ * @param <E> Exception thrown when the bytes cannot be written.
+ */
+@FunctionalInterface
+public interface ByteSink<E extends Exception> {
+
+    /**
+     * The given buffer is only valid during the call: its content must be copied if needed afterwards.
+     */
+    void write(@NotNull byte[] buffer, int offset, int length) throws E;
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+
+/**
+ * Converts the messages exchanged by cluster members to bytes and back.
+ * <p>
+ * Implementations must be thread-safe, and have a public no-argument constructor to be selected using the
+ * {@link Codecs#CODEC} key of a cluster's factory configuration. All members of a cluster must use the same codec.
+ *
+ * @see BinaryCodec
+ * @see JavaSerializationCodec
+ */
+public interface Codec {
+
+    /**
+     * @param object Object to encode, can be {@code null}.
+     * @return The encoded form of the given object.
+     * @throws IllegalArgumentException if the object cannot be encoded.
+     */
+    @NotNull
+    byte[] encode(Serializable object);
+
+    /**
+     * Encodes the given object into a buffer owned by the codec, and hands it to the given sink.
+     * It avoids the copy to an array of the exact size when the bytes are copied by the sink anyway.
+     *
+     * @param object Object to encode, can be {@code null}.
+     * @param sink   Receiver of the encoded form, it must not keep a reference to the buffer.
+     * @param <E>    Exception thrown by the sink.
+     * @throws IllegalArgumentException if the object cannot be encoded.
+     */
+    default <E extends Exception> void encodeTo(final Serializable object, @NotNull final ByteSink<E> sink) throws E {
+        byte[] bytes = encode(object);
+        sink.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Decoded objects never reference the given buffer, which can be reused once this method returns.
+     *
+     * @param bytes  Buffer holding an encoded object.
+     * @param offset Offset of the encoded object in the buffer.
+     * @param length Length of the encoded object.
+     * @param <T>    Expected type of the object.
+     * @return The decoded object, can be {@code null}.
+     * @throws IllegalArgumentException if the bytes are corrupted, or refer to unknown types.
+     */
+    <T extends Serializable> T decode(@NotNull byte[] bytes, int offset, int length);
+
+    /**
+     * @param bytes Encoded object.
+     * @param <T>   Expected type of the object.
+     * @return The decoded object, can be {@code null}.
+     * @throws IllegalArgumentException if the bytes are corrupted, or refer to unknown types.
+     */
+    default <T extends Serializable> T decode(@NotNull final byte[] bytes) {
+        return decode(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import java.io.Serializable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads what {@link PayloadSerializer}s wrote to a {@link CodecOutput}, in place.
+ * Adds nested objects to the primitives of {@link BinaryInput}.
+ */
+public final class CodecInput extends BinaryInput {
+
+    private final BinaryCodec codec;
+    private final byte[] buffer;
+
+    CodecInput(final BinaryCodec codec, final byte[] buffer, final int offset, final int length) {
+        super(buffer, offset, length);
+        this.codec = requireNonNull(codec);
+        this.buffer = buffer;
+    }
+
+    /**
+     * Reads a nested object written by {@link CodecOutput#writeObject(Serializable)}.
+     *
+     * @param <T> Expected type of the object.
+     * @return The object read, can be {@code null}.
+     */
+    public <T extends Serializable> T readObject() {
+        return codec.read(this);
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+}
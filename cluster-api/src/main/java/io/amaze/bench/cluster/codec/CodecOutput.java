@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import java.io.Serializable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Output written by {@link PayloadSerializer}s, reused by {@link BinaryCodec} across calls.
+ * Adds nested objects to the primitives of {@link BinaryOutput}.
+ *
+ * @see CodecInput
+ */
+public final class CodecOutput extends BinaryOutput {
+
+    private final BinaryCodec codec;
+
+    CodecOutput(final BinaryCodec codec, final int initialCapacity) {
+        super(initialCapacity);
+        this.codec = requireNonNull(codec);
+    }
+
+    /**
+     * Writes a nested object, using its registered serializer if any or Java serialization otherwise.
+     *
+     * @param object Object to write, can be {@code null}.
+     */
+    public void writeObject(final Serializable object) {
+        codec.write(this, object);
+    }
+}
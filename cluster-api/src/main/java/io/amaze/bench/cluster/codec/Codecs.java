@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import com.typesafe.config.Config;
+
+import javax.validation.constraints.NotNull;
+
+import static com.google.common.base.Throwables.propagate;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Selects the {@link Codec} of a cluster from its factory configuration.
+ * <p>
+ * The optional {@link #CODEC} key holds the class name of the codec,
+ * the {@link BinaryCodec} being used when it is not set.
+ */
+public final class Codecs {
+
+    public static final String CODEC = "codec";
+
+    private Codecs() {
+        // Should not be instantiated
+    }
+
+    /**
+     * @return A shared {@link BinaryCodec}, with the serializers registered as services.
+     */
+    @NotNull
+    public static Codec defaultCodec() {
+        return DefaultCodecHolder.INSTANCE;
+    }
+
+    /**
+     * @param factoryConfig Configuration of a cluster client factory.
+     * @return The codec configured using the {@link #CODEC} key, or the default one.
+     */
+    @NotNull
+    public static Codec fromConfig(@NotNull final Config factoryConfig) {
+        requireNonNull(factoryConfig);
+        if (!factoryConfig.hasPath(CODEC)) {
+            return defaultCodec();
+        }
+
+        String codecClassName = factoryConfig.getString(CODEC);
+        if (codecClassName.equals(BinaryCodec.class.getName())) {
+            return defaultCodec();
+        }
+        try {
+            return Class.forName(codecClassName).asSubclass(Codec.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw propagate(e);
+        }
+    }
+
+    private static final class DefaultCodecHolder {
+        private static final Codec INSTANCE = new BinaryCodec();
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.cluster.Endpoint;
+import io.amaze.bench.cluster.actor.ActorCreationRequest;
+import io.amaze.bench.cluster.actor.ActorDeployInfo;
+import io.amaze.bench.cluster.actor.ActorInputBatch;
+import io.amaze.bench.cluster.actor.ActorInputMessage;
+import io.amaze.bench.cluster.actor.ActorLifecycleMessage;
+import io.amaze.bench.cluster.agent.AgentInputMessage;
+import io.amaze.bench.cluster.agent.AgentKey;
+import io.amaze.bench.cluster.agent.AgentLifecycleMessage;
+import io.amaze.bench.cluster.agent.AgentRegistrationMessage;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hand-written layouts of the framework's control messages: a command byte, the keys as strings, then only the
+ * fields used by the command. Commands without payload, such as {@link ActorInputMessage#bootstrap()},
+ * are written as a single byte after the type identifier.
+ * Batches of actor input messages are their count, followed by each message in that layout.
+ * <p>
+ * Command bytes are the ordinals of the message enums, which are part of the wire format.
+ * Rarely sent objects (creation requests, registrations, throwables, endpoints) are nested as is.
+ */
+final class ControlMessageSerializers {
+
+    private static final List<PayloadSerializer<?>> ALL = Collections.unmodifiableList(Arrays.asList( //
+            BuiltInSerializers.serializer(19, AgentKey.class, //
+                                          (key, out) -> out.writeString(key.getName()), //
+                                          in -> new AgentKey(in.readString())), //
+            BuiltInSerializers.serializer(20, ActorInputMessage.class, //
+                                          ControlMessageSerializers::writeActorInput, //
+                                          ControlMessageSerializers::readActorInput), //
+            BuiltInSerializers.serializer(21, ActorLifecycleMessage.class, //
+                                          ControlMessageSerializers::writeActorLifecycle, //
+                                          ControlMessageSerializers::readActorLifecycle), //
+            BuiltInSerializers.serializer(22, AgentInputMessage.class, //
+                                          ControlMessageSerializers::writeAgentInput, //
+                                          ControlMessageSerializers::readAgentInput), //
+            BuiltInSerializers.serializer(23, AgentLifecycleMessage.class, //
+                                          ControlMessageSerializers::writeAgentLifecycle, //
+                                          ControlMessageSerializers::readAgentLifecycle), //
+            BuiltInSerializers.serializer(24, ActorDeployInfo.class, //
+                                          ControlMessageSerializers::writeDeployInfo, //
+                                          ControlMessageSerializers::readDeployInfo), //
+            BuiltInSerializers.serializer(25, ActorInputBatch.class, //
+                                          ControlMessageSerializers::writeActorInputBatch, //
+                                          ControlMessageSerializers::readActorInputBatch)));
+
+    private ControlMessageSerializers() {
+        // Should not be instantiated
+    }
+
+    static List<PayloadSerializer<?>> all() {
+        return ALL;
+    }
+
+    private static void writeActorInput(final ActorInputMessage message, final CodecOutput out) {
+        out.writeByte(message.getCommand().ordinal());
+        if (message.getCommand() == ActorInputMessage.Command.MESSAGE) {
+            out.writeString(message.getFrom());
+            out.writeObject(message.getPayload());
+        }
+    }
+
+    private static ActorInputMessage readActorInput(final CodecInput in) {
+        switch (readEnum(in, ActorInputMessage.Command.values())) {
+            case BOOTSTRAP:
+                return ActorInputMessage.bootstrap();
+            case CLOSE:
+                return ActorInputMessage.close();
+            case DUMP_METRICS:
+                return ActorInputMessage.dumpMetrics();
+            default:
+                return ActorInputMessage.message(in.readString(), readNonNull(in, Serializable.class));
+        }
+    }
+
+    private static void writeActorInputBatch(final ActorInputBatch batch, final CodecOutput out) {
+        out.writeVarInt(batch.getMessages().size());
+        for (ActorInputMessage message : batch.getMessages()) {
+            writeActorInput(message, out);
+        }
+    }
+
+    private static ActorInputBatch readActorInputBatch(final CodecInput in) {
+        int size = in.readLength();
+        List<ActorInputMessage> messages = new ArrayList<>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            messages.add(readActorInput(in));
+        }
+        try {
+            return new ActorInputBatch(messages);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid batch.", e);
+        }
+    }
+
+    private static void writeActorLifecycle(final ActorLifecycleMessage message, final CodecOutput out) {
+        out.writeByte(message.getState().ordinal());
+        out.writeString(message.getActor().getName());
+        switch (message.getState()) {
+            case CREATED:
+                out.writeString(message.getAgent().getName());
+                break;
+            case INITIALIZED:
+                writeDeployInfo(message.getDeployInfo(), out);
+                break;
+            case FAILED:
+                out.writeObject(message.getThrowable());
+                break;
+            default:
+        }
+    }
+
+    private static ActorLifecycleMessage readActorLifecycle(final CodecInput in) {
+        ActorLifecycleMessage.State state = readEnum(in, ActorLifecycleMessage.State.values());
+        ActorKey actor = new ActorKey(in.readString());
+        switch (state) {
+            case CREATED:
+                return ActorLifecycleMessage.created(actor, new AgentKey(in.readString()));
+            case INITIALIZED:
+                return ActorLifecycleMessage.initialized(actor, readDeployInfo(in));
+            case FAILED:
+                return ActorLifecycleMessage.failed(actor, readNonNull(in, Throwable.class));
+            default:
+                return ActorLifecycleMessage.closed(actor);
+        }
+    }
+
+    private static void writeAgentInput(final AgentInputMessage message, final CodecOutput out) {
+        out.writeByte(message.getAction().ordinal());
+        out.writeString(message.getTargetAgent().getName());
+        if (message.getAction() == AgentInputMessage.Action.CREATE_ACTOR) {
+            out.writeObject(message.getCreationRequest());
+        } else {
+            out.writeString(message.getActorToClose().getName());
+        }
+    }
+
+    private static AgentInputMessage readAgentInput(final CodecInput in) {
+        AgentInputMessage.Action action = readEnum(in, AgentInputMessage.Action.values());
+        AgentKey agent = new AgentKey(in.readString());
+        if (action == AgentInputMessage.Action.CREATE_ACTOR) {
+            return AgentInputMessage.createActor(agent, readNonNull(in, ActorCreationRequest.class));
+        }
+        return AgentInputMessage.closeActor(agent, new ActorKey(in.readString()));
+    }
+
+    private static void writeAgentLifecycle(final AgentLifecycleMessage message, final CodecOutput out) {
+        out.writeByte(message.getState().ordinal());
+        switch (message.getState()) {
+            case CREATED:
+                out.writeObject(message.getRegistrationMessage());
+                break;
+            case FAILED:
+                out.writeString(message.getAgent().getName());
+                out.writeObject(message.getThrowable());
+                break;
+            default:
+                out.writeString(message.getAgent().getName());
+        }
+    }
+
+    private static AgentLifecycleMessage readAgentLifecycle(final CodecInput in) {
+        switch (readEnum(in, AgentLifecycleMessage.State.values())) {
+            case CREATED:
+                return AgentLifecycleMessage.created(readNonNull(in, AgentRegistrationMessage.class));
+            case FAILED:
+                AgentKey agent = new AgentKey(in.readString());
+                return AgentLifecycleMessage.failed(agent, readNonNull(in, Throwable.class));
+            default:
+                return AgentLifecycleMessage.closed(new AgentKey(in.readString()));
+        }
+    }
+
+    private static void writeDeployInfo(final ActorDeployInfo deployInfo, final CodecOutput out) {
+        out.writeObject(deployInfo.getEndpoint());
+        out.writeVarInt(deployInfo.getPid());
+        out.writeVarInt(deployInfo.getCommand().size());
+        for (String argument : deployInfo.getCommand()) {
+            out.writeString(argument);
+        }
+    }
+
+    private static ActorDeployInfo readDeployInfo(final CodecInput in) {
+        Endpoint endpoint = readNonNull(in, Endpoint.class);
+        int pid = in.readVarInt();
+        int size = in.readLength();
+        List<String> command = new ArrayList<>(Math.min(size, 64));
+        for (int i = 0; i < size; i++) {
+            command.add(in.readString());
+        }
+        try {
+            return new ActorDeployInfo(endpoint, pid, command);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid deploy info.", e);
+        }
+    }
+
+    private static <E extends Enum<E>> E readEnum(final CodecInput in, final E[] values) {
+        int ordinal = in.readByte();
+        if (ordinal >= values.length) {
+            throw new IllegalArgumentException("Unknown constant " + ordinal + " of " + //
+                                                       values[0].getDeclaringClass().getSimpleName() + ".");
+        }
+        return values[ordinal];
+    }
+
+    private static <T> T readNonNull(final CodecInput in, final Class<T> type) {
+        Serializable object = in.readObject();
+        if (!type.isInstance(object)) {
+            throw new IllegalArgumentException("Expected " + type.getSimpleName() + ", got " + object + ".");
+        }
+        return type.cast(object);
+    }
+}
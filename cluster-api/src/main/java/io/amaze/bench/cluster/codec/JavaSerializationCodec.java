@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link Codec} relying on Java serialization only, for clusters mixing members that predate the
+ * {@link BinaryCodec}. It is much slower and produces larger messages.
+ */
+public final class JavaSerializationCodec implements Codec {
+
+    @NotNull
+    @Override
+    public byte[] encode(final Serializable object) {
+        return BinaryCodec.javaSerialize(object);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends Serializable> T decode(@NotNull final byte[] bytes, final int offset, final int length) {
+        requireNonNull(bytes);
+        return (T) BinaryCodec.javaDeserialize(bytes, offset, length); // NOSONAR
+    }
+
+    @Override
+    public String toString() {
+        return "{\"JavaSerializationCodec\":{}}";
+    }
+}
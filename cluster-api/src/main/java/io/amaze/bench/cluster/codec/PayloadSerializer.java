@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+
+/**
+ * Writes objects of a given type for the {@link BinaryCodec}, without reflection.
+ * <p>
+ * Serializers of user payloads are registered by listing their class name in a
+ * {@code META-INF/services/io.amaze.bench.cluster.codec.PayloadSerializer} resource, or given to
+ * {@link BinaryCodec#BinaryCodec(java.util.Collection)}. They must be registered with the same identifier
+ * by all members of the cluster.
+ *
+ * @param <T> Type of the serialized objects, sub-classes are not handled by this serializer.
+ */
+public interface PayloadSerializer<T extends Serializable> {
+
+    /**
+     * @return Identifier written in front of each object, identifiers below {@link BinaryCodec#FIRST_USER_TYPE_ID}
+     * are reserved.
+     */
+    int typeId();
+
+    @NotNull
+    Class<T> type();
+
+    void write(@NotNull T object, @NotNull CodecOutput out);
+
+    /**
+     * @throws IllegalArgumentException if the input is corrupted.
+     */
+    @NotNull
+    T read(@NotNull CodecInput in);
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * A list that can only grow, written by a single thread at a time, from which immutable views can be taken
+ * in constant time.
+ * <p>
+ * Elements are stored in chunks of doubling sizes that are never moved nor copied: a view is the chunks plus
+ * the size at the time it was taken, elements it covers never change afterwards.<br>
+ * Views must be safely published to other threads, by a volatile write for instance.
+ *
+ * @param <E> Type of the elements
+ */
+final class AppendOnlyList<E> {
+
+    private static final int FIRST_CHUNK_SHIFT = 4;
+    private static final int MAX_CHUNKS = 32 - FIRST_CHUNK_SHIFT;
+
+    private final Object[][] chunks = new Object[MAX_CHUNKS][];
+    private int size;
+
+    private static int chunkOf(final int index) {
+        return 31 - Integer.numberOfLeadingZeros((index >>> FIRST_CHUNK_SHIFT) + 1);
+    }
+
+    private static int offsetOf(final int index, final int chunk) {
+        return index - (((1 << chunk) - 1) << FIRST_CHUNK_SHIFT);
+    }
+
+    void add(final E element) {
+        int chunk = chunkOf(size);
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Object[1 << (chunk + FIRST_CHUNK_SHIFT)];
+        }
+        chunks[chunk][offsetOf(size, chunk)] = element;
+        size++;
+    }
+
+    void addAll(final Collection<? extends E> elements) {
+        for (E element : elements) {
+            add(element);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return An immutable view of the elements added so far.
+     */
+    List<E> view() {
+        return new View<>(chunks, size);
+    }
+
+    private static final class View<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+        private final transient Object[][] chunks;
+        private final int size;
+
+        View(final Object[][] chunks, final int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(final int index) {
+            checkElementIndex(index, size);
+            int chunk = chunkOf(index);
+            return (E) chunks[chunk][offsetOf(index, chunk)];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private Object writeReplace() {
+            return new ArrayList<>(this);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes metric values as CSV lines, fields are quoted only when they need to.
+ *
+ * @see MetricsExporters#csv(java.io.OutputStream)
+ */
+final class CsvExporter implements MetricsExporter {
+
+    static final String HEADER = "actor,metric,unit,timestamp,value";
+
+    private final Writer out;
+    private boolean headerWritten;
+
+    CsvExporter(final Writer out) {
+        this.out = out;
+    }
+
+    private static String escape(final String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    @Override
+    public void exportValue(final ActorKey actor, final Metric metric, final MetricValue value) throws IOException {
+        writeHeader();
+        out.write(escape(actor.getName()));
+        out.write(',');
+        out.write(escape(metric.getKey()));
+        out.write(',');
+        out.write(escape(metric.getUnit()));
+        out.write(',');
+        if (value instanceof MetricTimedValue) {
+            out.write(Long.toString(((MetricTimedValue) value).getTimestamp()));
+        }
+        out.write(',');
+        out.write(value.getValue().toString());
+        out.write('\n');
+    }
+
+    @Override
+    public void exportHistogram(final ActorKey actor,
+                                final Metric metric,
+                                final long startMillis,
+                                final long endMillis,
+                                final MetricHistogram histogram) {
+        // Histograms do not fit in the values table
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeHeader();
+        out.close();
+    }
+
+    private void writeHeader() throws IOException {
+        if (!headerWritten) {
+            out.write(HEADER);
+            out.write('\n');
+            headerWritten = true;
+        }
+    }
+}
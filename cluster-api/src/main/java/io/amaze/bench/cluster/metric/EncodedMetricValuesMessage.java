@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.api.ActorKey;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Wire form of a {@link MetricValuesMessage}: the producing actor and its values in a compact columnar encoding.
+ * <p>
+ * This is what actors send to the metrics topic, it is decoded by the {@link MetricsRepository} upon reception.
+ *
+ * @see MetricValuesCodec
+ */
+public final class EncodedMetricValuesMessage implements Serializable {
+
+    private final ActorKey fromActor;
+    private final byte[] payload;
+
+    EncodedMetricValuesMessage(@NotNull final ActorKey fromActor, @NotNull final byte[] payload) {
+        this.fromActor = requireNonNull(fromActor);
+        this.payload = requireNonNull(payload);
+    }
+
+    /**
+     * @param message Metric values to encode.
+     * @return The self-contained encoded form of the given message, carrying the definitions of its metrics.
+     */
+    @NotNull
+    public static EncodedMetricValuesMessage encode(@NotNull final MetricValuesMessage message) {
+        requireNonNull(message);
+        byte[] payload = MetricValuesCodec.encode(message.metrics(), message.histograms(), message.reservoirs());
+        return new EncodedMetricValuesMessage(message.fromActor(), payload);
+    }
+
+    /**
+     * Encodes the given message using the dictionary of its sender: only the definitions of metrics that are new
+     * or changed are sent along, others are referred to by their identifier.<br>
+     * Messages must be sent in the order they were encoded, and the dictionary reset if one could not be sent.
+     * A receiver that misses some of them skips the metrics it does not know, until all the definitions are sent again.
+     *
+     * @param message    Metric values to encode.
+     * @param dictionary Dictionary of the sending actor, callers must serialize its use.
+     * @return The encoded form of the given message.
+     */
+    @NotNull
+    public static EncodedMetricValuesMessage encode(@NotNull final MetricValuesMessage message,
+                                                    @NotNull final MetricDictionary dictionary) {
+        requireNonNull(message);
+        requireNonNull(dictionary);
+        byte[] payload = MetricValuesCodec.encode(message.metrics(),
+                                                  message.histograms(),
+                                                  message.reservoirs(),
+                                                  dictionary);
+        return new EncodedMetricValuesMessage(message.fromActor(), payload);
+    }
+
+    /**
+     * @return A new {@link MetricValuesMessage} decoded from this instance.
+     * @throws IllegalArgumentException if the payload is corrupted or was not encoded as self-contained.
+     */
+    @NotNull
+    public MetricValuesMessage decode() {
+        return MetricValuesCodec.decode(fromActor, payload);
+    }
+
+    /**
+     * @param dictionary Dictionary of the sending actor, fed with the definitions carried by this instance.
+     * @return A new {@link MetricValuesMessage} decoded from this instance, without the metrics that are still
+     * unknown to the dictionary.
+     * @throws IllegalArgumentException if the payload is corrupted.
+     */
+    @NotNull
+    public MetricValuesMessage decode(@NotNull final MetricDictionary dictionary) {
+        requireNonNull(dictionary);
+        return MetricValuesCodec.decode(fromActor, payload, dictionary);
+    }
+
+    /**
+     * @return The actor key that produced the metric values.
+     */
+    @NotNull
+    public ActorKey fromActor() {
+        return fromActor;
+    }
+
+    /**
+     * @return Size of the encoded payload in bytes.
+     */
+    public int size() {
+        return payload.length;
+    }
+
+    /**
+     * @return The internal payload, it must not be modified.
+     */
+    byte[] payload() {
+        return payload;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fromActor, Arrays.hashCode(payload));
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        EncodedMetricValuesMessage that = (EncodedMetricValuesMessage) o;
+        return Objects.equals(fromActor, that.fromActor) && Arrays.equals(payload, that.payload);
+    }
+
+    @Override
+    public String toString() {
+        return "{\"encodedMetricValues\":{" + //
+                "\"fromActor\":" + fromActor + ", " + //
+                "\"size\":" + payload.length + "}}";
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.cluster.codec.CodecInput;
+import io.amaze.bench.cluster.codec.CodecOutput;
+import io.amaze.bench.cluster.codec.PayloadSerializer;
+
+import javax.validation.constraints.NotNull;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Built-in {@link PayloadSerializer} of {@link EncodedMetricValuesMessage}: the encoded payload is written as is,
+ * so that metric values are not serialized twice on their way to the leader.
+ */
+public final class EncodedMetricValuesSerializer implements PayloadSerializer<EncodedMetricValuesMessage> {
+
+    private final int typeId;
+
+    public EncodedMetricValuesSerializer(final int typeId) {
+        this.typeId = typeId;
+    }
+
+    @Override
+    public int typeId() {
+        return typeId;
+    }
+
+    @NotNull
+    @Override
+    public Class<EncodedMetricValuesMessage> type() {
+        return EncodedMetricValuesMessage.class;
+    }
+
+    @Override
+    public void write(@NotNull final EncodedMetricValuesMessage object, @NotNull final CodecOutput out) {
+        requireNonNull(object);
+        requireNonNull(out);
+        out.writeString(object.fromActor().getName());
+        out.writeBytes(object.payload());
+    }
+
+    @NotNull
+    @Override
+    public EncodedMetricValuesMessage read(@NotNull final CodecInput in) {
+        requireNonNull(in);
+        return new EncodedMetricValuesMessage(new ActorKey(in.readString()), in.readBytes());
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * Writes histograms in the HdrHistogram interval log format, version 1.3.
+ * <p>
+ * Each histogram is a line tagged with its actor and metric, holding its interval and its counts in the
+ * compressed V2 encoding of HdrHistogram, encoded in Base64. Timestamps are absolute (base time of 0),
+ * maximum values are in the unit of the metric divided by {@link #MAX_VALUE_UNIT_RATIO}, as by default
+ * in HdrHistogram.
+ *
+ * @see MetricsExporters#hdrHistogramLog(java.io.OutputStream)
+ */
+final class HdrHistogramLogExporter implements MetricsExporter {
+
+    static final double MAX_VALUE_UNIT_RATIO = 1_000_000.0;
+
+    private static final int ENCODING_COOKIE = 0x1c849303 | 0x10;
+    private static final int COMPRESSED_ENCODING_COOKIE = 0x1c849304 | 0x10;
+    private static final int ENCODING_HEADER_SIZE = 40;
+    private static final int MAX_ZIG_ZAG_BYTES = 9;
+
+    private final Writer out;
+    private final long startMillis;
+    private boolean headerWritten;
+
+    HdrHistogramLogExporter(final Writer out, final long startMillis) {
+        this.out = out;
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * @return The histogram in the uncompressed V2 encoding of HdrHistogram, with a lowest discernible value of 1.
+     */
+    static byte[] encode(final MetricHistogram histogram) {
+        long[] counts = histogram.countsView();
+        int length = counts.length;
+        while (length > 0 && counts[length - 1] == 0) {
+            length--;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODING_HEADER_SIZE + length * MAX_ZIG_ZAG_BYTES);
+        buffer.putInt(ENCODING_COOKIE);
+        buffer.putInt(0);
+        buffer.putInt(0);
+        buffer.putInt(histogram.layout().getSignificantDigits());
+        buffer.putLong(1);
+        buffer.putLong(histogram.layout().getHighestTrackableValue());
+        buffer.putDouble(1.0);
+        int payloadStart = buffer.position();
+        int index = 0;
+        while (index < length) {
+            long count = counts[index++];
+            if (count == 0) {
+                int zeros = 1;
+                while (index < length && counts[index] == 0) {
+                    zeros++;
+                    index++;
+                }
+                putZigZag(buffer, zeros > 1 ? -zeros : 0);
+            } else {
+                putZigZag(buffer, count);
+            }
+        }
+        buffer.putInt(Integer.BYTES, buffer.position() - payloadStart);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * @return The histogram in the compressed V2 encoding of HdrHistogram.
+     */
+    static byte[] encodeCompressed(final MetricHistogram histogram) {
+        byte[] uncompressed = encode(histogram);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(uncompressed);
+            deflater.finish();
+            ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES + uncompressed.length + 64);
+            buffer.putInt(COMPRESSED_ENCODING_COOKIE);
+            buffer.putInt(0);
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (buffer.remaining() == 0) {
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+                int written = deflater.deflate(buffer.array(), buffer.position(), buffer.remaining());
+                buffer.position(buffer.position() + written);
+                compressedLength += written;
+            }
+            buffer.putInt(Integer.BYTES, compressedLength);
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * ZigZag encoded LEB128 on up to 9 bytes, the last one holding 8 bits, as in HdrHistogram.
+     */
+    private static void putZigZag(final ByteBuffer buffer, final long value) {
+        long encoded = (value << 1) ^ (value >> 63);
+        for (int i = 0; i < MAX_ZIG_ZAG_BYTES - 1; i++) {
+            if ((encoded & ~0x7FL) == 0) {
+                buffer.put((byte) encoded);
+                return;
+            }
+            buffer.put((byte) ((encoded & 0x7F) | 0x80));
+            encoded >>>= 7;
+        }
+        buffer.put((byte) encoded);
+    }
+
+    private static String tagOf(final ActorKey actor, final Metric metric) {
+        return (actor.getName() + "/" + metric.getKey()).replaceAll("[,\\s]", "_");
+    }
+
+    @Override
+    public void exportValue(final ActorKey actor, final Metric metric, final MetricValue value) {
+        // Only histograms are exported
+    }
+
+    @Override
+    public void exportHistogram(final ActorKey actor,
+                                final Metric metric,
+                                final long startMillis,
+                                final long endMillis,
+                                final MetricHistogram histogram) throws IOException {
+        writeHeader();
+        String encoded = Base64.getEncoder().encodeToString(encodeCompressed(histogram));
+        out.write(String.format(Locale.US,
+                                "Tag=%s,%.3f,%.3f,%.3f,%s\n",
+                                tagOf(actor, metric),
+                                startMillis / 1000.0,
+                                (endMillis - startMillis) / 1000.0,
+                                histogram.max() / MAX_VALUE_UNIT_RATIO,
+                                encoded));
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeHeader();
+        out.close();
+    }
+
+    private void writeHeader() throws IOException {
+        if (headerWritten) {
+            return;
+        }
+        out.write("#[Histogram log format version 1.3]\n");
+        out.write(String.format(Locale.US,
+                                "#[StartTime: %.3f (seconds since epoch), %s]\n",
+                                startMillis / 1000.0,
+                                new Date(startMillis)));
+        out.write("#[BaseTime: 0.000 (seconds since epoch)]\n");
+        out.write("\"StartTimestamp\",\"Interval_Length\",\"Interval_Max\",\"Interval_Compressed_Histogram\"\n");
+        headerWritten = true;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Log-linear bucket layout of a histogram, compatible with the HdrHistogram layout
+ * (lowest discernible value of 1, no normalizing offset).
+ * <p>
+ * Values are split in buckets covering successive powers of 2, each bucket being divided in linear sub-buckets.
+ * The number of sub-buckets is derived from the requested number of significant decimal digits:
+ * the relative error of any recorded value is bounded by 10^-significantDigits.
+ */
+public final class HistogramLayout implements Serializable {
+
+    public static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+    public static final int MAX_SIGNIFICANT_DIGITS = 5;
+    public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = Long.MAX_VALUE;
+
+    private final int significantDigits;
+    private final long highestTrackableValue;
+
+    private final transient int subBucketHalfCountMagnitude;
+    private final transient int subBucketHalfCount;
+    private final transient long subBucketMask;
+    private final transient int leadingZeroCountBase;
+    private final transient int countsLength;
+
+    public HistogramLayout(final int significantDigits, final long highestTrackableValue) {
+        checkArgument(significantDigits >= 0 && significantDigits <= MAX_SIGNIFICANT_DIGITS,
+                      "Significant digits must be between 0 and " + MAX_SIGNIFICANT_DIGITS);
+        checkArgument(highestTrackableValue >= 2, "Highest trackable value must be >= 2");
+
+        this.significantDigits = significantDigits;
+        this.highestTrackableValue = highestTrackableValue;
+
+        long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+        int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+        subBucketHalfCountMagnitude = Math.max(subBucketCountMagnitude, 1) - 1;
+        int subBucketCount = 1 << (subBucketHalfCountMagnitude + 1);
+        subBucketHalfCount = subBucketCount / 2;
+        subBucketMask = subBucketCount - 1L;
+        leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+        countsLength = (bucketsNeededToCover(highestTrackableValue, subBucketCount) + 1) * subBucketHalfCount;
+    }
+
+    public static HistogramLayout defaultLayout() {
+        return new HistogramLayout(DEFAULT_SIGNIFICANT_DIGITS, DEFAULT_HIGHEST_TRACKABLE_VALUE);
+    }
+
+    private static int bucketsNeededToCover(final long value, final int subBucketCount) {
+        long smallestUntrackableValue = subBucketCount;
+        int bucketsNeeded = 1;
+        while (smallestUntrackableValue <= value) {
+            if (smallestUntrackableValue > Long.MAX_VALUE / 2) {
+                return bucketsNeeded + 1;
+            }
+            smallestUntrackableValue <<= 1;
+            bucketsNeeded++;
+        }
+        return bucketsNeeded;
+    }
+
+    public int getSignificantDigits() {
+        return significantDigits;
+    }
+
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    /**
+     * @return The length of the counts array of a histogram using this layout.
+     */
+    public int countsLength() {
+        return countsLength;
+    }
+
+    /**
+     * @param value A positive value, values higher than the highest trackable value are clamped to it.
+     * @return Index of the bucket counting the given value.
+     */
+    public int indexOf(final long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Histogram values cannot be negative: " + value);
+        }
+        long clamped = Math.min(value, highestTrackableValue);
+        int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(clamped | subBucketMask);
+        int subBucketIndex = (int) (clamped >>> bucketIndex);
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+    }
+
+    /**
+     * @return The lowest value counted by the bucket at the given index.
+     */
+    public long lowestValueAt(final int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        return (long) subBucketIndex << bucketIndex;
+    }
+
+    /**
+     * @return The highest value counted by the bucket at the given index.
+     */
+    public long highestValueAt(final int index) {
+        return lowestValueAt(index) + rangeSizeAt(index) - 1;
+    }
+
+    /**
+     * @return The value in the middle of the range counted by the bucket at the given index.
+     */
+    public long medianValueAt(final int index) {
+        return lowestValueAt(index) + (rangeSizeAt(index) >> 1);
+    }
+
+    private long rangeSizeAt(final int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        return 1L << Math.max(bucketIndex, 0);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(significantDigits, highestTrackableValue);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        HistogramLayout that = (HistogramLayout) o;
+        return significantDigits == that.significantDigits && highestTrackableValue == that.highestTrackableValue;
+    }
+
+    @Override
+    public String toString() {
+        return "{\"significantDigits\":" + significantDigits + ", " + //
+                "\"highestTrackableValue\":" + highestTrackableValue + "}";
+    }
+
+    private Object readResolve() {
+        return new HistogramLayout(significantDigits, highestTrackableValue);
+    }
+}
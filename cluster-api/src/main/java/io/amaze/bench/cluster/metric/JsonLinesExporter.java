@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes metric values and histograms as JSON objects, one per line.
+ * Values that are not finite are written as {@code null}.
+ *
+ * @see MetricsExporters#jsonLines(java.io.OutputStream)
+ */
+final class JsonLinesExporter implements MetricsExporter {
+
+    private final Writer out;
+
+    JsonLinesExporter(final Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void exportValue(final ActorKey actor, final Metric metric, final MetricValue value) throws IOException {
+        writeMetric(actor, metric);
+        if (value instanceof MetricTimedValue) {
+            out.write(", \"timestamp\":");
+            out.write(Long.toString(((MetricTimedValue) value).getTimestamp()));
+        }
+        out.write(", \"value\":");
+        double asDouble = value.getValue().doubleValue();
+        out.write(Double.isNaN(asDouble) || Double.isInfinite(asDouble) ? "null" : value.getValue().toString());
+        out.write("}\n");
+    }
+
+    @Override
+    public void exportHistogram(final ActorKey actor,
+                                final Metric metric,
+                                final long startMillis,
+                                final long endMillis,
+                                final MetricHistogram histogram) throws IOException {
+        writeMetric(actor, metric);
+        out.write(", \"start\":");
+        out.write(Long.toString(startMillis));
+        out.write(", \"end\":");
+        out.write(Long.toString(endMillis));
+        out.write(", \"histogram\":");
+        out.write(histogram.toString());
+        out.write("}\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeMetric(final ActorKey actor, final Metric metric) throws IOException {
+        out.write("{\"actor\":");
+        writeString(actor.getName());
+        out.write(", \"metric\":");
+        writeString(metric.getKey());
+        out.write(", \"unit\":");
+        writeString(metric.getUnit());
+    }
+
+    private void writeString(final String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.api.metric.Metric;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compact integer identifiers of the {@link Metric}s exchanged between an actor and the metrics repository.
+ * <p>
+ * On the sending side, a metric is given an identifier the first time it is encoded, along with its definition.
+ * Later messages only carry the identifier, until the definition of the metric changes (same key, other unit,
+ * label or bounds): it is then sent again for the same identifier.<br>
+ * Every {@link #DEFINITIONS_INTERVAL} messages, all the known definitions are sent again.
+ * Each message also carries the epoch of the dictionary, which changes when it is reset, and its sequence number.
+ * <p>
+ * On the receiving side, the dictionary of an actor resolves identifiers back to their definitions.
+ * Messages encoded with a dictionary are meant to be decoded in the order they were encoded, however the receiver
+ * copes with lost messages, a reset sender or a late start: the values of metrics it does not know yet are skipped,
+ * until their definition is sent again.
+ * <p>
+ * Instances are not thread safe: callers must serialize encoding and decoding per dictionary.
+ *
+ * @see MetricValuesCodec
+ */
+public final class MetricDictionary {
+
+    /**
+     * Number of messages after which all the known definitions are sent again.
+     */
+    static final int DEFINITIONS_INTERVAL = 16;
+
+    /**
+     * Bound of the identifiers a receiver accepts, to fail on corrupted payloads.
+     */
+    static final int MAX_ID = 1 << 16;
+
+    private final Map<Metric, Integer> ids = new HashMap<>();
+    private final List<Metric> definitions = new ArrayList<>();
+    private long epoch = ThreadLocalRandom.current().nextLong();
+    private long sequence;
+    private long missedMessages;
+
+    /**
+     * Sending side: forgets all identifiers, to be called when an encoded message could not be sent.
+     * Identifiers are then assigned again from scratch in a new epoch, and their definitions sent again on next use.
+     */
+    public void reset() {
+        ids.clear();
+        definitions.clear();
+        epoch = ThreadLocalRandom.current().nextLong();
+        sequence = 0;
+    }
+
+    /**
+     * Sending side: starts encoding a new message.
+     *
+     * @return The sequence number of the message.
+     */
+    long nextSequence() {
+        return sequence++;
+    }
+
+    /**
+     * @return true if the message of the given sequence number must carry all the known definitions.
+     */
+    static boolean definitionsDue(final long sequence) {
+        return sequence % DEFINITIONS_INTERVAL == 0;
+    }
+
+    /**
+     * Sending side: finds or assigns the identifier of the given metric.
+     *
+     * @return The identifier, negated minus one when the definition must be sent with it.
+     */
+    int encode(final Metric metric) {
+        Integer id = ids.get(metric);
+        if (id == null) {
+            id = definitions.size();
+            ids.put(metric, id);
+            definitions.add(metric);
+            return -id - 1;
+        }
+        if (!sameDefinition(definitions.get(id), metric)) {
+            definitions.set(id, metric);
+            return -id - 1;
+        }
+        return id;
+    }
+
+    /**
+     * Receiving side: accounts for a message of the given epoch and sequence number.
+     * Definitions of a previous epoch are forgotten, a gap in the sequence numbers is counted as missed messages.
+     */
+    void received(final long epoch, final long sequence) {
+        if (epoch != this.epoch) {
+            definitions.clear();
+            this.epoch = epoch;
+        } else if (sequence > this.sequence) {
+            missedMessages += sequence - this.sequence;
+        }
+        this.sequence = sequence + 1;
+    }
+
+    /**
+     * Receiving side: registers the definition sent for the given identifier.
+     * Identifiers skipped by lost messages stay unknown until they are defined.
+     */
+    void define(final int id, final Metric metric) {
+        if (id < 0 || id >= MAX_ID) {
+            throw new IllegalArgumentException("Invalid metric id " + id);
+        }
+        while (id >= definitions.size()) {
+            definitions.add(null);
+        }
+        definitions.set(id, metric);
+    }
+
+    /**
+     * Receiving side: tells whether the given identifier was defined by a previous message.
+     */
+    boolean isDefined(final int id) {
+        return id >= 0 && id < definitions.size() && definitions.get(id) != null;
+    }
+
+    /**
+     * Receiving side: resolves an identifier that was defined by a previous message.
+     */
+    Metric resolve(final int id) {
+        if (!isDefined(id)) {
+            throw new IllegalArgumentException("Unknown metric id " + id);
+        }
+        return definitions.get(id);
+    }
+
+    /**
+     * @return The definitions indexed by their identifier.
+     */
+    List<Metric> definitions() {
+        return Collections.unmodifiableList(definitions);
+    }
+
+    long epoch() {
+        return epoch;
+    }
+
+    long missedMessages() {
+        return missedMessages;
+    }
+
+    int size() {
+        return definitions.size();
+    }
+
+    private static boolean sameDefinition(final Metric first, final Metric second) {
+        return first.getKey().equals(second.getKey()) && //
+                first.getUnit().equals(second.getUnit()) && //
+                first.getLabel().equals(second.getLabel()) && //
+                first.getMinValue().equals(second.getMinValue()) && //
+                first.getMaxValue().equals(second.getMaxValue());
+    }
+
+    @Override
+    public String toString() {
+        return "{\"metricDictionary\":{" + //
+                "\"size\":" + definitions.size() + ", " + //
+                "\"sequence\":" + sequence + ", " + //
+                "\"missedMessages\":" + missedMessages + "}}";
+    }
+}
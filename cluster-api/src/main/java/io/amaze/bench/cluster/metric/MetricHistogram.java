@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.cluster.codec.BinaryInput;
+import io.amaze.bench.cluster.codec.BinaryOutput;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable bucket counts of a histogram metric, as produced by an actor over a period of time.
+ * <p>
+ * Histograms are mergeable: counts of histograms sharing the same {@link HistogramLayout} are added bucket
+ * by bucket, which allows percentiles to be computed across periods and actors without any raw value.
+ * Returned statistics have the precision of the layout, as values are only known by their bucket.
+ */
+public final class MetricHistogram implements Serializable {
+
+    private final HistogramLayout layout;
+    private transient long[] counts;
+    private transient long totalCount;
+
+    /**
+     * @param layout Layout of the buckets.
+     * @param counts Count of values for each bucket, its length must match the layout's.
+     */
+    public MetricHistogram(@NotNull final HistogramLayout layout, @NotNull final long[] counts) {
+        this.layout = requireNonNull(layout);
+        requireNonNull(counts);
+        checkArgument(counts.length == layout.countsLength(),
+                      "Expected %s counts, got %s.", layout.countsLength(), counts.length);
+
+        this.counts = counts.clone();
+        this.totalCount = sumOf(this.counts);
+    }
+
+    /**
+     * Creates a histogram holding the given values, mainly intended for tests.
+     *
+     * @param layout Layout of the buckets.
+     * @param values Positive values to record.
+     * @return A new histogram containing the given values.
+     */
+    @NotNull
+    public static MetricHistogram of(@NotNull final HistogramLayout layout, @NotNull final long... values) {
+        requireNonNull(layout);
+        requireNonNull(values);
+
+        long[] counts = new long[layout.countsLength()];
+        for (long value : values) {
+            counts[layout.indexOf(value)]++;
+        }
+        return new MetricHistogram(layout, counts);
+    }
+
+    private static long sumOf(final long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            checkArgument(count >= 0, "Counts cannot be negative.");
+            total += count;
+        }
+        return total;
+    }
+
+    @NotNull
+    public HistogramLayout layout() {
+        return layout;
+    }
+
+    /**
+     * @return The number of values recorded in this histogram.
+     */
+    public long totalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @param value A positive value.
+     * @return The number of recorded values that are equivalent to the given one at the layout's precision.
+     */
+    public long countAtValue(final long value) {
+        return counts[layout.indexOf(value)];
+    }
+
+    /**
+     * @return The lowest recorded value, or 0 if the histogram is empty.
+     */
+    public long min() {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                return layout.lowestValueAt(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return The highest recorded value, or 0 if the histogram is empty.
+     */
+    public long max() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] != 0) {
+                return layout.highestValueAt(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return The mean of the recorded values, or 0 if the histogram is empty.
+     */
+    public double mean() {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                total += (double) layout.medianValueAt(i) * counts[i];
+            }
+        }
+        return total / totalCount;
+    }
+
+    /**
+     * @param percentile A percentile between 0 and 100.
+     * @return The value below which the given percentage of the recorded values fall,
+     * or 0 if the histogram is empty.
+     */
+    public long valueAtPercentile(final double percentile) {
+        checkArgument(percentile >= 0 && percentile <= 100, "Percentile must be between 0 and 100: %s", percentile);
+
+        long countAtPercentile = Math.max(1, (long) ((percentile / 100.0) * totalCount + 0.5));
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i];
+            if (total >= countAtPercentile) {
+                return percentile == 0 ? layout.lowestValueAt(i) : layout.highestValueAt(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Merges the counts of the given histogram with the current ones and returns a new object.
+     * The state of the current instance is NOT changed.<br>
+     * If layouts differ, the other histogram's buckets are re-recorded in the current layout.
+     *
+     * @param other Histogram to be added to the current one.
+     * @return A new histogram with the current layout.
+     */
+    @NotNull
+    public MetricHistogram mergeWith(@NotNull final MetricHistogram other) {
+        requireNonNull(other);
+
+        long[] merged = counts.clone();
+        if (layout.equals(other.layout)) {
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] += other.counts[i];
+            }
+        } else {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    merged[layout.indexOf(other.layout.lowestValueAt(i))] += other.counts[i];
+                }
+            }
+        }
+        return new MetricHistogram(layout, merged);
+    }
+
+    /**
+     * @return The internal counts, they must not be modified.
+     */
+    long[] countsView() {
+        return counts;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(layout, Arrays.hashCode(counts));
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MetricHistogram that = (MetricHistogram) o;
+        return Objects.equals(layout, that.layout) && Arrays.equals(counts, that.counts);
+    }
+
+    @Override
+    public String toString() {
+        return "{\"layout\":" + layout + ", " + //
+                "\"totalCount\":" + totalCount + ", " + //
+                "\"min\":" + min() + ", " + //
+                "\"mean\":" + mean() + ", " + //
+                "\"p50\":" + valueAtPercentile(50) + ", " + //
+                "\"p99\":" + valueAtPercentile(99) + ", " + //
+                "\"max\":" + max() + "}";
+    }
+
+    /**
+     * Only the non-empty buckets are serialized, using the same compact form as on the wire.
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        BinaryOutput compact = new BinaryOutput(64);
+        MetricValuesCodec.writeCounts(compact, counts);
+        byte[] bytes = compact.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        counts = MetricValuesCodec.readCounts(new BinaryInput(bytes), layout.countsLength());
+        totalCount = sumOf(counts);
+    }
+}
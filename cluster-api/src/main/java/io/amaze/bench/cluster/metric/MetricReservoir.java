@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable uniform random sample of the values produced for a metric, along with exact statistics
+ * of all the values: count, min, max, mean and the sum of squared deviations from the mean (for the variance).
+ * <p>
+ * Reservoirs are mergeable: statistics are combined exactly, and the merged sample is drawn from both samples
+ * in proportion to the number of values each of them represents, so that it stays a uniform sample
+ * of all the values.
+ */
+public final class MetricReservoir implements Serializable {
+
+    private final int capacity;
+    private final long count;
+    private final double min;
+    private final double max;
+    private final double mean;
+    private final double squaredDeviations;
+    private final List<MetricValue> samples; // NOSONAR: Serializable
+
+    /**
+     * @param capacity          Maximum number of samples.
+     * @param count             Number of values represented by this reservoir.
+     * @param min               Lowest value, ignored if count is 0.
+     * @param max               Highest value, ignored if count is 0.
+     * @param mean              Mean of the values, ignored if count is 0.
+     * @param squaredDeviations Sum of the squared deviations of the values from their mean.
+     * @param samples           Uniform sample of the values, at most capacity and count of them.
+     */
+    public MetricReservoir(final int capacity,
+                           final long count,
+                           final double min,
+                           final double max,
+                           final double mean,
+                           final double squaredDeviations,
+                           @NotNull final List<MetricValue> samples) {
+        requireNonNull(samples);
+        checkArgument(capacity > 0, "Capacity must be > 0, got %s.", capacity);
+        checkArgument(count >= 0, "Count cannot be negative, got %s.", count);
+        checkArgument(samples.size() <= capacity && samples.size() <= count,
+                      "Got %s samples for a capacity of %s and a count of %s.", samples.size(), capacity, count);
+
+        this.capacity = capacity;
+        this.count = count;
+        this.min = count == 0 ? 0 : min;
+        this.max = count == 0 ? 0 : max;
+        this.mean = count == 0 ? 0 : mean;
+        this.squaredDeviations = count == 0 ? 0 : squaredDeviations;
+        this.samples = new ArrayList<>(samples);
+    }
+
+    /**
+     * @param capacity Maximum number of samples.
+     * @return A reservoir that does not represent any value.
+     */
+    @NotNull
+    public static MetricReservoir empty(final int capacity) {
+        return new MetricReservoir(capacity, 0, 0, 0, 0, 0, Collections.emptyList());
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The exact number of values represented by this reservoir, sampled or not.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return The exact lowest value, or 0 if the reservoir is empty.
+     */
+    public double min() {
+        return min;
+    }
+
+    /**
+     * @return The exact highest value, or 0 if the reservoir is empty.
+     */
+    public double max() {
+        return max;
+    }
+
+    /**
+     * @return The exact mean of the values, or 0 if the reservoir is empty.
+     */
+    public double mean() {
+        return mean;
+    }
+
+    /**
+     * @return The exact population variance of the values, or 0 if the reservoir is empty.
+     */
+    public double variance() {
+        return count == 0 ? 0 : squaredDeviations / count;
+    }
+
+    /**
+     * @return The sum of the squared deviations of the values from their mean.
+     */
+    public double squaredDeviations() {
+        return squaredDeviations;
+    }
+
+    /**
+     * @return A copy of the sampled values.
+     */
+    @NotNull
+    public List<MetricValue> samples() {
+        return new ArrayList<>(samples);
+    }
+
+    /**
+     * Merges the given reservoir with the current one and returns a new object, keeping the current capacity.
+     * The state of the current instance is NOT changed.
+     *
+     * @param other Reservoir to be added to the current one.
+     * @return A new reservoir representing the values of both.
+     */
+    @NotNull
+    public MetricReservoir mergeWith(@NotNull final MetricReservoir other) {
+        requireNonNull(other);
+        return mergeWith(other, ThreadLocalRandom.current());
+    }
+
+    MetricReservoir mergeWith(final MetricReservoir other, final Random random) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            return new MetricReservoir(capacity, other.count, other.min, other.max, other.mean,
+                                       other.squaredDeviations, truncated(other.samples, random));
+        }
+
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        double mergedMean = mean + delta * other.count / total;
+        double mergedDeviations = squaredDeviations + other.squaredDeviations + //
+                delta * delta * ((double) count * other.count / total);
+
+        return new MetricReservoir(capacity,
+                                   total,
+                                   Math.min(min, other.min),
+                                   Math.max(max, other.max),
+                                   mergedMean,
+                                   mergedDeviations,
+                                   mergedSamples(other, random));
+    }
+
+    /**
+     * The number of samples taken from each side is drawn as it would be in a uniform sample of all the values
+     * (hypergeometric distribution), then bounded by the samples available on each side.
+     * Samples are then picked at random on each side.
+     */
+    private List<MetricValue> mergedSamples(final MetricReservoir other, final Random random) {
+        int target = Math.min(capacity, samples.size() + other.samples.size());
+        long myRemaining = count;
+        long theirRemaining = other.count;
+        int fromMine = 0;
+        for (int i = 0; i < target; i++) {
+            if (random.nextDouble() * (myRemaining + theirRemaining) < myRemaining) {
+                fromMine++;
+                myRemaining--;
+            } else {
+                theirRemaining--;
+            }
+        }
+        fromMine = Math.max(target - other.samples.size(), Math.min(fromMine, samples.size()));
+
+        List<MetricValue> merged = new ArrayList<>(target);
+        merged.addAll(shuffled(samples, random).subList(0, fromMine));
+        merged.addAll(shuffled(other.samples, random).subList(0, target - fromMine));
+        return merged;
+    }
+
+    private List<MetricValue> truncated(final List<MetricValue> values, final Random random) {
+        if (values.size() <= capacity) {
+            return values;
+        }
+        return shuffled(values, random).subList(0, capacity);
+    }
+
+    private static List<MetricValue> shuffled(final List<MetricValue> values, final Random random) {
+        List<MetricValue> copy = new ArrayList<>(values);
+        Collections.shuffle(copy, random);
+        return copy;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(capacity, count, min, max, mean, squaredDeviations, samples);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MetricReservoir that = (MetricReservoir) o;
+        return capacity == that.capacity && //
+                count == that.count && //
+                Double.compare(that.min, min) == 0 && //
+                Double.compare(that.max, max) == 0 && //
+                Double.compare(that.mean, mean) == 0 && //
+                Double.compare(that.squaredDeviations, squaredDeviations) == 0 && //
+                Objects.equals(samples, that.samples);
+    }
+
+    @Override
+    public String toString() {
+        return "{\"capacity\":" + capacity + ", " + //
+                "\"count\":" + count + ", " + //
+                "\"min\":" + min + ", " + //
+                "\"max\":" + max + ", " + //
+                "\"mean\":" + mean + ", " + //
+                "\"variance\":" + variance() + ", " + //
+                "\"samples\":" + samples.size() + "}";
+    }
+}
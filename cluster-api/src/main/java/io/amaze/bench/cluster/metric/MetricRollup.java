@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Immutable summary of the values of a metric produced by an actor during a time bucket.
+ * <p>
+ * Besides exact count, sum, min and max, the distribution of the values is kept as a histogram with the
+ * {@link HistogramLayout#defaultLayout() default layout}: values are rounded to the nearest long,
+ * negative values being counted as 0. Only its non-empty buckets are stored.
+ *
+ * @see RetentionPolicy
+ */
+public final class MetricRollup {
+
+    static final HistogramLayout LAYOUT = HistogramLayout.defaultLayout();
+
+    private final RollupResolution resolution;
+    private final long start;
+    private final long count;
+    private final double sum;
+    private final double min;
+    private final double max;
+    private final int[] indexes;
+    private final long[] counts;
+
+    MetricRollup(final RollupResolution resolution,
+                 final long start,
+                 final long count,
+                 final double sum,
+                 final double min,
+                 final double max,
+                 final int[] indexes,
+                 final long[] counts) {
+        this.resolution = resolution;
+        this.start = start;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.indexes = indexes;
+        this.counts = counts;
+    }
+
+    @NotNull
+    public RollupResolution resolution() {
+        return resolution;
+    }
+
+    /**
+     * @return The timestamp in milliseconds at which the bucket starts, it ends {@link RollupResolution#millis()}
+     * later (exclusive).
+     */
+    public long start() {
+        return start;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double sum() {
+        return sum;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    public double mean() {
+        return sum / count;
+    }
+
+    /**
+     * @return A new histogram of the values of the bucket.
+     */
+    @NotNull
+    public MetricHistogram histogram() {
+        long[] dense = new long[LAYOUT.countsLength()];
+        for (int i = 0; i < indexes.length; i++) {
+            dense[indexes[i]] = counts[i];
+        }
+        return new MetricHistogram(LAYOUT, dense);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(resolution, start, count, sum, min, max, Arrays.hashCode(indexes), Arrays.hashCode(counts));
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MetricRollup that = (MetricRollup) o;
+        return resolution == that.resolution && //
+                start == that.start && //
+                count == that.count && //
+                Double.compare(that.sum, sum) == 0 && //
+                Double.compare(that.min, min) == 0 && //
+                Double.compare(that.max, max) == 0 && //
+                Arrays.equals(indexes, that.indexes) && //
+                Arrays.equals(counts, that.counts);
+    }
+
+    @Override
+    public String toString() {
+        return "{\"resolution\":\"" + resolution + "\", " + //
+                "\"start\":" + start + ", " + //
+                "\"count\":" + count + ", " + //
+                "\"sum\":" + sum + ", " + //
+                "\"min\":" + min + ", " + //
+                "\"max\":" + max + "}";
+    }
+}
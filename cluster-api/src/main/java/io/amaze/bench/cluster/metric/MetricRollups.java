@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rollups of a metric of an actor, for each {@link RollupResolution} retained by the {@link RetentionPolicy}.
+ * <p>
+ * Each value updates one bucket per resolution as it arrives. Buckets are indexed by their start, so that
+ * late values still land in the bucket they belong to, and evicted from the oldest once out of retention.
+ * Not thread safe.
+ */
+final class MetricRollups {
+
+    private final RetentionPolicy policy;
+    private final Map<RollupResolution, TreeMap<Long, RollupBucket>> buckets = new EnumMap<>(RollupResolution.class);
+
+    MetricRollups(final RetentionPolicy policy) {
+        this.policy = policy;
+        for (RollupResolution resolution : RollupResolution.values()) {
+            if (policy.rollupRetentionMillis(resolution) > 0) {
+                buckets.put(resolution, new TreeMap<>());
+            }
+        }
+    }
+
+    void record(final long timestamp, final double value) {
+        buckets.forEach((resolution, byStart) -> byStart.computeIfAbsent(resolution.bucketStartOf(timestamp),
+                                                                         RollupBucket::new).record(value));
+    }
+
+    /**
+     * Evicts the buckets that ended before the retention period of their resolution.
+     *
+     * @param newestTimestamp Most recent timestamp received for the metric.
+     */
+    void evict(final long newestTimestamp) {
+        buckets.forEach((resolution, byStart) -> {
+            long cutoff = newestTimestamp - policy.rollupRetentionMillis(resolution);
+            if (cutoff < newestTimestamp) {
+                byStart.headMap(resolution.bucketStartOf(cutoff)).clear();
+            }
+        });
+    }
+
+    /**
+     * @return The retained rollups of the given resolution, ordered by start.
+     */
+    List<MetricRollup> rollups(final RollupResolution resolution) {
+        TreeMap<Long, RollupBucket> byStart = buckets.get(resolution);
+        if (byStart == null) {
+            return Collections.emptyList();
+        }
+        List<MetricRollup> rollups = new ArrayList<>(byStart.size());
+        byStart.values().forEach(bucket -> rollups.add(bucket.toRollup(resolution)));
+        return rollups;
+    }
+}
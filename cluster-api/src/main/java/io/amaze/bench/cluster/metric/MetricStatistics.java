@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import java.util.List;
+
+/**
+ * Exact statistics of the metric values selected by a {@link MetricsQuery}.
+ * <p>
+ * Values are kept as the sorted runs of primitive values produced by each slice of the query,
+ * percentiles are selected across them without any approximation, and without merging them.
+ */
+public final class MetricStatistics {
+
+    private final double[][] sortedRuns;
+    private final long count;
+    private final double sum;
+    private final long spanMillis;
+
+    /**
+     * @param sortedRuns Non-empty sorted runs of values.
+     */
+    MetricStatistics(final List<double[]> sortedRuns, final double sum, final long spanMillis) {
+        this.sortedRuns = sortedRuns.toArray(new double[sortedRuns.size()][]);
+        this.sum = sum;
+        this.spanMillis = spanMillis;
+        long total = 0;
+        for (double[] run : this.sortedRuns) {
+            total += run.length;
+        }
+        this.count = total;
+    }
+
+    /**
+     * @return The number of selected values.
+     */
+    public long count() {
+        return count;
+    }
+
+    public double sum() {
+        return sum;
+    }
+
+    /**
+     * @return The lowest selected value, or 0 if there is none.
+     */
+    public double min() {
+        if (count == 0) {
+            return 0;
+        }
+        double min = sortedRuns[0][0];
+        for (double[] run : sortedRuns) {
+            min = Math.min(min, run[0]);
+        }
+        return min;
+    }
+
+    /**
+     * @return The highest selected value, or 0 if there is none.
+     */
+    public double max() {
+        if (count == 0) {
+            return 0;
+        }
+        double max = sortedRuns[0][sortedRuns[0].length - 1];
+        for (double[] run : sortedRuns) {
+            max = Math.max(max, run[run.length - 1]);
+        }
+        return max;
+    }
+
+    /**
+     * @return The mean of the selected values, or 0 if there is none.
+     */
+    public double mean() {
+        return count > 0 ? sum / count : 0;
+    }
+
+    /**
+     * @return The number of selected values per second over the time window of the query, or between the first and
+     * last timestamps when the window is unbounded. 0 if the span is empty.
+     */
+    public double ratePerSecond() {
+        return spanMillis > 0 ? count * 1000d / spanMillis : 0;
+    }
+
+    /**
+     * @param percentile A percentile between 0 and 100.
+     * @return The value below which the given percentage of the selected values fall, or 0 if there is none.
+     */
+    public double valueAtPercentile(final double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long countAtPercentile = Math.max(1, (long) ((percentile / 100.0) * count + 0.5));
+        return valueAtRank(countAtPercentile - 1);
+    }
+
+    /**
+     * Selects the value of the given rank across the sorted runs: the median of the widest remaining range is used
+     * as pivot, and every range is narrowed to the values either below or above it until the pivot has the rank.
+     */
+    private double valueAtRank(final long rank) {
+        int[] from = new int[sortedRuns.length];
+        int[] to = new int[sortedRuns.length];
+        for (int i = 0; i < sortedRuns.length; i++) {
+            to[i] = sortedRuns[i].length;
+        }
+        long remaining = rank;
+        while (true) {
+            int widest = 0;
+            for (int i = 1; i < sortedRuns.length; i++) {
+                if (to[i] - from[i] > to[widest] - from[widest]) {
+                    widest = i;
+                }
+            }
+            double pivot = sortedRuns[widest][(from[widest] + to[widest]) >>> 1];
+            long below = 0;
+            long belowOrEqual = 0;
+            for (int i = 0; i < sortedRuns.length; i++) {
+                below += lowerBound(sortedRuns[i], from[i], to[i], pivot) - from[i];
+                belowOrEqual += upperBound(sortedRuns[i], from[i], to[i], pivot) - from[i];
+            }
+            if (remaining < below) {
+                for (int i = 0; i < sortedRuns.length; i++) {
+                    to[i] = lowerBound(sortedRuns[i], from[i], to[i], pivot);
+                }
+            } else if (remaining < belowOrEqual) {
+                return pivot;
+            } else {
+                remaining -= belowOrEqual;
+                for (int i = 0; i < sortedRuns.length; i++) {
+                    from[i] = upperBound(sortedRuns[i], from[i], to[i], pivot);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The index of the first value not lower than the given one, within [from, to).
+     */
+    private static int lowerBound(final double[] run, final int from, final int to, final double value) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(run[middle], value) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return The index of the first value greater than the given one, within [from, to).
+     */
+    private static int upperBound(final double[] run, final int from, final int to, final double value) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(run[middle], value) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return "{\"count\":" + count() + ", " + //
+                "\"sum\":" + sum + ", " + //
+                "\"min\":" + min() + ", " + //
+                "\"mean\":" + mean() + ", " + //
+                "\"p50\":" + valueAtPercentile(50) + ", " + //
+                "\"p99\":" + valueAtPercentile(99) + ", " + //
+                "\"max\":" + max() + ", " + //
+                "\"ratePerSecond\":" + ratePerSecond() + "}";
+    }
+}
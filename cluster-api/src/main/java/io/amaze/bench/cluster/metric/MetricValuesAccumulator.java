@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.util.concurrent.SettableFuture;
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Accumulates the chunks of metric values received for an actor, and the futures waiting for them.
+ * <p>
+ * Chunks are appended in place, in a time proportional to their size and to the number of metrics,
+ * whatever the amount of values received before. After each chunk, an immutable {@link MetricValuesMessage}
+ * sharing the accumulated values is published: reading it does not take any lock.
+ * <p>
+ * When the {@link RetentionPolicy} bounds raw values, they are evicted once out of retention,
+ * and each incoming value also updates the rollups of its metric.
+ */
+final class MetricValuesAccumulator {
+
+    private final ActorKey actor;
+    private final RetentionPolicy policy;
+    private final Map<Metric, RetainedValues> metricValues = new HashMap<>();
+    private final Map<Metric, MetricRollups> rollups = new HashMap<>();
+    private final Map<Metric, MetricHistogram> histograms = new HashMap<>();
+    private final Map<Metric, MetricReservoir> reservoirs = new HashMap<>();
+    private final List<SettableFuture<MetricValuesMessage>> expected = new ArrayList<>();
+    private final MetricDictionary dictionary = new MetricDictionary();
+    private volatile MetricValuesMessage snapshot;
+    private volatile long firstArrival;
+    private volatile long lastArrival;
+
+    MetricValuesAccumulator(final ActorKey actor, final RetentionPolicy policy) {
+        this.actor = requireNonNull(actor);
+        this.policy = requireNonNull(policy);
+    }
+
+    /**
+     * Appends the given chunk and completes the futures waiting for values.
+     */
+    void append(final MetricValuesMessage chunk) {
+        List<SettableFuture<MetricValuesMessage>> toComplete;
+        MetricValuesMessage published;
+        long arrival = System.currentTimeMillis();
+        synchronized (this) {
+            if (snapshot == null) {
+                firstArrival = arrival;
+            }
+            lastArrival = arrival;
+            chunk.metrics().forEach((metric, values) -> retain(metric, values, arrival));
+            chunk.histograms().forEach((metric, histogram) -> histograms.merge(metric,
+                                                                               histogram,
+                                                                               MetricHistogram::mergeWith));
+            chunk.reservoirs().forEach((metric, reservoir) -> reservoirs.merge(metric,
+                                                                               reservoir,
+                                                                               MetricReservoir::mergeWith));
+            published = publish();
+            toComplete = expected.isEmpty() ? Collections.emptyList() : new ArrayList<>(expected);
+            expected.clear();
+        }
+        toComplete.forEach(future -> future.set(published));
+    }
+
+    /**
+     * Decodes the given chunk with the metric dictionary of the actor, and appends it.
+     *
+     * @return The decoded chunk.
+     * @throws IllegalArgumentException if the chunk is corrupted.
+     */
+    MetricValuesMessage append(final EncodedMetricValuesMessage chunk) {
+        synchronized (dictionary) {
+            MetricValuesMessage decoded = chunk.decode(dictionary);
+            append(decoded);
+            return decoded;
+        }
+    }
+
+    /**
+     * @return The retained rollups of the given metric and resolution, ordered by start.
+     */
+    synchronized List<MetricRollup> rollupsFor(final Metric metric, final RollupResolution resolution) {
+        MetricRollups metricRollups = rollups.get(metric);
+        return metricRollups != null ? metricRollups.rollups(resolution) : Collections.emptyList();
+    }
+
+    /**
+     * @return A future set with the accumulated values once at least one chunk was received.
+     */
+    Future<MetricValuesMessage> expect() {
+        SettableFuture<MetricValuesMessage> future = SettableFuture.create();
+        synchronized (this) {
+            if (snapshot == null) {
+                expected.add(future);
+                return future;
+            }
+        }
+        future.set(snapshot);
+        return future;
+    }
+
+    /**
+     * @return The values accumulated so far, or {@code null} if no chunk was received yet.
+     */
+    MetricValuesMessage snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return The time the first chunk was received at, in milliseconds.
+     */
+    long firstArrival() {
+        return firstArrival;
+    }
+
+    /**
+     * @return The time the last chunk was received at, in milliseconds.
+     */
+    long lastArrival() {
+        return lastArrival;
+    }
+
+    private void retain(final Metric metric, final List<MetricValue> values, final long arrival) {
+        RetainedValues retained = metricValues.computeIfAbsent(metric,
+                                                               k -> new RetainedValues(policy.rawRetentionMillis()));
+        if (policy.keepsAllRawValues()) {
+            values.forEach(value -> retained.add(value, arrival));
+            return;
+        }
+
+        MetricRollups metricRollups = rollups.computeIfAbsent(metric, k -> new MetricRollups(policy));
+        for (MetricValue value : values) {
+            long timestamp = value instanceof MetricTimedValue ? ((MetricTimedValue) value).getTimestamp() : arrival;
+            retained.add(value, timestamp);
+            metricRollups.record(timestamp, value.getValue().doubleValue());
+        }
+        retained.evict();
+        metricRollups.evict(retained.newestTimestamp());
+    }
+
+    private MetricValuesMessage publish() {
+        Map<Metric, List<MetricValue>> views = new HashMap<>(metricValues.size() * 2);
+        metricValues.forEach((metric, values) -> views.put(metric, values.view()));
+        snapshot = new MetricValuesMessage(actor, views, new HashMap<>(histograms), new HashMap<>(reservoirs));
+        return snapshot;
+    }
+}
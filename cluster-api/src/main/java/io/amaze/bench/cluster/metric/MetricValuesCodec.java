@@ -0,0 +1,650 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.api.metric.MetricBuilder;
+import io.amaze.bench.cluster.codec.BinaryInput;
+import io.amaze.bench.cluster.codec.BinaryOutput;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Columnar encoding of metric values, used to ship {@link MetricValuesMessage} contents over the wire.
+ * <p>
+ * The payload starts with the format version and flags. Metrics are referred to by identifiers from a
+ * {@link MetricDictionary}, followed by their definition the first time they are used or when it changed.
+ * A self-contained payload uses a dictionary of its own, and can be decoded on its own.
+ * Otherwise the flags are followed by the epoch and sequence number of the dictionary, and periodically
+ * by all its definitions so that a receiver that missed some messages can catch up.
+ * <p>
+ * Each metric is written as its identifier followed by its values, column by column:
+ * <ul>
+ * <li>A single value type for the whole column: the common boxed type of the values when they all share it,
+ * {@link Long} if they are all integral, {@link Double} otherwise,</li>
+ * <li>Which values are timed, as a bitmap only if some are and some are not,</li>
+ * <li>Timestamps as zig-zag variable length delta-of-deltas, where runs of zeros are collapsed:
+ * a regular sampling costs a few bytes for the whole column,</li>
+ * <li>Integral values as zig-zag variable length deltas,
+ * floating point values XOR-ed with the previous one, trimmed of their leading and trailing zero bytes.</li>
+ * </ul>
+ * Numbers that are neither primitive wrappers nor atomic integers are transmitted as doubles.
+ * <p>
+ * Histograms follow the values, written as their metric definition, their layout
+ * and their bucket counts up to the last non-empty one, where runs of empty buckets are collapsed.
+ * <p>
+ * Reservoirs come last, as their metric definition, their capacity and count, their statistics as raw doubles
+ * and their samples encoded as a column of values.
+ */
+final class MetricValuesCodec {
+
+    static final int FORMAT_VERSION = 5;
+
+    private static final int SELF_CONTAINED = 1;
+    private static final int HAS_DEFINITIONS = 1 << 1;
+
+    private static final int LONG = 0;
+    private static final int INTEGER = 1;
+    private static final int SHORT = 2;
+    private static final int BYTE = 3;
+    private static final int DOUBLE = 4;
+    private static final int FLOAT = 5;
+
+    private static final int NOT_TIMED = 0;
+    private static final int ALL_TIMED = 1;
+    private static final int PARTLY_TIMED = 2;
+
+    private static final int HAS_LABEL = 1;
+    private static final int HAS_MIN_VALUE = 1 << 1;
+    private static final int HAS_MAX_VALUE = 1 << 2;
+
+    private MetricValuesCodec() {
+        // Should not be instantiated
+    }
+
+    /**
+     * Encodes a self-contained payload, carrying the definitions of all its metrics.
+     */
+    static byte[] encode(@NotNull final Map<Metric, List<MetricValue>> metricValues,
+                         @NotNull final Map<Metric, MetricHistogram> histograms,
+                         @NotNull final Map<Metric, MetricReservoir> reservoirs) {
+        return encode(metricValues, histograms, reservoirs, new MetricDictionary(), SELF_CONTAINED);
+    }
+
+    /**
+     * Encodes a payload only carrying the definitions of the metrics that are new to the given dictionary.
+     */
+    static byte[] encode(@NotNull final Map<Metric, List<MetricValue>> metricValues,
+                         @NotNull final Map<Metric, MetricHistogram> histograms,
+                         @NotNull final Map<Metric, MetricReservoir> reservoirs,
+                         @NotNull final MetricDictionary dictionary) {
+        return encode(metricValues, histograms, reservoirs, requireNonNull(dictionary), 0);
+    }
+
+    private static byte[] encode(final Map<Metric, List<MetricValue>> metricValues,
+                                 final Map<Metric, MetricHistogram> histograms,
+                                 final Map<Metric, MetricReservoir> reservoirs,
+                                 final MetricDictionary dictionary,
+                                 final int flags) {
+        requireNonNull(metricValues);
+        requireNonNull(histograms);
+        requireNonNull(reservoirs);
+
+        BinaryOutput out = new BinaryOutput(64 + estimatedSize(metricValues));
+        out.writeByte(FORMAT_VERSION);
+        if ((flags & SELF_CONTAINED) != 0) {
+            out.writeByte(flags);
+        } else {
+            writeDictionaryHeader(out, dictionary, flags);
+        }
+        out.writeVarInt(metricValues.size());
+        for (Map.Entry<Metric, List<MetricValue>> entry : metricValues.entrySet()) {
+            writeMetric(out, entry.getKey(), dictionary);
+            writeValues(out, entry.getValue());
+        }
+        out.writeVarInt(histograms.size());
+        for (Map.Entry<Metric, MetricHistogram> entry : histograms.entrySet()) {
+            writeMetric(out, entry.getKey(), dictionary);
+            writeHistogram(out, entry.getValue());
+        }
+        out.writeVarInt(reservoirs.size());
+        for (Map.Entry<Metric, MetricReservoir> entry : reservoirs.entrySet()) {
+            writeMetric(out, entry.getKey(), dictionary);
+            writeReservoir(out, entry.getValue());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a self-contained payload.
+     *
+     * @throws IllegalArgumentException if the payload is corrupted or not self-contained.
+     */
+    static MetricValuesMessage decode(@NotNull final ActorKey fromActor, @NotNull final byte[] payload) {
+        return decode(fromActor, payload, null);
+    }
+
+    /**
+     * Decodes a payload, resolving the identifiers of its metrics with the given dictionary
+     * unless it is self-contained. The values of metrics unknown to the dictionary are skipped.
+     *
+     * @throws IllegalArgumentException if the payload is corrupted.
+     */
+    static MetricValuesMessage decode(@NotNull final ActorKey fromActor,
+                                      @NotNull final byte[] payload,
+                                      final MetricDictionary senderDictionary) {
+        requireNonNull(fromActor);
+        requireNonNull(payload);
+
+        BinaryInput in = new BinaryInput(payload);
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported metric values format version " + version);
+        }
+        MetricDictionary dictionary;
+        int flags = in.readByte();
+        if ((flags & SELF_CONTAINED) != 0) {
+            dictionary = new MetricDictionary();
+        } else if (senderDictionary != null) {
+            dictionary = senderDictionary;
+            readDictionaryHeader(in, dictionary, flags);
+        } else {
+            throw new IllegalArgumentException("Metric values need the dictionary of their sender to be decoded.");
+        }
+        int metricCount = in.readLength();
+        Map<Metric, List<MetricValue>> metricValues = new HashMap<>(metricCount * 2);
+        for (int i = 0; i < metricCount; i++) {
+            Metric metric = readMetric(in, dictionary);
+            List<MetricValue> values = readValues(in);
+            if (metric != null) {
+                metricValues.put(metric, values);
+            }
+        }
+        int histogramCount = in.readLength();
+        Map<Metric, MetricHistogram> histograms = new HashMap<>(histogramCount * 2);
+        for (int i = 0; i < histogramCount; i++) {
+            Metric metric = readMetric(in, dictionary);
+            MetricHistogram histogram = readHistogram(in);
+            if (metric != null) {
+                histograms.put(metric, histogram);
+            }
+        }
+        int reservoirCount = in.readLength();
+        Map<Metric, MetricReservoir> reservoirs = new HashMap<>(reservoirCount * 2);
+        for (int i = 0; i < reservoirCount; i++) {
+            Metric metric = readMetric(in, dictionary);
+            MetricReservoir reservoir = readReservoir(in);
+            if (metric != null) {
+                reservoirs.put(metric, reservoir);
+            }
+        }
+        return new MetricValuesMessage(fromActor, metricValues, histograms, reservoirs);
+    }
+
+    /**
+     * Writes the flags, the epoch and sequence number of the dictionary,
+     * then all its definitions if they are due for this message.
+     */
+    private static void writeDictionaryHeader(final BinaryOutput out,
+                                              final MetricDictionary dictionary,
+                                              final int flags) {
+        long sequence = dictionary.nextSequence();
+        boolean definitionsDue = MetricDictionary.definitionsDue(sequence);
+        out.writeByte(definitionsDue ? flags | HAS_DEFINITIONS : flags);
+        out.writeLong(dictionary.epoch());
+        out.writeVarLong(sequence);
+        if (definitionsDue) {
+            List<Metric> definitions = dictionary.definitions();
+            out.writeVarInt(definitions.size());
+            definitions.forEach(metric -> writeDefinition(out, metric));
+        }
+    }
+
+    private static void readDictionaryHeader(final BinaryInput in,
+                                             final MetricDictionary dictionary,
+                                             final int flags) {
+        dictionary.received(in.readLong(), in.readVarLong());
+        if ((flags & HAS_DEFINITIONS) != 0) {
+            int count = in.readLength();
+            for (int id = 0; id < count; id++) {
+                dictionary.define(id, readDefinition(in));
+            }
+        }
+    }
+
+    /**
+     * Writes the identifier of the metric shifted left by one, its lowest bit telling whether its definition follows.
+     */
+    static void writeMetric(final BinaryOutput out, final Metric metric, final MetricDictionary dictionary) {
+        int id = dictionary.encode(metric);
+        if (id < 0) {
+            out.writeVarInt(((-id - 1) << 1) | 1);
+            writeDefinition(out, metric);
+        } else {
+            out.writeVarInt(id << 1);
+        }
+    }
+
+    /**
+     * @return The metric, or null if its identifier is unknown to the dictionary.
+     */
+    static Metric readMetric(final BinaryInput in, final MetricDictionary dictionary) {
+        int header = in.readVarInt();
+        int id = header >>> 1;
+        if ((header & 1) == 0) {
+            return dictionary.isDefined(id) ? dictionary.resolve(id) : null;
+        }
+        Metric metric = readDefinition(in);
+        dictionary.define(id, metric);
+        return metric;
+    }
+
+    static void writeDefinition(final BinaryOutput out, final Metric metric) {
+        out.writeString(metric.getKey());
+        out.writeString(metric.getUnit());
+        int flags = (metric.getLabel().isPresent() ? HAS_LABEL : 0) //
+                | (metric.getMinValue().isPresent() ? HAS_MIN_VALUE : 0) //
+                | (metric.getMaxValue().isPresent() ? HAS_MAX_VALUE : 0);
+        out.writeByte(flags);
+        metric.getLabel().ifPresent(out::writeString);
+        metric.getMinValue().ifPresent(value -> writeNumber(out, value));
+        metric.getMaxValue().ifPresent(value -> writeNumber(out, value));
+    }
+
+    static Metric readDefinition(final BinaryInput in) {
+        MetricBuilder builder = Metric.metric(in.readString(), in.readString());
+        int flags = in.readByte();
+        if ((flags & HAS_LABEL) != 0) {
+            builder.label(in.readString());
+        }
+        if ((flags & HAS_MIN_VALUE) != 0) {
+            builder.minValue(readNumber(in));
+        }
+        if ((flags & HAS_MAX_VALUE) != 0) {
+            builder.maxValue(readNumber(in));
+        }
+        return builder.build();
+    }
+
+    static void writeValues(final BinaryOutput out, final List<MetricValue> values) {
+        int count = values.size();
+        out.writeVarInt(count);
+        if (count == 0) {
+            return;
+        }
+
+        int type = columnType(values);
+        out.writeByte(type);
+        writeTimeStamps(out, values);
+        if (isIntegral(type)) {
+            long previous = 0;
+            for (MetricValue value : values) {
+                long current = value.getValue().longValue();
+                out.writeZigZag(current - previous);
+                previous = current;
+            }
+        } else {
+            long previousBits = 0;
+            for (MetricValue value : values) {
+                long bits = Double.doubleToRawLongBits(value.getValue().doubleValue());
+                writeXor(out, bits ^ previousBits);
+                previousBits = bits;
+            }
+        }
+    }
+
+    static List<MetricValue> readValues(final BinaryInput in) {
+        int count = in.readLength();
+        List<MetricValue> values = new ArrayList<>(count);
+        if (count == 0) {
+            return values;
+        }
+
+        int type = in.readByte();
+        long[] timeStamps = new long[count];
+        boolean[] timed = readTimeStamps(in, count, timeStamps);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            Number value;
+            if (isIntegral(type)) {
+                previous += in.readZigZag();
+                value = toNumber(type, previous);
+            } else {
+                previous ^= readXor(in);
+                value = toNumber(type, previous);
+            }
+            values.add(timed[i] ? new MetricTimedValue(timeStamps[i], value) : new MetricValue(value));
+        }
+        return values;
+    }
+
+    static void writeHistogram(final BinaryOutput out, final MetricHistogram histogram) {
+        HistogramLayout layout = histogram.layout();
+        out.writeByte(layout.getSignificantDigits());
+        out.writeVarLong(layout.getHighestTrackableValue());
+        writeCounts(out, histogram.countsView());
+    }
+
+    static MetricHistogram readHistogram(final BinaryInput in) {
+        HistogramLayout layout = new HistogramLayout(in.readByte(), in.readVarLong());
+        return new MetricHistogram(layout, readCounts(in, layout.countsLength()));
+    }
+
+    static void writeReservoir(final BinaryOutput out, final MetricReservoir reservoir) {
+        out.writeVarInt(reservoir.capacity());
+        out.writeVarLong(reservoir.count());
+        out.writeLong(Double.doubleToRawLongBits(reservoir.min()));
+        out.writeLong(Double.doubleToRawLongBits(reservoir.max()));
+        out.writeLong(Double.doubleToRawLongBits(reservoir.mean()));
+        out.writeLong(Double.doubleToRawLongBits(reservoir.squaredDeviations()));
+        writeValues(out, reservoir.samples());
+    }
+
+    static MetricReservoir readReservoir(final BinaryInput in) {
+        int capacity = in.readVarInt();
+        long count = in.readVarLong();
+        double min = Double.longBitsToDouble(in.readLong());
+        double max = Double.longBitsToDouble(in.readLong());
+        double mean = Double.longBitsToDouble(in.readLong());
+        double squaredDeviations = Double.longBitsToDouble(in.readLong());
+        return new MetricReservoir(capacity, count, min, max, mean, squaredDeviations, readValues(in));
+    }
+
+    /**
+     * Writes the counts up to the last non-zero one, a run of several zeros is written as its negated length.
+     */
+    static void writeCounts(final BinaryOutput out, final long[] counts) {
+        int length = counts.length;
+        while (length > 0 && counts[length - 1] == 0) {
+            length--;
+        }
+        out.writeVarInt(length);
+        int i = 0;
+        while (i < length) {
+            int zeros = 0;
+            while (counts[i + zeros] == 0) {
+                zeros++;
+            }
+            if (zeros > 1) {
+                out.writeZigZag(-zeros);
+                i += zeros;
+            } else {
+                out.writeZigZag(counts[i++]);
+            }
+        }
+    }
+
+    static long[] readCounts(final BinaryInput in, final int countsLength) {
+        long[] counts = new long[countsLength];
+        int length = in.readVarInt();
+        if (length > countsLength) {
+            throw new IllegalArgumentException("Histogram has " + length + " counts, expected at most " + countsLength);
+        }
+        int i = 0;
+        while (i < length) {
+            long count = in.readZigZag();
+            if (count >= 0) {
+                counts[i++] = count;
+            } else if (count >= -(length - i)) {
+                i -= count;
+            } else {
+                throw new IllegalArgumentException("Malformed histogram counts.");
+            }
+        }
+        return counts;
+    }
+
+    private static void writeTimeStamps(final BinaryOutput out, final List<MetricValue> values) {
+        int timedCount = 0;
+        for (MetricValue value : values) {
+            if (value instanceof MetricTimedValue) {
+                timedCount++;
+            }
+        }
+
+        if (timedCount == 0) {
+            out.writeByte(NOT_TIMED);
+            return;
+        } else if (timedCount == values.size()) {
+            out.writeByte(ALL_TIMED);
+        } else {
+            out.writeByte(PARTLY_TIMED);
+            writeTimedBitmap(out, values);
+        }
+
+        long previous = 0;
+        long previousDelta = 0;
+        int zeroRun = 0;
+        for (MetricValue value : values) {
+            if (value instanceof MetricTimedValue) {
+                long timeStamp = ((MetricTimedValue) value).getTimestamp();
+                long delta = timeStamp - previous;
+                long deltaOfDelta = delta - previousDelta;
+                if (deltaOfDelta == 0) {
+                    zeroRun++;
+                } else {
+                    zeroRun = writeZeroRun(out, zeroRun);
+                    out.writeZigZag(deltaOfDelta);
+                }
+                previous = timeStamp;
+                previousDelta = delta;
+            }
+        }
+        writeZeroRun(out, zeroRun);
+    }
+
+    /**
+     * A zero delta-of-delta is always followed by the count of zeros that come right after it.
+     */
+    private static int writeZeroRun(final BinaryOutput out, final int zeroRun) {
+        if (zeroRun > 0) {
+            out.writeZigZag(0);
+            out.writeVarInt(zeroRun - 1);
+        }
+        return 0;
+    }
+
+    private static void writeTimedBitmap(final BinaryOutput out, final List<MetricValue> values) {
+        int current = 0;
+        int bit = 0;
+        for (MetricValue value : values) {
+            if (value instanceof MetricTimedValue) {
+                current |= 1 << bit;
+            }
+            if (++bit == 8) {
+                out.writeByte(current);
+                current = 0;
+                bit = 0;
+            }
+        }
+        if (bit != 0) {
+            out.writeByte(current);
+        }
+    }
+
+    private static boolean[] readTimeStamps(final BinaryInput in, final int count, final long[] timeStamps) {
+        boolean[] timed = new boolean[count];
+        int timedMode = in.readByte();
+        switch (timedMode) {
+            case NOT_TIMED:
+                return timed;
+            case ALL_TIMED:
+                Arrays.fill(timed, true);
+                break;
+            case PARTLY_TIMED:
+                for (int i = 0; i < count; i += 8) {
+                    int bits = in.readByte();
+                    for (int bit = 0; bit < 8 && i + bit < count; bit++) {
+                        timed[i + bit] = (bits & (1 << bit)) != 0;
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown timestamps mode " + timedMode);
+        }
+
+        long previous = 0;
+        long previousDelta = 0;
+        int zeroRun = 0;
+        for (int i = 0; i < count; i++) {
+            if (timed[i]) {
+                long deltaOfDelta = 0;
+                if (zeroRun > 0) {
+                    zeroRun--;
+                } else {
+                    deltaOfDelta = in.readZigZag();
+                    if (deltaOfDelta == 0) {
+                        zeroRun = in.readVarInt();
+                    }
+                }
+                long delta = previousDelta + deltaOfDelta;
+                previous += delta;
+                previousDelta = delta;
+                timeStamps[i] = previous;
+            }
+        }
+        return timed;
+    }
+
+    /**
+     * Writes a one byte header (count of leading zero bytes, count of significant bytes),
+     * followed by the significant bytes. An unchanged value costs a single zero byte.
+     */
+    private static void writeXor(final BinaryOutput out, final long xor) {
+        if (xor == 0) {
+            out.writeByte(0);
+            return;
+        }
+        int leadingBytes = Long.numberOfLeadingZeros(xor) / 8;
+        int trailingBytes = Long.numberOfTrailingZeros(xor) / 8;
+        int significantBytes = 8 - leadingBytes - trailingBytes;
+        out.writeByte((leadingBytes << 4) | significantBytes);
+        long significant = xor >>> (trailingBytes * 8);
+        for (int i = significantBytes - 1; i >= 0; i--) {
+            out.writeByte((int) (significant >>> (i * 8)));
+        }
+    }
+
+    private static long readXor(final BinaryInput in) {
+        int header = in.readByte();
+        if (header == 0) {
+            return 0;
+        }
+        int leadingBytes = header >>> 4;
+        int significantBytes = header & 0x0F;
+        if (significantBytes == 0 || leadingBytes + significantBytes > 8) {
+            throw new IllegalArgumentException("Malformed XOR header " + header);
+        }
+        long significant = 0;
+        for (int i = 0; i < significantBytes; i++) {
+            significant = (significant << 8) | in.readByte();
+        }
+        return significant << ((8 - leadingBytes - significantBytes) * 8);
+    }
+
+    private static void writeNumber(final BinaryOutput out, final Number value) {
+        int type = typeOf(value);
+        out.writeByte(type);
+        if (isIntegral(type)) {
+            out.writeZigZag(value.longValue());
+        } else {
+            out.writeLong(Double.doubleToRawLongBits(value.doubleValue()));
+        }
+    }
+
+    private static Number readNumber(final BinaryInput in) {
+        int type = in.readByte();
+        if (isIntegral(type)) {
+            return toNumber(type, in.readZigZag());
+        }
+        return toNumber(type, in.readLong());
+    }
+
+    private static int columnType(final List<MetricValue> values) {
+        int common = typeOf(values.get(0).getValue());
+        boolean allIntegral = true;
+        for (MetricValue value : values) {
+            int type = typeOf(value.getValue());
+            allIntegral &= isIntegral(type);
+            if (type != common) {
+                common = -1;
+            }
+        }
+        if (common >= 0) {
+            return common;
+        }
+        return allIntegral ? LONG : DOUBLE;
+    }
+
+    private static int typeOf(final Number value) {
+        if (value instanceof Long || value instanceof AtomicLong || value instanceof AtomicInteger) {
+            return LONG;
+        } else if (value instanceof Integer) {
+            return INTEGER;
+        } else if (value instanceof Short) {
+            return SHORT;
+        } else if (value instanceof Byte) {
+            return BYTE;
+        } else if (value instanceof Float) {
+            return FLOAT;
+        }
+        return DOUBLE;
+    }
+
+    private static boolean isIntegral(final int type) {
+        return type < DOUBLE;
+    }
+
+    /**
+     * @param bits Either the integral value, or the raw bits of the floating point value.
+     */
+    private static Number toNumber(final int type, final long bits) {
+        switch (type) {
+            case LONG:
+                return bits;
+            case INTEGER:
+                return (int) bits;
+            case SHORT:
+                return (short) bits;
+            case BYTE:
+                return (byte) bits;
+            case FLOAT:
+                return (float) Double.longBitsToDouble(bits);
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            default:
+                throw new IllegalArgumentException("Unknown value type " + type);
+        }
+    }
+
+    private static int estimatedSize(final Map<Metric, List<MetricValue>> metricValues) {
+        int values = 0;
+        for (List<MetricValue> list : metricValues.values()) {
+            values += list.size();
+        }
+        return metricValues.size() * 32 + values * 3;
+    }
+}
@@ -0,0 +1,588 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.cluster.codec.BinaryInput;
+import io.amaze.bench.cluster.codec.BinaryOutput;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.validation.constraints.NotNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.propagate;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Durable, append-only store of the metric values received by a {@link MetricsRepository}, that outlives the leader.
+ * <p>
+ * Messages are appended as records to segments of a log on local disk, each segment being a memory-mapped file.
+ * A record is written before its length: a record that was not fully written when the process died is ignored
+ * when the log is opened again, and overwritten.<br>
+ * Appending only enqueues the message: encoding and writing happen on a dedicated thread, so that ingestion
+ * never waits for the disk. Messages appended while the queue is full, or once the log is closed, are dropped
+ * and counted by {@link #droppedMessages()}.
+ * <p>
+ * An index maps each metric of each actor to the positions of its values in the log. Values are decoded straight
+ * from the mapped segments, so that the values of one metric can be read without loading the rest of the run.
+ * The log can also be replayed into a fresh {@link MetricsRepository}.
+ * <p>
+ * Records hold the time the message was appended at and the actor name, followed by the metric definitions
+ * and values, histograms and reservoirs, using the encoding of {@link MetricValuesCodec}.
+ * The values of each metric are preceded by their length, so that the log is indexed when opened by reading
+ * the definitions only, skipping the values, histograms and reservoirs.
+ * <p>
+ * The log can be exported with a {@link MetricsExporter}, one record at a time.
+ */
+public final class MetricValuesLog implements AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    static final String SEGMENT_PREFIX = "metrics-";
+    static final String SEGMENT_SUFFIX = ".log";
+
+    private static final Logger log = LogManager.getLogger();
+    private static final String THREAD_NAME = "metrics-log-writer";
+    private static final int MAGIC = 0x4D564C47;
+    private static final int FORMAT_VERSION = 3;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int LENGTH_SIZE = Integer.BYTES;
+
+    private final File directory;
+    private final int segmentSize;
+    private final ExecutorService writer;
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final Map<ActorKey, Map<Metric, List<Long>>> index = new HashMap<>();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    // Encoded values of one metric, only accessed by the writer
+    private final BinaryOutput valuesBuffer = new BinaryOutput(256);
+
+    // Position of the next record, only accessed by the writer once opened
+    private int writePosition;
+    // Last committed record, guarded by index
+    private int committedSegment;
+    private int committedPosition;
+
+    private MetricValuesLog(final File directory, final int segmentSize, final int queueCapacity) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        ThreadFactory threadFactory = new ThreadFactoryBuilder() //
+                .setDaemon(true) //
+                .setNameFormat(THREAD_NAME) //
+                .build();
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, //
+                                             new ArrayBlockingQueue<>(queueCapacity), //
+                                             threadFactory, //
+                                             this::rejected);
+    }
+
+    /**
+     * Opens the log stored in the given directory, creating it if needed.
+     *
+     * @param directory Directory of the segment files.
+     * @return An open log that must be released using {@link #close()}.
+     * @throws IOException if the directory or the existing segments cannot be read.
+     */
+    @NotNull
+    public static MetricValuesLog open(@NotNull final File directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param directory     Directory of the segment files.
+     * @param segmentSize   Size of new segment files in bytes, larger records get a segment of their size.
+     * @param queueCapacity Number of messages that can be pending before appended messages are dropped.
+     * @return An open log that must be released using {@link #close()}.
+     * @throws IOException if the directory or the existing segments cannot be read.
+     */
+    @NotNull
+    public static MetricValuesLog open(@NotNull final File directory,
+                                       final int segmentSize,
+                                       final int queueCapacity) throws IOException {
+        requireNonNull(directory);
+        checkArgument(segmentSize > HEADER_SIZE + LENGTH_SIZE, "Segment size is too small: %s.", segmentSize);
+        checkArgument(queueCapacity > 0, "Queue capacity must be > 0, got %s.", queueCapacity);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create metrics log directory " + directory);
+        }
+
+        MetricValuesLog valuesLog = new MetricValuesLog(directory, segmentSize, queueCapacity);
+        valuesLog.load();
+        return valuesLog;
+    }
+
+    /**
+     * Enqueues the given message to be appended to the log, without blocking.
+     * The message is dropped if the queue is full or if the log is closed.
+     *
+     * @param message Metric values to append.
+     */
+    public void append(@NotNull final MetricValuesMessage message) {
+        requireNonNull(message);
+        long appendedMillis = System.currentTimeMillis();
+        writer.execute(() -> write(appendedMillis, message));
+    }
+
+    /**
+     * Blocks until the messages appended so far are written, waiting for room in the queue if needed.
+     * Returns right away once the log is closed, as closing it writes the pending messages.
+     */
+    public void flush() {
+        try {
+            writer.submit(() -> null).get();
+        } catch (CancellationException e) { // NOSONAR: The log is closed
+            log.debug("Metrics log is closed, not flushing.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw propagate(e);
+        } catch (ExecutionException e) {
+            throw propagate(e.getCause());
+        }
+    }
+
+    /**
+     * @return The number of messages dropped because the queue was full or the log was closed.
+     */
+    public long droppedMessages() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * @return The actors having values in the log.
+     */
+    @NotNull
+    public Set<ActorKey> actors() {
+        synchronized (index) {
+            return new HashSet<>(index.keySet());
+        }
+    }
+
+    /**
+     * @param actor Actor to get metrics for.
+     * @return The metrics of the given actor having values in the log.
+     */
+    @NotNull
+    public Set<Metric> metricsOf(@NotNull final ActorKey actor) {
+        requireNonNull(actor);
+        synchronized (index) {
+            Map<Metric, List<Long>> metrics = index.get(actor);
+            return metrics != null ? new HashSet<>(metrics.keySet()) : new HashSet<>();
+        }
+    }
+
+    /**
+     * Reads the values of the given metric from the log, in the order they were appended.
+     * Only the values of this metric are decoded, directly from the mapped segments.
+     *
+     * @param actor  Actor that produced the values.
+     * @param metric Metric to read values of.
+     * @return The values written so far, empty if there are none.
+     */
+    @NotNull
+    public List<MetricValue> valuesFor(@NotNull final ActorKey actor, @NotNull final Metric metric) {
+        requireNonNull(actor);
+        requireNonNull(metric);
+
+        List<Long> positions;
+        synchronized (index) {
+            Map<Metric, List<Long>> metrics = index.get(actor);
+            positions = metrics != null ? metrics.get(metric) : null;
+            positions = positions != null ? new ArrayList<>(positions) : new ArrayList<>();
+        }
+        List<MetricValue> values = new ArrayList<>();
+        for (long position : positions) {
+            ByteBuffer segment = segments.get(segmentOf(position));
+            int offset = offsetOf(position);
+            values.addAll(MetricValuesCodec.readValues(new BinaryInput(segment, offset, segment.limit() - offset)));
+        }
+        return values;
+    }
+
+    /**
+     * Feeds all the messages written so far to the given repository, in the order they were appended.
+     * The repository must not persist to this log.
+     *
+     * @param repository Repository to replay the log into.
+     */
+    public void replayInto(@NotNull final MetricsRepository repository) {
+        requireNonNull(repository);
+
+        int lastSegment;
+        int lastPosition;
+        synchronized (index) {
+            lastSegment = committedSegment;
+            lastPosition = committedPosition;
+        }
+        MetricsRepositoryListener listener = repository.createClusterListener();
+        for (int segment = 0; segment <= lastSegment && segment < segments.size(); segment++) {
+            int limit = segment == lastSegment ? lastPosition : Integer.MAX_VALUE;
+            scan(segment, limit, (appendedMillis, in) -> listener.onMetricValues(readRecord(in)));
+        }
+    }
+
+    /**
+     * Exports all the messages written so far, one record at a time, in the order they were appended.
+     * Histograms are exported for the interval between the previous record of the same actor and metric
+     * (or the first record of the log) and the time their record was appended at.
+     *
+     * @param exporter Exporter to feed, it is not closed.
+     * @throws IOException if the exporter failed to write.
+     */
+    public void exportTo(@NotNull final MetricsExporter exporter) throws IOException {
+        requireNonNull(exporter);
+
+        int lastSegment;
+        int lastPosition;
+        synchronized (index) {
+            lastSegment = committedSegment;
+            lastPosition = committedPosition;
+        }
+        Map<ActorKey, Map<Metric, Long>> previousIntervalEnds = new HashMap<>();
+        long[] logStart = {Long.MIN_VALUE};
+        try {
+            for (int segment = 0; segment <= lastSegment && segment < segments.size(); segment++) {
+                int limit = segment == lastSegment ? lastPosition : Integer.MAX_VALUE;
+                scan(segment, limit, (appendedMillis, in) -> {
+                    MetricValuesMessage message = readRecord(in);
+                    if (logStart[0] == Long.MIN_VALUE) {
+                        logStart[0] = appendedMillis;
+                    }
+                    Map<Metric, Long> intervalEnds = previousIntervalEnds.computeIfAbsent(message.fromActor(),
+                                                                                          key -> new HashMap<>());
+                    exportRecord(exporter, message, appendedMillis, logStart[0], intervalEnds);
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes the pending messages, then forces the segments to disk.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw propagate(e);
+        }
+        segments.forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public String toString() {
+        return "{\"metricValuesLog\":{" + //
+                "\"directory\":\"" + directory + "\", " + //
+                "\"segments\":" + segments.size() + ", " + //
+                "\"droppedMessages\":" + droppedMessages + "}}";
+    }
+
+    /**
+     * Appended messages are dropped, flush barriers wait for room in the queue unless the log is closed.
+     */
+    private void rejected(final Runnable task, final ThreadPoolExecutor executor) {
+        if (!(task instanceof Future)) {
+            if (droppedMessages.incrementAndGet() == 1) {
+                log.warn("Metrics log {} cannot keep up or is closed, dropping metric values.", directory);
+            }
+            return;
+        }
+        Future<?> barrier = (Future<?>) task;
+        if (executor.isShutdown()) {
+            barrier.cancel(false);
+            return;
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw propagate(e);
+        }
+        // The writer may have terminated before the barrier was queued, it would then never run
+        if (executor.isShutdown() && executor.remove(task)) {
+            barrier.cancel(false);
+        }
+    }
+
+    private static void exportRecord(final MetricsExporter exporter,
+                                     final MetricValuesMessage message,
+                                     final long appendedMillis,
+                                     final long logStart,
+                                     final Map<Metric, Long> intervalEnds) {
+        try {
+            ActorKey actor = message.fromActor();
+            for (Map.Entry<Metric, List<MetricValue>> entry : message.metrics().entrySet()) {
+                for (MetricValue value : entry.getValue()) {
+                    exporter.exportValue(actor, entry.getKey(), value);
+                }
+            }
+            for (Map.Entry<Metric, MetricHistogram> entry : message.histograms().entrySet()) {
+                Long previousEnd = intervalEnds.put(entry.getKey(), appendedMillis);
+                long start = previousEnd != null ? previousEnd : logStart;
+                exporter.exportHistogram(actor, entry.getKey(), start, appendedMillis, entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long positionOf(final int segment, final int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(final long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offsetOf(final long position) {
+        return (int) position;
+    }
+
+    private void load() throws IOException {
+        TreeMap<Integer, File> files = new TreeMap<>();
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File file : children) {
+                Integer number = segmentNumberOf(file.getName());
+                if (number != null) {
+                    files.put(number, file);
+                }
+            }
+        }
+
+        int expected = 0;
+        for (Map.Entry<Integer, File> entry : files.entrySet()) {
+            if (entry.getKey() != expected++) {
+                throw new IOException("Missing metrics log segment " + (expected - 1) + " in " + directory);
+            }
+            MappedByteBuffer segment = map(entry.getValue(), entry.getValue().length());
+            if (entry.getKey() == files.lastKey() && segment.limit() >= HEADER_SIZE && segment.getInt(0) == 0) {
+                // Created when the process died, before its header was written
+                writeHeader(segment);
+            }
+            segments.add(segment);
+            int segmentIndex = segments.size() - 1;
+            writePosition = scan(segmentIndex,
+                                 Integer.MAX_VALUE,
+                                 (appendedMillis, in) -> indexRecord(segmentIndex, in));
+            committedSegment = segments.size() - 1;
+            committedPosition = writePosition;
+        }
+    }
+
+    private static Integer segmentNumberOf(final String name) {
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException ignore) { // NOSONAR
+            return null;
+        }
+    }
+
+    private static MappedByteBuffer map(final File file, final long size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Hands the records of a segment up to the given position to the given reader.
+     *
+     * @return The position following the last record.
+     */
+    private int scan(final int segmentIndex, final int limit, final RecordReader reader) {
+        ByteBuffer segment = segments.get(segmentIndex);
+        if (segment.limit() < HEADER_SIZE || segment.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a metrics log segment: " + segmentIndex);
+        }
+        if (segment.getInt(Integer.BYTES) != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported metrics log version " + segment.getInt(Integer.BYTES));
+        }
+
+        int position = HEADER_SIZE;
+        while (position < limit && position + LENGTH_SIZE <= segment.limit()) {
+            int length = segment.getInt(position);
+            if (length <= 0 || position + LENGTH_SIZE + length > segment.limit()) {
+                break;
+            }
+            int body = position + LENGTH_SIZE;
+            BinaryInput in = new BinaryInput(segment, body, length);
+            long appendedMillis = in.readLong();
+            reader.read(appendedMillis, in);
+            position = body + length;
+        }
+        return position;
+    }
+
+    /**
+     * Indexes the metric values of a record from its definitions, the values themselves are skipped.
+     */
+    private void indexRecord(final int segmentIndex, final BinaryInput in) {
+        ActorKey actor = new ActorKey(in.readString());
+        int metricCount = in.readLength();
+        List<Metric> metrics = new ArrayList<>(metricCount);
+        List<Long> positions = new ArrayList<>(metricCount);
+        for (int i = 0; i < metricCount; i++) {
+            metrics.add(MetricValuesCodec.readDefinition(in));
+            int length = in.readVarInt();
+            positions.add(positionOf(segmentIndex, in.position()));
+            in.skip(length);
+        }
+        synchronized (index) {
+            addToIndex(actor, metrics, positions);
+        }
+    }
+
+    private static MetricValuesMessage readRecord(final BinaryInput in) {
+        ActorKey actor = new ActorKey(in.readString());
+        int metricCount = in.readLength();
+        Map<Metric, List<MetricValue>> metricValues = new HashMap<>(metricCount * 2);
+        for (int i = 0; i < metricCount; i++) {
+            Metric metric = MetricValuesCodec.readDefinition(in);
+            in.readVarInt(); // Length of the values
+            metricValues.put(metric, MetricValuesCodec.readValues(in));
+        }
+        int histogramCount = in.readLength();
+        Map<Metric, MetricHistogram> histograms = new HashMap<>(histogramCount * 2);
+        for (int i = 0; i < histogramCount; i++) {
+            Metric metric = MetricValuesCodec.readDefinition(in);
+            histograms.put(metric, MetricValuesCodec.readHistogram(in));
+        }
+        int reservoirCount = in.readLength();
+        Map<Metric, MetricReservoir> reservoirs = new HashMap<>(reservoirCount * 2);
+        for (int i = 0; i < reservoirCount; i++) {
+            Metric metric = MetricValuesCodec.readDefinition(in);
+            reservoirs.put(metric, MetricValuesCodec.readReservoir(in));
+        }
+        return new MetricValuesMessage(actor, metricValues, histograms, reservoirs);
+    }
+
+    private void addToIndex(final ActorKey actor, final List<Metric> metrics, final List<Long> positions) {
+        Map<Metric, List<Long>> actorIndex = index.computeIfAbsent(actor, key -> new HashMap<>());
+        for (int i = 0; i < metrics.size(); i++) {
+            actorIndex.computeIfAbsent(metrics.get(i), key -> new ArrayList<>()).add(positions.get(i));
+        }
+    }
+
+    private void write(final long appendedMillis, final MetricValuesMessage message) {
+        BinaryOutput out = new BinaryOutput(256);
+        out.writeLong(appendedMillis);
+        out.writeString(message.fromActor().getName());
+        Map<Metric, List<MetricValue>> metricValues = message.metricsView();
+        List<Metric> metrics = new ArrayList<>(metricValues.size());
+        List<Integer> offsets = new ArrayList<>(metricValues.size());
+        out.writeVarInt(metricValues.size());
+        for (Map.Entry<Metric, List<MetricValue>> entry : metricValues.entrySet()) {
+            MetricValuesCodec.writeDefinition(out, entry.getKey());
+            valuesBuffer.reset();
+            MetricValuesCodec.writeValues(valuesBuffer, entry.getValue());
+            out.writeVarInt(valuesBuffer.size());
+            metrics.add(entry.getKey());
+            offsets.add(out.size());
+            out.writeRaw(valuesBuffer);
+        }
+        Map<Metric, MetricHistogram> histograms = message.histograms();
+        out.writeVarInt(histograms.size());
+        for (Map.Entry<Metric, MetricHistogram> entry : histograms.entrySet()) {
+            MetricValuesCodec.writeDefinition(out, entry.getKey());
+            MetricValuesCodec.writeHistogram(out, entry.getValue());
+        }
+        Map<Metric, MetricReservoir> reservoirs = message.reservoirs();
+        out.writeVarInt(reservoirs.size());
+        for (Map.Entry<Metric, MetricReservoir> entry : reservoirs.entrySet()) {
+            MetricValuesCodec.writeDefinition(out, entry.getKey());
+            MetricValuesCodec.writeReservoir(out, entry.getValue());
+        }
+
+        try {
+            writeRecord(message.fromActor(), out.toByteArray(), metrics, offsets);
+        } catch (IOException e) {
+            log.error("Could not write metric values of {} to {}.", message.fromActor(), directory, e);
+        }
+    }
+
+    private void writeRecord(final ActorKey actor,
+                             final byte[] record,
+                             final List<Metric> metrics,
+                             final List<Integer> offsets) throws IOException {
+        int needed = LENGTH_SIZE + record.length + LENGTH_SIZE;
+        if (segments.isEmpty() || writePosition + needed > segments.get(segments.size() - 1).limit()) {
+            newSegment(HEADER_SIZE + needed);
+        }
+        int segmentIndex = segments.size() - 1;
+        MappedByteBuffer segment = segments.get(segmentIndex);
+        int body = writePosition + LENGTH_SIZE;
+
+        ByteBuffer target = segment.duplicate();
+        target.position(body);
+        target.put(record);
+        segment.putInt(body + record.length, 0);
+        // Commits the record
+        segment.putInt(writePosition, record.length);
+        writePosition = body + record.length;
+
+        List<Long> positions = new ArrayList<>(offsets.size());
+        offsets.forEach(offset -> positions.add(positionOf(segmentIndex, body + offset)));
+        synchronized (index) {
+            addToIndex(actor, metrics, positions);
+            committedSegment = segmentIndex;
+            committedPosition = writePosition;
+        }
+    }
+
+    private void newSegment(final int minimumSize) throws IOException {
+        File file = new File(directory, SEGMENT_PREFIX + segments.size() + SEGMENT_SUFFIX);
+        MappedByteBuffer segment = map(file, Math.max(segmentSize, minimumSize));
+        writeHeader(segment);
+        segments.add(segment);
+        writePosition = HEADER_SIZE;
+    }
+
+    @FunctionalInterface
+    private interface RecordReader {
+        void read(long appendedMillis, BinaryInput in);
+    }
+
+    private static void writeHeader(final ByteBuffer segment) {
+        segment.putInt(0, MAGIC);
+        segment.putInt(Integer.BYTES, FORMAT_VERSION);
+    }
+}
@@ -22,22 +22,43 @@ import javax.validation.constraints.NotNull;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Immutable container for produced metric values for a given actor.
- * It contain a collection of {@link Metric} and their associated values lists.
+ * It contain a collection of {@link Metric} and their associated values lists,
+ * along with the {@link MetricHistogram} of histogram metrics and the {@link MetricReservoir} of sampled metrics.
  */
 public final class MetricValuesMessage implements Serializable {
 
+    private static final Function<Metric, List<MetricValue>> NEW_VALUES = metric -> new ArrayList<>();
+
     private final ActorKey fromActor;
     private final Map<Metric, List<MetricValue>> metricValues; // NOSONAR: Serializable
+    private final Map<Metric, MetricHistogram> histograms; // NOSONAR: Serializable
+    private final Map<Metric, MetricReservoir> reservoirs; // NOSONAR: Serializable
 
     public MetricValuesMessage(@NotNull final ActorKey fromActor,
                                @NotNull final Map<Metric, List<MetricValue>> metricValues) {
+        this(fromActor, metricValues, new HashMap<>());
+    }
+
+    public MetricValuesMessage(@NotNull final ActorKey fromActor,
+                               @NotNull final Map<Metric, List<MetricValue>> metricValues,
+                               @NotNull final Map<Metric, MetricHistogram> histograms) {
+        this(fromActor, metricValues, histograms, new HashMap<>());
+    }
+
+    public MetricValuesMessage(@NotNull final ActorKey fromActor,
+                               @NotNull final Map<Metric, List<MetricValue>> metricValues,
+                               @NotNull final Map<Metric, MetricHistogram> histograms,
+                               @NotNull final Map<Metric, MetricReservoir> reservoirs) {
         this.fromActor = requireNonNull(fromActor);
         this.metricValues = requireNonNull(metricValues);
+        this.histograms = requireNonNull(histograms);
+        this.reservoirs = requireNonNull(reservoirs);
     }
 
     /**
@@ -52,12 +73,42 @@ public final class MetricValuesMessage implements Serializable {
         return copy;
     }
 
+    /**
+     * @return The internal metric to values map, neither it nor its lists must be modified.
+     */
+    synchronized Map<Metric, List<MetricValue>> metricsView() {
+        return metricValues;
+    }
+
+    /**
+     * @return A copy of the metric to histogram map, histograms being immutable.
+     */
+    @NotNull
+    public synchronized Map<Metric, MetricHistogram> histograms() {
+        return new HashMap<>(histograms);
+    }
+
+    /**
+     * @return A copy of the metric to reservoir map, reservoirs being immutable.
+     */
+    @NotNull
+    public synchronized Map<Metric, MetricReservoir> reservoirs() {
+        return new HashMap<>(reservoirs);
+    }
+
     /**
      * @return A deep copy of this{@link MetricValuesMessage}
      */
     @NotNull
     public synchronized MetricValuesMessage copy() {
-        return new MetricValuesMessage(fromActor, metrics());
+        return new MetricValuesMessage(fromActor, metrics(), histograms(), reservoirs());
+    }
+
+    /**
+     * @return true if this message holds neither metric values, histograms nor reservoirs.
+     */
+    public synchronized boolean isEmpty() {
+        return metricValues.isEmpty() && histograms.isEmpty() && reservoirs.isEmpty();
     }
 
     /**
@@ -70,7 +121,7 @@ public final class MetricValuesMessage implements Serializable {
 
     @Override
     public int hashCode() {
-        return Objects.hash(fromActor, metricValues);
+        return Objects.hash(fromActor, metricValues, histograms, reservoirs);
     }
 
     @Override
@@ -82,7 +133,10 @@ public final class MetricValuesMessage implements Serializable {
             return false;
         }
         MetricValuesMessage that = (MetricValuesMessage) o;
-        return Objects.equals(fromActor, that.fromActor) && Objects.equals(metricValues, that.metricValues);
+        return Objects.equals(fromActor, that.fromActor) && //
+                Objects.equals(metricValues, that.metricValues) && //
+                Objects.equals(histograms, that.histograms) && //
+                Objects.equals(reservoirs, that.reservoirs);
     }
 
     @Override
@@ -96,7 +150,32 @@ public final class MetricValuesMessage implements Serializable {
                 out.append(",");
             }
         }
-        return out.append("}}").toString();
+        out.append("}");
+        if (!histograms.isEmpty()) {
+            out.append(", \"histograms\":{");
+            line.set(histograms.size());
+            for (Map.Entry<Metric, MetricHistogram> entry : histograms.entrySet()) {
+                out.append("\"metric\":").append(entry.getKey());
+                out.append(", \"histogram\":").append(entry.getValue());
+                if (line.decrementAndGet() != 0) {
+                    out.append(",");
+                }
+            }
+            out.append("}");
+        }
+        if (!reservoirs.isEmpty()) {
+            out.append(", \"reservoirs\":{");
+            line.set(reservoirs.size());
+            for (Map.Entry<Metric, MetricReservoir> entry : reservoirs.entrySet()) {
+                out.append("\"metric\":").append(entry.getKey());
+                out.append(", \"reservoir\":").append(entry.getValue());
+                if (line.decrementAndGet() != 0) {
+                    out.append(",");
+                }
+            }
+            out.append("}");
+        }
+        return out.append("}").toString();
     }
 
     /**
@@ -108,18 +187,38 @@ public final class MetricValuesMessage implements Serializable {
     @NotNull
     MetricValuesMessage mergeWith(@NotNull final MetricValuesMessage otherValues) {
         requireNonNull(otherValues);
+        return merge(Arrays.asList(this, otherValues));
+    }
 
-        Map<Metric, List<MetricValue>> metricsCopy = metrics();
-
-        otherValues.metrics().forEach((otherMetric, otherMetricValues) -> {
-            List<MetricValue> existingValues = metricsCopy.get(otherMetric);
-            if (existingValues != null) {
-                existingValues.addAll(otherMetricValues);
-            } else {
-                metricsCopy.put(otherMetric, otherMetricValues);
+    /**
+     * Merges the values of several messages of the same actor, in order, copying each of them once.
+     * The given messages are NOT changed.
+     *
+     * @param parts Messages to merge, at least one.
+     */
+    @NotNull
+    static MetricValuesMessage merge(@NotNull final List<MetricValuesMessage> parts) {
+        MetricValuesMessage first = parts.get(0);
+        Map<Metric, List<MetricValue>> metricsCopy = first.metrics();
+        Map<Metric, MetricHistogram> histogramsCopy = first.histograms();
+        Map<Metric, MetricReservoir> reservoirsCopy = first.reservoirs();
+
+        for (MetricValuesMessage otherValues : parts.subList(1, parts.size())) {
+            synchronized (otherValues) {
+                otherValues.metricValues.forEach((otherMetric, otherMetricValues) -> //
+                                                         metricsCopy.computeIfAbsent(otherMetric, NEW_VALUES)
+                                                                 .addAll(otherMetricValues));
+                otherValues.histograms.forEach((otherMetric, otherHistogram) -> //
+                                                       histogramsCopy.merge(otherMetric,
+                                                                            otherHistogram,
+                                                                            MetricHistogram::mergeWith));
+                otherValues.reservoirs.forEach((otherMetric, otherReservoir) -> //
+                                                       reservoirsCopy.merge(otherMetric,
+                                                                            otherReservoir,
+                                                                            MetricReservoir::mergeWith));
             }
-        });
+        }
 
-        return new MetricValuesMessage(fromActor, metricsCopy);
+        return new MetricValuesMessage(first.fromActor, metricsCopy, histogramsCopy, reservoirsCopy);
     }
 }
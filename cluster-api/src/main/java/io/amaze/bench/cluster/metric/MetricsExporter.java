@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+
+import javax.validation.constraints.NotNull;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streams metric values to an output as they are fed, one at a time, so that exporting does not depend on the
+ * amount of values exported. Exporters are fed by {@link MetricsRepository#exportTo(MetricsExporter)}
+ * during a run, or by {@link MetricValuesLog#exportTo(MetricsExporter)} from a persisted run.
+ * <p>
+ * Closing an exporter flushes and closes its output.
+ *
+ * @see MetricsExporters
+ */
+public interface MetricsExporter extends Closeable {
+
+    /**
+     * @param actor  Actor that produced the value.
+     * @param metric Metric of the value.
+     * @param value  Value to export.
+     * @throws IOException if the output cannot be written.
+     */
+    void exportValue(@NotNull ActorKey actor, @NotNull Metric metric, @NotNull MetricValue value) throws IOException;
+
+    /**
+     * @param actor       Actor that produced the histogram.
+     * @param metric      Metric of the histogram.
+     * @param startMillis Start of the interval the histogram was recorded during, in milliseconds.
+     * @param endMillis   End of the interval the histogram was recorded during, in milliseconds.
+     * @param histogram   Histogram to export.
+     * @throws IOException if the output cannot be written.
+     */
+    void exportHistogram(@NotNull ActorKey actor,
+                         @NotNull Metric metric,
+                         long startMillis,
+                         long endMillis,
+                         @NotNull MetricHistogram histogram) throws IOException;
+}
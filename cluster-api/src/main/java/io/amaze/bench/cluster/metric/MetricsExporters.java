@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import javax.validation.constraints.NotNull;
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Creates {@link MetricsExporter}s writing to an output stream, encoded in UTF-8 through a fixed size buffer.
+ */
+public final class MetricsExporters {
+
+    private MetricsExporters() {
+        // Should not be instantiated
+    }
+
+    /**
+     * Values are written one per line as {@code actor,metric,unit,timestamp,value},
+     * the timestamp being empty for values without one. Histograms are not exported.
+     *
+     * @param out Output to write to.
+     * @return A new CSV exporter.
+     */
+    @NotNull
+    public static MetricsExporter csv(@NotNull final OutputStream out) {
+        return new CsvExporter(writerOf(out));
+    }
+
+    /**
+     * Values and histograms are written one per line as JSON objects.
+     *
+     * @param out Output to write to.
+     * @return A new JSON Lines exporter.
+     */
+    @NotNull
+    public static MetricsExporter jsonLines(@NotNull final OutputStream out) {
+        return new JsonLinesExporter(writerOf(out));
+    }
+
+    /**
+     * Histograms are written in the HdrHistogram interval log format (version 1.3), tagged with their actor and
+     * metric, so that they can be read by HdrHistogram's tools. Values are not exported.
+     *
+     * @param out Output to write to.
+     * @return A new HdrHistogram log exporter.
+     */
+    @NotNull
+    public static MetricsExporter hdrHistogramLog(@NotNull final OutputStream out) {
+        return new HdrHistogramLogExporter(writerOf(out), System.currentTimeMillis());
+    }
+
+    private static Writer writerOf(final OutputStream out) {
+        requireNonNull(out);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable selection of the values pushed to a {@link MetricsSubscriber}.
+ * <p>
+ * A filter selects actors, metrics whose key matches a regular expression, and can sample the selected values:
+ * each raw value is kept with the given probability. Histograms and reservoirs are never sampled,
+ * they already summarize all the values produced.
+ */
+public final class MetricsFilter {
+
+    private static final MetricsFilter ALL = new MetricsFilter(null, null, 1);
+
+    private final Set<ActorKey> actors;
+    private final Pattern metricKeyPattern;
+    private final double samplingRate;
+
+    private MetricsFilter(final Set<ActorKey> actors, final Pattern metricKeyPattern, final double samplingRate) {
+        this.actors = actors;
+        this.metricKeyPattern = metricKeyPattern;
+        this.samplingRate = samplingRate;
+    }
+
+    /**
+     * @return A filter selecting all the values of all actors.
+     */
+    @NotNull
+    public static MetricsFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @param actors Actors to select values of.
+     * @return A copy of this filter only selecting values of the given actors.
+     */
+    @NotNull
+    public MetricsFilter forActors(@NotNull final Collection<ActorKey> actors) {
+        requireNonNull(actors);
+        return new MetricsFilter(Collections.unmodifiableSet(new HashSet<>(actors)), metricKeyPattern, samplingRate);
+    }
+
+    /**
+     * @param metricKeyRegex Regular expression the whole metric key must match.
+     * @return A copy of this filter only selecting metrics whose key matches the given expression.
+     */
+    @NotNull
+    public MetricsFilter forMetricKeys(@NotNull final String metricKeyRegex) {
+        requireNonNull(metricKeyRegex);
+        return new MetricsFilter(actors, Pattern.compile(metricKeyRegex), samplingRate);
+    }
+
+    /**
+     * @param samplingRate Probability for each raw value to be kept, greater than 0 and at most 1.
+     * @return A copy of this filter keeping a random sample of the selected raw values.
+     */
+    @NotNull
+    public MetricsFilter sampled(final double samplingRate) {
+        checkArgument(samplingRate > 0 && samplingRate <= 1, "Sampling rate must be in ]0, 1], got %s.", samplingRate);
+        return new MetricsFilter(actors, metricKeyPattern, samplingRate);
+    }
+
+    /**
+     * @param actor Actor that produced a chunk.
+     * @return true if chunks of the given actor can match this filter.
+     */
+    boolean accepts(final ActorKey actor) {
+        return actors == null || actors.contains(actor);
+    }
+
+    /**
+     * @param chunk Ingested values.
+     * @return The selected values, or {@code null} if none of them is selected.
+     */
+    MetricValuesMessage apply(final MetricValuesMessage chunk) {
+        if (!accepts(chunk.fromActor())) {
+            return null;
+        }
+        if (metricKeyPattern == null && samplingRate == 1) {
+            return chunk.isEmpty() ? null : chunk;
+        }
+
+        Map<Metric, List<MetricValue>> values = new HashMap<>();
+        chunk.metricsView().forEach((metric, metricValues) -> {
+            if (matches(metric)) {
+                List<MetricValue> sample = sample(metricValues);
+                if (!sample.isEmpty()) {
+                    values.put(metric, sample);
+                }
+            }
+        });
+        Map<Metric, MetricHistogram> histograms = chunk.histograms();
+        histograms.keySet().removeIf(metric -> !matches(metric));
+        Map<Metric, MetricReservoir> reservoirs = chunk.reservoirs();
+        reservoirs.keySet().removeIf(metric -> !matches(metric));
+
+        MetricValuesMessage filtered = new MetricValuesMessage(chunk.fromActor(), values, histograms, reservoirs);
+        return filtered.isEmpty() ? null : filtered;
+    }
+
+    private boolean matches(final Metric metric) {
+        return metricKeyPattern == null || metricKeyPattern.matcher(metric.getKey()).matches();
+    }
+
+    private List<MetricValue> sample(final List<MetricValue> values) {
+        if (samplingRate == 1) {
+            return values;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<MetricValue> sample = new ArrayList<>((int) (values.size() * samplingRate) + 1);
+        for (MetricValue value : values) {
+            if (random.nextDouble() < samplingRate) {
+                sample.add(value);
+            }
+        }
+        return sample;
+    }
+
+    @Override
+    public String toString() {
+        String pattern = metricKeyPattern != null ? metricKeyPattern.pattern() //
+                .replace("\\", "\\\\") //
+                .replace("\"", "\\\"") : null;
+        return "{\"actors\":" + actors + ", " + //
+                "\"metricKeyPattern\":" + (pattern != null ? "\"" + pattern + "\"" : null) + ", " + //
+                "\"samplingRate\":" + samplingRate + "}";
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable query over the values held by a {@link MetricsRepository}: selects values by actor, metric key prefix
+ * and time window, then aggregates them into {@link MetricStatistics}, possibly grouped by actor, by metric,
+ * or by any function of the actor (such as its host).
+ * <p>
+ * Queries run on a snapshot of the repository taken without locking, and without copying its values.
+ * Selected columns are cut into slices processed in parallel on the common fork-join pool: each slice is filtered
+ * into a primitive array sized to its selected values, and sorted. Percentiles are then selected across
+ * these sorted runs, which are neither concatenated nor sorted as a whole.
+ * <p>
+ * Values without timestamp are only selected when the time window is unbounded.
+ */
+public final class MetricsQuery {
+
+    static final int SLICE_SIZE = 64 * 1024;
+
+    private final MetricsRepository repository;
+    private final Predicate<ActorKey> actorFilter;
+    private final String metricKeyPrefix;
+    private final long fromMillis;
+    private final long toMillis;
+
+    MetricsQuery(final MetricsRepository repository) {
+        this(repository, actor -> true, "", Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private MetricsQuery(final MetricsRepository repository,
+                         final Predicate<ActorKey> actorFilter,
+                         final String metricKeyPrefix,
+                         final long fromMillis,
+                         final long toMillis) {
+        this.repository = repository;
+        this.actorFilter = actorFilter;
+        this.metricKeyPrefix = metricKeyPrefix;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+    }
+
+    /**
+     * @param actor Actor to select values of.
+     * @return A new query only selecting values of the given actor, among those selected by the current one.
+     */
+    @NotNull
+    public MetricsQuery forActor(@NotNull final ActorKey actor) {
+        requireNonNull(actor);
+        return forActors(actor::equals);
+    }
+
+    /**
+     * @param filter Selects the actors to select values of.
+     * @return A new query only selecting values of the matching actors, among those selected by the current one.
+     */
+    @NotNull
+    public MetricsQuery forActors(@NotNull final Predicate<ActorKey> filter) {
+        requireNonNull(filter);
+        return new MetricsQuery(repository, actorFilter.and(filter), metricKeyPrefix, fromMillis, toMillis);
+    }
+
+    /**
+     * @param prefix Prefix of the keys of the metrics to select values of.
+     * @return A new query only selecting values of the metrics whose key starts with the given prefix.
+     */
+    @NotNull
+    public MetricsQuery forMetricsStartingWith(@NotNull final String prefix) {
+        requireNonNull(prefix);
+        return new MetricsQuery(repository, actorFilter, prefix, fromMillis, toMillis);
+    }
+
+    /**
+     * @param fromMillis Start of the window (inclusive), in milliseconds.
+     * @param toMillis   End of the window (exclusive), in milliseconds.
+     * @return A new query only selecting values timestamped within the given window.
+     */
+    @NotNull
+    public MetricsQuery between(final long fromMillis, final long toMillis) {
+        checkArgument(fromMillis < toMillis, "Empty time window [%s, %s).", fromMillis, toMillis);
+        return new MetricsQuery(repository, actorFilter, metricKeyPrefix, fromMillis, toMillis);
+    }
+
+    /**
+     * @return Statistics of all the selected values.
+     */
+    @NotNull
+    public MetricStatistics statistics() {
+        return groupBy((actor, metric) -> Boolean.TRUE).getOrDefault(Boolean.TRUE, aggregate(new ArrayList<>()));
+    }
+
+    /**
+     * @return Statistics of the selected values, per actor having some.
+     */
+    @NotNull
+    public Map<ActorKey, MetricStatistics> groupByActor() {
+        return groupBy((actor, metric) -> actor);
+    }
+
+    /**
+     * @return Statistics of the selected values, per metric having some.
+     */
+    @NotNull
+    public Map<Metric, MetricStatistics> groupByMetric() {
+        return groupBy((actor, metric) -> metric);
+    }
+
+    /**
+     * @param classifier Computes the group of an actor, for instance its host.
+     * @param <K>        Type of the groups.
+     * @return Statistics of the selected values, per group having some.
+     */
+    @NotNull
+    public <K> Map<K, MetricStatistics> groupByActor(@NotNull final Function<ActorKey, K> classifier) {
+        requireNonNull(classifier);
+        return groupBy((actor, metric) -> classifier.apply(actor));
+    }
+
+    @Override
+    public String toString() {
+        return "{\"metricKeyPrefix\":\"" + metricKeyPrefix + "\", " + //
+                "\"fromMillis\":" + fromMillis + ", " + //
+                "\"toMillis\":" + toMillis + "}";
+    }
+
+    private <K> Map<K, MetricStatistics> groupBy(final Classifier<K> classifier) {
+        Map<K, List<Slice>> slices = new HashMap<>();
+        repository.allValues().forEach((actor, message) -> {
+            if (!actorFilter.test(actor)) {
+                return;
+            }
+            message.metricsView().forEach((metric, values) -> {
+                if (metric.getKey().startsWith(metricKeyPrefix) && !values.isEmpty()) {
+                    List<Slice> group = slices.computeIfAbsent(classifier.groupOf(actor, metric),
+                                                               key -> new ArrayList<>());
+                    for (int from = 0; from < values.size(); from += SLICE_SIZE) {
+                        group.add(new Slice(values, from, Math.min(values.size(), from + SLICE_SIZE)));
+                    }
+                }
+            });
+        });
+
+        Map<K, MetricStatistics> statistics = new HashMap<>(slices.size() * 2);
+        slices.forEach((group, groupSlices) -> statistics.put(group, aggregate(groupSlices)));
+        return statistics;
+    }
+
+    private MetricStatistics aggregate(final List<Slice> slices) {
+        List<Partial> partials = slices.isEmpty() ? //
+                new ArrayList<>() : ForkJoinPool.commonPool().invoke(new SliceTask(slices));
+
+        List<double[]> sortedRuns = new ArrayList<>(partials.size());
+        double sum = 0;
+        long firstTimestamp = Long.MAX_VALUE;
+        long lastTimestamp = Long.MIN_VALUE;
+        for (Partial partial : partials) {
+            if (partial.values.length > 0) {
+                sortedRuns.add(partial.values);
+            }
+            sum += partial.sum;
+            firstTimestamp = Math.min(firstTimestamp, partial.firstTimestamp);
+            lastTimestamp = Math.max(lastTimestamp, partial.lastTimestamp);
+        }
+
+        long span;
+        if (fromMillis != Long.MIN_VALUE && toMillis != Long.MAX_VALUE) {
+            span = toMillis - fromMillis;
+        } else {
+            span = lastTimestamp >= firstTimestamp ? lastTimestamp - firstTimestamp : 0;
+        }
+        return new MetricStatistics(sortedRuns, sum, span);
+    }
+
+    @FunctionalInterface
+    private interface Classifier<K> {
+        K groupOf(ActorKey actor, Metric metric);
+    }
+
+    private static final class Slice {
+        private final List<MetricValue> values;
+        private final int from;
+        private final int to;
+
+        Slice(final List<MetricValue> values, final int from, final int to) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Selected values of a slice, as a sorted primitive array along with their sum and time span.
+     */
+    private static final class Partial {
+        private final double[] values;
+        private int size;
+        private double sum;
+        private long firstTimestamp = Long.MAX_VALUE;
+        private long lastTimestamp = Long.MIN_VALUE;
+
+        Partial(final int size) {
+            this.values = new double[size];
+        }
+    }
+
+    /**
+     * Selects and sorts the values of each slice in parallel, partials are only gathered: they are never copied.
+     */
+    private final class SliceTask extends RecursiveTask<List<Partial>> {
+
+        private final List<Slice> slices;
+
+        SliceTask(final List<Slice> slices) {
+            this.slices = slices;
+        }
+
+        @Override
+        protected List<Partial> compute() {
+            if (slices.size() == 1) {
+                List<Partial> partials = new ArrayList<>();
+                partials.add(select(slices.get(0)));
+                return partials;
+            }
+            int middle = slices.size() / 2;
+            SliceTask right = new SliceTask(slices.subList(middle, slices.size()));
+            right.fork();
+            List<Partial> left = new SliceTask(slices.subList(0, middle)).compute();
+            left.addAll(right.join());
+            return left;
+        }
+
+        private Partial select(final Slice slice) {
+            boolean windowed = fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE;
+            Partial partial = new Partial(windowed ? countSelected(slice) : slice.to - slice.from);
+            for (int i = slice.from; i < slice.to; i++) {
+                MetricValue value = slice.values.get(i);
+                if (value instanceof MetricTimedValue) {
+                    long timestamp = ((MetricTimedValue) value).getTimestamp();
+                    if (timestamp < fromMillis || timestamp >= toMillis) {
+                        continue;
+                    }
+                    partial.firstTimestamp = Math.min(partial.firstTimestamp, timestamp);
+                    partial.lastTimestamp = Math.max(partial.lastTimestamp, timestamp);
+                } else if (windowed) {
+                    continue;
+                }
+                double current = value.getValue().doubleValue();
+                partial.values[partial.size++] = current;
+                partial.sum += current;
+            }
+            Arrays.sort(partial.values);
+            return partial;
+        }
+
+        private int countSelected(final Slice slice) {
+            int count = 0;
+            for (int i = slice.from; i < slice.to; i++) {
+                MetricValue value = slice.values.get(i);
+                if (value instanceof MetricTimedValue) {
+                    long timestamp = ((MetricTimedValue) value).getTimestamp();
+                    if (timestamp >= fromMillis && timestamp < toMillis) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+    }
+}
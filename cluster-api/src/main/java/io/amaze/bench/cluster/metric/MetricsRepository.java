@@ -15,26 +15,139 @@
  */
 package io.amaze.bench.cluster.metric;
 
-import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.validation.constraints.NotNull;
-import java.util.*;
-import java.util.concurrent.Future;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.propagate;
 import static java.util.Objects.requireNonNull;
 
 /**
  * Implementation of the MetricsRepository (aggregate incoming metrics from actors).
+ * <p>
+ * Actors may send their values in several chunks, either when asked to or periodically:
+ * each chunk is appended to the values previously received for the actor, in a time that does not depend
+ * on the amount of values already received.
+ * <p>
+ * Storage is sharded per actor: ingesting values of an actor never blocks other actors, and reads are lock-free.
+ * By default incoming messages are ingested on the thread delivering them. When created with ingestion threads,
+ * messages are queued to a bounded pipeline instead, each actor being bound to a single worker so that its chunks
+ * stay ordered. Decoding happens on the workers, and the delivering thread blocks when the queue is full.
+ * <p>
+ * Encoded values are decoded with the {@link MetricDictionary} of their actor, kept along with its values.
+ * <p>
+ * All raw values are kept by default. For long runs, a {@link RetentionPolicy} can bound the period raw values
+ * are kept for: older values are then only available as {@link MetricRollup}s, computed as values arrive.
+ * <p>
+ * Ingested values can also be persisted to a {@link MetricValuesLog}, to be analysed after the leader exits.
+ * <p>
+ * Subscribers registered with {@link #subscribe(MetricsFilter, MetricsSubscriber)} are pushed each ingested chunk
+ * matching their filter, on delivery threads: slow subscribers never slow down ingestion.
+ * Delivery threads are only started along with the first subscription.
  */
-public class MetricsRepository {
+public class MetricsRepository implements AutoCloseable {
 
     private static final Logger log = LogManager.getLogger();
+    private static final String THREAD_NAME_FORMAT = "metrics-ingestion-%d";
+    private static final String DELIVERY_THREAD_NAME_FORMAT = "metrics-delivery-%d";
+    private static final int DEFAULT_SUBSCRIPTION_CAPACITY = 1024;
 
-    private final Map<ActorKey, MetricValuesMessage> actorValues = new HashMap<>();
-    private final Map<ActorKey, List<SettableFuture<MetricValuesMessage>>> expectedActors = new HashMap<>();
+    private final ConcurrentMap<ActorKey, MetricValuesAccumulator> actorValues = new ConcurrentHashMap<>();
+    private final ExecutorService[] workers;
+    private final RetentionPolicy retentionPolicy;
+    private final List<MetricsSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Object deliveryLock = new Object();
+    private ExecutorService delivery;
+    private boolean closed;
+    private volatile MetricValuesLog valuesLog;
+
+    /**
+     * Creates a repository keeping all values, and ingesting them on the threads delivering them.
+     */
+    public MetricsRepository() {
+        this(RetentionPolicy.keepAll());
+    }
+
+    /**
+     * Creates a repository ingesting metric values on the threads delivering them.
+     *
+     * @param retentionPolicy Defines how long values are retained.
+     */
+    public MetricsRepository(@NotNull final RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = requireNonNull(retentionPolicy);
+        this.workers = new ExecutorService[0];
+    }
+
+    /**
+     * Creates a repository keeping all values, and ingesting them on a pool of threads.
+     *
+     * @param ingestionThreads Number of threads ingesting incoming metric values.
+     * @param queueCapacity    Number of messages that can be pending per thread before delivering threads block.
+     * @see #MetricsRepository(int, int, RetentionPolicy)
+     */
+    public MetricsRepository(final int ingestionThreads, final int queueCapacity) {
+        this(ingestionThreads, queueCapacity, RetentionPolicy.keepAll());
+    }
+
+    /**
+     * Creates a repository ingesting metric values on a pool of threads, that must be released using {@link #close()}.
+     *
+     * @param ingestionThreads Number of threads ingesting incoming metric values.
+     * @param queueCapacity    Number of messages that can be pending per thread before delivering threads block.
+     * @param retentionPolicy  Defines how long values are retained.
+     */
+    public MetricsRepository(final int ingestionThreads,
+                             final int queueCapacity,
+                             @NotNull final RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = requireNonNull(retentionPolicy);
+        checkArgument(ingestionThreads > 0, "Ingestion threads must be > 0, got %s.", ingestionThreads);
+        checkArgument(queueCapacity > 0, "Queue capacity must be > 0, got %s.", queueCapacity);
+
+        ThreadFactory threadFactory = daemonThreads(THREAD_NAME_FORMAT);
+        workers = new ExecutorService[ingestionThreads];
+        for (int i = 0; i < ingestionThreads; i++) {
+            workers[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, //
+                                                new ArrayBlockingQueue<>(queueCapacity), //
+                                                threadFactory, //
+                                                MetricsRepository::waitForCapacity);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String nameFormat) {
+        return new ThreadFactoryBuilder() //
+                .setDaemon(true) //
+                .setNameFormat(nameFormat) //
+                .build();
+    }
+
+    static void waitForCapacity(final Runnable task, final ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Metrics repository is closed.");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw propagate(e);
+        }
+        // The worker may have terminated before the task was queued, it would then never run
+        if (executor.isShutdown() && executor.remove(task)) {
+            throw new RejectedExecutionException("Metrics repository is closed.");
+        }
+    }
 
     /**
      * Returns the produced metric values of the specified actor if any.
@@ -44,9 +157,8 @@ public class MetricsRepository {
      */
     public MetricValuesMessage valuesFor(@NotNull final ActorKey actor) {
         requireNonNull(actor);
-        synchronized (actorValues) {
-            return actorValues.get(actor);
-        }
+        MetricValuesAccumulator values = actorValues.get(actor);
+        return values != null ? values.snapshot() : null;
     }
 
     /**
@@ -58,10 +170,7 @@ public class MetricsRepository {
      */
     public Future<MetricValuesMessage> expectValuesFor(@NotNull final ActorKey actor) {
         requireNonNull(actor);
-        synchronized (actorValues) {
-            Optional<Future<MetricValuesMessage>> immediate = immediateResult(actor);
-            return immediate.orElseGet(() -> registerExpectedActor(actor));
-        }
+        return accumulatorFor(actor).expect();
     }
 
     /**
@@ -70,66 +179,299 @@ public class MetricsRepository {
      * @return A map of produced metric values with actor names as the key.
      */
     public Map<ActorKey, MetricValuesMessage> allValues() {
-        synchronized (actorValues) {
-            return new HashMap<>(actorValues); // No need to copy nested objects, they are immutable.
+        Map<ActorKey, MetricValuesMessage> copy = new HashMap<>();
+        actorValues.forEach((actor, values) -> {
+            MetricValuesMessage snapshot = values.snapshot();
+            if (snapshot != null) {
+                copy.put(actor, snapshot);
+            }
+        });
+        return copy;
+    }
+
+    /**
+     * Merges the histograms produced by all actors for the given metric,
+     * giving cluster-wide statistics without any raw value having been transmitted.
+     * Histograms of each actor are already merged across the periods they were received for.
+     *
+     * @param metric Histogram metric to get the merged histogram for.
+     * @return The merged histogram, or empty if no actor produced this histogram.
+     */
+    @NotNull
+    public Optional<MetricHistogram> histogramFor(@NotNull final Metric metric) {
+        requireNonNull(metric);
+
+        Optional<MetricHistogram> merged = Optional.empty();
+        for (MetricValuesMessage values : allValues().values()) {
+            MetricHistogram histogram = values.histograms().get(metric);
+            if (histogram != null) {
+                merged = Optional.of(merged.map(current -> current.mergeWith(histogram)).orElse(histogram));
+            }
         }
+        return merged;
+    }
+
+    /**
+     * Merges the reservoirs produced by all actors for the given sampled metric: statistics are exact
+     * for all the values produced, samples form a uniform sample of them.
+     *
+     * @param metric Sampled metric to get the merged reservoir for.
+     * @return The merged reservoir, or empty if no actor produced this sampled metric.
+     */
+    @NotNull
+    public Optional<MetricReservoir> reservoirFor(@NotNull final Metric metric) {
+        requireNonNull(metric);
+
+        Optional<MetricReservoir> merged = Optional.empty();
+        for (MetricValuesMessage values : allValues().values()) {
+            MetricReservoir reservoir = values.reservoirs().get(metric);
+            if (reservoir != null) {
+                merged = Optional.of(merged.map(current -> current.mergeWith(reservoir)).orElse(reservoir));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return A query selecting all the values held by this repository, to be narrowed down and aggregated.
+     */
+    @NotNull
+    public MetricsQuery query() {
+        return new MetricsQuery(this);
+    }
+
+    /**
+     * Exports the values held so far, actor by actor and metric by metric, without copying them.
+     * It can be called while values are being ingested: the values of each actor are exported as of the time
+     * the export reaches it. Histograms are exported for the interval during which the actor sent values.
+     *
+     * @param exporter Exporter to feed, it is not closed.
+     * @throws IOException if the exporter failed to write.
+     */
+    public void exportTo(@NotNull final MetricsExporter exporter) throws IOException {
+        requireNonNull(exporter);
+
+        for (Map.Entry<ActorKey, MetricValuesAccumulator> entry : actorValues.entrySet()) {
+            ActorKey actor = entry.getKey();
+            MetricValuesAccumulator accumulator = entry.getValue();
+            MetricValuesMessage values = accumulator.snapshot();
+            if (values == null) {
+                continue;
+            }
+            for (Map.Entry<Metric, List<MetricValue>> metricValues : values.metricsView().entrySet()) {
+                for (MetricValue value : metricValues.getValue()) {
+                    exporter.exportValue(actor, metricValues.getKey(), value);
+                }
+            }
+            for (Map.Entry<Metric, MetricHistogram> histogram : values.histograms().entrySet()) {
+                exporter.exportHistogram(actor,
+                                         histogram.getKey(),
+                                         accumulator.firstArrival(),
+                                         accumulator.lastArrival(),
+                                         histogram.getValue());
+            }
+        }
+    }
+
+    /**
+     * Appends the values ingested from now on to the given log, on its own writing thread.
+     * Ingestion never waits for the log: values it has no room for are dropped, see
+     * {@link MetricValuesLog#droppedMessages()}. The log is not closed by this repository.
+     *
+     * @param valuesLog Log to persist values to.
+     */
+    public void persistTo(@NotNull final MetricValuesLog valuesLog) {
+        this.valuesLog = requireNonNull(valuesLog);
+    }
+
+    /**
+     * Subscribes to the values ingested from now on, with a queue of 1024 chunks dropping the oldest ones
+     * when the subscriber does not keep up.
+     *
+     * @param filter     Selects the values to push.
+     * @param subscriber Receives the selected values.
+     * @return The subscription, to be cancelled when values are no longer needed.
+     * @see #subscribe(MetricsFilter, int, MetricsSubscription.OverflowPolicy, MetricsSubscriber)
+     */
+    @NotNull
+    public MetricsSubscription subscribe(@NotNull final MetricsFilter filter,
+                                         @NotNull final MetricsSubscriber subscriber) {
+        return subscribe(filter,
+                         DEFAULT_SUBSCRIPTION_CAPACITY,
+                         MetricsSubscription.OverflowPolicy.DROP_OLDEST,
+                         subscriber);
+    }
+
+    /**
+     * Subscribes to the values ingested from now on: each ingested chunk matching the filter is queued
+     * without blocking, and pushed to the subscriber asynchronously.
+     *
+     * @param filter         Selects the values to push.
+     * @param queueCapacity  Number of chunks that can be pending before the overflow policy applies.
+     * @param overflowPolicy Decides which values are lost when the queue is full.
+     * @param subscriber     Receives the selected values.
+     * @return The subscription, to be cancelled when values are no longer needed.
+     */
+    @NotNull
+    public MetricsSubscription subscribe(@NotNull final MetricsFilter filter,
+                                         final int queueCapacity,
+                                         @NotNull final MetricsSubscription.OverflowPolicy overflowPolicy,
+                                         @NotNull final MetricsSubscriber subscriber) {
+        requireNonNull(filter);
+        requireNonNull(overflowPolicy);
+        requireNonNull(subscriber);
+        checkArgument(queueCapacity > 0, "Queue capacity must be > 0, got %s.", queueCapacity);
+
+        MetricsSubscription[] subscription = new MetricsSubscription[1];
+        subscription[0] = new MetricsSubscription(filter,
+                                                  queueCapacity,
+                                                  overflowPolicy,
+                                                  subscriber,
+                                                  deliveryExecutor(), //
+                                                  () -> subscriptions.remove(subscription[0]));
+        subscriptions.add(subscription[0]);
+        return subscription[0];
+    }
+
+    /**
+     * Returns the rollups of the given metric produced by an actor, as retained by the {@link RetentionPolicy}.
+     *
+     * @param actor      Actor to get rollups for.
+     * @param metric     Metric to get rollups for.
+     * @param resolution Duration of the time buckets.
+     * @return Rollups ordered by start, empty if the policy keeps all raw values.
+     */
+    @NotNull
+    public List<MetricRollup> rollupsFor(@NotNull final ActorKey actor,
+                                         @NotNull final Metric metric,
+                                         @NotNull final RollupResolution resolution) {
+        requireNonNull(actor);
+        requireNonNull(metric);
+        requireNonNull(resolution);
+
+        MetricValuesAccumulator values = actorValues.get(actor);
+        return values != null ? values.rollupsFor(metric, resolution) : Collections.emptyList();
     }
 
     @NotNull
     public MetricsRepositoryListener createClusterListener() {
-        return metrics -> {
-            ActorKey from = metrics.fromActor();
-            log.info("Received metric values from {}: {}", from, metrics);
+        return new ClusterListener();
+    }
 
-            synchronized (actorValues) {
-                MetricValuesMessage currentActorMetrics = updateActorMetricValues(from, metrics);
-                setExpectedActorFutures(from, currentActorMetrics);
+    /**
+     * Stops the ingestion threads if any, after the pending messages have been ingested.
+     * Subscriptions stop delivering chunks once the ones being delivered are done.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        try {
+            for (ExecutorService worker : workers) {
+                worker.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw propagate(e);
+        } finally {
+            synchronized (deliveryLock) {
+                closed = true;
+                if (delivery != null) {
+                    delivery.shutdown();
+                }
             }
-        };
+        }
     }
 
-    private void setExpectedActorFutures(final ActorKey actor, final MetricValuesMessage currentActorMetrics) {
-        List<SettableFuture<MetricValuesMessage>> futures = expectedActors.remove(actor);
-        if (futures != null) {
-            for (SettableFuture<MetricValuesMessage> future : futures) {
-                future.set(currentActorMetrics);
+    @VisibleForTesting
+    boolean isDeliveryStarted() {
+        synchronized (deliveryLock) {
+            return delivery != null;
+        }
+    }
+
+    /**
+     * @return The executor delivering chunks to subscribers, created on first use.
+     * Once the repository is closed, it does not run chunk deliveries anymore.
+     */
+    private ExecutorService deliveryExecutor() {
+        synchronized (deliveryLock) {
+            if (delivery == null) {
+                delivery = Executors.newCachedThreadPool(daemonThreads(DELIVERY_THREAD_NAME_FORMAT));
+                if (closed) {
+                    delivery.shutdown();
+                }
             }
+            return delivery;
         }
     }
 
-    private MetricValuesMessage updateActorMetricValues(final ActorKey actor, final MetricValuesMessage metrics) {
-        MetricValuesMessage currentActorMetrics = actorValues.remove(actor);
-        if (currentActorMetrics != null) {
-            currentActorMetrics = currentActorMetrics.mergeWith(metrics);
+    private MetricValuesAccumulator accumulatorFor(final ActorKey actor) {
+        return actorValues.computeIfAbsent(actor, key -> new MetricValuesAccumulator(key, retentionPolicy));
+    }
+
+    private void ingest(final ActorKey from, final Runnable task) {
+        if (workers.length == 0) {
+            task.run();
         } else {
-            currentActorMetrics = metrics;
+            workers[Math.floorMod(from.hashCode(), workers.length)].execute(task);
         }
-        actorValues.put(actor, currentActorMetrics);
-        return currentActorMetrics;
     }
 
-    private SettableFuture<MetricValuesMessage> registerExpectedActor(final ActorKey actor) {
-        List<SettableFuture<MetricValuesMessage>> futures = expectedActors.get(actor);
-        SettableFuture<MetricValuesMessage> future = SettableFuture.create();
-        if (futures != null) {
-            futures.add(future);
-        } else {
-            List<SettableFuture<MetricValuesMessage>> list = new ArrayList<>();
-            list.add(future);
-            expectedActors.put(actor, list);
+    private void onMetricValues(final MetricValuesMessage metrics) {
+        ActorKey from = metrics.fromActor();
+        log.debug("Received metric values from {}.", from);
+
+        accumulatorFor(from).append(metrics);
+        persist(metrics);
+        publish(metrics);
+    }
+
+    private void onEncodedMetricValues(final EncodedMetricValuesMessage metrics) {
+        ActorKey from = metrics.fromActor();
+        log.debug("Received {} bytes of metric values from {}.", metrics.size(), from);
+
+        MetricValuesMessage decoded;
+        try {
+            decoded = accumulatorFor(from).append(metrics);
+        } catch (IllegalArgumentException e) {
+            log.warn("Dropping corrupted metric values from {}.", from, e);
+            return;
+        }
+        persist(decoded);
+        publish(decoded);
+    }
+
+    private void persist(final MetricValuesMessage metrics) {
+        MetricValuesLog currentLog = valuesLog;
+        if (currentLog != null) {
+            currentLog.append(metrics);
         }
-        return future;
     }
 
-    private Optional<Future<MetricValuesMessage>> immediateResult(final ActorKey actor) {
-        MetricValuesMessage metricValues = actorValues.get(actor);
-        if (metricValues == null) {
-            return Optional.empty();
+    private void publish(final MetricValuesMessage metrics) {
+        for (MetricsSubscription subscription : subscriptions) {
+            subscription.offer(metrics);
         }
+    }
+
+    /**
+     * Receives metric values from the cluster, decoding them when they come in their wire form.
+     */
+    private final class ClusterListener implements MetricsRepositoryListener {
 
-        SettableFuture<MetricValuesMessage> future = SettableFuture.create();
-        future.set(metricValues);
-        return Optional.of(future);
+        @Override
+        public void onMetricValues(@NotNull final MetricValuesMessage metrics) {
+            requireNonNull(metrics);
+            ingest(metrics.fromActor(), () -> MetricsRepository.this.onMetricValues(metrics));
+        }
+
+        @Override
+        public void onEncodedMetricValues(@NotNull final EncodedMetricValuesMessage metrics) {
+            requireNonNull(metrics);
+            ingest(metrics.fromActor(), () -> MetricsRepository.this.onEncodedMetricValues(metrics));
+        }
     }
 
 }
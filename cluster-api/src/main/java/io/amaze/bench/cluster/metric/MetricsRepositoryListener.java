@@ -25,4 +25,13 @@ public interface MetricsRepositoryListener {
 
     void onMetricValues(@NotNull MetricValuesMessage metrics);
 
+    /**
+     * Called when metric values are received in their wire form, decodes them by default.
+     *
+     * @param metrics Encoded metric values.
+     */
+    default void onEncodedMetricValues(@NotNull EncodedMetricValuesMessage metrics) {
+        onMetricValues(metrics.decode());
+    }
+
 }
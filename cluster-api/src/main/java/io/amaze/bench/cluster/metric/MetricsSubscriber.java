@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Receives the metric values ingested by a {@link MetricsRepository}, chunk by chunk, as they arrive.
+ *
+ * @see MetricsRepository#subscribe(MetricsFilter, MetricsSubscriber)
+ */
+@FunctionalInterface
+public interface MetricsSubscriber {
+
+    /**
+     * Called on a delivery thread of the repository, never concurrently for a given subscription.
+     * Chunks of a given actor are delivered in the order they were ingested.
+     *
+     * @param chunk Newly ingested values matching the subscription's filter.
+     */
+    void onMetricValues(@NotNull MetricValuesMessage chunk);
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.amaze.bench.api.ActorKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Registration of a {@link MetricsSubscriber} to a {@link MetricsRepository}.
+ * <p>
+ * Ingestion never waits for subscribers: matching chunks are queued to a bounded queue of the subscription,
+ * that is drained on a delivery thread. When the subscriber does not keep up and the queue is full,
+ * the {@link OverflowPolicy} decides which values are lost.
+ */
+public final class MetricsSubscription {
+
+    private static final Logger log = LogManager.getLogger();
+    private static final int DELIVERY_BATCH = 64;
+
+    @VisibleForTesting
+    static final int MAX_COALESCED_CHUNKS = 64;
+
+    private final MetricsFilter filter;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final MetricsSubscriber subscriber;
+    private final Executor executor;
+    private final Runnable onCancel;
+
+    private final ArrayDeque<PendingChunk> pending;
+    private final AtomicLong droppedChunks = new AtomicLong();
+    private boolean scheduled;
+    private volatile boolean cancelled;
+
+    MetricsSubscription(final MetricsFilter filter,
+                        final int queueCapacity,
+                        final OverflowPolicy overflowPolicy,
+                        final MetricsSubscriber subscriber,
+                        final Executor executor,
+                        final Runnable onCancel) {
+        this.filter = requireNonNull(filter);
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = requireNonNull(overflowPolicy);
+        this.subscriber = requireNonNull(subscriber);
+        this.executor = requireNonNull(executor);
+        this.onCancel = requireNonNull(onCancel);
+        this.pending = new ArrayDeque<>(Math.min(queueCapacity, 1024));
+    }
+
+    /**
+     * Stops the delivery of chunks to the subscriber, chunks still pending are discarded.
+     * A chunk being delivered while this method is called completes its delivery.
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (pending) {
+            pending.clear();
+        }
+        onCancel.run();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return The number of chunks that were dropped or coalesced because the subscriber did not keep up.
+     */
+    public long droppedChunks() {
+        return droppedChunks.get();
+    }
+
+    /**
+     * Queues the part of the given chunk that matches the filter, without blocking.
+     *
+     * @param chunk Newly ingested values.
+     */
+    void offer(final MetricValuesMessage chunk) {
+        if (cancelled || !filter.accepts(chunk.fromActor())) {
+            return;
+        }
+        MetricValuesMessage selected = filter.apply(chunk);
+        if (selected == null) {
+            return;
+        }
+
+        synchronized (pending) {
+            if (cancelled) {
+                return;
+            }
+            if (pending.size() < queueCapacity) {
+                pending.addLast(new PendingChunk(selected));
+            } else {
+                overflow(selected);
+            }
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        schedule();
+    }
+
+    private void overflow(final MetricValuesMessage selected) {
+        droppedChunks.incrementAndGet();
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                return;
+            case COALESCE:
+                if (coalesce(selected)) {
+                    return;
+                }
+                pending.pollFirst();
+                pending.addLast(new PendingChunk(selected));
+                return;
+            case DROP_OLDEST:
+            default:
+                pending.pollFirst();
+                pending.addLast(new PendingChunk(selected));
+        }
+    }
+
+    /**
+     * Appends the chunk to the newest pending chunk of the same actor, they are merged on the delivery thread.
+     *
+     * @return false if no chunk of the actor is pending, or if it already coalesced too many chunks.
+     */
+    private boolean coalesce(final MetricValuesMessage selected) {
+        Iterator<PendingChunk> newestFirst = pending.descendingIterator();
+        while (newestFirst.hasNext()) {
+            PendingChunk queued = newestFirst.next();
+            if (queued.fromActor().equals(selected.fromActor())) {
+                return queued.add(selected);
+            }
+        }
+        return false;
+    }
+
+    private void schedule() {
+        try {
+            executor.execute(this::deliver);
+        } catch (RejectedExecutionException e) {
+            log.debug("Repository is closed, not delivering metric values to {}.", subscriber, e);
+            synchronized (pending) {
+                pending.clear();
+                scheduled = false;
+            }
+        }
+    }
+
+    private void deliver() {
+        List<PendingChunk> batch = new ArrayList<>(DELIVERY_BATCH);
+        synchronized (pending) {
+            while (batch.size() < DELIVERY_BATCH && !pending.isEmpty()) {
+                batch.add(pending.pollFirst());
+            }
+        }
+
+        for (PendingChunk chunk : batch) {
+            if (cancelled) {
+                break;
+            }
+            try {
+                subscriber.onMetricValues(chunk.merged());
+            } catch (RuntimeException e) { // NOSONAR: A failing subscriber must not stop the delivery
+                log.warn("Metrics subscriber {} failed.", subscriber, e);
+            }
+        }
+
+        synchronized (pending) {
+            if (pending.isEmpty() || cancelled) {
+                scheduled = false;
+                return;
+            }
+        }
+        schedule();
+    }
+
+    @Override
+    public String toString() {
+        return "{\"filter\":" + filter + ", " + //
+                "\"queueCapacity\":" + queueCapacity + ", " + //
+                "\"overflowPolicy\":\"" + overflowPolicy + "\", " + //
+                "\"droppedChunks\":" + droppedChunks + ", " + //
+                "\"cancelled\":" + cancelled + "}";
+    }
+
+    /**
+     * A queued chunk, with the chunks of the same actor that were coalesced into it while the queue was full.
+     * Only accessed under the lock of the queue until it is taken by the delivery thread.
+     */
+    private static final class PendingChunk {
+        private final MetricValuesMessage first;
+        private List<MetricValuesMessage> parts;
+
+        PendingChunk(final MetricValuesMessage first) {
+            this.first = first;
+        }
+
+        ActorKey fromActor() {
+            return first.fromActor();
+        }
+
+        boolean add(final MetricValuesMessage chunk) {
+            if (parts == null) {
+                parts = new ArrayList<>();
+                parts.add(first);
+            } else if (parts.size() >= MAX_COALESCED_CHUNKS) {
+                return false;
+            }
+            parts.add(chunk);
+            return true;
+        }
+
+        MetricValuesMessage merged() {
+            return parts == null ? first : MetricValuesMessage.merge(parts);
+        }
+    }
+
+    /**
+     * What happens to a chunk ingested while the subscription's queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The incoming chunk is dropped.
+         */
+        DROP_NEWEST,
+        /**
+         * The oldest pending chunk is dropped to make room for the incoming one.
+         */
+        DROP_OLDEST,
+        /**
+         * The incoming chunk is merged into the newest pending chunk of the same actor, so that no value is lost.
+         * If no chunk of this actor is pending, or if that chunk already holds 64 coalesced chunks,
+         * the oldest pending chunk is dropped.
+         */
+        COALESCE
+    }
+}
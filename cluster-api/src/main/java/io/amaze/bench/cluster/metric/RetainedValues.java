@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Raw values of a metric of an actor, retained for a period relative to the most recent timestamp received.
+ * <p>
+ * Values are appended to segments covering a quarter of the retention period each, a segment being dropped as
+ * a whole once all of its values are out of retention: eviction never copies values, and up to a quarter
+ * of the period may be retained in excess. When the retention is unbounded, a single segment is used.<br>
+ * Like {@link AppendOnlyList}, written by a single thread at a time, views are immutable.
+ */
+final class RetainedValues {
+
+    private static final int SEGMENTS_PER_RETENTION = 4;
+
+    private final long retentionMillis;
+    private final long segmentMillis;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long newestTimestamp = Long.MIN_VALUE;
+
+    RetainedValues(final long retentionMillis) {
+        this.retentionMillis = retentionMillis;
+        this.segmentMillis = Math.max(1, retentionMillis / SEGMENTS_PER_RETENTION);
+    }
+
+    /**
+     * @param value     Value to append.
+     * @param timestamp Timestamp of the value, or its time of arrival if it has none.
+     */
+    void add(final MetricValue value, final long timestamp) {
+        Segment current = segments.peekLast();
+        if (current == null || (isBounded() && timestamp - current.firstTimestamp >= segmentMillis)) {
+            current = new Segment(timestamp);
+            segments.addLast(current);
+        }
+        current.values.add(value);
+        current.newestTimestamp = Math.max(current.newestTimestamp, timestamp);
+        newestTimestamp = Math.max(newestTimestamp, timestamp);
+    }
+
+    long newestTimestamp() {
+        return newestTimestamp;
+    }
+
+    /**
+     * Drops the segments holding values older than the retention period only.
+     */
+    void evict() {
+        if (!isBounded()) {
+            return;
+        }
+        long cutoff = newestTimestamp - retentionMillis;
+        while (segments.size() > 1 && segments.peekFirst().newestTimestamp < cutoff) {
+            segments.removeFirst();
+        }
+    }
+
+    /**
+     * @return An immutable view of the values retained so far.
+     */
+    List<MetricValue> view() {
+        if (segments.size() == 1) {
+            return segments.peekFirst().values.view();
+        }
+        List<List<MetricValue>> parts = new ArrayList<>(segments.size());
+        segments.forEach(segment -> parts.add(segment.values.view()));
+        return new SegmentedView<>(parts);
+    }
+
+    private boolean isBounded() {
+        return retentionMillis != Long.MAX_VALUE;
+    }
+
+    private static final class Segment {
+        private final AppendOnlyList<MetricValue> values = new AppendOnlyList<>();
+        private final long firstTimestamp;
+        private long newestTimestamp;
+
+        Segment(final long firstTimestamp) {
+            this.firstTimestamp = firstTimestamp;
+            this.newestTimestamp = firstTimestamp;
+        }
+    }
+
+    private static final class SegmentedView<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+        private final transient List<List<E>> parts;
+        private final transient int[] ends;
+
+        SegmentedView(final List<List<E>> parts) {
+            this.parts = parts;
+            this.ends = new int[parts.size()];
+            int size = 0;
+            for (int i = 0; i < ends.length; i++) {
+                size += parts.get(i).size();
+                ends[i] = size;
+            }
+        }
+
+        @Override
+        public E get(final int index) {
+            checkElementIndex(index, size());
+            int part = 0;
+            while (ends[part] <= index) {
+                part++;
+            }
+            int start = part == 0 ? 0 : ends[part - 1];
+            return parts.get(part).get(index - start);
+        }
+
+        @Override
+        public int size() {
+            return ends.length == 0 ? 0 : ends[ends.length - 1];
+        }
+
+        private Object writeReplace() {
+            return new ArrayList<>(this);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import javax.validation.constraints.NotNull;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Defines how long the {@link MetricsRepository} retains metric values.
+ * <p>
+ * Either all raw values are kept for the whole run, or only the raw values of the last period are kept:
+ * values are then also rolled up as they arrive into buckets of each {@link RollupResolution}, themselves retained
+ * for a bounded period. Periods are relative to the most recent timestamp received for each metric of an actor.
+ * <p>
+ * Default rollup retentions are one hour of 1s buckets, 12 hours of 10s buckets and 7 days of 1m buckets.
+ */
+public final class RetentionPolicy {
+
+    private static final RetentionPolicy KEEP_ALL = new RetentionPolicy(Long.MAX_VALUE,
+                                                                        new EnumMap<>(RollupResolution.class));
+
+    private final long rawRetentionMillis;
+    private final Map<RollupResolution, Long> rollupRetentionMillis;
+
+    private RetentionPolicy(final long rawRetentionMillis, final Map<RollupResolution, Long> rollupRetentionMillis) {
+        this.rawRetentionMillis = rawRetentionMillis;
+        this.rollupRetentionMillis = rollupRetentionMillis;
+    }
+
+    /**
+     * @return A policy retaining all raw values, without any rollup.
+     */
+    @NotNull
+    public static RetentionPolicy keepAll() {
+        return KEEP_ALL;
+    }
+
+    /**
+     * @param duration Period for which raw values are retained.
+     * @param unit     Unit of the duration.
+     * @return A policy retaining the raw values of the given period, and rollups with their default retention.
+     */
+    @NotNull
+    public static RetentionPolicy keepRawValuesFor(final long duration, @NotNull final TimeUnit unit) {
+        requireNonNull(unit);
+        checkArgument(duration > 0, "Raw values retention must be > 0, got %s.", duration);
+
+        Map<RollupResolution, Long> rollups = new EnumMap<>(RollupResolution.class);
+        rollups.put(RollupResolution.ONE_SECOND, TimeUnit.HOURS.toMillis(1));
+        rollups.put(RollupResolution.TEN_SECONDS, TimeUnit.HOURS.toMillis(12));
+        rollups.put(RollupResolution.ONE_MINUTE, TimeUnit.DAYS.toMillis(7));
+        return new RetentionPolicy(unit.toMillis(duration), rollups);
+    }
+
+    /**
+     * @param resolution Resolution of the rollups.
+     * @param duration   Period for which rollups of the given resolution are retained.
+     * @param unit       Unit of the duration.
+     * @return A new policy, identical to the current one except for the retention of the given rollups.
+     */
+    @NotNull
+    public RetentionPolicy keepRollupsFor(@NotNull final RollupResolution resolution,
+                                          final long duration,
+                                          @NotNull final TimeUnit unit) {
+        requireNonNull(resolution);
+        requireNonNull(unit);
+        checkArgument(!keepsAllRawValues(), "Rollups are only computed when raw values retention is bounded.");
+        checkArgument(duration > 0, "Rollups retention must be > 0, got %s.", duration);
+
+        Map<RollupResolution, Long> rollups = new EnumMap<>(rollupRetentionMillis);
+        rollups.put(resolution, unit.toMillis(duration));
+        return new RetentionPolicy(rawRetentionMillis, rollups);
+    }
+
+    public boolean keepsAllRawValues() {
+        return rawRetentionMillis == Long.MAX_VALUE;
+    }
+
+    public long rawRetentionMillis() {
+        return rawRetentionMillis;
+    }
+
+    /**
+     * @return The retention of the rollups of the given resolution, or 0 if they are not computed.
+     */
+    public long rollupRetentionMillis(@NotNull final RollupResolution resolution) {
+        requireNonNull(resolution);
+        return rollupRetentionMillis.getOrDefault(resolution, 0L);
+    }
+
+    @Override
+    public String toString() {
+        return "{\"rawRetentionMillis\":" + rawRetentionMillis + ", " + //
+                "\"rollupRetentionMillis\":{" + rollupsToString() + "}}";
+    }
+
+    private String rollupsToString() {
+        StringBuilder out = new StringBuilder();
+        rollupRetentionMillis.forEach((resolution, millis) -> {
+            if (out.length() > 0) {
+                out.append(", ");
+            }
+            out.append('"').append(resolution).append("\":").append(millis);
+        });
+        return out.toString();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import java.util.Arrays;
+
+/**
+ * Mutable summary of the values recorded during a time bucket, updated for each value as it arrives.
+ * The histogram is kept sparse: buckets of the layout that were hit are stored sorted by index.
+ *
+ * @see MetricRollup
+ */
+final class RollupBucket {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final long start;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private int[] indexes = new int[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private int hits;
+
+    RollupBucket(final long start) {
+        this.start = start;
+    }
+
+    private static long histogramValueOf(final double value) {
+        return value > 0 ? Math.round(value) : 0;
+    }
+
+    void record(final double value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+
+        int index = MetricRollup.LAYOUT.indexOf(histogramValueOf(value));
+        int position = Arrays.binarySearch(indexes, 0, hits, index);
+        if (position >= 0) {
+            counts[position]++;
+            return;
+        }
+
+        position = -position - 1;
+        if (hits == indexes.length) {
+            indexes = Arrays.copyOf(indexes, hits * 2);
+            counts = Arrays.copyOf(counts, hits * 2);
+        }
+        System.arraycopy(indexes, position, indexes, position + 1, hits - position);
+        System.arraycopy(counts, position, counts, position + 1, hits - position);
+        indexes[position] = index;
+        counts[position] = 1;
+        hits++;
+    }
+
+    MetricRollup toRollup(final RollupResolution resolution) {
+        return new MetricRollup(resolution,
+                                start,
+                                count,
+                                sum,
+                                min,
+                                max,
+                                Arrays.copyOf(indexes, hits),
+                                Arrays.copyOf(counts, hits));
+    }
+}
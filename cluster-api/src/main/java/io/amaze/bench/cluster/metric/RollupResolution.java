@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durations of the time buckets metric values are rolled up into, once raw values are no longer retained.
+ *
+ * @see RetentionPolicy
+ * @see MetricRollup
+ */
+public enum RollupResolution {
+
+    ONE_SECOND(TimeUnit.SECONDS.toMillis(1)),
+    TEN_SECONDS(TimeUnit.SECONDS.toMillis(10)),
+    ONE_MINUTE(TimeUnit.MINUTES.toMillis(1));
+
+    private final long millis;
+
+    RollupResolution(final long millis) {
+        this.millis = millis;
+    }
+
+    /**
+     * @return The duration of a bucket in milliseconds.
+     */
+    public long millis() {
+        return millis;
+    }
+
+    /**
+     * @param timestamp A timestamp in milliseconds.
+     * @return The start of the bucket including the given timestamp.
+     */
+    long bucketStartOf(final long timestamp) {
+        return Math.floorDiv(timestamp, millis) * millis;
+    }
+}
@@ -39,6 +39,9 @@ public class ActorRegistry {
     private final Map<ActorKey, RegisteredActor> actors = new HashMap<>();
     private final Set<ActorRegistryListener> clientListeners = new HashSet<>();
 
+    // Only written while holding the actors lock
+    private volatile long version;
+
     public void resetState(@NotNull final Set<RegisteredActor> initialActorSet) {
         requireNonNull(initialActorSet);
         synchronized (actors) {
@@ -46,6 +49,7 @@ public class ActorRegistry {
             for (RegisteredActor actor : initialActorSet) {
                 actors.put(actor.getKey(), actor);
             }
+            version++;
         }
     }
 
@@ -96,6 +100,17 @@ public class ActorRegistry {
         }
     }
 
+    /**
+     * Version of the registered actors, changed whenever an actor is added, initialized or removed,
+     * including when the registry state is reset or an endpoint leaves the cluster.<br>
+     * Allows callers to cache the result of {@link #byKey(ActorKey)}, and to look it up again only when it changes.
+     *
+     * @return The current version of the registry's content.
+     */
+    public long version() {
+        return version;
+    }
+
     /**
      * @return An unmodifiable set of currently registered actors.
      */
@@ -126,6 +141,7 @@ public class ActorRegistry {
             if (!actorsThatLeft.isEmpty()) {
                 log.info("Detected actor disconnection for {}.", actorsThatLeft);
                 actorsThatLeft.forEach(actors::remove);
+                version++;
             } else {
                 return;
             }
@@ -158,6 +174,7 @@ public class ActorRegistry {
                     return;
                 }
                 actors.put(key, RegisteredActor.created(key, agent));
+                version++;
             }
 
             // Notify listeners
@@ -177,6 +194,7 @@ public class ActorRegistry {
 
                 RegisteredActor initialized = RegisteredActor.initialized(foundActor, deployInfo);
                 actors.put(actorKey, initialized);
+                version++;
             }
 
             // Notify listeners
@@ -193,6 +211,7 @@ public class ActorRegistry {
                     log.warn("Attempt to remove for failure an unknown actor: {}", name, throwable);
                     return;
                 }
+                version++;
             }
 
             // Notify listeners
@@ -209,6 +228,7 @@ public class ActorRegistry {
                     log.warn("Attempt to close an unknown actor: {}", name);
                     return;
                 }
+                version++;
             }
 
             // Notify listeners
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.actor;
+
+import com.google.common.testing.EqualsTester;
+import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
+import io.amaze.bench.shared.test.Json;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class ActorInputBatchTest {
+
+    private static final ActorInputMessage FIRST = ActorInputMessage.message("from", "first");
+    private static final ActorInputMessage SECOND = ActorInputMessage.message("from", "second");
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+        tester.setDefault(List.class, Collections.singletonList(FIRST));
+
+        tester.testAllPublicConstructors(ActorInputBatch.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void empty_batch_is_invalid() {
+        new ActorInputBatch(Collections.emptyList());
+    }
+
+    @Test
+    public void equality() {
+        EqualsTester tester = new EqualsTester();
+        tester.addEqualityGroup(new ActorInputBatch(Arrays.asList(FIRST, SECOND)),
+                                new ActorInputBatch(Arrays.asList(FIRST, SECOND)));
+        tester.addEqualityGroup(new ActorInputBatch(Arrays.asList(SECOND, FIRST)));
+
+        tester.testEquals();
+    }
+
+    @Test
+    public void batch_is_not_affected_by_changes_to_the_given_list() {
+        List<ActorInputMessage> messages = new ArrayList<>(Arrays.asList(FIRST, SECOND));
+        ActorInputBatch batch = new ActorInputBatch(messages);
+
+        messages.clear();
+
+        assertThat(batch.getMessages(), is(Arrays.asList(FIRST, SECOND)));
+    }
+
+    @Test
+    public void encode_decode_keeps_messages_order() {
+        Codec codec = Codecs.defaultCodec();
+        ActorInputBatch batch = new ActorInputBatch(Arrays.asList(FIRST, SECOND));
+
+        ActorInputBatch decoded = codec.decode(codec.encode(batch));
+
+        assertThat(decoded.getMessages(), is(Arrays.asList(FIRST, SECOND)));
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(new ActorInputBatch(Arrays.asList(FIRST, SECOND)).toString()));
+    }
+}
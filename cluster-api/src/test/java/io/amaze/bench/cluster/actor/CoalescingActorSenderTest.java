@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.actor;
+
+import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Arrays;
+
+import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class CoalescingActorSenderTest {
+
+    private static final Codec CODEC = Codecs.defaultCodec();
+    private static final long NO_DELAY = 60_000;
+
+    private static final ActorInputMessage FIRST = ActorInputMessage.message("from", "first");
+    private static final ActorInputMessage SECOND = ActorInputMessage.message("from", "second");
+    private static final ActorInputMessage THIRD = ActorInputMessage.message("from", "third");
+
+    @Mock
+    private ActorSender remote;
+    @Mock
+    private ActorSender.Route route;
+
+    private CoalescingActorSender sender;
+
+    @Before
+    public void init() {
+        when(remote.resolve(DUMMY_ACTOR)).thenReturn(route);
+        sender = CoalescingWindow.of(3, 0, NO_DELAY, CODEC).coalesce(remote);
+    }
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+        tester.setDefault(ActorKey.class, DUMMY_ACTOR);
+        tester.setDefault(ActorInputMessage.class, FIRST);
+
+        tester.testAllPublicInstanceMethods(sender);
+    }
+
+    @Test
+    public void full_frame_is_sent_as_a_batch() {
+        sender.send(DUMMY_ACTOR, FIRST);
+        sender.send(DUMMY_ACTOR, SECOND);
+        verifyZeroInteractions(route);
+
+        sender.send(DUMMY_ACTOR, THIRD);
+
+        verify(route).sendBatch(Arrays.asList(FIRST, SECOND, THIRD));
+        assertThat(sender.pendingMessages(DUMMY_ACTOR), is(0));
+    }
+
+    @Test
+    public void frames_are_bounded_by_size() {
+        int messageSize = CODEC.encode(FIRST.getPayload()).length;
+        sender = CoalescingWindow.of(100, messageSize * 2, NO_DELAY, CODEC).coalesce(remote);
+
+        sender.send(DUMMY_ACTOR, FIRST);
+        sender.send(DUMMY_ACTOR, FIRST);
+
+        verify(route).sendBatch(Arrays.asList(FIRST, FIRST));
+    }
+
+    @Test
+    public void frame_is_sent_before_a_message_that_would_exceed_its_size() {
+        int messageSize = CODEC.encode(FIRST.getPayload()).length;
+        sender = CoalescingWindow.of(100, messageSize * 2 - 1, NO_DELAY, CODEC).coalesce(remote);
+
+        sender.send(DUMMY_ACTOR, FIRST);
+        sender.send(DUMMY_ACTOR, SECOND);
+
+        verify(route).send(FIRST);
+        assertThat(sender.pendingMessages(DUMMY_ACTOR), is(1));
+    }
+
+    @Test
+    public void pending_frame_is_sent_once_its_delay_expires() {
+        sender = CoalescingWindow.of(100, 0, 1, CODEC).coalesce(remote);
+
+        sender.send(DUMMY_ACTOR, FIRST);
+        sender.send(DUMMY_ACTOR, SECOND);
+
+        verify(route, timeout(5000)).sendBatch(Arrays.asList(FIRST, SECOND));
+    }
+
+    @Test
+    public void frame_is_dropped_once_sent_on_delay() throws InterruptedException {
+        sender = CoalescingWindow.of(100, 0, 1, CODEC).coalesce(remote);
+
+        sender.send(DUMMY_ACTOR, FIRST);
+        verify(route, timeout(5000)).send(FIRST);
+        awaitFrameDropped();
+
+        sender.send(DUMMY_ACTOR, SECOND);
+        verify(route, timeout(5000)).send(SECOND);
+        verify(remote, times(2)).resolve(DUMMY_ACTOR);
+    }
+
+    @Test
+    public void frame_of_a_resolved_route_is_kept() throws InterruptedException {
+        sender = CoalescingWindow.of(100, 0, 1, CODEC).coalesce(remote);
+        ActorSender.Route resolved = sender.resolve(DUMMY_ACTOR);
+
+        resolved.send(FIRST);
+        verify(route, timeout(5000)).send(FIRST);
+        Thread.sleep(50);
+
+        assertTrue(sender.hasFrame(DUMMY_ACTOR));
+    }
+
+    @Test
+    public void flush_sends_a_single_pending_message_alone() {
+        sender.send(DUMMY_ACTOR, FIRST);
+
+        sender.flush();
+
+        verify(route).send(FIRST);
+        verify(route, never()).sendBatch(anyListOf(ActorInputMessage.class));
+    }
+
+    @Test
+    public void close_sends_pending_frames() {
+        sender.send(DUMMY_ACTOR, FIRST);
+        sender.send(DUMMY_ACTOR, SECOND);
+
+        sender.close();
+
+        verify(route).sendBatch(Arrays.asList(FIRST, SECOND));
+    }
+
+    @Test
+    public void commands_are_sent_after_the_pending_frame() {
+        sender.send(DUMMY_ACTOR, FIRST);
+        sender.send(DUMMY_ACTOR, SECOND);
+
+        sender.send(DUMMY_ACTOR, ActorInputMessage.close());
+
+        InOrder inOrder = inOrder(route);
+        inOrder.verify(route).sendBatch(Arrays.asList(FIRST, SECOND));
+        inOrder.verify(route).send(ActorInputMessage.close());
+    }
+
+    @Test
+    public void resolved_route_appends_to_the_frame() {
+        ActorSender.Route resolved = sender.resolve(DUMMY_ACTOR);
+
+        resolved.send(FIRST);
+        sender.send(DUMMY_ACTOR, SECOND);
+        resolved.sendBatch(Arrays.asList(THIRD));
+
+        verify(route).sendBatch(Arrays.asList(FIRST, SECOND, THIRD));
+        verify(remote, times(1)).resolve(DUMMY_ACTOR);
+    }
+
+    @Test
+    public void disabled_window_passes_messages_through() {
+        sender = CoalescingWindow.disabled().coalesce(remote);
+
+        sender.send(DUMMY_ACTOR, FIRST);
+        sender.sendBatch(DUMMY_ACTOR, Arrays.asList(FIRST, SECOND));
+        sender.resolve(DUMMY_ACTOR).send(THIRD);
+
+        verify(remote).send(DUMMY_ACTOR, FIRST);
+        verify(remote).sendBatch(DUMMY_ACTOR, Arrays.asList(FIRST, SECOND));
+        verify(route).send(THIRD);
+    }
+
+    private void awaitFrameDropped() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sender.hasFrame(DUMMY_ACTOR) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertFalse(sender.hasFrame(DUMMY_ACTOR));
+    }
+}
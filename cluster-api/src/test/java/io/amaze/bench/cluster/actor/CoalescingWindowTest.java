@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.actor;
+
+import com.google.common.testing.NullPointerTester;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
+import io.amaze.bench.shared.test.Json;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class CoalescingWindowTest {
+
+    private static final Codec CODEC = Codecs.defaultCodec();
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+        tester.setDefault(Codec.class, CODEC);
+        tester.setDefault(Config.class, ConfigFactory.empty());
+
+        tester.testAllPublicStaticMethods(CoalescingWindow.class);
+        tester.testAllPublicInstanceMethods(CoalescingWindow.disabled());
+    }
+
+    @Test
+    public void coalescing_is_disabled_by_default() {
+        assertFalse(CoalescingWindow.fromConfig(ConfigFactory.empty(), CODEC).isEnabled());
+    }
+
+    @Test
+    public void coalescing_is_disabled_for_single_message_frames() {
+        Config config = ConfigFactory.parseString(CoalescingWindow.MAX_MESSAGES + "=1");
+
+        assertFalse(CoalescingWindow.fromConfig(config, CODEC).isEnabled());
+    }
+
+    @Test
+    public void window_is_read_from_config() {
+        Config config = ConfigFactory.parseString(CoalescingWindow.MAX_MESSAGES + "=32," + //
+                                                          CoalescingWindow.MAX_BYTES + "=4096," + //
+                                                          CoalescingWindow.MAX_DELAY_MS + "=5");
+
+        CoalescingWindow window = CoalescingWindow.fromConfig(config, CODEC);
+
+        assertTrue(window.isEnabled());
+        assertThat(window.getMaxMessages(), is(32));
+        assertThat(window.getMaxBytes(), is(4096));
+        assertThat(window.getMaxDelayMs(), is(5L));
+    }
+
+    @Test
+    public void delay_defaults_when_not_configured() {
+        Config config = ConfigFactory.parseString(CoalescingWindow.MAX_MESSAGES + "=32");
+
+        CoalescingWindow window = CoalescingWindow.fromConfig(config, CODEC);
+
+        assertThat(window.getMaxBytes(), is(0));
+        assertThat(window.getMaxDelayMs(), is(CoalescingWindow.DEFAULT_MAX_DELAY_MS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void window_with_a_single_message_is_invalid() {
+        CoalescingWindow.of(1, 0, 1, CODEC);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void window_with_negative_size_is_invalid() {
+        CoalescingWindow.of(2, -1, 1, CODEC);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void window_without_delay_is_invalid() {
+        CoalescingWindow.of(2, 0, 0, CODEC);
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(CoalescingWindow.of(2, 0, 1, CODEC).toString()));
+    }
+}
@@ -27,6 +27,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import static io.amaze.bench.cluster.actor.DeployConfig.deployConfig;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 
@@ -41,6 +42,7 @@ public final class DeployConfigTest {
         NullPointerTester tester = new NullPointerTester();
 
         tester.testAllPublicConstructors(DeployConfig.class);
+        tester.testAllPublicInstanceMethods(deployConfig(false));
     }
 
     @Test
@@ -50,10 +52,49 @@ public final class DeployConfigTest {
         tester.addEqualityGroup(createDeployConfig().hashCode(), createDeployConfig().hashCode());
         tester.addEqualityGroup(new DeployConfig(false, Collections.emptyList(), Collections.emptyList()),
                                 new DeployConfig(false, Collections.emptyList(), Collections.emptyList()));
+        tester.addEqualityGroup(deployConfig(false).metricsFlushIntervalMs(1000).build());
+        tester.addEqualityGroup(deployConfig(false).metricsMaxBufferedValues(4096).build());
+        tester.addEqualityGroup(deployConfig(false).mailboxCapacity(100) //
+                                        .mailboxOverflowPolicy(MailboxOverflowPolicy.BLOCK).build());
+        tester.addEqualityGroup(deployConfig(false).mailboxCapacity(100).build());
+        tester.addEqualityGroup(deployConfig(false).mailboxCapacity(100) //
+                                        .executionMode(ExecutionMode.VIRTUAL_THREADS).build());
 
         tester.testEquals();
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void negative_metrics_flush_interval_throws() {
+        deployConfig(false).metricsFlushIntervalMs(-1).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negative_metrics_max_buffered_values_throws() {
+        deployConfig(false).metricsMaxBufferedValues(-1).build();
+    }
+
+    @Test
+    public void mailbox_overflow_policy_defaults_to_drop() {
+        DeployConfig deployConfig = new DeployConfig(false, Collections.emptyList());
+
+        assertThat(deployConfig.getMailboxOverflowPolicy(), is(MailboxOverflowPolicy.DROP));
+    }
+
+    @Test
+    public void builder_defaults_to_the_constructor_settings() {
+        assertThat(deployConfig(true).build(), is(new DeployConfig(true, Collections.emptyList())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negative_mailbox_capacity_throws() {
+        deployConfig(false).mailboxCapacity(-1).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void virtual_threads_without_mailbox_throws() {
+        deployConfig(false).executionMode(ExecutionMode.VIRTUAL_THREADS).build();
+    }
+
     @Test
     public void toString_yields_valid_json() {
         assertThat(Json.isValid(createDeployConfig().toString()), is(true));
@@ -68,6 +109,11 @@ public final class DeployConfigTest {
         assertThat(actual.getPreferredHosts(), is(expected.getPreferredHosts()));
         assertThat(actual.getJvmArguments(), is(expected.getJvmArguments()));
         assertThat(actual.isForked(), is(expected.isForked()));
+        assertThat(actual.getMetricsFlushIntervalMs(), is(expected.getMetricsFlushIntervalMs()));
+        assertThat(actual.getMetricsMaxBufferedValues(), is(expected.getMetricsMaxBufferedValues()));
+        assertThat(actual.getMailboxCapacity(), is(expected.getMailboxCapacity()));
+        assertThat(actual.getMailboxOverflowPolicy(), is(expected.getMailboxOverflowPolicy()));
+        assertThat(actual.getExecutionMode(), is(expected.getExecutionMode()));
     }
 
     private DeployConfig createDeployConfig() {
@@ -76,6 +122,14 @@ public final class DeployConfigTest {
         List<String> jvmArguments = new ArrayList<>();
         jvmArguments.add("-Xmx512m");
 
-        return new DeployConfig(true, preferredHosts, jvmArguments);
+        return deployConfig(true) //
+                .preferredHosts(preferredHosts) //
+                .jvmArguments(jvmArguments) //
+                .metricsFlushIntervalMs(500) //
+                .metricsMaxBufferedValues(100_000) //
+                .mailboxCapacity(1000) //
+                .mailboxOverflowPolicy(MailboxOverflowPolicy.FAIL) //
+                .executionMode(ExecutionMode.VIRTUAL_THREADS) //
+                .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.actor;
+
+import com.google.common.testing.NullPointerTester;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class LocalDeliveryTest {
+
+    private static final Codec CODEC = Codecs.defaultCodec();
+
+    @Mock
+    private RuntimeActor target;
+    @Mock
+    private ActorSender remote;
+    @Mock
+    private ActorSender.Route remoteRoute;
+
+    private LocalDelivery localDelivery;
+
+    @Before
+    public void init() {
+        when(target.getKey()).thenReturn(DUMMY_ACTOR);
+        when(target.hasMailbox()).thenReturn(true);
+        when(target.offerMessage(anyString(), any(Serializable.class))).thenReturn(true);
+        when(remote.resolve(DUMMY_ACTOR)).thenReturn(remoteRoute);
+        localDelivery = LocalDelivery.enabled(CODEC, false);
+    }
+
+    @After
+    public void after() {
+        localDelivery.unregister(target);
+    }
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+        tester.setDefault(Codec.class, CODEC);
+        tester.setDefault(Config.class, ConfigFactory.empty());
+
+        tester.testAllPublicStaticMethods(LocalDelivery.class);
+        tester.testAllPublicInstanceMethods(localDelivery);
+    }
+
+    @Test
+    public void message_to_a_registered_actor_is_handed_to_it() {
+        localDelivery.register(target);
+        ArrayList<String> payload = new ArrayList<>(Arrays.asList("a", "b"));
+
+        localDelivery.localFirst(remote).send(DUMMY_ACTOR, ActorInputMessage.message("from", payload));
+
+        verify(target).offerMessage(eq("from"), same(payload));
+        verifyZeroInteractions(remote);
+    }
+
+    @Test
+    public void message_that_does_not_fit_in_the_mailbox_is_sent_through_the_transport() {
+        localDelivery.register(target);
+        when(target.offerMessage(anyString(), any(Serializable.class))).thenReturn(false);
+        ActorInputMessage message = ActorInputMessage.message("from", "payload");
+        ActorSender sender = localDelivery.localFirst(remote);
+
+        sender.send(DUMMY_ACTOR, message);
+        sender.resolve(DUMMY_ACTOR).send(message);
+
+        verify(remote).send(DUMMY_ACTOR, message);
+        verify(remoteRoute).send(message);
+        verify(target, never()).onMessage(anyString(), any(Serializable.class));
+    }
+
+    @Test
+    public void copy_on_send_hands_a_copy_of_the_payload() {
+        localDelivery = LocalDelivery.enabled(CODEC, true);
+        localDelivery.register(target);
+        ArrayList<String> payload = new ArrayList<>(Arrays.asList("a", "b"));
+
+        localDelivery.localFirst(remote).send(DUMMY_ACTOR, ActorInputMessage.message("from", payload));
+
+        ArgumentCaptor<Serializable> received = ArgumentCaptor.forClass(Serializable.class);
+        verify(target).offerMessage(eq("from"), received.capture());
+        assertThat(received.getValue(), is((Serializable) payload));
+        assertThat(received.getValue(), not(sameInstance((Serializable) payload)));
+    }
+
+    @Test
+    public void message_to_an_unknown_actor_is_sent_remotely() {
+        localDelivery.register(target);
+        ActorKey other = new ActorKey("other");
+        ActorInputMessage message = ActorInputMessage.message("from", "payload");
+
+        localDelivery.localFirst(remote).send(other, message);
+
+        verify(remote).send(other, message);
+        verify(target, never()).offerMessage(anyString(), any(Serializable.class));
+    }
+
+    @Test
+    public void commands_to_a_registered_actor_are_handed_to_it() {
+        localDelivery.register(target);
+        ActorSender sender = localDelivery.localFirst(remote);
+
+        sender.send(DUMMY_ACTOR, ActorInputMessage.bootstrap());
+        sender.send(DUMMY_ACTOR, ActorInputMessage.dumpMetrics());
+        sender.send(DUMMY_ACTOR, ActorInputMessage.close());
+
+        verify(target).bootstrap();
+        verify(target).dumpAndFlushMetrics();
+        verify(target).requestClose();
+        verify(target, never()).close();
+        verifyZeroInteractions(remote);
+    }
+
+    @Test
+    public void commands_and_messages_of_a_sender_are_handed_in_order() {
+        localDelivery.register(target);
+        ActorSender sender = localDelivery.localFirst(remote);
+        ActorSender.Route route = sender.resolve(DUMMY_ACTOR);
+
+        route.send(ActorInputMessage.bootstrap());
+        sender.send(DUMMY_ACTOR, ActorInputMessage.message("from", "first"));
+        route.send(ActorInputMessage.dumpMetrics());
+        sender.sendBatch(DUMMY_ACTOR, Arrays.asList(ActorInputMessage.message("from", "second"),
+                                                    ActorInputMessage.close()));
+
+        InOrder inOrder = inOrder(target);
+        inOrder.verify(target).bootstrap();
+        inOrder.verify(target).offerMessage("from", "first");
+        inOrder.verify(target).dumpAndFlushMetrics();
+        inOrder.verify(target).offerMessage("from", "second");
+        inOrder.verify(target).requestClose();
+        verify(remote, never()).send(any(ActorKey.class), any(ActorInputMessage.class));
+        verifyZeroInteractions(remoteRoute);
+    }
+
+    @Test
+    public void actor_without_mailbox_is_not_registered() {
+        when(target.hasMailbox()).thenReturn(false);
+
+        localDelivery.register(target);
+
+        assertFalse(LocalDelivery.isRegistered(DUMMY_ACTOR));
+    }
+
+    @Test
+    public void unregistered_actor_is_no_longer_reachable_locally() {
+        localDelivery.register(target);
+        assertTrue(LocalDelivery.isRegistered(DUMMY_ACTOR));
+
+        localDelivery.unregister(target);
+
+        assertFalse(LocalDelivery.isRegistered(DUMMY_ACTOR));
+    }
+
+    @Test
+    public void disabled_local_delivery_returns_the_remote_sender_and_does_not_register() {
+        LocalDelivery disabled = LocalDelivery.disabled();
+
+        disabled.register(target);
+
+        assertThat(disabled.localFirst(remote), is(remote));
+        assertFalse(LocalDelivery.isRegistered(DUMMY_ACTOR));
+    }
+
+    @Test
+    public void from_config_reads_settings() {
+        Config disabled = ConfigFactory.parseString(LocalDelivery.LOCAL_DELIVERY + "=false");
+        Config copyOnSend = ConfigFactory.parseString(LocalDelivery.COPY_ON_SEND + "=true");
+
+        assertThat(LocalDelivery.fromConfig(disabled, CODEC), is(LocalDelivery.disabled()));
+        assertThat(LocalDelivery.fromConfig(ConfigFactory.empty(), CODEC).localFirst(remote), not(is(remote)));
+
+        localDelivery = LocalDelivery.fromConfig(copyOnSend, CODEC);
+        localDelivery.register(target);
+        ArrayList<String> payload = new ArrayList<>();
+        localDelivery.localFirst(remote).send(DUMMY_ACTOR, ActorInputMessage.message("from", payload));
+
+        ArgumentCaptor<Serializable> received = ArgumentCaptor.forClass(Serializable.class);
+        verify(target).offerMessage(eq("from"), received.capture());
+        assertThat(received.getValue(), not(sameInstance((Serializable) payload)));
+    }
+
+    @Test
+    public void resolved_route_hands_messages_to_a_registered_actor() {
+        localDelivery.register(target);
+        ActorSender.Route route = localDelivery.localFirst(remote).resolve(DUMMY_ACTOR);
+
+        route.send(ActorInputMessage.message("from", "first"));
+        route.send(ActorInputMessage.message("from", "second"));
+
+        verify(target).offerMessage("from", "first");
+        verify(target).offerMessage("from", "second");
+        verifyZeroInteractions(remoteRoute);
+    }
+
+    @Test
+    public void resolved_route_follows_registrations() {
+        ActorSender.Route route = localDelivery.localFirst(remote).resolve(DUMMY_ACTOR);
+        ActorInputMessage message = ActorInputMessage.message("from", "payload");
+
+        route.send(message);
+        localDelivery.register(target);
+        route.send(message);
+        localDelivery.unregister(target);
+        route.send(message);
+
+        verify(remoteRoute, times(2)).send(message);
+        verify(target).offerMessage("from", "payload");
+    }
+
+    @Test
+    public void resolved_route_hands_commands_to_a_registered_actor() {
+        localDelivery.register(target);
+
+        localDelivery.localFirst(remote).resolve(DUMMY_ACTOR).send(ActorInputMessage.bootstrap());
+
+        verify(target).bootstrap();
+        verifyZeroInteractions(remoteRoute);
+    }
+
+    @Test
+    public void batch_to_a_registered_actor_is_handed_to_it() {
+        localDelivery.register(target);
+
+        localDelivery.localFirst(remote).sendBatch(DUMMY_ACTOR, Arrays.asList(ActorInputMessage.message("from", "a"),
+                                                                              ActorInputMessage.message("from", "b")));
+
+        verify(target).offerMessage("from", "a");
+        verify(target).offerMessage("from", "b");
+        verifyZeroInteractions(remote);
+    }
+
+    @Test
+    public void batch_to_an_unknown_actor_is_sent_remotely_at_once() {
+        List<ActorInputMessage> messages = Arrays.asList(ActorInputMessage.message("from", "a"),
+                                                         ActorInputMessage.message("from", "b"));
+
+        localDelivery.localFirst(remote).sendBatch(DUMMY_ACTOR, messages);
+        localDelivery.localFirst(remote).resolve(DUMMY_ACTOR).sendBatch(messages);
+
+        verify(remote).sendBatch(DUMMY_ACTOR, messages);
+        verify(remoteRoute).sendBatch(messages);
+    }
+
+}
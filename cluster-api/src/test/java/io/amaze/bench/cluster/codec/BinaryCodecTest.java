@@ -0,0 +1,267 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import com.google.common.base.Strings;
+import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.cluster.Message;
+import io.amaze.bench.cluster.metric.EncodedMetricValuesMessage;
+import io.amaze.bench.cluster.metric.MetricTimedValue;
+import io.amaze.bench.cluster.metric.MetricValue;
+import io.amaze.bench.cluster.metric.MetricValuesMessage;
+import io.amaze.bench.shared.test.Json;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class BinaryCodecTest {
+
+    private final BinaryCodec codec = new BinaryCodec(Collections.emptyList());
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+
+        tester.testAllPublicConstructors(BinaryCodec.class);
+    }
+
+    @Test
+    public void built_in_types_are_decoded_as_encoded() {
+        for (Serializable value : Arrays.<Serializable>asList("text", "unicode é中", "", 42, -42, //
+                                                              Long.MIN_VALUE, 3.5d, true, DUMMY_ACTOR)) {
+            assertThat(roundTrip(value), is(value));
+        }
+    }
+
+    @Test
+    public void null_is_decoded_as_null() {
+        assertThat(roundTrip(null), is(nullValue()));
+    }
+
+    @Test
+    public void byte_arrays_are_decoded_as_encoded() {
+        byte[] bytes = {1, 2, 3};
+
+        assertArrayEquals(roundTrip(bytes), bytes);
+    }
+
+    @Test
+    public void message_is_decoded_with_its_payload() {
+        Message<Serializable> decoded = roundTrip(new Message<>("sender", DUMMY_ACTOR));
+
+        assertThat(decoded.from(), is("sender"));
+        assertThat(decoded.data(), is(DUMMY_ACTOR));
+    }
+
+    @Test
+    public void encoded_metric_values_are_decoded_as_encoded() {
+        EncodedMetricValuesMessage encoded = EncodedMetricValuesMessage.encode(metricValues());
+
+        EncodedMetricValuesMessage decoded = roundTrip(encoded);
+
+        assertThat(decoded, is(encoded));
+        assertThat(decoded.decode(), is(metricValues()));
+    }
+
+    @Test
+    public void unknown_types_fall_back_to_java_serialization() {
+        ArrayList<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+
+        assertThat(roundTrip(list), is(list));
+    }
+
+    @Test
+    public void built_in_types_are_more_compact_than_java_serialization() {
+        Message<String> message = new Message<>("sender", "payload");
+
+        assertTrue(codec.encode(message).length < new JavaSerializationCodec().encode(message).length);
+    }
+
+    @Test
+    public void user_serializer_is_used() {
+        BinaryCodec userCodec = new BinaryCodec(Collections.singletonList(new PointSerializer()));
+        Point point = new Point(3, -4);
+
+        byte[] bytes = userCodec.encode(point);
+        Point decoded = userCodec.decode(bytes);
+
+        assertThat(decoded.x, is(3));
+        assertThat(decoded.y, is(-4));
+        assertThat(bytes.length, is(3));
+    }
+
+    @Test
+    public void decodes_a_slice_of_a_buffer() {
+        byte[] encoded = codec.encode("text");
+        byte[] buffer = new byte[encoded.length + 4];
+        System.arraycopy(encoded, 0, buffer, 2, encoded.length);
+
+        assertThat(codec.decode(buffer, 2, encoded.length), is("text"));
+    }
+
+    @Test
+    public void encodeTo_hands_the_encoded_bytes_to_the_sink() {
+        byte[] expected = codec.encode("text");
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        codec.encodeTo("text", sink::write);
+
+        assertArrayEquals(sink.toByteArray(), expected);
+    }
+
+    @Test
+    public void pooled_buffer_is_reused_after_a_large_object() {
+        String large = Strings.repeat("x", 100_000);
+
+        assertThat(roundTrip(large), is(large));
+        assertThat(roundTrip("text"), is("text"));
+    }
+
+    @Test
+    public void objects_can_be_encoded_while_encoding() {
+        EncodingWhileSerialized nested = new EncodingWhileSerialized(codec);
+
+        EncodingWhileSerialized decoded = roundTrip(nested);
+
+        assertThat(decoded.encoded.length, is(codec.encode("nested").length));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reserved_type_identifier_is_rejected() {
+        new BinaryCodec(Collections.singletonList(new PointSerializer(BinaryCodec.FIRST_USER_TYPE_ID - 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicate_type_identifier_is_rejected() {
+        new BinaryCodec(Arrays.asList(new PointSerializer(), new PointSerializer()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknown_type_identifier_is_rejected() {
+        codec.decode(new byte[]{(byte) (BinaryCodec.FIRST_USER_TYPE_ID + 1)});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncated_input_is_rejected() {
+        byte[] encoded = codec.encode("some text");
+
+        codec.decode(encoded, 0, encoded.length - 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void trailing_bytes_are_rejected() {
+        byte[] encoded = codec.encode("some text");
+
+        codec.decode(Arrays.copyOf(encoded, encoded.length + 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void corrupted_java_serialized_input_is_rejected() {
+        byte[] encoded = codec.encode(new ArrayList<>());
+        encoded[encoded.length - 1] ^= 0x7F;
+
+        codec.decode(encoded);
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(codec.toString()));
+    }
+
+    private <T extends Serializable> T roundTrip(final Serializable value) {
+        return codec.decode(codec.encode(value));
+    }
+
+    private static MetricValuesMessage metricValues() {
+        Map<Metric, List<MetricValue>> values = new HashMap<>();
+        values.put(Metric.metric("test", "ms").build(), Collections.singletonList(new MetricTimedValue(10L, 1L)));
+        return new MetricValuesMessage(DUMMY_ACTOR, values);
+    }
+
+    private static final class EncodingWhileSerialized implements Serializable {
+        private final transient BinaryCodec codec;
+        private byte[] encoded;
+
+        EncodingWhileSerialized(final BinaryCodec codec) {
+            this.codec = codec;
+        }
+
+        private void writeObject(final ObjectOutputStream out) throws IOException {
+            encoded = codec.encode("nested");
+            out.defaultWriteObject();
+        }
+    }
+
+    private static final class Point implements Serializable {
+        private final int x;
+        private final int y;
+
+        Point(final int x, final int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static final class PointSerializer implements PayloadSerializer<Point> {
+        private final int typeId;
+
+        PointSerializer() {
+            this(BinaryCodec.FIRST_USER_TYPE_ID);
+        }
+
+        PointSerializer(final int typeId) {
+            this.typeId = typeId;
+        }
+
+        @Override
+        public int typeId() {
+            return typeId;
+        }
+
+        @Override
+        public Class<Point> type() {
+            return Point.class;
+        }
+
+        @Override
+        public void write(final Point point, final CodecOutput out) {
+            out.writeZigZag(point.x);
+            out.writeZigZag(point.y);
+        }
+
+        @Override
+        public Point read(final CodecInput in) {
+            return new Point((int) in.readZigZag(), (int) in.readZigZag());
+        }
+    }
+}
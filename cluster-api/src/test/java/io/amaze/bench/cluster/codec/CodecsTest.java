@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import com.google.common.testing.NullPointerTester;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public final class CodecsTest {
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+
+        tester.testAllPublicStaticMethods(Codecs.class);
+    }
+
+    @Test
+    public void default_codec_is_used_when_not_configured() {
+        assertThat(Codecs.fromConfig(ConfigFactory.empty()), is(sameInstance(Codecs.defaultCodec())));
+    }
+
+    @Test
+    public void default_codec_is_shared_when_configured() {
+        Codec codec = Codecs.fromConfig(codecConfig(BinaryCodec.class.getName()));
+
+        assertThat(codec, is(sameInstance(Codecs.defaultCodec())));
+    }
+
+    @Test
+    public void configured_codec_is_instantiated() {
+        Codec codec = Codecs.fromConfig(codecConfig(JavaSerializationCodec.class.getName()));
+
+        assertThat(codec, instanceOf(JavaSerializationCodec.class));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void unknown_codec_class_throws() {
+        Codecs.fromConfig(codecConfig("com.example.DoesNotExist"));
+    }
+
+    private static Config codecConfig(final String className) {
+        return ConfigFactory.parseString("{\"" + Codecs.CODEC + "\":\"" + className + "\"}");
+    }
+}
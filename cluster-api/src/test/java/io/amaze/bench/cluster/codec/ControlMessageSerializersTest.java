@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.codec;
+
+import io.amaze.bench.cluster.actor.ActorCreationRequest;
+import io.amaze.bench.cluster.actor.ActorDeployInfo;
+import io.amaze.bench.cluster.actor.ActorInputBatch;
+import io.amaze.bench.cluster.actor.ActorInputMessage;
+import io.amaze.bench.cluster.actor.ActorLifecycleMessage;
+import io.amaze.bench.cluster.agent.AgentInputMessage;
+import io.amaze.bench.cluster.agent.AgentLifecycleMessage;
+import io.amaze.bench.cluster.agent.AgentRegistrationMessage;
+import io.amaze.bench.cluster.registry.RegisteredActorTest;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static io.amaze.bench.cluster.agent.AgentUtil.DUMMY_AGENT;
+import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static io.amaze.bench.runtime.actor.TestActor.DUMMY_CONFIG;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public final class ControlMessageSerializersTest {
+
+    private static final ActorDeployInfo DEPLOY_INFO = new ActorDeployInfo( //
+            new RegisteredActorTest.DummyEndpoint("endpoint"), 10, Arrays.asList("java", "-jar"));
+
+    private final BinaryCodec codec = new BinaryCodec(Collections.emptyList());
+
+    @Test
+    public void commands_without_payload_are_two_bytes_long() {
+        assertThat(codec.encode(ActorInputMessage.bootstrap()).length, is(2));
+        assertThat(codec.encode(ActorInputMessage.dumpMetrics()).length, is(2));
+        assertThat(codec.encode(ActorInputMessage.close()).length, is(2));
+    }
+
+    @Test
+    public void actor_input_messages_are_decoded_as_encoded() {
+        for (ActorInputMessage message : Arrays.asList(ActorInputMessage.bootstrap(), //
+                                                       ActorInputMessage.dumpMetrics(), //
+                                                       ActorInputMessage.close(), //
+                                                       ActorInputMessage.message("sender", "payload"))) {
+            assertThat(roundTrip(message), is(message));
+        }
+    }
+
+    @Test
+    public void actor_message_is_one_byte_longer_than_its_fields() {
+        byte[] encoded = codec.encode(ActorInputMessage.message("from", "payload"));
+
+        // type id, command, "from" (1 + 4), payload type id, "payload" (1 + 7)
+        assertThat(encoded.length, is(1 + 1 + 5 + 1 + 8));
+    }
+
+    @Test
+    public void actor_input_batch_is_decoded_as_encoded() {
+        ActorInputBatch batch = new ActorInputBatch(Arrays.asList(ActorInputMessage.message("sender", "first"), //
+                                                                  ActorInputMessage.dumpMetrics(), //
+                                                                  ActorInputMessage.message("sender", "second")));
+
+        assertThat(roundTrip(batch), is(batch));
+    }
+
+    @Test
+    public void actor_input_batch_uses_the_compact_layout_of_its_messages() {
+        ActorInputMessage message = ActorInputMessage.message("from", "payload");
+        int messageLength = codec.encode(message).length - 1;
+
+        byte[] encoded = codec.encode(new ActorInputBatch(Arrays.asList(message, message)));
+
+        // type id, count, then each message without its type id
+        assertThat(encoded[0] == BinaryCodec.JAVA_SERIALIZED_ID, is(false));
+        assertThat(encoded.length, is(1 + 1 + 2 * messageLength));
+    }
+
+    @Test
+    public void actor_lifecycle_messages_are_decoded_as_encoded() {
+        ActorLifecycleMessage created = roundTrip(ActorLifecycleMessage.created(DUMMY_ACTOR, DUMMY_AGENT));
+        assertThat(created.getState(), is(ActorLifecycleMessage.State.CREATED));
+        assertThat(created.getActor(), is(DUMMY_ACTOR));
+        assertThat(created.getAgent(), is(DUMMY_AGENT));
+
+        ActorLifecycleMessage initialized = roundTrip(ActorLifecycleMessage.initialized(DUMMY_ACTOR, DEPLOY_INFO));
+        assertThat(initialized.getState(), is(ActorLifecycleMessage.State.INITIALIZED));
+        assertThat(initialized.getDeployInfo(), is(DEPLOY_INFO));
+
+        ActorLifecycleMessage failed = roundTrip(ActorLifecycleMessage.failed(DUMMY_ACTOR, new IllegalStateException("x")));
+        assertThat(failed.getState(), is(ActorLifecycleMessage.State.FAILED));
+        assertThat(failed.getThrowable().getMessage(), is("x"));
+
+        ActorLifecycleMessage closed = roundTrip(ActorLifecycleMessage.closed(DUMMY_ACTOR));
+        assertThat(closed.getState(), is(ActorLifecycleMessage.State.CLOSED));
+        assertThat(closed.getAgent(), is(nullValue()));
+    }
+
+    @Test
+    public void agent_input_messages_are_decoded_as_encoded() {
+        ActorCreationRequest request = new ActorCreationRequest(DUMMY_CONFIG);
+
+        AgentInputMessage create = roundTrip(AgentInputMessage.createActor(DUMMY_AGENT, request));
+        assertThat(create.getAction(), is(AgentInputMessage.Action.CREATE_ACTOR));
+        assertThat(create.getTargetAgent(), is(DUMMY_AGENT));
+        assertThat(create.getCreationRequest(), is(request));
+
+        AgentInputMessage close = roundTrip(AgentInputMessage.closeActor(DUMMY_AGENT, DUMMY_ACTOR));
+        assertThat(close.getAction(), is(AgentInputMessage.Action.CLOSE_ACTOR));
+        assertThat(close.getActorToClose(), is(DUMMY_ACTOR));
+    }
+
+    @Test
+    public void agent_lifecycle_messages_are_decoded_as_encoded() {
+        AgentRegistrationMessage registration = AgentRegistrationMessage.create( //
+                DUMMY_AGENT, new RegisteredActorTest.DummyEndpoint("endpoint"));
+
+        AgentLifecycleMessage created = roundTrip(AgentLifecycleMessage.created(registration));
+        assertThat(created.getState(), is(AgentLifecycleMessage.State.CREATED));
+        assertThat(created.getAgent(), is(DUMMY_AGENT));
+        assertThat(created.getRegistrationMessage(), is(registration));
+
+        AgentLifecycleMessage failed = roundTrip(AgentLifecycleMessage.failed(DUMMY_AGENT, new Exception("x")));
+        assertThat(failed.getState(), is(AgentLifecycleMessage.State.FAILED));
+        assertThat(failed.getThrowable().getMessage(), is("x"));
+
+        AgentLifecycleMessage closed = roundTrip(AgentLifecycleMessage.closed(DUMMY_AGENT));
+        assertThat(closed.getState(), is(AgentLifecycleMessage.State.CLOSED));
+        assertThat(closed.getAgent(), is(DUMMY_AGENT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknown_command_is_rejected() {
+        byte[] encoded = codec.encode(ActorInputMessage.bootstrap());
+        encoded[1] = 42;
+
+        codec.decode(encoded);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unexpected_field_type_is_rejected() {
+        CodecOutput out = new CodecOutput(codec, 16);
+        out.writeVarInt(21);
+        out.writeByte(ActorLifecycleMessage.State.FAILED.ordinal());
+        out.writeString(DUMMY_ACTOR.getName());
+        out.writeObject("not a throwable");
+
+        codec.decode(out.toByteArray());
+    }
+
+    private <T extends Serializable> T roundTrip(final Serializable value) {
+        return codec.decode(codec.encode(value));
+    }
+}
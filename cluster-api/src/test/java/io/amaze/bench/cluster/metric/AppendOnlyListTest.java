@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.testing.SerializableTester;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public final class AppendOnlyListTest {
+
+    @Test
+    public void elements_are_indexed_in_insertion_order_across_chunks() {
+        AppendOnlyList<Integer> list = new AppendOnlyList<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(i);
+            expected.add(i);
+        }
+
+        List<Integer> view = list.view();
+
+        assertThat(list.size(), is(1000));
+        assertThat(view, is(expected));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(view.get(i), is(i));
+        }
+    }
+
+    @Test
+    public void view_is_not_changed_by_later_additions() {
+        AppendOnlyList<Integer> list = new AppendOnlyList<>();
+        list.add(1);
+        List<Integer> view = list.view();
+
+        list.add(2);
+
+        assertThat(view.size(), is(1));
+        assertThat(list.view().size(), is(2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void view_is_immutable() {
+        AppendOnlyList<Integer> list = new AppendOnlyList<>();
+        list.add(1);
+
+        list.view().add(2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void view_does_not_expose_later_additions() {
+        AppendOnlyList<Integer> list = new AppendOnlyList<>();
+        List<Integer> view = list.view();
+        list.add(1);
+
+        view.get(0);
+    }
+
+    @Test
+    public void view_is_serializable() {
+        AppendOnlyList<Integer> list = new AppendOnlyList<>();
+        list.add(1);
+        list.add(2);
+
+        assertThat(SerializableTester.reserialize(list.view()), is(list.view()));
+    }
+}
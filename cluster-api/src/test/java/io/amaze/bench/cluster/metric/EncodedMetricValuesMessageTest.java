@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.testing.EqualsTester;
+import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.shared.test.Json;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.amaze.bench.api.metric.Metric.metric;
+import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class EncodedMetricValuesMessageTest {
+
+    private static final Metric DUMMY_METRIC = metric("test", "meters").build();
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+        tester.setDefault(ActorKey.class, DUMMY_ACTOR);
+        tester.setDefault(MetricValuesMessage.class, metricValues(1));
+
+        tester.testAllPublicStaticMethods(EncodedMetricValuesMessage.class);
+    }
+
+    @Test
+    public void equality() {
+        EqualsTester tester = new EqualsTester();
+        tester.addEqualityGroup(encoded(3), encoded(3));
+        tester.addEqualityGroup(encoded(2));
+
+        tester.testEquals();
+    }
+
+    @Test
+    public void decode_returns_original_values() {
+        MetricValuesMessage original = metricValues(3);
+
+        MetricValuesMessage decoded = EncodedMetricValuesMessage.encode(original).decode();
+
+        assertThat(decoded, is(original));
+        assertThat(decoded.fromActor(), is(DUMMY_ACTOR));
+    }
+
+    @Test
+    public void decode_with_dictionary_returns_original_values() {
+        MetricValuesMessage original = metricValues(3);
+        MetricDictionary sender = new MetricDictionary();
+        MetricDictionary receiver = new MetricDictionary();
+
+        EncodedMetricValuesMessage.encode(original, sender).decode(receiver);
+        MetricValuesMessage decoded = EncodedMetricValuesMessage.encode(original, sender).decode(receiver);
+
+        assertThat(decoded, is(original));
+    }
+
+    @Test
+    public void size_is_the_payload_length() {
+        assertThat(new EncodedMetricValuesMessage(DUMMY_ACTOR, new byte[12]).size(), is(12));
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(encoded(2).toString()));
+    }
+
+    private static EncodedMetricValuesMessage encoded(final int nbValues) {
+        return EncodedMetricValuesMessage.encode(metricValues(nbValues));
+    }
+
+    private static MetricValuesMessage metricValues(final int nbValues) {
+        Map<Metric, List<MetricValue>> metricValues = new HashMap<>();
+        List<MetricValue> values = new ArrayList<>();
+        for (int i = 0; i < nbValues; i++) {
+            values.add(new MetricTimedValue(i * 10L, i));
+        }
+        metricValues.put(DUMMY_METRIC, values);
+        return new MetricValuesMessage(DUMMY_ACTOR, metricValues);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.testing.EqualsTester;
+import com.google.common.testing.SerializableTester;
+import io.amaze.bench.shared.test.Json;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class HistogramLayoutTest {
+
+    @Test
+    public void small_values_have_unit_resolution() {
+        HistogramLayout layout = HistogramLayout.defaultLayout();
+
+        for (long value = 0; value < 256; value++) {
+            int index = layout.indexOf(value);
+            assertThat(layout.lowestValueAt(index), is(value));
+            assertThat(layout.highestValueAt(index), is(value));
+        }
+    }
+
+    @Test
+    public void relative_error_is_bounded_by_precision() {
+        for (int digits = 0; digits <= 3; digits++) {
+            HistogramLayout layout = new HistogramLayout(digits, Long.MAX_VALUE);
+            double maxError = Math.pow(10, -digits);
+            for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+                int index = layout.indexOf(value);
+                long lowest = layout.lowestValueAt(index);
+                long highest = layout.highestValueAt(index);
+
+                assertTrue(lowest <= value && value <= highest);
+                assertTrue(value + " with " + digits + " digits", (highest - lowest) <= value * maxError);
+            }
+        }
+    }
+
+    @Test
+    public void values_above_highest_trackable_value_are_clamped() {
+        HistogramLayout layout = new HistogramLayout(2, 1000);
+
+        assertThat(layout.indexOf(Long.MAX_VALUE), is(layout.indexOf(1000)));
+        assertTrue(layout.indexOf(1000) < layout.countsLength());
+    }
+
+    @Test
+    public void full_range_fits_counts() {
+        HistogramLayout layout = HistogramLayout.defaultLayout();
+
+        assertThat(layout.indexOf(Long.MAX_VALUE), is(layout.countsLength() - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negative_values_are_rejected() {
+        HistogramLayout.defaultLayout().indexOf(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void too_many_significant_digits_are_rejected() {
+        new HistogramLayout(HistogramLayout.MAX_SIGNIFICANT_DIGITS + 1, 1000);
+    }
+
+    @Test
+    public void equality() {
+        EqualsTester tester = new EqualsTester();
+        tester.addEqualityGroup(new HistogramLayout(2, 1000), new HistogramLayout(2, 1000));
+        tester.addEqualityGroup(new HistogramLayout(3, 1000));
+        tester.addEqualityGroup(new HistogramLayout(2, 2000));
+
+        tester.testEquals();
+    }
+
+    @Test
+    public void serializable() {
+        HistogramLayout expected = new HistogramLayout(3, 1000);
+        HistogramLayout actual = SerializableTester.reserializeAndAssert(expected);
+
+        assertThat(actual.indexOf(999), is(expected.indexOf(999)));
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(HistogramLayout.defaultLayout().toString()));
+    }
+}
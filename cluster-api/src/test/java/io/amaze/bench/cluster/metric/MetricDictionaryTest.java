@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.shared.test.Json;
+import org.junit.Before;
+import org.junit.Test;
+
+import static io.amaze.bench.api.metric.Metric.metric;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class MetricDictionaryTest {
+
+    private static final Metric FIRST = metric("first", "ms").build();
+    private static final Metric SECOND = metric("second", "ms").build();
+
+    private MetricDictionary dictionary;
+
+    @Before
+    public void init() {
+        dictionary = new MetricDictionary();
+    }
+
+    @Test
+    public void new_metrics_are_assigned_successive_ids_with_their_definition() {
+        assertThat(dictionary.encode(FIRST), is(-1));
+        assertThat(dictionary.encode(SECOND), is(-2));
+        assertThat(dictionary.size(), is(2));
+    }
+
+    @Test
+    public void known_metric_is_encoded_as_its_id() {
+        dictionary.encode(FIRST);
+        dictionary.encode(SECOND);
+
+        assertThat(dictionary.encode(SECOND), is(1));
+    }
+
+    @Test
+    public void changed_definition_keeps_its_id_and_is_sent_again() {
+        dictionary.encode(FIRST);
+
+        assertThat(dictionary.encode(metric("first", "ms").label("First").build()), is(-1));
+        assertThat(dictionary.encode(metric("first", "ms").label("First").build()), is(0));
+    }
+
+    @Test
+    public void reset_forgets_ids() {
+        dictionary.encode(FIRST);
+
+        dictionary.reset();
+
+        assertThat(dictionary.size(), is(0));
+        assertThat(dictionary.encode(SECOND), is(-1));
+    }
+
+    @Test
+    public void defined_metrics_are_resolved() {
+        dictionary.define(0, FIRST);
+        dictionary.define(1, SECOND);
+
+        assertThat(dictionary.resolve(1), is(SECOND));
+    }
+
+    @Test
+    public void redefined_metric_is_replaced() {
+        Metric changed = metric("first", "us").build();
+        dictionary.define(0, FIRST);
+
+        dictionary.define(0, changed);
+
+        assertThat(dictionary.resolve(0).getUnit(), is("us"));
+    }
+
+    @Test
+    public void ids_skipped_by_a_definition_stay_unknown() {
+        dictionary.define(2, FIRST);
+
+        assertFalse(dictionary.isDefined(0));
+        assertFalse(dictionary.isDefined(1));
+        assertThat(dictionary.resolve(2), is(FIRST));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void defining_an_out_of_bounds_id_throws() {
+        dictionary.define(MetricDictionary.MAX_ID, FIRST);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void resolving_unknown_id_throws() {
+        dictionary.resolve(0);
+    }
+
+    @Test
+    public void reset_starts_a_new_epoch() {
+        long epoch = dictionary.epoch();
+        dictionary.nextSequence();
+
+        dictionary.reset();
+
+        assertNotEquals(epoch, dictionary.epoch());
+        assertThat(dictionary.nextSequence(), is(0L));
+    }
+
+    @Test
+    public void definitions_are_due_periodically() {
+        assertTrue(MetricDictionary.definitionsDue(0));
+        assertFalse(MetricDictionary.definitionsDue(1));
+        assertTrue(MetricDictionary.definitionsDue(MetricDictionary.DEFINITIONS_INTERVAL));
+    }
+
+    @Test
+    public void new_epoch_forgets_definitions() {
+        dictionary.received(1, 0);
+        dictionary.define(0, FIRST);
+
+        dictionary.received(2, 0);
+
+        assertFalse(dictionary.isDefined(0));
+    }
+
+    @Test
+    public void sequence_gaps_are_counted_as_missed_messages() {
+        dictionary.received(1, 0);
+        dictionary.received(1, 1);
+        dictionary.received(1, 4);
+
+        assertThat(dictionary.missedMessages(), is(2L));
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(dictionary.toString()));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.testing.EqualsTester;
+import com.google.common.testing.NullPointerTester;
+import com.google.common.testing.SerializableTester;
+import io.amaze.bench.shared.test.Json;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class MetricHistogramTest {
+
+    private static final HistogramLayout LAYOUT = HistogramLayout.defaultLayout();
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+        tester.setDefault(HistogramLayout.class, LAYOUT);
+        tester.setDefault(long[].class, new long[LAYOUT.countsLength()]);
+
+        tester.testAllPublicConstructors(MetricHistogram.class);
+        tester.testAllPublicStaticMethods(MetricHistogram.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void counts_must_match_layout() {
+        new MetricHistogram(LAYOUT, new long[3]);
+    }
+
+    @Test
+    public void empty_histogram_statistics_are_zero() {
+        MetricHistogram histogram = MetricHistogram.of(LAYOUT);
+
+        assertThat(histogram.totalCount(), is(0L));
+        assertThat(histogram.min(), is(0L));
+        assertThat(histogram.max(), is(0L));
+        assertThat(histogram.mean(), is(0d));
+        assertThat(histogram.valueAtPercentile(99), is(0L));
+    }
+
+    @Test
+    public void percentiles_follow_recorded_values() {
+        long[] values = new long[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i + 1;
+        }
+        MetricHistogram histogram = MetricHistogram.of(LAYOUT, values);
+
+        assertThat(histogram.totalCount(), is(100L));
+        assertThat(histogram.min(), is(1L));
+        assertThat(histogram.max(), is(100L));
+        assertThat(histogram.mean(), is(50.5d));
+        assertThat(histogram.valueAtPercentile(0), is(1L));
+        assertThat(histogram.valueAtPercentile(50), is(50L));
+        assertThat(histogram.valueAtPercentile(99), is(99L));
+        assertThat(histogram.valueAtPercentile(100), is(100L));
+        assertThat(histogram.countAtValue(42), is(1L));
+    }
+
+    @Test
+    public void large_values_keep_the_layout_precision() {
+        MetricHistogram histogram = MetricHistogram.of(LAYOUT, 123_456_789L);
+
+        long p50 = histogram.valueAtPercentile(50);
+        assertTrue(String.valueOf(p50), Math.abs(p50 - 123_456_789L) <= 123_456_789L / 100);
+    }
+
+    @Test
+    public void merge_adds_counts_and_leaves_operands_untouched() {
+        MetricHistogram first = MetricHistogram.of(LAYOUT, 1, 2);
+        MetricHistogram second = MetricHistogram.of(LAYOUT, 2, 3);
+
+        MetricHistogram merged = first.mergeWith(second);
+
+        assertThat(merged, is(MetricHistogram.of(LAYOUT, 1, 2, 2, 3)));
+        assertThat(first.totalCount(), is(2L));
+        assertThat(second.totalCount(), is(2L));
+    }
+
+    @Test
+    public void merge_with_other_layout_rerecords_counts() {
+        MetricHistogram first = MetricHistogram.of(LAYOUT, 1);
+        MetricHistogram second = MetricHistogram.of(new HistogramLayout(3, 10_000), 2, 5000);
+
+        MetricHistogram merged = first.mergeWith(second);
+
+        assertThat(merged.layout(), is(LAYOUT));
+        assertThat(merged.totalCount(), is(3L));
+        assertThat(merged.countAtValue(5000), is(1L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid_percentile_throws() {
+        MetricHistogram.of(LAYOUT, 1).valueAtPercentile(101);
+    }
+
+    @Test
+    public void equality() {
+        EqualsTester tester = new EqualsTester();
+        tester.addEqualityGroup(MetricHistogram.of(LAYOUT, 1, 2), MetricHistogram.of(LAYOUT, 2, 1));
+        tester.addEqualityGroup(MetricHistogram.of(LAYOUT, 1));
+        tester.addEqualityGroup(MetricHistogram.of(new HistogramLayout(3, 1000), 1));
+
+        tester.testEquals();
+    }
+
+    @Test
+    public void serializable() {
+        SerializableTester.reserializeAndAssert(MetricHistogram.of(LAYOUT, 0, 1, 1, 500, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(MetricHistogram.of(LAYOUT, 1, 2).toString()));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.testing.EqualsTester;
+import com.google.common.testing.NullPointerTester;
+import com.google.common.testing.SerializableTester;
+import io.amaze.bench.shared.test.Json;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class MetricReservoirTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+
+        tester.testAllPublicConstructors(MetricReservoir.class);
+        tester.testAllPublicStaticMethods(MetricReservoir.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void samples_cannot_exceed_capacity() {
+        new MetricReservoir(1, 2, 0, 1, 0.5, 0.5, values(0, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void samples_cannot_exceed_count() {
+        new MetricReservoir(10, 1, 0, 1, 0.5, 0.5, values(0, 2));
+    }
+
+    @Test
+    public void equality() {
+        EqualsTester tester = new EqualsTester();
+        tester.addEqualityGroup(reservoirOf(10, 0, 5), reservoirOf(10, 0, 5));
+        tester.addEqualityGroup(reservoirOf(10, 0, 6));
+        tester.addEqualityGroup(MetricReservoir.empty(10), MetricReservoir.empty(10));
+
+        tester.testEquals();
+    }
+
+    @Test
+    public void serializable() {
+        MetricReservoir reservoir = reservoirOf(10, 0, 5);
+
+        assertThat(SerializableTester.reserialize(reservoir), is(reservoir));
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(reservoirOf(10, 0, 5).toString()));
+        assertTrue(Json.isValid(MetricReservoir.empty(10).toString()));
+    }
+
+    @Test
+    public void merged_statistics_are_exact() {
+        MetricReservoir first = reservoirOf(10, 0, 100);
+        MetricReservoir second = reservoirOf(10, 50, 250);
+
+        MetricReservoir merged = first.mergeWith(second);
+
+        MetricReservoir expected = reservoirOf(10, 0, 100, 50, 250);
+        assertThat(merged.count(), is(300L));
+        assertThat(merged.min(), is(0d));
+        assertThat(merged.max(), is(249d));
+        assertEquals(expected.mean(), merged.mean(), EPSILON);
+        assertEquals(expected.variance(), merged.variance(), EPSILON);
+        assertThat(merged.samples().size(), is(10));
+        assertThat(first.count(), is(100L));
+    }
+
+    @Test
+    public void merging_an_empty_reservoir_keeps_the_other_one() {
+        MetricReservoir reservoir = reservoirOf(10, 0, 5);
+
+        assertThat(reservoir.mergeWith(MetricReservoir.empty(10)), is(reservoir));
+        assertThat(MetricReservoir.empty(10).mergeWith(reservoir), is(reservoir));
+        assertThat(MetricReservoir.empty(2).mergeWith(reservoir).samples().size(), is(2));
+    }
+
+    @Test
+    public void merged_samples_are_proportional_to_counts() {
+        Random random = new Random(42);
+        MetricReservoir small = new MetricReservoir(100, 1_000, 0, 0, 0, 0, values(0, 100, 0));
+        MetricReservoir large = new MetricReservoir(100, 9_000, 1, 1, 1, 0, values(0, 100, 1));
+
+        int fromLarge = 0;
+        int rounds = 200;
+        for (int i = 0; i < rounds; i++) {
+            for (MetricValue value : small.mergeWith(large, random).samples()) {
+                fromLarge += value.getValue().intValue();
+            }
+        }
+
+        double ratio = fromLarge / (100.0 * rounds);
+        assertEquals(0.9, ratio, 0.02);
+    }
+
+    /**
+     * Builds the reservoir of the values from start to end (excluded) of each given range,
+     * keeping the first values as samples.
+     */
+    private static MetricReservoir reservoirOf(final int capacity, final int... ranges) {
+        long count = 0;
+        double mean = 0;
+        double squaredDeviations = 0;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        List<MetricValue> samples = new ArrayList<>();
+        for (int r = 0; r < ranges.length; r += 2) {
+            for (int value = ranges[r]; value < ranges[r + 1]; value++) {
+                count++;
+                double delta = value - mean;
+                mean += delta / count;
+                squaredDeviations += delta * (value - mean);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                if (samples.size() < capacity) {
+                    samples.add(new MetricValue(value));
+                }
+            }
+        }
+        return count == 0 ? MetricReservoir.empty(capacity) : //
+                new MetricReservoir(capacity, count, min, max, mean, squaredDeviations, samples);
+    }
+
+    private static List<MetricValue> values(final int start, final int end) {
+        List<MetricValue> values = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            values.add(new MetricValue(i));
+        }
+        return values;
+    }
+
+    private static List<MetricValue> values(final int start, final int end, final int value) {
+        return new ArrayList<>(Collections.nCopies(end - start, new MetricValue(value)));
+    }
+}
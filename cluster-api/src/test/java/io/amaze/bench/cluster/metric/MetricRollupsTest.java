@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import io.amaze.bench.shared.test.Json;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.amaze.bench.cluster.metric.RollupResolution.ONE_MINUTE;
+import static io.amaze.bench.cluster.metric.RollupResolution.ONE_SECOND;
+import static io.amaze.bench.cluster.metric.RollupResolution.TEN_SECONDS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class MetricRollupsTest {
+
+    private static final RetentionPolicy POLICY = RetentionPolicy.keepRawValuesFor(1, TimeUnit.SECONDS)
+                                                                 .keepRollupsFor(ONE_SECOND, 5, TimeUnit.SECONDS);
+
+    @Test
+    public void values_are_summarized_per_bucket() {
+        MetricRollups rollups = new MetricRollups(POLICY);
+        rollups.record(1000, 3);
+        rollups.record(1500, 1);
+        rollups.record(1999, 8);
+        rollups.record(2000, 5);
+
+        List<MetricRollup> seconds = rollups.rollups(ONE_SECOND);
+
+        assertThat(seconds.size(), is(2));
+        MetricRollup first = seconds.get(0);
+        assertThat(first.start(), is(1000L));
+        assertThat(first.count(), is(3L));
+        assertThat(first.sum(), is(12d));
+        assertThat(first.min(), is(1d));
+        assertThat(first.max(), is(8d));
+        assertThat(first.mean(), is(4d));
+        assertThat(first.histogram().totalCount(), is(3L));
+        assertThat(first.histogram().countAtValue(8), is(1L));
+        assertThat(seconds.get(1).start(), is(2000L));
+    }
+
+    @Test
+    public void coarser_resolutions_are_updated_as_well() {
+        MetricRollups rollups = new MetricRollups(POLICY);
+        rollups.record(1000, 3);
+        rollups.record(12_000, 1);
+
+        assertThat(rollups.rollups(TEN_SECONDS).size(), is(2));
+        assertThat(rollups.rollups(ONE_MINUTE).size(), is(1));
+        assertThat(rollups.rollups(ONE_MINUTE).get(0).count(), is(2L));
+    }
+
+    @Test
+    public void late_values_land_in_their_bucket() {
+        MetricRollups rollups = new MetricRollups(POLICY);
+        rollups.record(2000, 1);
+        rollups.record(1000, 2);
+        rollups.record(2500, 3);
+
+        List<MetricRollup> seconds = rollups.rollups(ONE_SECOND);
+
+        assertThat(seconds.get(0).start(), is(1000L));
+        assertThat(seconds.get(1).count(), is(2L));
+    }
+
+    @Test
+    public void buckets_out_of_retention_are_evicted() {
+        MetricRollups rollups = new MetricRollups(POLICY);
+        for (long timestamp = 0; timestamp < 10_000; timestamp += 100) {
+            rollups.record(timestamp, 1);
+        }
+
+        rollups.evict(9900);
+
+        List<MetricRollup> seconds = rollups.rollups(ONE_SECOND);
+        assertThat(seconds.get(0).start(), is(4000L));
+        assertThat(rollups.rollups(ONE_MINUTE).size(), is(1));
+    }
+
+    @Test
+    public void negative_values_are_counted_as_zero_in_histogram() {
+        MetricRollups rollups = new MetricRollups(POLICY);
+        rollups.record(0, -5);
+
+        MetricRollup rollup = rollups.rollups(ONE_SECOND).get(0);
+
+        assertThat(rollup.min(), is(-5d));
+        assertThat(rollup.histogram().countAtValue(0), is(1L));
+    }
+
+    @Test
+    public void equal_buckets_make_equal_rollups() {
+        MetricRollups first = new MetricRollups(POLICY);
+        MetricRollups second = new MetricRollups(POLICY);
+        for (int value = 0; value < 100; value++) {
+            first.record(0, value);
+            second.record(0, value);
+        }
+
+        assertThat(first.rollups(ONE_SECOND), is(second.rollups(ONE_SECOND)));
+        assertThat(first.rollups(ONE_SECOND).hashCode(), is(second.rollups(ONE_SECOND).hashCode()));
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        MetricRollups rollups = new MetricRollups(POLICY);
+        rollups.record(0, 1);
+
+        assertTrue(Json.isValid(rollups.rollups(ONE_SECOND).get(0).toString()));
+    }
+}
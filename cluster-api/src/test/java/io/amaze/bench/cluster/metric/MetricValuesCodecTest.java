@@ -0,0 +1,346 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.testing.SerializableTester;
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.cluster.codec.BinaryInput;
+import io.amaze.bench.cluster.codec.BinaryOutput;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static io.amaze.bench.api.metric.Metric.metric;
+import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class MetricValuesCodecTest {
+
+    private static final Metric LATENCY = metric("latency", "ms").build();
+    private static final Metric FULL_METRIC = metric("full", "bytes").label("Full").minValue(1).maxValue(2.5d).build();
+
+    @Test
+    public void empty_map_round_trips() {
+        assertRoundTrip(new HashMap<>());
+    }
+
+    @Test
+    public void metric_definition_round_trips() {
+        Map<Metric, List<MetricValue>> values = new HashMap<>();
+        values.put(FULL_METRIC, new ArrayList<>());
+
+        Metric decoded = decode(values).keySet().iterator().next();
+
+        assertThat(decoded.getKey(), is("full"));
+        assertThat(decoded.getUnit(), is("bytes"));
+        assertThat(decoded.getLabel().get(), is("Full"));
+        assertThat(decoded.getMinValue().get(), is(1));
+        assertThat(decoded.getMaxValue().get(), is(2.5d));
+    }
+
+    @Test
+    public void homogeneous_columns_keep_their_type() {
+        assertRoundTrip(valuesOf(new MetricValue(1), new MetricValue(-5), new MetricValue(Integer.MAX_VALUE)));
+        assertRoundTrip(valuesOf(new MetricValue(1L), new MetricValue(Long.MIN_VALUE), new MetricValue(Long.MAX_VALUE)));
+        assertRoundTrip(valuesOf(new MetricValue((short) 3), new MetricValue((short) -3)));
+        assertRoundTrip(valuesOf(new MetricValue((byte) 3), new MetricValue((byte) -128)));
+        assertRoundTrip(valuesOf(new MetricValue(1.5f), new MetricValue(Float.NaN)));
+        assertRoundTrip(valuesOf(new MetricValue(1.5d), new MetricValue(-0.0d), new MetricValue(Double.MAX_VALUE)));
+    }
+
+    @Test
+    public void mixed_integral_columns_are_decoded_as_longs() {
+        Map<Metric, List<MetricValue>> decoded = decode(valuesOf(new MetricValue(1), new MetricValue(2L)));
+
+        assertThat(decoded.get(LATENCY), is(Arrays.asList(new MetricValue(1L), new MetricValue(2L))));
+    }
+
+    @Test
+    public void mixed_columns_are_decoded_as_doubles() {
+        Map<Metric, List<MetricValue>> decoded = decode(valuesOf(new MetricValue(1),
+                                                                 new MetricValue(2.5f),
+                                                                 new MetricValue(BigDecimal.TEN)));
+
+        assertThat(decoded.get(LATENCY),
+                   is(Arrays.asList(new MetricValue(1d), new MetricValue(2.5d), new MetricValue(10d))));
+    }
+
+    @Test
+    public void timed_and_partly_timed_values_round_trip() {
+        assertRoundTrip(valuesOf(new MetricTimedValue(1000L, 1), new MetricTimedValue(2000L, 2)));
+        assertRoundTrip(valuesOf(new MetricTimedValue(1000L, 1),
+                                 new MetricValue(2),
+                                 new MetricTimedValue(500L, 3),
+                                 new MetricValue(4),
+                                 new MetricValue(5),
+                                 new MetricValue(6),
+                                 new MetricValue(7),
+                                 new MetricValue(8),
+                                 new MetricTimedValue(Long.MAX_VALUE, 9)));
+    }
+
+    @Test
+    public void random_series_round_trip() {
+        Random random = new Random(42);
+        List<MetricValue> longs = new ArrayList<>();
+        List<MetricValue> doubles = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            longs.add(new MetricTimedValue(random.nextLong(), random.nextLong()));
+            doubles.add(new MetricTimedValue(random.nextLong(), random.nextGaussian()));
+        }
+        Map<Metric, List<MetricValue>> values = new HashMap<>();
+        values.put(LATENCY, longs);
+        values.put(FULL_METRIC, doubles);
+
+        assertRoundTrip(values);
+    }
+
+    @Test
+    public void regular_time_series_is_at_least_ten_times_smaller_than_java_serialization() throws IOException {
+        List<MetricValue> series = new ArrayList<>();
+        long now = 1_480_000_000_000L;
+        for (int i = 0; i < 10_000; i++) {
+            series.add(new MetricTimedValue(now + i * 1000L, 100 + (i % 7)));
+        }
+        Map<Metric, List<MetricValue>> values = new HashMap<>();
+        values.put(LATENCY, series);
+
+        int encodedSize = MetricValuesCodec.encode(values, Collections.emptyMap(), Collections.emptyMap()).length;
+        int serializedSize = javaSerializedSize(new MetricValuesMessage(DUMMY_ACTOR, values));
+
+        assertTrue(encodedSize + " vs " + serializedSize, encodedSize * 10 <= serializedSize);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknown_version_throws() {
+        MetricValuesCodec.decode(DUMMY_ACTOR, new byte[]{(byte) (MetricValuesCodec.FORMAT_VERSION + 1), 0});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncated_payload_throws() {
+        byte[] encoded = MetricValuesCodec.encode(valuesOf(new MetricTimedValue(1000L, 1)),
+                                                   Collections.emptyMap(),
+                                                   Collections.emptyMap());
+
+        MetricValuesCodec.decode(DUMMY_ACTOR, Arrays.copyOf(encoded, encoded.length - 1));
+    }
+
+    @Test
+    public void histograms_round_trip() {
+        Map<Metric, MetricHistogram> histograms = new HashMap<>();
+        histograms.put(LATENCY, MetricHistogram.of(HistogramLayout.defaultLayout(), 0, 1, 1, 5000, Long.MAX_VALUE));
+        histograms.put(FULL_METRIC, MetricHistogram.of(new HistogramLayout(3, 3_600_000_000L), 42));
+        MetricValuesMessage message = new MetricValuesMessage(DUMMY_ACTOR, valuesOf(new MetricValue(1)), histograms);
+
+        byte[] encoded = MetricValuesCodec.encode(message.metrics(), message.histograms(), message.reservoirs());
+
+        assertThat(MetricValuesCodec.decode(DUMMY_ACTOR, encoded), is(message));
+    }
+
+    @Test
+    public void reservoirs_round_trip() {
+        List<MetricValue> samples = new ArrayList<>();
+        samples.add(new MetricTimedValue(1000L, 1.5));
+        samples.add(new MetricTimedValue(2000L, 42.25));
+        Map<Metric, MetricReservoir> reservoirs = new HashMap<>();
+        reservoirs.put(LATENCY, new MetricReservoir(2, 1_000_000L, 0.5, 99.5, 12.75, 12345.5, samples));
+        reservoirs.put(FULL_METRIC, MetricReservoir.empty(16));
+        MetricValuesMessage message = new MetricValuesMessage(DUMMY_ACTOR,
+                                                              Collections.emptyMap(),
+                                                              Collections.emptyMap(),
+                                                              reservoirs);
+
+        byte[] encoded = MetricValuesCodec.encode(message.metrics(), message.histograms(), message.reservoirs());
+
+        assertThat(MetricValuesCodec.decode(DUMMY_ACTOR, encoded), is(message));
+    }
+
+    @Test
+    public void sparse_histogram_is_encoded_in_a_few_bytes() {
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1000 + (i % 50);
+        }
+        Map<Metric, MetricHistogram> histograms = new HashMap<>();
+        histograms.put(LATENCY, MetricHistogram.of(HistogramLayout.defaultLayout(), values));
+
+        byte[] encoded = MetricValuesCodec.encode(Collections.emptyMap(), histograms, Collections.emptyMap());
+
+        assertTrue("Encoded size " + encoded.length, encoded.length < 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void corrupted_histogram_counts_throw() {
+        BinaryOutput out = new BinaryOutput(16);
+        out.writeVarInt(3);
+        out.writeZigZag(-5);
+
+        MetricValuesCodec.readCounts(new BinaryInput(out.toByteArray()), 10);
+    }
+
+    @Test
+    public void definitions_are_only_sent_once_per_dictionary() {
+        MetricDictionary sender = new MetricDictionary();
+        MetricDictionary receiver = new MetricDictionary();
+        Map<Metric, List<MetricValue>> values = valuesOf(new MetricValue(1), new MetricValue(2));
+
+        byte[] first = MetricValuesCodec.encode(values, Collections.emptyMap(), Collections.emptyMap(), sender);
+        byte[] second = MetricValuesCodec.encode(values, Collections.emptyMap(), Collections.emptyMap(), sender);
+
+        assertThat(second.length < first.length, is(true));
+        assertThat(MetricValuesCodec.decode(DUMMY_ACTOR, first, receiver).metrics(), is(values));
+        assertThat(MetricValuesCodec.decode(DUMMY_ACTOR, second, receiver).metrics(), is(values));
+    }
+
+    @Test
+    public void changed_definition_is_sent_again() {
+        MetricDictionary sender = new MetricDictionary();
+        MetricDictionary receiver = new MetricDictionary();
+        Map<Metric, List<MetricValue>> values = new HashMap<>();
+        values.put(FULL_METRIC, new ArrayList<>());
+        MetricValuesCodec.decode(DUMMY_ACTOR,
+                                 MetricValuesCodec.encode(values, Collections.emptyMap(), Collections.emptyMap(), sender),
+                                 receiver);
+
+        Map<Metric, List<MetricValue>> changed = new HashMap<>();
+        changed.put(metric("full", "kbytes").build(), new ArrayList<>());
+        byte[] encoded = MetricValuesCodec.encode(changed, Collections.emptyMap(), Collections.emptyMap(), sender);
+        Metric decoded = MetricValuesCodec.decode(DUMMY_ACTOR, encoded, receiver).metrics().keySet().iterator().next();
+
+        assertThat(decoded.getUnit(), is("kbytes"));
+        assertThat(decoded.getLabel().isPresent(), is(false));
+        assertThat(receiver.size(), is(1));
+    }
+
+    @Test
+    public void unknown_metric_id_is_skipped() {
+        MetricDictionary sender = new MetricDictionary();
+        MetricValuesCodec.encode(valuesOf(new MetricValue(1)), Collections.emptyMap(), Collections.emptyMap(), sender);
+        byte[] encoded = MetricValuesCodec.encode(valuesOf(new MetricValue(1)), Collections.emptyMap(), Collections.emptyMap(), sender);
+
+        MetricValuesMessage decoded = MetricValuesCodec.decode(DUMMY_ACTOR, encoded, new MetricDictionary());
+
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test
+    public void receiver_starting_partway_through_catches_up_when_definitions_are_sent_again() {
+        MetricDictionary sender = new MetricDictionary();
+        MetricDictionary receiver = new MetricDictionary();
+        Map<Metric, List<MetricValue>> values = valuesOf(new MetricValue(1));
+        MetricValuesCodec.encode(values, Collections.emptyMap(), Collections.emptyMap(), sender);
+
+        for (int i = 1; i < MetricDictionary.DEFINITIONS_INTERVAL; i++) {
+            byte[] encoded = MetricValuesCodec.encode(values, Collections.emptyMap(), Collections.emptyMap(), sender);
+            assertTrue(MetricValuesCodec.decode(DUMMY_ACTOR, encoded, receiver).isEmpty());
+        }
+        byte[] encoded = MetricValuesCodec.encode(values, Collections.emptyMap(), Collections.emptyMap(), sender);
+
+        assertThat(MetricValuesCodec.decode(DUMMY_ACTOR, encoded, receiver).metrics(), is(values));
+    }
+
+    @Test
+    public void lost_messages_are_counted_and_new_definitions_still_resolved() {
+        MetricDictionary sender = new MetricDictionary();
+        MetricDictionary receiver = new MetricDictionary();
+        MetricValuesCodec.decode(DUMMY_ACTOR,
+                                 MetricValuesCodec.encode(valuesOf(new MetricValue(1)),
+                                                          Collections.emptyMap(),
+                                                          Collections.emptyMap(),
+                                                          sender),
+                                 receiver);
+        MetricValuesCodec.encode(valuesOf(new MetricValue(2)), Collections.emptyMap(), Collections.emptyMap(), sender);
+
+        Map<Metric, List<MetricValue>> values = new HashMap<>(valuesOf(new MetricValue(3)));
+        values.put(FULL_METRIC, new ArrayList<>(Collections.singletonList(new MetricValue(4))));
+        byte[] encoded = MetricValuesCodec.encode(values, Collections.emptyMap(), Collections.emptyMap(), sender);
+
+        assertThat(MetricValuesCodec.decode(DUMMY_ACTOR, encoded, receiver).metrics(), is(values));
+        assertThat(receiver.missedMessages(), is(1L));
+    }
+
+    @Test
+    public void reset_sender_is_followed_by_the_receiver() {
+        MetricDictionary sender = new MetricDictionary();
+        MetricDictionary receiver = new MetricDictionary();
+        Map<Metric, List<MetricValue>> values = valuesOf(new MetricValue(1));
+        MetricValuesCodec.decode(DUMMY_ACTOR,
+                                 MetricValuesCodec.encode(values, Collections.emptyMap(), Collections.emptyMap(), sender),
+                                 receiver);
+
+        sender.reset();
+        Map<Metric, List<MetricValue>> other = new HashMap<>();
+        other.put(FULL_METRIC, new ArrayList<>(Collections.singletonList(new MetricValue(2))));
+        byte[] encoded = MetricValuesCodec.encode(other, Collections.emptyMap(), Collections.emptyMap(), sender);
+
+        assertThat(MetricValuesCodec.decode(DUMMY_ACTOR, encoded, receiver).metrics(), is(other));
+        assertThat(receiver.size(), is(1));
+        assertThat(receiver.missedMessages(), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dictionary_encoded_payload_cannot_be_decoded_alone() {
+        byte[] encoded = MetricValuesCodec.encode(valuesOf(new MetricValue(1)),
+                                                  Collections.emptyMap(),
+                                                  Collections.emptyMap(),
+                                                  new MetricDictionary());
+
+        MetricValuesCodec.decode(DUMMY_ACTOR, encoded);
+    }
+
+    @Test
+    public void encoded_message_is_serializable() {
+        EncodedMetricValuesMessage encoded = EncodedMetricValuesMessage.encode(
+                new MetricValuesMessage(DUMMY_ACTOR, valuesOf(new MetricValue(1))));
+
+        assertThat(SerializableTester.reserialize(encoded), is(encoded));
+    }
+
+    private static Map<Metric, List<MetricValue>> valuesOf(final MetricValue... metricValues) {
+        Map<Metric, List<MetricValue>> values = new HashMap<>();
+        values.put(LATENCY, new ArrayList<>(Arrays.asList(metricValues)));
+        return values;
+    }
+
+    private static Map<Metric, List<MetricValue>> decode(final Map<Metric, List<MetricValue>> values) {
+        byte[] encoded = MetricValuesCodec.encode(values, Collections.emptyMap(), Collections.emptyMap());
+        return MetricValuesCodec.decode(DUMMY_ACTOR, encoded).metrics();
+    }
+
+    private static void assertRoundTrip(final Map<Metric, List<MetricValue>> values) {
+        assertThat(decode(values), is(values));
+    }
+
+    private static int javaSerializedSize(final MetricValuesMessage message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        return bytes.size();
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.shared.test.Json;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.amaze.bench.api.metric.Metric.metric;
+import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class MetricValuesLogTest {
+
+    private static final ActorKey OTHER_ACTOR = new ActorKey("other");
+    private static final Metric LATENCY = metric("latency", "ms").build();
+    private static final Metric THROUGHPUT = metric("throughput", "msg/s").label("Throughput").build();
+    private static final int SMALL_SEGMENT = 512;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private MetricValuesLog valuesLog;
+
+    @Before
+    public void init() throws IOException {
+        directory = folder.newFolder();
+        valuesLog = MetricValuesLog.open(directory, SMALL_SEGMENT, MetricValuesLog.DEFAULT_QUEUE_CAPACITY);
+    }
+
+    @After
+    public void close() {
+        valuesLog.close();
+    }
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+        tester.setDefault(ActorKey.class, DUMMY_ACTOR);
+        tester.setDefault(File.class, directory);
+        tester.setDefault(Metric.class, LATENCY);
+
+        tester.testAllPublicStaticMethods(MetricValuesLog.class);
+        tester.testAllPublicInstanceMethods(valuesLog);
+    }
+
+    @Test
+    public void values_are_read_per_actor_and_metric_in_append_order() {
+        valuesLog.append(message(DUMMY_ACTOR, LATENCY, 0, 10));
+        valuesLog.append(message(OTHER_ACTOR, LATENCY, 100, 10));
+        valuesLog.append(message(DUMMY_ACTOR, LATENCY, 10, 10));
+
+        valuesLog.flush();
+
+        assertThat(valuesLog.valuesFor(DUMMY_ACTOR, LATENCY), is(values(0, 20)));
+        assertThat(valuesLog.valuesFor(OTHER_ACTOR, LATENCY), is(values(100, 10)));
+        assertThat(valuesLog.actors().size(), is(2));
+        assertThat(valuesLog.metricsOf(DUMMY_ACTOR), is(Collections.singleton(LATENCY)));
+    }
+
+    @Test
+    public void unknown_metric_has_no_values() {
+        assertTrue(valuesLog.valuesFor(DUMMY_ACTOR, LATENCY).isEmpty());
+        assertTrue(valuesLog.metricsOf(DUMMY_ACTOR).isEmpty());
+    }
+
+    @Test
+    public void records_are_split_across_segments() {
+        for (int i = 0; i < 20; i++) {
+            valuesLog.append(message(DUMMY_ACTOR, LATENCY, i * 10, 10));
+        }
+        valuesLog.flush();
+
+        assertThat(valuesLog.valuesFor(DUMMY_ACTOR, LATENCY), is(values(0, 200)));
+        assertTrue(segmentFiles().length > 1);
+    }
+
+    @Test
+    public void record_larger_than_a_segment_gets_its_own_segment() {
+        valuesLog.append(message(DUMMY_ACTOR, LATENCY, 0, 1000));
+        valuesLog.flush();
+
+        assertThat(valuesLog.valuesFor(DUMMY_ACTOR, LATENCY), is(values(0, 1000)));
+    }
+
+    @Test
+    public void reopened_log_is_indexed_and_appended_to() throws IOException {
+        valuesLog.append(message(DUMMY_ACTOR, LATENCY, 0, 50));
+        valuesLog.append(message(DUMMY_ACTOR, THROUGHPUT, 0, 5));
+        valuesLog.close();
+
+        valuesLog = MetricValuesLog.open(directory, SMALL_SEGMENT, MetricValuesLog.DEFAULT_QUEUE_CAPACITY);
+        valuesLog.append(message(DUMMY_ACTOR, LATENCY, 50, 10));
+        valuesLog.flush();
+
+        assertThat(valuesLog.valuesFor(DUMMY_ACTOR, LATENCY), is(values(0, 60)));
+        Metric throughput = valuesLog.metricsOf(DUMMY_ACTOR).stream() //
+                .filter(THROUGHPUT::equals).findFirst().get();
+        assertThat(throughput.getLabel().get(), is("Throughput"));
+    }
+
+    @Test
+    public void reopened_log_indexes_records_holding_several_metrics_and_histograms() throws IOException {
+        Map<Metric, List<MetricValue>> metricValues = new HashMap<>();
+        metricValues.put(LATENCY, values(0, 20));
+        metricValues.put(THROUGHPUT, values(100, 3));
+        Map<Metric, MetricHistogram> histograms = new HashMap<>();
+        histograms.put(LATENCY, MetricHistogram.of(HistogramLayout.defaultLayout(), 1, 2, 3));
+        MetricValuesMessage record = new MetricValuesMessage(DUMMY_ACTOR, metricValues, histograms);
+        valuesLog.append(record);
+        valuesLog.append(message(DUMMY_ACTOR, THROUGHPUT, 103, 2));
+        valuesLog.close();
+
+        valuesLog = MetricValuesLog.open(directory, SMALL_SEGMENT, MetricValuesLog.DEFAULT_QUEUE_CAPACITY);
+
+        assertThat(valuesLog.valuesFor(DUMMY_ACTOR, LATENCY), is(values(0, 20)));
+        assertThat(valuesLog.valuesFor(DUMMY_ACTOR, THROUGHPUT), is(values(100, 5)));
+        MetricsRepository repository = new MetricsRepository();
+        valuesLog.replayInto(repository);
+        assertThat(repository.valuesFor(DUMMY_ACTOR).histograms(), is(histograms));
+    }
+
+    @Test
+    public void uncommitted_record_is_ignored_when_reopening() throws IOException {
+        valuesLog.append(message(DUMMY_ACTOR, LATENCY, 0, 5));
+        valuesLog.close();
+        File segment = segmentFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // A record body with no length, as left when the process dies while writing it
+            file.seek(segment.length() - 16);
+            file.writeLong(-1L);
+        }
+
+        valuesLog = MetricValuesLog.open(directory, SMALL_SEGMENT, MetricValuesLog.DEFAULT_QUEUE_CAPACITY);
+        valuesLog.append(message(DUMMY_ACTOR, LATENCY, 5, 5));
+        valuesLog.flush();
+
+        assertThat(valuesLog.valuesFor(DUMMY_ACTOR, LATENCY), is(values(0, 10)));
+    }
+
+    @Test
+    public void log_is_replayed_into_a_fresh_repository() {
+        Map<Metric, MetricHistogram> histograms = new HashMap<>();
+        histograms.put(LATENCY, MetricHistogram.of(HistogramLayout.defaultLayout(), 1, 2, 3));
+        MetricValuesMessage withHistogram = new MetricValuesMessage(OTHER_ACTOR, new HashMap<>(), histograms);
+        valuesLog.append(message(DUMMY_ACTOR, LATENCY, 0, 10));
+        valuesLog.append(withHistogram);
+        valuesLog.append(message(DUMMY_ACTOR, LATENCY, 10, 10));
+        valuesLog.flush();
+
+        MetricsRepository repository = new MetricsRepository();
+        valuesLog.replayInto(repository);
+
+        assertThat(repository.valuesFor(DUMMY_ACTOR).metrics().get(LATENCY), is(values(0, 20)));
+        assertThat(repository.valuesFor(OTHER_ACTOR), is(withHistogram));
+    }
+
+    @Test
+    public void repository_persists_ingested_values() throws IOException {
+        MetricsRepository repository = new MetricsRepository();
+        repository.persistTo(valuesLog);
+
+        repository.createClusterListener().onMetricValues(message(DUMMY_ACTOR, LATENCY, 0, 10));
+        repository.createClusterListener()
+                  .onEncodedMetricValues(EncodedMetricValuesMessage.encode(message(DUMMY_ACTOR, LATENCY, 10, 10)));
+        valuesLog.flush();
+
+        assertThat(valuesLog.valuesFor(DUMMY_ACTOR, LATENCY), is(values(0, 20)));
+    }
+
+    @Test
+    public void values_ingested_once_the_log_is_closed_are_dropped_and_counted() {
+        MetricsRepository repository = new MetricsRepository();
+        repository.persistTo(valuesLog);
+        valuesLog.close();
+
+        repository.createClusterListener().onMetricValues(message(DUMMY_ACTOR, LATENCY, 0, 10));
+        valuesLog.flush();
+
+        assertThat(repository.valuesFor(DUMMY_ACTOR).metrics().get(LATENCY), is(values(0, 10)));
+        assertThat(valuesLog.droppedMessages(), is(1L));
+        assertTrue(valuesLog.valuesFor(DUMMY_ACTOR, LATENCY).isEmpty());
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(valuesLog.toString()));
+    }
+
+    private File[] segmentFiles() {
+        File[] files = directory.listFiles();
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static MetricValuesMessage message(final ActorKey actor, final Metric metric, final int from, final int count) {
+        Map<Metric, List<MetricValue>> metricValues = new HashMap<>();
+        metricValues.put(metric, values(from, count));
+        return new MetricValuesMessage(actor, metricValues);
+    }
+
+    private static List<MetricValue> values(final int from, final int count) {
+        List<MetricValue> values = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            values.add(new MetricTimedValue(1000L + i, i));
+        }
+        return values;
+    }
+}
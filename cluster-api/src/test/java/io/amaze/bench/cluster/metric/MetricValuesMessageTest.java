@@ -35,6 +35,8 @@ import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -73,6 +75,33 @@ public final class MetricValuesMessageTest {
     public void toString_yields_valid_json() {
         assertTrue(Json.isValid(metricValues(2).toString()));
         assertTrue(Json.isValid(emptyMetricValues().toString()));
+        assertTrue(Json.isValid(histogramValues(1, 2).toString()));
+        assertTrue(Json.isValid(reservoirValues(3).toString()));
+    }
+
+    @Test
+    public void merge_metrics_merges_histograms() {
+        MetricValuesMessage originalValues = histogramValues(1, 2);
+        MetricValuesMessage newValues = histogramValues(3);
+
+        MetricValuesMessage mergedMetrics = originalValues.mergeWith(newValues);
+
+        assertThat(originalValues.histograms().get(DUMMY_METRIC).totalCount(), is(2L));
+        assertThat(mergedMetrics.histograms().get(DUMMY_METRIC).totalCount(), is(3L));
+        assertThat(mergedMetrics.histograms().get(DUMMY_METRIC).max(), is(3L));
+    }
+
+    @Test
+    public void merge_metrics_merges_reservoirs() {
+        MetricValuesMessage originalValues = reservoirValues(2);
+        MetricValuesMessage newValues = reservoirValues(5);
+
+        MetricValuesMessage mergedMetrics = originalValues.mergeWith(newValues);
+
+        assertThat(originalValues.reservoirs().get(DUMMY_METRIC).count(), is(2L));
+        assertThat(mergedMetrics.reservoirs().get(DUMMY_METRIC).count(), is(7L));
+        assertThat(mergedMetrics.reservoirs().get(DUMMY_METRIC).samples().size(), is(4));
+        assertFalse(mergedMetrics.isEmpty());
     }
 
     @Test
@@ -118,6 +147,31 @@ public final class MetricValuesMessageTest {
         assertThat(metricValuesMessage.copy().metrics().size(), is(metricValuesMessage.metrics().size()));
     }
 
+    @Test
+    public void metrics_view_is_not_copied() {
+        Map<Metric, List<MetricValue>> metricValues = new HashMap<>();
+        metricValues.put(DUMMY_METRIC, new ArrayList<>());
+        MetricValuesMessage metricValuesMessage = new MetricValuesMessage(DUMMY_ACTOR, metricValues);
+
+        assertSame(metricValues, metricValuesMessage.metricsView());
+    }
+
+    private MetricValuesMessage histogramValues(final long... values) {
+        Map<Metric, MetricHistogram> histograms = new HashMap<>();
+        histograms.put(DUMMY_METRIC, MetricHistogram.of(HistogramLayout.defaultLayout(), values));
+        return new MetricValuesMessage(DUMMY_ACTOR, new HashMap<>(), histograms);
+    }
+
+    private MetricValuesMessage reservoirValues(final int count) {
+        List<MetricValue> samples = new ArrayList<>();
+        for (int i = 0; i < Math.min(count, 4); i++) {
+            samples.add(new MetricValue(i));
+        }
+        Map<Metric, MetricReservoir> reservoirs = new HashMap<>();
+        reservoirs.put(DUMMY_METRIC, new MetricReservoir(4, count, 0, count - 1, (count - 1) / 2.0, 1, samples));
+        return new MetricValuesMessage(DUMMY_ACTOR, new HashMap<>(), new HashMap<>(), reservoirs);
+    }
+
     private MetricValuesMessage emptyMetricValues() {
         return new MetricValuesMessage(DUMMY_ACTOR, new HashMap<>());
     }
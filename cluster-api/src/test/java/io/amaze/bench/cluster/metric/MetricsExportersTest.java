@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.shared.test.Json;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static io.amaze.bench.api.metric.Metric.metric;
+import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class MetricsExportersTest {
+
+    private static final Metric LATENCY = metric("latency", "ms").build();
+    private static final Metric ODD = metric("odd, \"key\"", "ms").build();
+    private static final HistogramLayout LAYOUT = HistogramLayout.defaultLayout();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+
+        tester.testAllPublicStaticMethods(MetricsExporters.class);
+    }
+
+    @Test
+    public void csv_has_one_line_per_value() throws IOException {
+        try (MetricsExporter exporter = MetricsExporters.csv(out)) {
+            exporter.exportValue(DUMMY_ACTOR, LATENCY, new MetricTimedValue(10, 1.5));
+            exporter.exportValue(DUMMY_ACTOR, ODD, new MetricValue(2));
+            exporter.exportHistogram(DUMMY_ACTOR, LATENCY, 0, 1, MetricHistogram.of(LAYOUT, 1));
+        }
+
+        assertThat(lines(), is(new String[]{CsvExporter.HEADER, //
+                DUMMY_ACTOR.getName() + ",latency,ms,10,1.5", //
+                DUMMY_ACTOR.getName() + ",\"odd, \"\"key\"\"\",ms,,2"}));
+    }
+
+    @Test
+    public void json_lines_are_valid_json() throws IOException {
+        try (MetricsExporter exporter = MetricsExporters.jsonLines(out)) {
+            exporter.exportValue(DUMMY_ACTOR, LATENCY, new MetricTimedValue(10, 1.5));
+            exporter.exportValue(DUMMY_ACTOR, ODD, new MetricValue(Double.NaN));
+            exporter.exportValue(DUMMY_ACTOR, metric("tab\t", "\u0001").build(), new MetricValue(1));
+            exporter.exportHistogram(DUMMY_ACTOR, LATENCY, 0, 1, MetricHistogram.of(LAYOUT, 1, 2));
+        }
+
+        String[] lines = lines();
+        assertThat(lines.length, is(4));
+        for (String line : lines) {
+            assertTrue(line, Json.isValid(line));
+        }
+    }
+
+    @Test
+    public void hdr_histogram_log_lines_decode_to_the_exported_counts() throws IOException, DataFormatException {
+        MetricHistogram histogram = MetricHistogram.of(LAYOUT, 1, 1, 5, 1000, 1_000_000);
+        try (MetricsExporter exporter = MetricsExporters.hdrHistogramLog(out)) {
+            exporter.exportValue(DUMMY_ACTOR, LATENCY, new MetricValue(1));
+            exporter.exportHistogram(DUMMY_ACTOR, ODD, 1500, 3000, histogram);
+        }
+
+        String[] lines = lines();
+        assertThat(lines[0], is("#[Histogram log format version 1.3]"));
+        assertThat(lines.length, is(5));
+        String[] fields = lines[4].split(",");
+        assertThat(fields[0], is("Tag=" + DUMMY_ACTOR.getName() + "/odd__\"key\""));
+        assertThat(fields[1], is("1.500"));
+        assertThat(fields[2], is("1.500"));
+        assertThat(fields[3], is(String.format(Locale.US, "%.3f", histogram.max() / HdrHistogramLogExporter.MAX_VALUE_UNIT_RATIO)));
+        assertThat(decodeCounts(Base64.getDecoder().decode(fields[4])), is(histogram));
+    }
+
+    @Test
+    public void repository_values_are_exported_live() throws IOException {
+        MetricsRepository repository = new MetricsRepository();
+        repository.createClusterListener().onMetricValues(message(DUMMY_ACTOR, 3));
+
+        try (MetricsExporter exporter = MetricsExporters.csv(out)) {
+            repository.exportTo(exporter);
+        }
+
+        assertThat(lines().length, is(4));
+    }
+
+    @Test
+    public void persisted_values_are_exported_with_histogram_intervals() throws IOException {
+        try (MetricValuesLog valuesLog = MetricValuesLog.open(folder.newFolder())) {
+            valuesLog.append(message(DUMMY_ACTOR, 3));
+            valuesLog.append(message(new ActorKey("other"), 2));
+            valuesLog.append(message(DUMMY_ACTOR, 1));
+            valuesLog.flush();
+
+            try (MetricsExporter exporter = MetricsExporters.jsonLines(out)) {
+                valuesLog.exportTo(exporter);
+            }
+        }
+
+        String[] lines = lines();
+        assertThat(lines.length, is(9));
+        assertTrue(lines[3].contains("\"histogram\""));
+        for (String line : lines) {
+            assertTrue(line, Json.isValid(line));
+        }
+    }
+
+    private String[] lines() {
+        return new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    }
+
+    private static MetricValuesMessage message(final ActorKey actor, final int count) {
+        Map<Metric, List<MetricValue>> values = new HashMap<>();
+        List<MetricValue> latencies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            latencies.add(new MetricTimedValue(i, i));
+        }
+        values.put(LATENCY, latencies);
+        Map<Metric, MetricHistogram> histograms = new HashMap<>();
+        histograms.put(LATENCY, MetricHistogram.of(LAYOUT, 1, 2, 3));
+        return new MetricValuesMessage(actor, values, histograms);
+    }
+
+    /**
+     * Decodes the compressed V2 encoding the way HdrHistogram does.
+     */
+    private static MetricHistogram decodeCounts(final byte[] compressed) throws DataFormatException {
+        ByteBuffer header = ByteBuffer.wrap(compressed);
+        assertThat(header.getInt(), is(0x1c849314));
+        int compressedLength = header.getInt();
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed, 8, compressedLength);
+        byte[] uncompressed = new byte[1 << 16];
+        int length = inflater.inflate(uncompressed);
+        inflater.end();
+
+        ByteBuffer in = ByteBuffer.wrap(uncompressed, 0, length);
+        assertThat(in.getInt(), is(0x1c849313));
+        int payloadLength = in.getInt();
+        assertThat(in.getInt(), is(0));
+        HistogramLayout layout = new HistogramLayout(in.getInt(), readHighest(in));
+        long[] counts = new long[layout.countsLength()];
+        int end = in.position() + payloadLength;
+        int index = 0;
+        while (in.position() < end) {
+            long value = readZigZag(in);
+            if (value < 0) {
+                index += -value;
+            } else {
+                counts[index++] = value;
+            }
+        }
+        return new MetricHistogram(layout, counts);
+    }
+
+    private static long readHighest(final ByteBuffer in) {
+        assertThat(in.getLong(), is(1L));
+        long highest = in.getLong();
+        assertThat(in.getDouble(), is(1.0));
+        return highest;
+    }
+
+    private static long readZigZag(final ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 56; shift += 7) {
+            byte current = in.get();
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+        value |= (long) (in.get() & 0xFF) << 56;
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.shared.test.Json;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static io.amaze.bench.api.metric.Metric.metric;
+import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class MetricsQueryTest {
+
+    private static final ActorKey OTHER_ACTOR = new ActorKey("other");
+    private static final Metric LATENCY = metric("net.latency", "ms").build();
+    private static final Metric THROUGHPUT = metric("net.throughput", "msg/s").build();
+    private static final Metric CPU = metric("proc.cpu", "%").build();
+
+    private MetricsRepository repository;
+
+    @Before
+    public void init() {
+        repository = new MetricsRepository();
+        ingest(DUMMY_ACTOR, LATENCY, timedValues(1, 100));
+        ingest(DUMMY_ACTOR, CPU, timedValues(1000, 10));
+        ingest(OTHER_ACTOR, LATENCY, timedValues(101, 100));
+        ingest(OTHER_ACTOR, THROUGHPUT, timedValues(1, 10));
+    }
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+        tester.setDefault(ActorKey.class, DUMMY_ACTOR);
+
+        tester.testAllPublicInstanceMethods(repository.query());
+    }
+
+    @Test
+    public void statistics_of_all_values() {
+        MetricStatistics statistics = repository.query().statistics();
+
+        assertThat(statistics.count(), is(220L));
+        assertThat(statistics.min(), is(1d));
+        assertThat(statistics.max(), is(1009d));
+    }
+
+    @Test
+    public void values_are_selected_by_actor_and_metric_prefix() {
+        MetricStatistics statistics = repository.query().forActor(DUMMY_ACTOR).forMetricsStartingWith("net.").statistics();
+
+        assertThat(statistics.count(), is(100L));
+        assertThat(statistics.sum(), is(5050d));
+        assertThat(statistics.mean(), is(50.5d));
+        assertThat(statistics.valueAtPercentile(50), is(50d));
+        assertThat(statistics.valueAtPercentile(99), is(99d));
+        assertThat(statistics.valueAtPercentile(100), is(100d));
+    }
+
+    @Test
+    public void values_are_selected_by_time_window() {
+        List<MetricValue> values = timedValues(1, 10);
+        values.add(new MetricValue(5));
+        ingest(DUMMY_ACTOR, LATENCY, values);
+
+        MetricStatistics statistics = repository.query().forActor(OTHER_ACTOR).between(1000, 1050).statistics();
+
+        assertThat(statistics.count(), is(50L));
+        assertThat(statistics.min(), is(101d));
+        assertThat(statistics.ratePerSecond(), is(1000d));
+    }
+
+    @Test
+    public void values_without_timestamp_are_selected_when_window_is_unbounded() {
+        List<MetricValue> values = new ArrayList<>();
+        values.add(new MetricValue(5));
+        ingest(DUMMY_ACTOR, metric("untimed", "ms").build(), values);
+
+        assertThat(repository.query().forMetricsStartingWith("untimed").statistics().count(), is(1L));
+        assertThat(repository.query().forMetricsStartingWith("untimed").between(0, 10).statistics().count(), is(0L));
+    }
+
+    @Test
+    public void statistics_are_grouped_by_actor() {
+        Map<ActorKey, MetricStatistics> byActor = repository.query().forMetricsStartingWith("net.").groupByActor();
+
+        assertThat(byActor.size(), is(2));
+        assertThat(byActor.get(DUMMY_ACTOR).count(), is(100L));
+        assertThat(byActor.get(OTHER_ACTOR).count(), is(110L));
+    }
+
+    @Test
+    public void statistics_are_grouped_by_metric() {
+        Map<Metric, MetricStatistics> byMetric = repository.query().groupByMetric();
+
+        assertThat(byMetric.size(), is(3));
+        assertThat(byMetric.get(LATENCY).count(), is(200L));
+        assertThat(byMetric.get(LATENCY).max(), is(200d));
+    }
+
+    @Test
+    public void statistics_are_grouped_by_function_of_actor() {
+        Map<String, MetricStatistics> byHost = repository.query().groupByActor(actor -> "host");
+
+        assertThat(byHost.get("host").count(), is(220L));
+    }
+
+    @Test
+    public void large_columns_are_split_in_slices() {
+        MetricsRepository large = new MetricsRepository();
+        int count = MetricsQuery.SLICE_SIZE * 3 + 17;
+        List<MetricValue> values = timedValues(0, count);
+        Map<Metric, List<MetricValue>> metricValues = new HashMap<>();
+        metricValues.put(LATENCY, values);
+        large.createClusterListener().onMetricValues(new MetricValuesMessage(DUMMY_ACTOR, metricValues));
+
+        MetricStatistics statistics = large.query().statistics();
+
+        assertThat(statistics.count(), is((long) count));
+        assertThat(statistics.max(), is(count - 1d));
+        assertThat(statistics.sum(), is((double) count * (count - 1) / 2));
+        assertThat(statistics.valueAtPercentile(50), is((double) (count / 2)));
+    }
+
+    @Test
+    public void percentiles_across_slices_match_a_full_sort() {
+        MetricsRepository large = new MetricsRepository();
+        int count = MetricsQuery.SLICE_SIZE * 2 + 1001;
+        Random random = new Random(42);
+        List<MetricValue> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(new MetricTimedValue(i, random.nextInt(5000) / 10d));
+        }
+        Map<Metric, List<MetricValue>> metricValues = new HashMap<>();
+        metricValues.put(LATENCY, values);
+        large.createClusterListener().onMetricValues(new MetricValuesMessage(DUMMY_ACTOR, metricValues));
+
+        MetricStatistics statistics = large.query().between(100, count).statistics();
+
+        double[] selected = new double[count - 100];
+        int next = 0;
+        for (MetricValue value : values.subList(100, count)) {
+            selected[next++] = value.getValue().doubleValue();
+        }
+        Arrays.sort(selected);
+        assertThat(statistics.count(), is((long) selected.length));
+        assertThat(statistics.min(), is(selected[0]));
+        assertThat(statistics.max(), is(selected[selected.length - 1]));
+        for (double percentile : new double[]{0, 1, 25, 50, 90, 99, 99.9, 100}) {
+            long rank = Math.max(1, (long) ((percentile / 100.0) * selected.length + 0.5));
+            assertThat(statistics.valueAtPercentile(percentile), is(selected[(int) rank - 1]));
+        }
+    }
+
+    @Test
+    public void empty_selection_has_empty_statistics() {
+        MetricStatistics statistics = repository.query().forMetricsStartingWith("unknown").statistics();
+
+        assertThat(statistics.count(), is(0L));
+        assertThat(statistics.mean(), is(0d));
+        assertThat(statistics.valueAtPercentile(99), is(0d));
+        assertThat(statistics.ratePerSecond(), is(0d));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void empty_time_window_is_invalid() {
+        repository.query().between(10, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid_percentile_throws() {
+        repository.query().statistics().valueAtPercentile(101);
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(repository.query().toString()));
+        assertTrue(Json.isValid(repository.query().statistics().toString()));
+    }
+
+    private void ingest(final ActorKey actor, final Metric metric, final List<MetricValue> values) {
+        Map<Metric, List<MetricValue>> metricValues = new HashMap<>();
+        metricValues.put(metric, values);
+        repository.createClusterListener().onMetricValues(new MetricValuesMessage(actor, metricValues));
+    }
+
+    /**
+     * Successive values from the given one, each value v being timestamped 899 + v.
+     */
+    private static List<MetricValue> timedValues(final int from, final int count) {
+        List<MetricValue> values = new ArrayList<>(count);
+        for (int value = from; value < from + count; value++) {
+            values.add(new MetricTimedValue(899L + value, value));
+        }
+        return values;
+    }
+}
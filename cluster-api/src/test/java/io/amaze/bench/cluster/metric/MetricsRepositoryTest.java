@@ -33,12 +33,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
 import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created on 10/30/16.
@@ -46,6 +52,9 @@ import static org.junit.Assert.assertNotNull;
 @RunWith(MockitoJUnitRunner.class)
 public final class MetricsRepositoryTest {
 
+    private static final Metric METRIC = Metric.metric("metric", "sec").build();
+    private static final Metric HISTOGRAM = Metric.metric("latency", "us").build();
+
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
@@ -59,6 +68,10 @@ public final class MetricsRepositoryTest {
     @Test
     public void null_parameters_are_invalid() {
         NullPointerTester tester = new NullPointerTester();
+        tester.setDefault(ActorKey.class, DUMMY_ACTOR);
+        tester.setDefault(Metric.class, METRIC);
+        tester.setDefault(RetentionPolicy.class, RetentionPolicy.keepAll());
+        tester.setDefault(MetricsFilter.class, MetricsFilter.all());
 
         tester.testAllPublicConstructors(MetricsRepository.class);
         tester.testAllPublicInstanceMethods(metricsRepository);
@@ -75,6 +88,59 @@ public final class MetricsRepositoryTest {
         assertThat(metricValuesMessage.metrics().size(), is(1));
     }
 
+    @Test
+    public void encoded_metrics_are_decoded_and_added_on_message() throws IOException {
+        List<MetricValue> values = new ArrayList<>();
+        values.add(new MetricTimedValue(10L, 1));
+        MetricValuesMessage valuesMessage = metricsMessage(values);
+        MetricsRepositoryListener clusterListener = metricsRepository.createClusterListener();
+
+        clusterListener.onEncodedMetricValues(EncodedMetricValuesMessage.encode(valuesMessage));
+
+        assertThat(metricsRepository.valuesFor(DUMMY_ACTOR), is(valuesMessage));
+    }
+
+    @Test
+    public void dictionary_encoded_chunks_are_resolved_per_actor() throws IOException {
+        MetricDictionary dictionary = new MetricDictionary();
+        MetricsRepositoryListener clusterListener = metricsRepository.createClusterListener();
+        List<MetricValue> first = singletonList(new MetricTimedValue(10L, 1));
+        List<MetricValue> second = singletonList(new MetricTimedValue(20L, 2));
+
+        clusterListener.onEncodedMetricValues(EncodedMetricValuesMessage.encode(metricsMessage(first), dictionary));
+        clusterListener.onEncodedMetricValues(EncodedMetricValuesMessage.encode(metricsMessage(second), dictionary));
+
+        List<MetricValue> values = metricsRepository.valuesFor(DUMMY_ACTOR).metrics().values().iterator().next();
+        assertThat(values, is(asList(first.get(0), second.get(0))));
+    }
+
+    @Test
+    public void repository_listening_partway_through_resolves_metrics_once_definitions_are_sent_again()
+            throws IOException {
+        MetricDictionary dictionary = new MetricDictionary();
+        MetricsRepositoryListener clusterListener = metricsRepository.createClusterListener();
+        EncodedMetricValuesMessage.encode(metricsMessage(singletonList(new MetricTimedValue(1L, 1))), dictionary);
+
+        for (int i = 1; i < MetricDictionary.DEFINITIONS_INTERVAL; i++) {
+            clusterListener.onEncodedMetricValues(EncodedMetricValuesMessage.encode(metricsMessage(singletonList(
+                    new MetricTimedValue(i, i))), dictionary));
+        }
+        assertTrue(metricsRepository.valuesFor(DUMMY_ACTOR).metrics().isEmpty());
+        List<MetricValue> values = singletonList(new MetricTimedValue(100L, 100));
+        clusterListener.onEncodedMetricValues(EncodedMetricValuesMessage.encode(metricsMessage(values), dictionary));
+
+        assertThat(metricsRepository.valuesFor(DUMMY_ACTOR).metrics().get(METRIC), is(values));
+    }
+
+    @Test
+    public void corrupted_encoded_metrics_are_dropped() {
+        MetricsRepositoryListener clusterListener = metricsRepository.createClusterListener();
+
+        clusterListener.onEncodedMetricValues(new EncodedMetricValuesMessage(DUMMY_ACTOR, new byte[]{42}));
+
+        assertNull(metricsRepository.valuesFor(DUMMY_ACTOR));
+    }
+
     @Test
     public void all_metrics_return_copy() throws IOException {
         MetricsRepositoryListener clusterListener = metricsRepository.createClusterListener();
@@ -104,6 +170,25 @@ public final class MetricsRepositoryTest {
         assertThat(metricValuesMessage.metrics().values().iterator().next().size(), is(1));
     }
 
+    @Test
+    public void streamed_chunks_are_appended_and_previous_reads_are_unchanged() throws IOException {
+        MetricsRepositoryListener clusterListener = metricsRepository.createClusterListener();
+        List<MetricValue> firstChunk = new ArrayList<>();
+        firstChunk.add(new MetricValue(1));
+        List<MetricValue> secondChunk = new ArrayList<>();
+        secondChunk.add(new MetricValue(2));
+        secondChunk.add(new MetricValue(3));
+
+        clusterListener.onMetricValues(metricsMessage(firstChunk));
+        MetricValuesMessage firstRead = metricsRepository.valuesFor(DUMMY_ACTOR);
+        clusterListener.onMetricValues(metricsMessage(secondChunk));
+
+        assertThat(firstRead.metrics().values().iterator().next().size(), is(1));
+        List<MetricValue> allValues = metricsRepository.valuesFor(DUMMY_ACTOR).metrics().values().iterator().next();
+        assertThat(allValues.size(), is(3));
+        assertThat(allValues.get(2).getValue(), is(3));
+    }
+
     @Test
     public void expected_metrics_is_set_if_it_already_exists() throws IOException, ExecutionException {
         MetricsRepositoryListener clusterListener = metricsRepository.createClusterListener();
@@ -128,9 +213,136 @@ public final class MetricsRepositoryTest {
         assertThat(getUninterruptibly(secondFuture).metrics().size(), is(1));
     }
 
+    @Test
+    public void histograms_are_merged_per_actor_and_across_actors() {
+        MetricsRepositoryListener clusterListener = metricsRepository.createClusterListener();
+        ActorKey otherActor = new ActorKey("other");
+
+        clusterListener.onMetricValues(histogramMessage(DUMMY_ACTOR, 10, 20));
+        clusterListener.onEncodedMetricValues(EncodedMetricValuesMessage.encode(histogramMessage(DUMMY_ACTOR, 30)));
+        clusterListener.onMetricValues(histogramMessage(otherActor, 40, 200));
+
+        MetricHistogram actorHistogram = metricsRepository.valuesFor(DUMMY_ACTOR).histograms().get(HISTOGRAM);
+        assertThat(actorHistogram.totalCount(), is(3L));
+        MetricHistogram clusterHistogram = metricsRepository.histogramFor(HISTOGRAM).get();
+        assertThat(clusterHistogram.totalCount(), is(5L));
+        assertThat(clusterHistogram.valueAtPercentile(50), is(30L));
+        assertThat(clusterHistogram.max(), is(200L));
+    }
+
+    @Test
+    public void pipeline_ingests_messages_in_order_per_actor() throws IOException, ExecutionException {
+        try (MetricsRepository pipeline = new MetricsRepository(2, 1)) {
+            MetricsRepositoryListener clusterListener = pipeline.createClusterListener();
+            Future<MetricValuesMessage> future = pipeline.expectValuesFor(DUMMY_ACTOR);
+
+            for (int i = 0; i < 100; i++) {
+                List<MetricValue> values = new ArrayList<>();
+                values.add(new MetricValue(i));
+                clusterListener.onEncodedMetricValues(EncodedMetricValuesMessage.encode(metricsMessage(values)));
+            }
+            assertThat(getUninterruptibly(future).fromActor(), is(DUMMY_ACTOR));
+            pipeline.close();
+
+            List<MetricValue> values = pipeline.valuesFor(DUMMY_ACTOR).metrics().values().iterator().next();
+            assertThat(values.size(), is(100));
+            for (int i = 0; i < 100; i++) {
+                assertThat(values.get(i).getValue(), is(i));
+            }
+        }
+    }
+
+    @Test
+    public void pending_expectation_is_not_reported_as_values() {
+        metricsRepository.expectValuesFor(DUMMY_ACTOR);
+
+        assertNull(metricsRepository.valuesFor(DUMMY_ACTOR));
+        assertTrue(metricsRepository.allValues().isEmpty());
+    }
+
+    @Test
+    public void reservoirs_are_merged_per_actor_and_across_actors() {
+        MetricsRepositoryListener clusterListener = metricsRepository.createClusterListener();
+        ActorKey otherActor = new ActorKey("other");
+
+        clusterListener.onMetricValues(reservoirMessage(DUMMY_ACTOR, 10, 1, 3));
+        clusterListener.onEncodedMetricValues(EncodedMetricValuesMessage.encode(reservoirMessage(DUMMY_ACTOR,
+                                                                                                  30, 5, 7)));
+        clusterListener.onMetricValues(reservoirMessage(otherActor, 60, 0, 10));
+
+        MetricReservoir actorReservoir = metricsRepository.valuesFor(DUMMY_ACTOR).reservoirs().get(HISTOGRAM);
+        assertThat(actorReservoir.count(), is(40L));
+        MetricReservoir clusterReservoir = metricsRepository.reservoirFor(HISTOGRAM).get();
+        assertThat(clusterReservoir.count(), is(100L));
+        assertThat(clusterReservoir.min(), is(0d));
+        assertThat(clusterReservoir.max(), is(10d));
+        assertThat(clusterReservoir.samples().size(), is(4));
+    }
+
+    @Test
+    public void unknown_reservoir_is_absent() {
+        assertFalse(metricsRepository.reservoirFor(HISTOGRAM).isPresent());
+    }
+
+    @Test
+    public void raw_values_are_evicted_and_rolled_up_with_bounded_retention() throws IOException {
+        RetentionPolicy policy = RetentionPolicy.keepRawValuesFor(1, TimeUnit.SECONDS);
+        MetricsRepository repository = new MetricsRepository(policy);
+        MetricsRepositoryListener clusterListener = repository.createClusterListener();
+        for (long second = 0; second < 10; second++) {
+            List<MetricValue> values = new ArrayList<>();
+            for (long millis = 0; millis < 1000; millis += 100) {
+                values.add(new MetricTimedValue(second * 1000 + millis, 1));
+            }
+            clusterListener.onMetricValues(metricsMessage(values));
+        }
+
+        List<MetricValue> retained = repository.valuesFor(DUMMY_ACTOR).metrics().values().iterator().next();
+        List<MetricRollup> rollups = repository.rollupsFor(DUMMY_ACTOR, METRIC, RollupResolution.ONE_SECOND);
+        assertTrue(retained.size() <= 13);
+        assertThat(rollups.size(), is(10));
+        assertThat(rollups.get(0).count(), is(10L));
+        assertThat(repository.rollupsFor(DUMMY_ACTOR, METRIC, RollupResolution.ONE_MINUTE).get(0).sum(), is(100d));
+    }
+
+    @Test
+    public void no_rollups_are_kept_with_default_retention() throws IOException {
+        metricsRepository.createClusterListener().onMetricValues(metricsMessage(new ArrayList<>()));
+
+        assertTrue(metricsRepository.rollupsFor(DUMMY_ACTOR, METRIC, RollupResolution.ONE_SECOND).isEmpty());
+    }
+
+    @Test
+    public void unknown_actor_has_no_rollups() {
+        assertTrue(metricsRepository.rollupsFor(DUMMY_ACTOR, METRIC, RollupResolution.ONE_SECOND).isEmpty());
+    }
+
+    @Test
+    public void unknown_histogram_is_absent() {
+        assertFalse(metricsRepository.histogramFor(HISTOGRAM).isPresent());
+    }
+
+    private MetricValuesMessage reservoirMessage(final ActorKey actor,
+                                                 final long count,
+                                                 final double min,
+                                                 final double max) {
+        List<MetricValue> samples = new ArrayList<>();
+        samples.add(new MetricValue(min));
+        samples.add(new MetricValue(max));
+        Map<Metric, MetricReservoir> reservoirs = new HashMap<>();
+        reservoirs.put(HISTOGRAM, new MetricReservoir(4, count, min, max, (min + max) / 2, 1, samples));
+        return new MetricValuesMessage(actor, new HashMap<>(), new HashMap<>(), reservoirs);
+    }
+
+    private MetricValuesMessage histogramMessage(final ActorKey actor, final long... values) {
+        Map<Metric, MetricHistogram> histograms = new HashMap<>();
+        histograms.put(HISTOGRAM, MetricHistogram.of(HistogramLayout.defaultLayout(), values));
+        return new MetricValuesMessage(actor, new HashMap<>(), histograms);
+    }
+
     private MetricValuesMessage metricsMessage(final List<MetricValue> values) throws IOException {
         Map<Metric, List<MetricValue>> metricValues = new HashMap<>();
-        metricValues.put(Metric.metric("metric", "sec").build(), values);
+        metricValues.put(METRIC, values);
         return new MetricValuesMessage(TestActor.DUMMY_ACTOR, metricValues);
     }
 
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.shared.test.Json;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static io.amaze.bench.api.metric.Metric.metric;
+import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class MetricsSubscriptionTest {
+
+    private static final ActorKey OTHER_ACTOR = new ActorKey("other-actor");
+    private static final Metric LATENCY = metric("latency.get", "us").build();
+    private static final Metric THROUGHPUT = metric("throughput", "ops").build();
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private MetricsRepository repository;
+    private MetricsRepositoryListener listener;
+    private BlockingQueue<MetricValuesMessage> received;
+
+    @Before
+    public void init() {
+        repository = new MetricsRepository();
+        listener = repository.createClusterListener();
+        received = new LinkedBlockingQueue<>();
+    }
+
+    @After
+    public void close() {
+        repository.close();
+    }
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+
+        tester.testAllPublicStaticMethods(MetricsFilter.class);
+        tester.testAllPublicInstanceMethods(MetricsFilter.all());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sampling_rate_must_be_positive() {
+        MetricsFilter.all().sampled(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void queue_capacity_must_be_positive() {
+        repository.subscribe(MetricsFilter.all(), 0, MetricsSubscription.OverflowPolicy.DROP_OLDEST, received::add);
+    }
+
+    @Test
+    public void subscriber_receives_chunks_as_they_are_ingested() throws InterruptedException {
+        repository.subscribe(MetricsFilter.all(), received::add);
+        MetricValuesMessage first = chunk(DUMMY_ACTOR, LATENCY, 1, 2);
+        MetricValuesMessage second = chunk(DUMMY_ACTOR, LATENCY, 3);
+
+        listener.onMetricValues(first);
+        listener.onEncodedMetricValues(EncodedMetricValuesMessage.encode(second));
+
+        assertThat(received.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(first));
+        assertThat(received.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(second));
+    }
+
+    @Test
+    public void delivery_threads_are_started_by_the_first_subscription() {
+        listener.onMetricValues(chunk(DUMMY_ACTOR, LATENCY, 1));
+        assertFalse(repository.isDeliveryStarted());
+
+        repository.subscribe(MetricsFilter.all(), received::add);
+
+        assertTrue(repository.isDeliveryStarted());
+    }
+
+    @Test
+    public void subscription_after_close_receives_nothing() throws InterruptedException {
+        repository.close();
+        repository.subscribe(MetricsFilter.all(), received::add);
+
+        listener.onMetricValues(chunk(DUMMY_ACTOR, LATENCY, 1));
+
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void values_ingested_before_subscribing_are_not_pushed() throws InterruptedException {
+        listener.onMetricValues(chunk(DUMMY_ACTOR, LATENCY, 1));
+        repository.subscribe(MetricsFilter.all(), received::add);
+        MetricValuesMessage chunk = chunk(DUMMY_ACTOR, LATENCY, 2);
+
+        listener.onMetricValues(chunk);
+
+        assertThat(received.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(chunk));
+    }
+
+    @Test
+    public void filter_selects_actors_and_metric_keys() throws InterruptedException {
+        MetricsFilter filter = MetricsFilter.all().forActors(singletonList(DUMMY_ACTOR)).forMetricKeys("latency\\..*");
+        repository.subscribe(filter, received::add);
+        Map<Metric, List<MetricValue>> values = new HashMap<>();
+        values.put(LATENCY, singletonList(new MetricValue(1L)));
+        values.put(THROUGHPUT, singletonList(new MetricValue(2L)));
+
+        listener.onMetricValues(chunk(OTHER_ACTOR, LATENCY, 3));
+        listener.onMetricValues(new MetricValuesMessage(DUMMY_ACTOR, values));
+
+        MetricValuesMessage chunk = received.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertThat(chunk, is(chunk(DUMMY_ACTOR, LATENCY, 1)));
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void filter_drops_chunks_without_selected_values() {
+        MetricsFilter filter = MetricsFilter.all().forMetricKeys("throughput");
+
+        assertNull(filter.apply(chunk(DUMMY_ACTOR, LATENCY, 1)));
+    }
+
+    @Test
+    public void sampling_keeps_a_fraction_of_the_values() {
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+
+        MetricValuesMessage sample = MetricsFilter.all().sampled(0.1).apply(chunk(DUMMY_ACTOR, LATENCY, values));
+
+        int kept = sample.metrics().get(LATENCY).size();
+        assertTrue("Kept " + kept + " values", kept > 500 && kept < 1500);
+    }
+
+    @Test
+    public void drop_newest_keeps_pending_chunks() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<MetricValuesMessage> delivered = Collections.synchronizedList(new ArrayList<>());
+        MetricsSubscription subscription = repository.subscribe(MetricsFilter.all(), 1, //
+                                                                MetricsSubscription.OverflowPolicy.DROP_NEWEST, //
+                                                                blockingSubscriber(release, delivered));
+
+        List<MetricValuesMessage> chunks = ingestWhileBlocked(4);
+        release.countDown();
+
+        awaitDelivered(delivered, 2);
+        assertThat(delivered, is(chunks.subList(0, 2)));
+        assertThat(subscription.droppedChunks(), is(2L));
+    }
+
+    @Test
+    public void drop_oldest_keeps_latest_chunks() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<MetricValuesMessage> delivered = Collections.synchronizedList(new ArrayList<>());
+        MetricsSubscription subscription = repository.subscribe(MetricsFilter.all(), 1, //
+                                                                MetricsSubscription.OverflowPolicy.DROP_OLDEST, //
+                                                                blockingSubscriber(release, delivered));
+
+        List<MetricValuesMessage> chunks = ingestWhileBlocked(4);
+        release.countDown();
+
+        awaitDelivered(delivered, 2);
+        assertThat(delivered.get(0), is(chunks.get(0)));
+        assertThat(delivered.get(1), is(chunks.get(3)));
+        assertThat(subscription.droppedChunks(), is(2L));
+    }
+
+    @Test
+    public void coalesce_merges_pending_chunks_of_the_same_actor() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<MetricValuesMessage> delivered = Collections.synchronizedList(new ArrayList<>());
+        repository.subscribe(MetricsFilter.all(), 1, //
+                             MetricsSubscription.OverflowPolicy.COALESCE, //
+                             blockingSubscriber(release, delivered));
+
+        ingestWhileBlocked(4);
+        release.countDown();
+
+        awaitDelivered(delivered, 2);
+        assertThat(delivered.get(1), is(chunk(DUMMY_ACTOR, LATENCY, 1, 2, 3)));
+    }
+
+    @Test
+    public void coalesce_drops_the_oldest_chunk_once_it_coalesced_too_many_chunks() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<MetricValuesMessage> delivered = Collections.synchronizedList(new ArrayList<>());
+        MetricsSubscription subscription = repository.subscribe(MetricsFilter.all(), 1, //
+                                                                MetricsSubscription.OverflowPolicy.COALESCE, //
+                                                                blockingSubscriber(release, delivered));
+
+        int last = MetricsSubscription.MAX_COALESCED_CHUNKS + 2;
+        ingestWhileBlocked(last + 1);
+        release.countDown();
+
+        awaitDelivered(delivered, 2);
+        assertThat(delivered.get(1), is(chunk(DUMMY_ACTOR, LATENCY, last - 1, last)));
+        assertThat(subscription.droppedChunks(), is((long) last - 1));
+    }
+
+    @Test
+    public void failing_subscriber_keeps_receiving_chunks() throws InterruptedException {
+        repository.subscribe(MetricsFilter.all(), chunk -> {
+            received.add(chunk);
+            throw new IllegalStateException();
+        });
+
+        listener.onMetricValues(chunk(DUMMY_ACTOR, LATENCY, 1));
+        listener.onMetricValues(chunk(DUMMY_ACTOR, LATENCY, 2));
+
+        assertThat(received.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(chunk(DUMMY_ACTOR, LATENCY, 1)));
+        assertThat(received.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(chunk(DUMMY_ACTOR, LATENCY, 2)));
+    }
+
+    @Test
+    public void cancelled_subscription_receives_nothing() throws InterruptedException {
+        MetricsSubscription subscription = repository.subscribe(MetricsFilter.all(), received::add);
+
+        subscription.cancel();
+        listener.onMetricValues(chunk(DUMMY_ACTOR, LATENCY, 1));
+
+        assertTrue(subscription.isCancelled());
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        MetricsFilter filter = MetricsFilter.all() //
+                .forActors(singletonList(DUMMY_ACTOR)) //
+                .forMetricKeys("latency\\..*\"") //
+                .sampled(0.5);
+
+        assertTrue(Json.isValid(filter.toString()));
+        assertTrue(Json.isValid(repository.subscribe(filter, received::add).toString()));
+    }
+
+    /**
+     * Ingests a first chunk, waits for its delivery to block, then ingests the others.
+     */
+    private List<MetricValuesMessage> ingestWhileBlocked(final int nbChunks) throws InterruptedException {
+        List<MetricValuesMessage> chunks = new ArrayList<>();
+        for (int i = 0; i < nbChunks; i++) {
+            MetricValuesMessage chunk = chunk(DUMMY_ACTOR, LATENCY, i);
+            chunks.add(chunk);
+            listener.onMetricValues(chunk);
+            if (i == 0) {
+                assertThat(received.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(chunk));
+            }
+        }
+        return chunks;
+    }
+
+    private MetricsSubscriber blockingSubscriber(final CountDownLatch release,
+                                                 final List<MetricValuesMessage> delivered) {
+        return chunk -> {
+            received.add(chunk);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.add(chunk);
+        };
+    }
+
+    private static void awaitDelivered(final List<MetricValuesMessage> delivered, final int expected)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (delivered.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        assertThat(delivered.size(), is(expected));
+    }
+
+    private static MetricValuesMessage chunk(final ActorKey actor, final Metric metric, final long... values) {
+        List<MetricValue> metricValues = new ArrayList<>();
+        for (long value : values) {
+            metricValues.add(new MetricValue(value));
+        }
+        Map<Metric, List<MetricValue>> chunk = new HashMap<>();
+        chunk.put(metric, metricValues);
+        return new MetricValuesMessage(actor, chunk);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.testing.SerializableTester;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public final class RetainedValuesTest {
+
+    private static final long RETENTION = 1000;
+
+    @Test
+    public void unbounded_values_are_all_retained() {
+        RetainedValues values = new RetainedValues(Long.MAX_VALUE);
+        List<MetricValue> expected = addAll(values, 0, 10_000, 100);
+
+        values.evict();
+
+        assertThat(values.view(), is(expected));
+    }
+
+    @Test
+    public void values_out_of_retention_are_evicted() {
+        RetainedValues values = new RetainedValues(RETENTION);
+        List<MetricValue> added = addAll(values, 0, 10_000, 10);
+
+        values.evict();
+
+        List<MetricValue> view = values.view();
+        long oldest = ((MetricTimedValue) view.get(0)).getTimestamp();
+        assertThat(oldest >= 10_000 - RETENTION - RETENTION / 4 - 10, is(true));
+        assertThat(oldest <= 10_000 - RETENTION, is(true));
+        assertThat(view, is(added.subList(added.size() - view.size(), added.size())));
+    }
+
+    @Test
+    public void previous_views_are_unchanged_by_eviction() {
+        RetainedValues values = new RetainedValues(RETENTION);
+        List<MetricValue> added = addAll(values, 0, 2000, 10);
+        List<MetricValue> before = values.view();
+
+        addAll(values, 2000, 10_000, 10);
+        values.evict();
+
+        assertThat(before, is(added));
+    }
+
+    @Test
+    public void view_is_serializable() {
+        RetainedValues values = new RetainedValues(RETENTION);
+        List<MetricValue> added = addAll(values, 0, 1000, 10);
+
+        assertThat(SerializableTester.reserialize(values.view()), is(added));
+    }
+
+    @Test
+    public void newest_timestamp_is_tracked() {
+        RetainedValues values = new RetainedValues(RETENTION);
+        values.add(new MetricTimedValue(20, 1), 20);
+        values.add(new MetricTimedValue(10, 1), 10);
+
+        assertThat(values.newestTimestamp(), is(20L));
+    }
+
+    private static List<MetricValue> addAll(final RetainedValues values,
+                                            final long from,
+                                            final long to,
+                                            final long step) {
+        List<MetricValue> added = new ArrayList<>();
+        for (long timestamp = from; timestamp < to; timestamp += step) {
+            MetricValue value = new MetricTimedValue(timestamp, timestamp);
+            values.add(value, timestamp);
+            added.add(value);
+        }
+        return added;
+    }
+}
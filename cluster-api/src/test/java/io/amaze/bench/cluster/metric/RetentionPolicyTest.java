@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.cluster.metric;
+
+import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.shared.test.Json;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.amaze.bench.cluster.metric.RollupResolution.ONE_MINUTE;
+import static io.amaze.bench.cluster.metric.RollupResolution.ONE_SECOND;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class RetentionPolicyTest {
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+
+        tester.testAllPublicStaticMethods(RetentionPolicy.class);
+        tester.testAllPublicInstanceMethods(RetentionPolicy.keepRawValuesFor(1, TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void keep_all_has_no_rollups() {
+        RetentionPolicy policy = RetentionPolicy.keepAll();
+
+        assertTrue(policy.keepsAllRawValues());
+        assertThat(policy.rollupRetentionMillis(ONE_SECOND), is(0L));
+    }
+
+    @Test
+    public void bounded_raw_values_have_default_rollups() {
+        RetentionPolicy policy = RetentionPolicy.keepRawValuesFor(5, TimeUnit.MINUTES);
+
+        assertFalse(policy.keepsAllRawValues());
+        assertThat(policy.rawRetentionMillis(), is(TimeUnit.MINUTES.toMillis(5)));
+        assertThat(policy.rollupRetentionMillis(ONE_SECOND), is(TimeUnit.HOURS.toMillis(1)));
+    }
+
+    @Test
+    public void rollup_retention_can_be_changed() {
+        RetentionPolicy policy = RetentionPolicy.keepRawValuesFor(5, TimeUnit.MINUTES);
+
+        RetentionPolicy changed = policy.keepRollupsFor(ONE_MINUTE, 2, TimeUnit.HOURS);
+
+        assertThat(changed.rollupRetentionMillis(ONE_MINUTE), is(TimeUnit.HOURS.toMillis(2)));
+        assertThat(policy.rollupRetentionMillis(ONE_MINUTE), is(TimeUnit.DAYS.toMillis(7)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rollups_cannot_be_set_when_keeping_all_values() {
+        RetentionPolicy.keepAll().keepRollupsFor(ONE_MINUTE, 2, TimeUnit.HOURS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void raw_retention_must_be_positive() {
+        RetentionPolicy.keepRawValuesFor(0, TimeUnit.MINUTES);
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(RetentionPolicy.keepAll().toString()));
+        assertTrue(Json.isValid(RetentionPolicy.keepRawValuesFor(1, TimeUnit.MINUTES).toString()));
+    }
+}
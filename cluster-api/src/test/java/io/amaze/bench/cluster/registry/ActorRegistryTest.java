@@ -37,6 +37,7 @@ import java.util.Set;
 import static junit.framework.TestCase.assertNotNull;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -264,4 +265,32 @@ public final class ActorRegistryTest {
         verifyNoMoreInteractions(clientListener);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void version_changes_with_the_registered_actors() {
+        long initial = registry.version();
+        clusterListener.onActorCreated(TestActor.DUMMY_ACTOR, AgentUtil.DUMMY_AGENT);
+        long created = registry.version();
+        clusterListener.onActorInitialized(TestActor.DUMMY_ACTOR, DEPLOY_INFO);
+        long initialized = registry.version();
+        registry.onEndpointDisconnected(ENDPOINT);
+        long disconnected = registry.version();
+        registry.resetState(new HashSet<>());
+
+        assertNotEquals(initial, created);
+        assertNotEquals(created, initialized);
+        assertNotEquals(initialized, disconnected);
+        assertNotEquals(disconnected, registry.version());
+    }
+
+    @Test
+    public void version_does_not_change_when_nothing_is_removed() {
+        clusterListener.onActorCreated(TestActor.DUMMY_ACTOR, AgentUtil.DUMMY_AGENT);
+        long version = registry.version();
+
+        registry.onEndpointDisconnected(anotherEndpoint);
+        clusterListener.onActorClosed(new ActorKey("unknown"));
+
+        assertThat(registry.version(), is(version));
+    }
+
+}
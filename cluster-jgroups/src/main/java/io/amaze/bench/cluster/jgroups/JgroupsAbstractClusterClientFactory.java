@@ -17,6 +17,7 @@ package io.amaze.bench.cluster.jgroups;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.typesafe.config.Config;
+import io.amaze.bench.cluster.codec.Codec;
 import io.amaze.bench.cluster.registry.ActorRegistry;
 import io.amaze.bench.cluster.registry.ActorRegistryClusterClient;
 import io.amaze.bench.cluster.registry.AgentRegistry;
@@ -43,16 +44,18 @@ public abstract class JgroupsAbstractClusterClientFactory {
     private final JgroupsActorRegistryClusterClient registryClusterClient;
 
     protected JgroupsAbstractClusterClientFactory(@NotNull final JChannel jChannel,
-                                                  @NotNull final ActorRegistry actorRegistry) {
+                                                  @NotNull final ActorRegistry actorRegistry,
+                                                  @NotNull final Codec codec) {
         this.jChannel = requireNonNull(jChannel);
         this.actorRegistry = requireNonNull(actorRegistry);
+        requireNonNull(codec);
 
-        jgroupsClusterMember = new JgroupsClusterMember(jChannel);
+        jgroupsClusterMember = new JgroupsClusterMember(jChannel, codec);
         registryClusterClient = new JgroupsActorRegistryClusterClient(jgroupsClusterMember.listenerMultiplexer(),
                                                                       jgroupsClusterMember.stateMultiplexer(),
                                                                       jgroupsClusterMember.viewMultiplexer(),
                                                                       actorRegistry);
-        jgroupsSender = new JgroupsSender(jChannel);
+        jgroupsSender = new JgroupsSender(jChannel, codec);
         jgroupsClusterMember.join();
         registryClusterClient.startRegistryListener(actorRegistry.createClusterListener());
     }
@@ -17,6 +17,8 @@ package io.amaze.bench.cluster.jgroups;
 
 import io.amaze.bench.cluster.Endpoint;
 import io.amaze.bench.cluster.actor.*;
+import io.amaze.bench.cluster.metric.EncodedMetricValuesMessage;
+import io.amaze.bench.cluster.metric.MetricDictionary;
 import io.amaze.bench.cluster.metric.MetricValuesMessage;
 import io.amaze.bench.cluster.registry.ActorRegistry;
 import io.amaze.bench.shared.jgroups.JgroupsListener;
@@ -35,17 +37,40 @@ public final class JgroupsActorClusterClient implements ActorClusterClient {
     private final JgroupsListenerMultiplexer multiplexer;
     private final JgroupsSender jgroupsSender;
     private final ActorRegistry actorRegistry;
+    private final LocalDelivery localDelivery;
+    private final CoalescingActorSender remoteSender;
+    private final MetricDictionary metricDictionary = new MetricDictionary();
     private MessageListener listener;
+    private BatchListener batchListener;
 
     JgroupsActorClusterClient(@NotNull final Endpoint localEndpoint,
                               @NotNull final JgroupsListenerMultiplexer multiplexer,
                               @NotNull final JgroupsSender jgroupsSender,
                               @NotNull final ActorRegistry actorRegistry) {
+        this(localEndpoint, multiplexer, jgroupsSender, actorRegistry, LocalDelivery.disabled());
+    }
+
+    JgroupsActorClusterClient(@NotNull final Endpoint localEndpoint,
+                              @NotNull final JgroupsListenerMultiplexer multiplexer,
+                              @NotNull final JgroupsSender jgroupsSender,
+                              @NotNull final ActorRegistry actorRegistry,
+                              @NotNull final LocalDelivery localDelivery) {
+        this(localEndpoint, multiplexer, jgroupsSender, actorRegistry, localDelivery, CoalescingWindow.disabled());
+    }
+
+    JgroupsActorClusterClient(@NotNull final Endpoint localEndpoint,
+                              @NotNull final JgroupsListenerMultiplexer multiplexer,
+                              @NotNull final JgroupsSender jgroupsSender,
+                              @NotNull final ActorRegistry actorRegistry,
+                              @NotNull final LocalDelivery localDelivery,
+                              @NotNull final CoalescingWindow coalescingWindow) {
 
         this.localEndpoint = requireNonNull(localEndpoint);
         this.multiplexer = requireNonNull(multiplexer);
         this.jgroupsSender = requireNonNull(jgroupsSender);
         this.actorRegistry = requireNonNull(actorRegistry);
+        this.localDelivery = requireNonNull(localDelivery);
+        this.remoteSender = coalescingWindow.coalesce(new JgroupsActorSender(jgroupsSender, actorRegistry));
     }
 
     @Override
@@ -53,14 +78,24 @@ public final class JgroupsActorClusterClient implements ActorClusterClient {
         requireNonNull(actor);
 
         listener = new MessageListener(actor);
-        multiplexer.addListener(JgroupsActorMessage.class, listener);
+        batchListener = new BatchListener(listener);
+        multiplexer.addListener(ActorInputMessage.class, actor.getKey().getName(), listener);
+        multiplexer.addListener(ActorInputBatch.class, actor.getKey().getName(), batchListener);
+        localDelivery.register(actor);
     }
 
     @Override
     public void sendMetrics(@NotNull final MetricValuesMessage message) {
         requireNonNull(message);
 
-        jgroupsSender.broadcast(message);
+        synchronized (metricDictionary) {
+            try {
+                jgroupsSender.broadcast(EncodedMetricValuesMessage.encode(message, metricDictionary));
+            } catch (RuntimeException e) {
+                metricDictionary.reset();
+                throw e;
+            }
+        }
     }
 
     @Override
@@ -70,7 +105,7 @@ public final class JgroupsActorClusterClient implements ActorClusterClient {
 
     @Override
     public ActorSender actorSender() {
-        return new JgroupsActorSender(jgroupsSender, actorRegistry);
+        return localDelivery.localFirst(remoteSender);
     }
 
     @Override
@@ -80,10 +115,21 @@ public final class JgroupsActorClusterClient implements ActorClusterClient {
 
     @Override
     public void close() {
-        multiplexer.removeListener(listener);
+        try {
+            remoteSender.close();
+        } finally {
+            if (listener != null) {
+                localDelivery.unregister(listener.actor);
+                multiplexer.removeListener(batchListener);
+            }
+            multiplexer.removeListener(listener);
+        }
     }
 
-    static final class MessageListener implements JgroupsListener<JgroupsActorMessage> {
+    /**
+     * Registered for the actor's key only: the multiplexer does not call it for messages to other actors.
+     */
+    static final class MessageListener implements JgroupsListener<ActorInputMessage> {
 
         private final RuntimeActor actor;
 
@@ -92,18 +138,17 @@ public final class JgroupsActorClusterClient implements ActorClusterClient {
         }
 
         @Override
-        public void onMessage(@NotNull final org.jgroups.Message msg, @NotNull final JgroupsActorMessage jgroupsMsg) {
-            if (!jgroupsMsg.to().equals(actor.getKey())) {
-                return;
-            }
+        public void onMessage(@NotNull final org.jgroups.Message msg, @NotNull final ActorInputMessage input) {
+            dispatch(input);
+        }
 
-            ActorInputMessage input = jgroupsMsg.inputMessage();
+        private void dispatch(final ActorInputMessage input) {
             switch (input.getCommand()) {
                 case BOOTSTRAP:
                     actor.bootstrap();
                     break;
                 case CLOSE:
-                    actor.close();
+                    actor.requestClose();
                     break;
                 case DUMP_METRICS:
                     actor.dumpAndFlushMetrics();
@@ -116,4 +161,21 @@ public final class JgroupsActorClusterClient implements ActorClusterClient {
             }
         }
     }
+
+    /**
+     * Hands the messages of a received {@link ActorInputBatch} to the actor one by one, in order.
+     */
+    static final class BatchListener implements JgroupsListener<ActorInputBatch> {
+
+        private final MessageListener messageListener;
+
+        BatchListener(final MessageListener messageListener) {
+            this.messageListener = messageListener;
+        }
+
+        @Override
+        public void onMessage(@NotNull final org.jgroups.Message msg, @NotNull final ActorInputBatch batch) {
+            batch.getMessages().forEach(messageListener::dispatch);
+        }
+    }
 }
@@ -16,14 +16,18 @@
 package io.amaze.bench.cluster.jgroups;
 
 import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.cluster.actor.ActorInputBatch;
 import io.amaze.bench.cluster.actor.ActorInputMessage;
 import io.amaze.bench.cluster.actor.ActorSender;
 import io.amaze.bench.cluster.registry.ActorRegistry;
 import io.amaze.bench.cluster.registry.RegisteredActor;
+import io.amaze.bench.shared.jgroups.JgroupsEndpoint;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import static java.util.Objects.requireNonNull;
@@ -50,12 +54,85 @@ public final class JgroupsActorSender implements ActorSender {
         log.debug("Sending {} to {}", message, to);
 
         // We need to resolve the endpoint using the actor's key first
+        sender.sendToActor(endpointOf(to), to, message);
+    }
+
+    /**
+     * The messages are sent as a single {@link ActorInputBatch} message.
+     */
+    @Override
+    public void sendBatch(@NotNull final ActorKey to, @NotNull final List<ActorInputMessage> messages) {
+        requireNonNull(to);
+        requireNonNull(messages);
+        log.debug("Sending {} messages to {}", messages.size(), to);
+
+        sender.sendToActor(endpointOf(to), to, batchOf(messages));
+    }
+
+    /**
+     * The returned route caches the target's endpoint, it is looked up again only when the registry changes.
+     */
+    @NotNull
+    @Override
+    public Route resolve(@NotNull final ActorKey to) {
+        return new CachedRoute(requireNonNull(to));
+    }
+
+    private static Serializable batchOf(final List<ActorInputMessage> messages) {
+        return messages.size() == 1 ? messages.get(0) : new ActorInputBatch(messages);
+    }
+
+    private JgroupsEndpoint endpointOf(final ActorKey to) {
         RegisteredActor registeredActor = actorRegistry.byKey(to);
         if (registeredActor == null || registeredActor.getDeployInfo() == null) {
             throw new NoSuchElementException("Cannot find endpoint for " + to + ".");
         }
+        return registeredActor.getDeployInfo().getEndpoint();
+    }
+
+    private static final class ResolvedEndpoint {
+        private final long registryVersion;
+        private final JgroupsEndpoint endpoint;
 
-        JgroupsActorMessage jgroupsMsg = new JgroupsActorMessage(to, message);
-        sender.sendToEndpoint(registeredActor.getDeployInfo().getEndpoint(), jgroupsMsg);
+        private ResolvedEndpoint(final long registryVersion, final JgroupsEndpoint endpoint) {
+            this.registryVersion = registryVersion;
+            this.endpoint = endpoint;
+        }
+    }
+
+    private final class CachedRoute implements Route {
+        private final ActorKey to;
+        private volatile ResolvedEndpoint resolved;
+
+        private CachedRoute(final ActorKey to) {
+            this.to = to;
+        }
+
+        @Override
+        public void send(@NotNull final ActorInputMessage message) {
+            requireNonNull(message);
+            log.debug("Sending {} to {}", message, to);
+
+            sender.sendToActor(endpoint(), to, message);
+        }
+
+        @Override
+        public void sendBatch(@NotNull final List<ActorInputMessage> messages) {
+            requireNonNull(messages);
+            log.debug("Sending {} messages to {}", messages.size(), to);
+
+            sender.sendToActor(endpoint(), to, batchOf(messages));
+        }
+
+        private JgroupsEndpoint endpoint() {
+            // The version is read before the lookup, so that a concurrent change triggers a new one on the next send
+            long version = actorRegistry.version();
+            ResolvedEndpoint current = resolved;
+            if (current == null || current.registryVersion != version) {
+                current = new ResolvedEndpoint(version, endpointOf(to));
+                resolved = current;
+            }
+            return current.endpoint;
+        }
     }
 }
@@ -22,8 +22,12 @@ import io.amaze.bench.cluster.AgentClusterClientFactory;
 import io.amaze.bench.cluster.ClusterConfigFactory;
 import io.amaze.bench.cluster.Endpoint;
 import io.amaze.bench.cluster.actor.ActorClusterClient;
+import io.amaze.bench.cluster.actor.CoalescingWindow;
+import io.amaze.bench.cluster.actor.LocalDelivery;
 import io.amaze.bench.cluster.agent.AgentClusterClient;
 import io.amaze.bench.cluster.agent.AgentKey;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.cluster.registry.ActorRegistry;
 import io.amaze.bench.shared.jgroups.JgroupsEndpoint;
 import org.jgroups.JChannel;
@@ -37,6 +41,8 @@ import static java.util.Objects.requireNonNull;
  */
 public final class JgroupsClusterClientFactory extends JgroupsAbstractClusterClientFactory implements AgentClusterClientFactory {
 
+    private final LocalDelivery localDelivery;
+    private final CoalescingWindow coalescingWindow;
     private JgroupsClusterConfigFactory jgroupsClusterConfigFactory;
 
     public JgroupsClusterClientFactory(@NotNull final Config factoryConfig,
@@ -48,8 +54,17 @@ public final class JgroupsClusterClientFactory extends JgroupsAbstractClusterCli
     JgroupsClusterClientFactory(@NotNull final JChannel jChannel,
                                 @NotNull final ActorRegistry actorRegistry,
                                 @NotNull final Config factoryConfig) {
-        super(jChannel, actorRegistry);
-        requireNonNull(factoryConfig);
+        this(jChannel, actorRegistry, factoryConfig, Codecs.fromConfig(factoryConfig));
+    }
+
+    private JgroupsClusterClientFactory(final JChannel jChannel,
+                                        final ActorRegistry actorRegistry,
+                                        final Config factoryConfig,
+                                        final Codec codec) {
+        super(jChannel, actorRegistry, codec);
+
+        localDelivery = LocalDelivery.fromConfig(factoryConfig, codec);
+        coalescingWindow = CoalescingWindow.fromConfig(factoryConfig, codec);
 
         jgroupsClusterConfigFactory = new JgroupsClusterConfigFactory(factoryConfig);
     }
@@ -71,7 +86,9 @@ public final class JgroupsClusterClientFactory extends JgroupsAbstractClusterCli
         return new JgroupsActorClusterClient(localEndpoint(),
                                              jgroupsClusterMember.listenerMultiplexer(),
                                              jgroupsSender,
-                                             actorRegistry);
+                                             actorRegistry,
+                                             localDelivery,
+                                             coalescingWindow);
     }
 
     @Override
@@ -18,6 +18,8 @@ package io.amaze.bench.cluster.jgroups;
 import com.google.common.annotations.VisibleForTesting;
 import com.typesafe.config.Config;
 import io.amaze.bench.cluster.actor.ActorSender;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.cluster.leader.LeaderClusterClientFactory;
 import io.amaze.bench.cluster.leader.ResourceManagerClusterClient;
 import io.amaze.bench.cluster.metric.MetricsRepository;
@@ -36,12 +38,20 @@ public final class JgroupsLeaderClusterClientFactory extends JgroupsAbstractClus
 
     public JgroupsLeaderClusterClientFactory(@NotNull final Config factoryConfig,
                                              @NotNull final ActorRegistry actorRegistry) {
-        this(createJChannel(requireNonNull(factoryConfig)), requireNonNull(actorRegistry));
+        this(createJChannel(requireNonNull(factoryConfig)),
+             requireNonNull(actorRegistry),
+             Codecs.fromConfig(factoryConfig));
     }
 
     @VisibleForTesting
     JgroupsLeaderClusterClientFactory(@NotNull final JChannel jChannel, @NotNull final ActorRegistry actorRegistry) {
-        super(jChannel, actorRegistry);
+        this(jChannel, actorRegistry, Codecs.defaultCodec());
+    }
+
+    private JgroupsLeaderClusterClientFactory(@NotNull final JChannel jChannel,
+                                              @NotNull final ActorRegistry actorRegistry,
+                                              @NotNull final Codec codec) {
+        super(jChannel, actorRegistry, codec);
     }
 
     @Override
@@ -15,7 +15,7 @@
  */
 package io.amaze.bench.cluster.jgroups;
 
-import io.amaze.bench.cluster.metric.MetricValuesMessage;
+import io.amaze.bench.cluster.metric.EncodedMetricValuesMessage;
 import io.amaze.bench.cluster.metric.MetricsRepositoryClusterClient;
 import io.amaze.bench.cluster.metric.MetricsRepositoryListener;
 import io.amaze.bench.shared.jgroups.JgroupsListener;
@@ -31,7 +31,7 @@ import static java.util.Objects.requireNonNull;
 public final class JgroupsMetricsRepositoryClusterClient implements MetricsRepositoryClusterClient {
 
     private final JgroupsListenerMultiplexer multiplexer;
-    private JgroupsListener<MetricValuesMessage> jgroupsListener;
+    private JgroupsListener<EncodedMetricValuesMessage> jgroupsListener;
 
     public JgroupsMetricsRepositoryClusterClient(@NotNull final JgroupsListenerMultiplexer multiplexer) {
         this.multiplexer = requireNonNull(multiplexer);
@@ -45,9 +45,9 @@ public final class JgroupsMetricsRepositoryClusterClient implements MetricsRepos
             requireNonNull(msg);
             requireNonNull(payload);
 
-            metricsListener.onMetricValues(payload);
+            metricsListener.onEncodedMetricValues(payload);
         };
-        multiplexer.addListener(MetricValuesMessage.class, jgroupsListener);
+        multiplexer.addListener(EncodedMetricValuesMessage.class, jgroupsListener);
     }
 
     @Override
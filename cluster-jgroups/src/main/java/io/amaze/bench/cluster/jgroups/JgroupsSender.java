@@ -15,11 +15,15 @@
  */
 package io.amaze.bench.cluster.jgroups;
 
+import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.cluster.codec.Codec;
 import io.amaze.bench.shared.jgroups.JgroupsEndpoint;
+import io.amaze.bench.shared.jgroups.JgroupsRoutingHeader;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jgroups.Address;
 import org.jgroups.JChannel;
-import org.jgroups.util.Util;
+import org.jgroups.Message;
 
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
@@ -35,9 +39,11 @@ public class JgroupsSender {
     private static final Logger log = LogManager.getLogger();
 
     private final JChannel channel;
+    private final Codec codec;
 
-    public JgroupsSender(@NotNull final JChannel channel) {
+    public JgroupsSender(@NotNull final JChannel channel, @NotNull final Codec codec) {
         this.channel = requireNonNull(channel);
+        this.codec = requireNonNull(codec);
     }
 
     public void broadcast(@NotNull final Serializable message) {
@@ -45,7 +51,7 @@ public class JgroupsSender {
         log.debug("Broadcasting {} on {}", message, channel);
 
         try {
-            channel.send(null, Util.objectToByteBuffer(message));
+            channel.send(message(null, message, JgroupsRoutingHeader.toAll(message.getClass())));
         } catch (Exception e) { // NOSONAR - No choice here
             throw propagate(e);
         }
@@ -55,11 +61,38 @@ public class JgroupsSender {
         requireNonNull(endpoint);
         requireNonNull(message);
 
+        send(endpoint, message, JgroupsRoutingHeader.toAll(message.getClass()));
+    }
+
+    /**
+     * Sends a message to the given actor only, among the ones listening on the endpoint.
+     *
+     * @param endpoint Endpoint of the agent hosting the actor.
+     * @param to       Target actor.
+     * @param message  Payload, it is decoded by the target actor's listener only.
+     */
+    public void sendToActor(@NotNull final JgroupsEndpoint endpoint,
+                            @NotNull final ActorKey to,
+                            @NotNull final Serializable message) {
+        requireNonNull(endpoint);
+        requireNonNull(to);
+        requireNonNull(message);
+
+        send(endpoint, message, JgroupsRoutingHeader.toTarget(message.getClass(), to.getName()));
+    }
+
+    private void send(final JgroupsEndpoint endpoint, final Serializable message, final JgroupsRoutingHeader header) {
         try {
-            channel.send(endpoint.getAddress(), Util.objectToByteBuffer(message));
+            channel.send(message(endpoint.getAddress(), message, header));
         } catch (Exception e) { // NOSONAR - No choice here
             throw propagate(e);
         }
     }
 
+    private Message message(final Address destination,
+                            final Serializable payload,
+                            final JgroupsRoutingHeader header) {
+        return new Message(destination, codec.encode(payload)).putHeader(JgroupsRoutingHeader.PROTOCOL_ID, header);
+    }
+
 }
@@ -17,6 +17,8 @@ package io.amaze.bench.shared.jgroups;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jgroups.JChannel;
@@ -47,9 +49,17 @@ public final class JgroupsClusterMember extends ReceiverAdapter {
     private final JgroupsViewMultiplexer viewMultiplexer;
 
     public JgroupsClusterMember(final JChannel jChannel) {
+        this(jChannel, Codecs.defaultCodec());
+    }
+
+    /**
+     * @param jChannel Channel of the member.
+     * @param codec    Codec used to decode received messages and transferred state.
+     */
+    public JgroupsClusterMember(final JChannel jChannel, @NotNull final Codec codec) {
         this(jChannel, //
-             new JgroupsListenerMultiplexer(), //
-             new JgroupsStateMultiplexer(), //
+             new JgroupsListenerMultiplexer(codec), //
+             new JgroupsStateMultiplexer(codec), //
              new JgroupsViewMultiplexer(jChannel));
     }
 
@@ -33,22 +33,33 @@ public final class JgroupsEndpoint implements Endpoint {
     private final byte[] serializedEndpoint;
     private final Class<? extends Address> addressClass;
 
+    /**
+     * Deserialized once on first use, it is looked up for every message sent to this endpoint.
+     */
+    private transient volatile Address address;
+
     public JgroupsEndpoint(@NotNull final Address address) {
         requireNonNull(address);
         try {
             this.addressClass = address.getClass();
             serializedEndpoint = Util.streamableToByteBuffer(address);
+            this.address = address;
         } catch (Exception e) { // NOSONAR - No choice here
             throw Throwables.propagate(e);
         }
     }
 
     public Address getAddress() {
-        try {
-            return Util.streamableFromByteBuffer(addressClass, serializedEndpoint);
-        } catch (Exception e) { // NOSONAR - No choice here
-            throw Throwables.propagate(e);
+        Address current = address;
+        if (current == null) {
+            try {
+                current = Util.streamableFromByteBuffer(addressClass, serializedEndpoint);
+            } catch (Exception e) { // NOSONAR - No choice here
+                throw Throwables.propagate(e);
+            }
+            address = current;
         }
+        return current;
     }
 
     @Override
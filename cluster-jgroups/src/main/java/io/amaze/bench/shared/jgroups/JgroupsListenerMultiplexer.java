@@ -16,24 +16,41 @@
 package io.amaze.bench.shared.jgroups;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.amaze.bench.cluster.codec.Codec;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jgroups.Message;
 
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
-import java.util.*;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Created on 9/30/16.
+ * <p>
+ * Messages are routed using their {@link JgroupsRoutingHeader}: the listeners of the message's type, or the single
+ * listener of its target, are found with map lookups and the payload is only decoded when one of them matches.
+ * Messages without header are decoded first, and routed using the type of their payload.
  */
 public class JgroupsListenerMultiplexer {
 
     private static final Logger log = LogManager.getLogger();
 
-    private final Map<String, Set<JgroupsListener<? extends Serializable>>> listeners = new HashMap<>();
+    private final Map<String, Set<JgroupsListener<? extends Serializable>>> listeners = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, JgroupsListener<? extends Serializable>>> targetedListeners = //
+            new ConcurrentHashMap<>();
+    private final Codec codec;
+
+    public JgroupsListenerMultiplexer(@NotNull final Codec codec) {
+        this.codec = requireNonNull(codec);
+        JgroupsRoutingHeader.register();
+    }
 
     public <T extends Serializable> void addListener(@NotNull final Class<T> inputMessageType,
                                                      @NotNull final JgroupsListener<T> listener) {
@@ -44,7 +61,7 @@ public class JgroupsListenerMultiplexer {
         synchronized (listeners) {
             Set<JgroupsListener<? extends Serializable>> listenersByKey = listeners.get(msgClassName);
             if (listenersByKey == null) {
-                listenersByKey = new HashSet<>();
+                listenersByKey = new CopyOnWriteArraySet<>();
             } else if (listenersByKey.contains(listener)) {
                 throw new IllegalStateException("This listener is already registered for " + msgClassName);
             }
@@ -54,16 +71,58 @@ public class JgroupsListenerMultiplexer {
         }
     }
 
+    /**
+     * Registers a listener for the messages of the given type sent to the given target only,
+     * see {@link JgroupsRoutingHeader#toTarget(Class, String)}.
+     *
+     * @param inputMessageType Type of the messages to listen to.
+     * @param target           Name of the target, only one listener can be registered for a given target.
+     * @param listener         Listener to be notified.
+     * @param <T>              Type of the messages.
+     */
+    public <T extends Serializable> void addListener(@NotNull final Class<T> inputMessageType,
+                                                     @NotNull final String target,
+                                                     @NotNull final JgroupsListener<T> listener) {
+        requireNonNull(inputMessageType);
+        requireNonNull(target);
+        requireNonNull(listener);
+        String msgClassName = inputMessageType.getName();
+
+        synchronized (listeners) {
+            Map<String, JgroupsListener<? extends Serializable>> listenersByTarget = //
+                    targetedListeners.computeIfAbsent(msgClassName, key -> new ConcurrentHashMap<>());
+            if (listenersByTarget.containsKey(target)) {
+                throw new IllegalStateException("A listener is already registered for " + msgClassName + //
+                                                        " to " + target);
+            }
+            listenersByTarget.put(target, listener);
+        }
+    }
+
+    /**
+     * Decodes the payload of the given message once, and hands it to the listeners it is routed to.
+     *
+     * @param msg Received message.
+     */
     public void dispatch(@NotNull final Message msg) {
         requireNonNull(msg);
 
-        listenersFor(msg).forEach(listener -> {
-            try {
-                listener.onMessage(msg, msg.getObject());
-            } catch (Exception e) { // NOSONAR - We want to catch everything
-                log.warn("Error while processing message {}, listener is {}", msg, listener, e);
+        JgroupsRoutingHeader header = msg.getHeader(JgroupsRoutingHeader.PROTOCOL_ID);
+        if (header == null) {
+            dispatchByPayloadType(msg);
+        } else if (header.getTarget() != null) {
+            dispatchToTarget(msg, header);
+        } else {
+            Set<JgroupsListener<? extends Serializable>> targetListeners = listeners.get(header.getType());
+            if (targetListeners == null) {
+                log.debug("No listeners for {}, message {}", header.getType(), msg);
+                return;
             }
-        });
+            Serializable payload = decode(msg);
+            if (payload != null) {
+                targetListeners.forEach(listener -> notifyListener(listener, msg, payload));
+            }
+        }
     }
 
     public void removeListener(@NotNull final JgroupsListener<? extends Serializable> listener) {
@@ -84,6 +143,9 @@ public class JgroupsListenerMultiplexer {
             });
 
             keysToRemove.forEach(listeners::remove);
+
+            targetedListeners.values().forEach(listenersByTarget -> listenersByTarget.values().remove(listener));
+            targetedListeners.values().removeIf(Map::isEmpty);
         }
     }
 
@@ -92,16 +154,62 @@ public class JgroupsListenerMultiplexer {
         return listeners;
     }
 
-    private Set<JgroupsListener<? extends Serializable>> listenersFor(final Message msg) {
-        requireNonNull(msg);
-        String msgClassName = msg.getObject().getClass().getName();
-        synchronized (listeners) {
-            Set<JgroupsListener<? extends Serializable>> targetListeners = listeners.get(msgClassName); // NOSONAR
-            if (targetListeners == null) {
-                log.debug("No listeners for {}, message {}", msgClassName, msg);
-                return Collections.emptySet();
-            }
-            return new HashSet<>(targetListeners);
+    @VisibleForTesting
+    Map<String, Map<String, JgroupsListener<? extends Serializable>>> getTargetedListeners() { // NOSONAR
+        return targetedListeners;
+    }
+
+    private void dispatchToTarget(final Message msg, final JgroupsRoutingHeader header) {
+        Map<String, JgroupsListener<? extends Serializable>> listenersByTarget = targetedListeners.get(
+                header.getType());
+        JgroupsListener<? extends Serializable> listener =
+                listenersByTarget != null ? listenersByTarget.get(header.getTarget()) : null;
+        if (listener == null) {
+            log.debug("No listener for {} to {}, message {}", header.getType(), header.getTarget(), msg);
+            return;
+        }
+        Serializable payload = decode(msg);
+        if (payload != null) {
+            notifyListener(listener, msg, payload);
+        }
+    }
+
+    private void dispatchByPayloadType(final Message msg) {
+        Serializable payload = decode(msg);
+        if (payload == null) {
+            return;
+        }
+        String msgClassName = payload.getClass().getName();
+        Set<JgroupsListener<? extends Serializable>> targetListeners = listeners.get(msgClassName);
+        if (targetListeners == null) {
+            log.debug("No listeners for {}, message {}", msgClassName, payload);
+            return;
+        }
+        targetListeners.forEach(listener -> notifyListener(listener, msg, payload));
+    }
+
+    private Serializable decode(final Message msg) {
+        Serializable payload;
+        try {
+            payload = codec.decode(msg.getRawBuffer(), msg.getOffset(), msg.getLength());
+        } catch (RuntimeException e) {
+            log.warn("Dropping undecodable message {}", msg, e);
+            return null;
+        }
+        if (payload == null) {
+            log.debug("Ignoring empty message {}", msg);
+        }
+        return payload;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void notifyListener(final JgroupsListener<? extends Serializable> listener,
+                                       final Message msg,
+                                       final Serializable payload) {
+        try {
+            ((JgroupsListener<Serializable>) listener).onMessage(msg, payload); // NOSONAR
+        } catch (Exception e) { // NOSONAR - We want to catch everything
+            log.warn("Error while processing message {}, listener is {}", msg, listener, e);
         }
     }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.shared.jgroups;
+
+import org.jgroups.Header;
+import org.jgroups.conf.ClassConfigurator;
+import org.jgroups.util.Bits;
+
+import javax.validation.constraints.NotNull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Header holding the type of the payload of a message and, for messages sent to a single actor, its name.
+ * It lets {@link JgroupsListenerMultiplexer} find the listener of a message before decoding its payload.
+ */
+public final class JgroupsRoutingHeader extends Header {
+
+    /**
+     * Identifier of the header in a message, user protocol identifiers are above 1000.
+     */
+    public static final short PROTOCOL_ID = 1700;
+
+    /**
+     * Identifier of the header class on the wire, user magic numbers are above 1024.
+     */
+    static final short MAGIC_ID = 1700;
+
+    static {
+        ClassConfigurator.add(MAGIC_ID, JgroupsRoutingHeader.class);
+    }
+
+    private String type;
+    private String target;
+
+    /**
+     * Used by JGroups when reading headers.
+     */
+    public JgroupsRoutingHeader() {
+        // For deserialization only
+    }
+
+    private JgroupsRoutingHeader(final String type, final String target) {
+        this.type = type;
+        this.target = target;
+    }
+
+    /**
+     * @param type Type of the payload.
+     * @return A header routing the message to all listeners of the type.
+     */
+    @NotNull
+    public static JgroupsRoutingHeader toAll(@NotNull final Class<?> type) {
+        return new JgroupsRoutingHeader(type.getName(), null);
+    }
+
+    /**
+     * @param type   Type of the payload.
+     * @param target Name of the only listener to notify.
+     * @return A header routing the message to the listener registered for the given target only.
+     */
+    @NotNull
+    public static JgroupsRoutingHeader toTarget(@NotNull final Class<?> type, @NotNull final String target) {
+        return new JgroupsRoutingHeader(type.getName(), requireNonNull(target));
+    }
+
+    /**
+     * Registers the header class in JGroups, it must be done before any message holding it is received.
+     */
+    static void register() {
+        // Registration is done by the static initializer
+    }
+
+    String getType() {
+        return type;
+    }
+
+    /**
+     * @return The name of the target listener, or {@code null} for a message to all listeners of its type.
+     */
+    String getTarget() {
+        return target;
+    }
+
+    @Override
+    public short getMagicId() {
+        return MAGIC_ID;
+    }
+
+    @Override
+    public Supplier<? extends Header> create() {
+        return JgroupsRoutingHeader::new;
+    }
+
+    @Override
+    public int serializedSize() {
+        return sizeOf(type) + sizeOf(target);
+    }
+
+    @Override
+    public void writeTo(final DataOutput out) throws IOException {
+        Bits.writeString(type, out);
+        Bits.writeString(target, out);
+    }
+
+    @Override
+    public void readFrom(final DataInput in) throws IOException {
+        type = Bits.readString(in);
+        target = Bits.readString(in);
+    }
+
+    /**
+     * Null flag, then the modified UTF-8 form written by {@link DataOutput#writeUTF(String)}.
+     */
+    private static int sizeOf(final String value) {
+        return 1 + (value != null ? Bits.sizeUTF(value) : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "{\"JgroupsRoutingHeader\":{" + //
+                "\"type\":\"" + type + "\", " + //
+                "\"target\":\"" + target + "\"}}";
+    }
+}
@@ -16,6 +16,7 @@
 package io.amaze.bench.shared.jgroups;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.amaze.bench.cluster.codec.Codec;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -36,6 +37,11 @@ public class JgroupsStateMultiplexer {
     private static final Logger log = LogManager.getLogger();
 
     private final Map<JgroupsStateKey, JgroupsStateHolder<? extends Serializable>> stateHolderObjects = new HashMap<>();
+    private final Codec codec;
+
+    public JgroupsStateMultiplexer(@NotNull final Codec codec) {
+        this.codec = requireNonNull(codec);
+    }
 
     public void addStateHolder(@NotNull final JgroupsStateHolder<?> holder) {
         requireNonNull(holder);
@@ -66,9 +72,10 @@ public class JgroupsStateMultiplexer {
 
         log.debug("Gathering state from holders...");
 
-        try (ObjectOutputStream oos = new ObjectOutputStream(output)) {
-            JgroupsSharedState sharedState = gatherStateFromHolders();
-            oos.writeObject(sharedState);
+        byte[] sharedState = codec.encode(gatherStateFromHolders());
+        try (DataOutputStream out = new DataOutputStream(output)) {
+            out.writeInt(sharedState.length);
+            out.write(sharedState);
         }
     }
 
@@ -77,10 +84,12 @@ public class JgroupsStateMultiplexer {
 
         log.debug("Writing state to holders...");
 
-        try (ObjectInputStream ois = new ObjectInputStream(input)) {
-            JgroupsSharedState newState = (JgroupsSharedState) ois.readObject();
+        try (DataInputStream in = new DataInputStream(input)) {
+            byte[] sharedState = new byte[in.readInt()];
+            in.readFully(sharedState);
+            JgroupsSharedState newState = codec.decode(sharedState);
             setNewStateOnHolders(newState);
-        } catch (ClassNotFoundException e) {
+        } catch (IllegalArgumentException | ClassCastException e) {
             throw new IllegalStateException("Error while de-serializing.", e);
         }
     }
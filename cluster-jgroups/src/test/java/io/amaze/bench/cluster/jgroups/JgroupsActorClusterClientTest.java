@@ -17,23 +17,49 @@ package io.amaze.bench.cluster.jgroups;
 
 import com.google.common.testing.NullPointerTester;
 import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.api.metric.Metric;
 import io.amaze.bench.cluster.Endpoint;
+import io.amaze.bench.cluster.actor.ActorDeployInfo;
+import io.amaze.bench.cluster.actor.ActorInputBatch;
 import io.amaze.bench.cluster.actor.ActorInputMessage;
+import io.amaze.bench.cluster.actor.CoalescingWindow;
+import io.amaze.bench.cluster.actor.LocalDelivery;
 import io.amaze.bench.cluster.actor.RuntimeActor;
+import io.amaze.bench.cluster.agent.AgentKey;
+import io.amaze.bench.cluster.codec.Codecs;
+import io.amaze.bench.cluster.metric.EncodedMetricValuesMessage;
+import io.amaze.bench.cluster.metric.MetricDictionary;
+import io.amaze.bench.cluster.metric.MetricTimedValue;
+import io.amaze.bench.cluster.metric.MetricValue;
 import io.amaze.bench.cluster.metric.MetricValuesMessage;
 import io.amaze.bench.cluster.registry.ActorRegistry;
 import io.amaze.bench.runtime.actor.TestActor;
+import io.amaze.bench.shared.jgroups.JgroupsEndpoint;
 import io.amaze.bench.shared.jgroups.JgroupsListenerMultiplexer;
+import org.jgroups.Address;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import static io.amaze.bench.api.metric.Metric.metric;
+import static io.amaze.bench.cluster.jgroups.JgroupsActorClusterClient.BatchListener;
 import static io.amaze.bench.cluster.jgroups.JgroupsActorClusterClient.MessageListener;
+import static io.amaze.bench.cluster.registry.RegisteredActor.created;
+import static io.amaze.bench.cluster.registry.RegisteredActor.initialized;
 import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
@@ -79,7 +105,10 @@ public final class JgroupsActorClusterClientTest {
 
         clusterClient.startActorListener(runtimeActor);
 
-        verify(listenerMultiplexer).addListener(eq(JgroupsActorMessage.class), any(MessageListener.class));
+        verify(listenerMultiplexer).addListener(eq(ActorInputMessage.class), eq(DUMMY_ACTOR.getName()),
+                                                any(MessageListener.class));
+        verify(listenerMultiplexer).addListener(eq(ActorInputBatch.class), eq(DUMMY_ACTOR.getName()),
+                                                any(BatchListener.class));
         verifyNoMoreInteractions(listenerMultiplexer);
         verifyZeroInteractions(jgroupsSender);
     }
@@ -90,11 +119,53 @@ public final class JgroupsActorClusterClientTest {
 
         clusterClient.sendMetrics(message);
 
-        verify(jgroupsSender).broadcast(message);
+        ArgumentCaptor<Serializable> sent = ArgumentCaptor.forClass(Serializable.class);
+        verify(jgroupsSender).broadcast(sent.capture());
+        EncodedMetricValuesMessage encoded = (EncodedMetricValuesMessage) sent.getValue();
+        assertThat(encoded.decode(new MetricDictionary()), is(message));
         verifyNoMoreInteractions(jgroupsSender);
         verifyZeroInteractions(listenerMultiplexer);
     }
 
+    @Test
+    public void metric_definitions_are_sent_again_after_a_failed_broadcast() {
+        Map<Metric, List<MetricValue>> values = new HashMap<>();
+        values.put(metric("test", "ms").build(), singletonList(new MetricTimedValue(1L, 2)));
+        MetricValuesMessage message = new MetricValuesMessage(DUMMY_ACTOR, values);
+        doThrow(new IllegalStateException()).doNothing().when(jgroupsSender).broadcast(any());
+
+        try {
+            clusterClient.sendMetrics(message);
+        } catch (IllegalStateException ignore) {
+            // Expected
+        }
+        clusterClient.sendMetrics(message);
+
+        ArgumentCaptor<Serializable> sent = ArgumentCaptor.forClass(Serializable.class);
+        verify(jgroupsSender, times(2)).broadcast(sent.capture());
+        for (Serializable encoded : sent.getAllValues()) {
+            assertThat(((EncodedMetricValuesMessage) encoded).decode(new MetricDictionary()), is(message));
+        }
+    }
+
+    @Test
+    public void message_to_local_actor_with_mailbox_is_not_sent_to_the_channel() {
+        when(runtimeActor.hasMailbox()).thenReturn(true);
+        when(runtimeActor.offerMessage("from", "payload")).thenReturn(true);
+        clusterClient = new JgroupsActorClusterClient(endpoint,
+                                                      listenerMultiplexer,
+                                                      jgroupsSender,
+                                                      actorRegistry,
+                                                      LocalDelivery.enabled(Codecs.defaultCodec(), false));
+        clusterClient.startActorListener(runtimeActor);
+
+        clusterClient.actorSender().send(DUMMY_ACTOR, ActorInputMessage.message("from", "payload"));
+        clusterClient.close();
+
+        verify(runtimeActor).offerMessage("from", "payload");
+        verifyZeroInteractions(jgroupsSender);
+    }
+
     @Test
     public void close_unregisters_listener() {
 
@@ -109,9 +180,8 @@ public final class JgroupsActorClusterClientTest {
     public void message_listener_forwards_dumpMetrics() {
         MessageListener messageListener = new MessageListener(runtimeActor);
 
-        messageListener.onMessage(mock(org.jgroups.Message.class), createMessage(ActorInputMessage.dumpMetrics()));
+        messageListener.onMessage(mock(org.jgroups.Message.class), ActorInputMessage.dumpMetrics());
 
-        verify(runtimeActor).getKey();
         verify(runtimeActor).dumpAndFlushMetrics();
         verifyNoMoreInteractions(runtimeActor);
     }
@@ -122,10 +192,8 @@ public final class JgroupsActorClusterClientTest {
         String from = "from";
         String payload = "payload";
 
-        messageListener.onMessage(mock(org.jgroups.Message.class),
-                                  createMessage(ActorInputMessage.message(from, payload)));
+        messageListener.onMessage(mock(org.jgroups.Message.class), ActorInputMessage.message(from, payload));
 
-        verify(runtimeActor).getKey();
         verify(runtimeActor).onMessage(from, payload);
         verifyNoMoreInteractions(runtimeActor);
     }
@@ -134,10 +202,9 @@ public final class JgroupsActorClusterClientTest {
     public void message_listener_forwards_close() {
         MessageListener messageListener = new MessageListener(runtimeActor);
 
-        messageListener.onMessage(mock(org.jgroups.Message.class), createMessage(ActorInputMessage.close()));
+        messageListener.onMessage(mock(org.jgroups.Message.class), ActorInputMessage.close());
 
-        verify(runtimeActor).getKey();
-        verify(runtimeActor).close();
+        verify(runtimeActor).requestClose();
         verifyNoMoreInteractions(runtimeActor);
     }
 
@@ -145,15 +212,44 @@ public final class JgroupsActorClusterClientTest {
     public void message_listener_forwards_bootstrap() {
         MessageListener messageListener = new MessageListener(runtimeActor);
 
-        messageListener.onMessage(mock(org.jgroups.Message.class), createMessage(ActorInputMessage.bootstrap()));
+        messageListener.onMessage(mock(org.jgroups.Message.class), ActorInputMessage.bootstrap());
 
-        verify(runtimeActor).getKey();
         verify(runtimeActor).bootstrap();
         verifyNoMoreInteractions(runtimeActor);
     }
 
-    private JgroupsActorMessage createMessage(ActorInputMessage input) {
-        return new JgroupsActorMessage(DUMMY_ACTOR, input);
+    @Test
+    public void batch_listener_hands_messages_to_the_actor_in_order() {
+        BatchListener batchListener = new BatchListener(new MessageListener(runtimeActor));
+
+        batchListener.onMessage(mock(org.jgroups.Message.class),
+                                new ActorInputBatch(Arrays.asList(ActorInputMessage.message("from", "first"),
+                                                                  ActorInputMessage.message("from", "second"))));
+
+        InOrder inOrder = inOrder(runtimeActor);
+        inOrder.verify(runtimeActor).onMessage("from", "first");
+        inOrder.verify(runtimeActor).onMessage("from", "second");
+    }
+
+    @Test
+    public void coalesced_messages_are_sent_as_a_batch() {
+        clusterClient = new JgroupsActorClusterClient(endpoint,
+                                                      listenerMultiplexer,
+                                                      jgroupsSender,
+                                                      actorRegistry,
+                                                      LocalDelivery.disabled(),
+                                                      CoalescingWindow.of(2, 0, 60_000, Codecs.defaultCodec()));
+        JgroupsEndpoint target = new JgroupsEndpoint(mock(Address.class));
+        when(actorRegistry.byKey(DUMMY_ACTOR)).thenReturn(
+                initialized(created(DUMMY_ACTOR, new AgentKey("agent")), new ActorDeployInfo(target, 10)));
+        ActorInputMessage first = ActorInputMessage.message("from", "first");
+        ActorInputMessage second = ActorInputMessage.message("from", "second");
+
+        clusterClient.actorSender().send(DUMMY_ACTOR, first);
+        clusterClient.actorSender().send(DUMMY_ACTOR, second);
+
+        verify(jgroupsSender).sendToActor(target, DUMMY_ACTOR, new ActorInputBatch(Arrays.asList(first, second)));
+        verifyNoMoreInteractions(jgroupsSender);
     }
 
-}
\ No newline at end of file
+}
@@ -18,7 +18,9 @@ package io.amaze.bench.cluster.jgroups;
 import com.google.common.testing.NullPointerTester;
 import io.amaze.bench.api.ActorKey;
 import io.amaze.bench.cluster.actor.ActorDeployInfo;
+import io.amaze.bench.cluster.actor.ActorInputBatch;
 import io.amaze.bench.cluster.actor.ActorInputMessage;
+import io.amaze.bench.cluster.actor.ActorSender;
 import io.amaze.bench.cluster.agent.AgentKey;
 import io.amaze.bench.cluster.registry.ActorRegistry;
 import io.amaze.bench.cluster.registry.RegisteredActor;
@@ -30,6 +32,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import static io.amaze.bench.cluster.registry.RegisteredActor.created;
@@ -81,7 +85,7 @@ public final class JgroupsActorSenderTest {
 
         sender.send(DUMMY_ACTOR, message);
 
-        verify(jgroupsSender).sendToEndpoint(eq(endpoint), any(JgroupsActorMessage.class));
+        verify(jgroupsSender).sendToActor(endpoint, DUMMY_ACTOR, message);
         verifyNoMoreInteractions(jgroupsSender);
     }
 
@@ -97,4 +101,55 @@ public final class JgroupsActorSenderTest {
         sender.send(DUMMY_ACTOR, ActorInputMessage.message("other", "hello"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void resolved_route_looks_up_endpoint_once() {
+        RegisteredActor agent = created(DUMMY_ACTOR, AGENT);
+        when(actorRegistry.byKey(DUMMY_ACTOR)).thenReturn(initialized(agent, new ActorDeployInfo(endpoint, 10)));
+        ActorInputMessage message = ActorInputMessage.message("other", "hello");
+
+        ActorSender.Route route = sender.resolve(DUMMY_ACTOR);
+        route.send(message);
+        route.send(message);
+
+        verify(actorRegistry, times(1)).byKey(DUMMY_ACTOR);
+        verify(jgroupsSender, times(2)).sendToActor(endpoint, DUMMY_ACTOR, message);
+    }
+
+    @Test
+    public void resolved_route_looks_up_endpoint_again_when_registry_changes() {
+        JgroupsEndpoint otherEndpoint = new JgroupsEndpoint(mock(Address.class));
+        RegisteredActor agent = created(DUMMY_ACTOR, AGENT);
+        when(actorRegistry.byKey(DUMMY_ACTOR)).thenReturn(initialized(agent, new ActorDeployInfo(endpoint, 10)));
+        ActorInputMessage message = ActorInputMessage.message("other", "hello");
+        ActorSender.Route route = sender.resolve(DUMMY_ACTOR);
+        route.send(message);
+
+        when(actorRegistry.version()).thenReturn(1L);
+        when(actorRegistry.byKey(DUMMY_ACTOR)).thenReturn(initialized(agent, new ActorDeployInfo(otherEndpoint, 10)));
+        route.send(message);
+
+        verify(actorRegistry, times(2)).byKey(DUMMY_ACTOR);
+        verify(jgroupsSender).sendToActor(same(endpoint), eq(DUMMY_ACTOR), eq(message));
+        verify(jgroupsSender).sendToActor(same(otherEndpoint), eq(DUMMY_ACTOR), eq(message));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void resolved_route_to_unknown_actor_throws_NoSuchElementException_on_send() {
+        sender.resolve(DUMMY_ACTOR).send(ActorInputMessage.message("other", "hello"));
+    }
+
+    @Test
+    public void send_batch_sends_a_single_message() {
+        RegisteredActor agent = created(DUMMY_ACTOR, AGENT);
+        when(actorRegistry.byKey(DUMMY_ACTOR)).thenReturn(initialized(agent, new ActorDeployInfo(endpoint, 10)));
+        List<ActorInputMessage> messages = Arrays.asList(ActorInputMessage.message("other", "first"),
+                                                         ActorInputMessage.message("other", "second"));
+
+        sender.sendBatch(DUMMY_ACTOR, messages);
+        sender.resolve(DUMMY_ACTOR).sendBatch(messages);
+
+        verify(jgroupsSender, times(2)).sendToActor(endpoint, DUMMY_ACTOR, new ActorInputBatch(messages));
+        verifyNoMoreInteractions(jgroupsSender);
+    }
+
+}
@@ -86,6 +86,8 @@ public final class JgroupsAgentRegistryClusterClientTest {
     public void null_parameters_are_invalid() {
         NullPointerTester tester = new NullPointerTester();
         tester.setDefault(JgroupsViewMultiplexer.class, viewMultiplexer);
+        tester.setDefault(JgroupsStateMultiplexer.class, stateMultiplexer);
+        tester.setDefault(JgroupsListenerMultiplexer.class, listenerMultiplexer);
 
         tester.testAllPublicConstructors(JgroupsAgentRegistryClusterClient.class);
         tester.testAllPublicInstanceMethods(registryClusterClient);
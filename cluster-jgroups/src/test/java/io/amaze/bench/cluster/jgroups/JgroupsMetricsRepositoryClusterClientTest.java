@@ -16,6 +16,7 @@
 package io.amaze.bench.cluster.jgroups;
 
 import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.cluster.metric.EncodedMetricValuesMessage;
 import io.amaze.bench.cluster.metric.MetricValuesMessage;
 import io.amaze.bench.cluster.metric.MetricsRepositoryListener;
 import io.amaze.bench.runtime.actor.TestActor;
@@ -44,7 +45,7 @@ public final class JgroupsMetricsRepositoryClusterClientTest {
     private JgroupsListenerMultiplexer listenerMultiplexer;
 
     private JgroupsMetricsRepositoryClusterClient clusterClient;
-    private JgroupsListener<MetricValuesMessage> jgroupsListener;
+    private JgroupsListener<EncodedMetricValuesMessage> jgroupsListener;
 
     @Before
     public void init() {
@@ -60,12 +61,12 @@ public final class JgroupsMetricsRepositoryClusterClientTest {
     }
 
     @Test
-    public void startMetricsListener_registers_MetricValuesMessage_listener() {
+    public void startMetricsListener_registers_EncodedMetricValuesMessage_listener() {
         MetricsRepositoryListener repositoryListener = mock(MetricsRepositoryListener.class);
 
         clusterClient.startMetricsListener(repositoryListener);
 
-        verify(listenerMultiplexer).addListener(eq(MetricValuesMessage.class), any(JgroupsListener.class));
+        verify(listenerMultiplexer).addListener(eq(EncodedMetricValuesMessage.class), any(JgroupsListener.class));
         verifyNoMoreInteractions(listenerMultiplexer);
     }
 
@@ -74,11 +75,12 @@ public final class JgroupsMetricsRepositoryClusterClientTest {
         spyOnListener();
         MetricsRepositoryListener repositoryListener = mock(MetricsRepositoryListener.class);
         clusterClient.startMetricsListener(repositoryListener);
-        MetricValuesMessage metricValues = new MetricValuesMessage(TestActor.DUMMY_ACTOR, new HashMap<>());
+        EncodedMetricValuesMessage metricValues = EncodedMetricValuesMessage.encode(
+                new MetricValuesMessage(TestActor.DUMMY_ACTOR, new HashMap<>()));
 
         jgroupsListener.onMessage(mock(Message.class), metricValues);
 
-        verify(repositoryListener).onMetricValues(metricValues);
+        verify(repositoryListener).onEncodedMetricValues(metricValues);
         verifyNoMoreInteractions(repositoryListener);
     }
 
@@ -94,9 +96,9 @@ public final class JgroupsMetricsRepositoryClusterClientTest {
 
     private void spyOnListener() {
         doAnswer(invocation -> {
-            jgroupsListener = (JgroupsListener<MetricValuesMessage>) invocation.getArguments()[1];
+            jgroupsListener = (JgroupsListener<EncodedMetricValuesMessage>) invocation.getArguments()[1];
             return null;
-        }).when(listenerMultiplexer).addListener(eq(MetricValuesMessage.class), any(JgroupsListener.class));
+        }).when(listenerMultiplexer).addListener(eq(EncodedMetricValuesMessage.class), any(JgroupsListener.class));
     }
 
 }
\ No newline at end of file
@@ -18,23 +18,28 @@ package io.amaze.bench.cluster.jgroups;
 import com.google.common.testing.NullPointerTester;
 import io.amaze.bench.api.ActorKey;
 import io.amaze.bench.cluster.actor.ActorInputMessage;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.cluster.registry.ActorRegistry;
 import io.amaze.bench.shared.jgroups.JgroupsEndpoint;
+import io.amaze.bench.shared.jgroups.JgroupsRoutingHeader;
 import io.amaze.bench.shared.util.Network;
 import org.jgroups.Address;
 import org.jgroups.JChannel;
+import org.jgroups.Message;
 import org.jgroups.stack.IpAddress;
-import org.jgroups.util.Util;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.net.UnknownHostException;
 
-import static org.mockito.AdditionalMatchers.aryEq;
-import static org.mockito.Matchers.eq;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -57,7 +62,7 @@ public final class JgroupsSenderTest {
 
     @Before
     public void init() throws UnknownHostException {
-        sender = new JgroupsSender(jChannel);
+        sender = new JgroupsSender(jChannel, Codecs.defaultCodec());
         address = new IpAddress(Network.LOCALHOST, 1337);
         endpoint = new JgroupsEndpoint(address);
     }
@@ -77,16 +82,43 @@ public final class JgroupsSenderTest {
     public void broadcast_send_message_with_null_recipient() throws Exception {
         sender.broadcast(MESSAGE);
 
-        verify(jChannel).send(eq(null), aryEq(Util.objectToByteBuffer(MESSAGE)));
-        verifyNoMoreInteractions(jChannel);
+        Message sent = sentMessage();
+        assertNull(sent.getDest());
+        assertArrayEquals(sent.getBuffer(), Codecs.defaultCodec().encode(MESSAGE));
+        assertRoutedTo(sent, null);
     }
 
     @Test
     public void send_to_endpoint_sends_on_channel() throws Exception {
         sender.sendToEndpoint(endpoint, MESSAGE);
 
-        verify(jChannel).send(eq(address), aryEq(Util.objectToByteBuffer(MESSAGE)));
+        Message sent = sentMessage();
+        assertThat(sent.getDest(), is(address));
+        assertArrayEquals(sent.getBuffer(), Codecs.defaultCodec().encode(MESSAGE));
+        assertRoutedTo(sent, null);
+    }
+
+    @Test
+    public void send_to_actor_sets_the_target_in_the_header() throws Exception {
+        sender.sendToActor(endpoint, new ActorKey("actor"), MESSAGE);
+
+        Message sent = sentMessage();
+        assertThat(sent.getDest(), is(address));
+        assertRoutedTo(sent, "actor");
+    }
+
+    private Message sentMessage() throws Exception {
+        ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+        verify(jChannel).send(captor.capture());
         verifyNoMoreInteractions(jChannel);
+        return captor.getValue();
+    }
+
+    private static void assertRoutedTo(final Message sent, final String target) {
+        JgroupsRoutingHeader header = sent.getHeader(JgroupsRoutingHeader.PROTOCOL_ID);
+        assertThat(header.toString(), is(target == null ? //
+                JgroupsRoutingHeader.toAll(String.class).toString() : //
+                JgroupsRoutingHeader.toTarget(String.class, target).toString()));
     }
 
 }
\ No newline at end of file
@@ -62,6 +62,13 @@ public final class JgroupsEndpointTest {
         assertThat(expected, is(actual));
     }
 
+    @Test
+    public void address_is_deserialized_once() throws Exception {
+        JgroupsEndpoint endpoint = SerializableTester.reserialize(jgroupsEndpoint());
+
+        assertThat(endpoint.getAddress() == endpoint.getAddress(), is(true));
+    }
+
     @Test
     public void toString_yields_valid_json() throws Exception {
         assertTrue(Json.isValid(jgroupsEndpoint().toString()));
@@ -16,6 +16,8 @@
 package io.amaze.bench.shared.jgroups;
 
 import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
 import org.jgroups.Message;
 import org.junit.Before;
 import org.junit.Test;
@@ -39,15 +41,14 @@ public final class JgroupsListenerMultiplexerTest {
 
     @Mock
     private JgroupsListener<String> listener;
-    @Mock
-    private Message dummyMessage;
 
+    private Message dummyMessage;
     private JgroupsListenerMultiplexer listenerMultiplexer;
 
     @Before
     public void init() {
-        listenerMultiplexer = new JgroupsListenerMultiplexer();
-        when(dummyMessage.getObject()).thenReturn(DUMMY_PAYLOAD);
+        listenerMultiplexer = new JgroupsListenerMultiplexer(Codecs.defaultCodec());
+        dummyMessage = new Message(null, Codecs.defaultCodec().encode(DUMMY_PAYLOAD));
     }
 
     @Test
@@ -158,4 +159,68 @@ public final class JgroupsListenerMultiplexerTest {
         verify(listener).onMessage(same(dummyMessage), eq(DUMMY_PAYLOAD));
         verifyZeroInteractions(listener);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void dispatch_routes_message_using_its_header_type() {
+        JgroupsListener<Integer> listener2 = mock(JgroupsListener.class);
+        listenerMultiplexer.addListener(String.class, listener);
+        listenerMultiplexer.addListener(Integer.class, listener2);
+        Message routed = routedMessage(JgroupsRoutingHeader.toAll(String.class));
+
+        listenerMultiplexer.dispatch(routed);
+
+        verify(listener).onMessage(same(routed), eq(DUMMY_PAYLOAD));
+        verifyZeroInteractions(listener2);
+    }
+
+    @Test
+    public void dispatch_routes_targeted_message_to_its_target_only() {
+        JgroupsListener<String> otherTarget = mock(JgroupsListener.class);
+        listenerMultiplexer.addListener(String.class, listener);
+        listenerMultiplexer.addListener(String.class, "target", listener);
+        listenerMultiplexer.addListener(String.class, "other", otherTarget);
+        Message routed = routedMessage(JgroupsRoutingHeader.toTarget(String.class, "target"));
+
+        listenerMultiplexer.dispatch(routed);
+
+        verify(listener).onMessage(same(routed), eq(DUMMY_PAYLOAD));
+        verifyNoMoreInteractions(listener);
+        verifyZeroInteractions(otherTarget);
+    }
+
+    @Test
+    public void payload_is_not_decoded_when_no_listener_matches() {
+        Codec codec = mock(Codec.class);
+        JgroupsListenerMultiplexer multiplexer = new JgroupsListenerMultiplexer(codec);
+        multiplexer.addListener(String.class, "other", listener);
+
+        multiplexer.dispatch(routedMessage(JgroupsRoutingHeader.toTarget(String.class, "target")));
+        multiplexer.dispatch(routedMessage(JgroupsRoutingHeader.toAll(String.class)));
+
+        verifyZeroInteractions(codec);
+        verifyZeroInteractions(listener);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void add_listener_for_same_target_twice_throws() {
+        listenerMultiplexer.addListener(String.class, "target", listener);
+
+        listenerMultiplexer.addListener(String.class, "target", mock(JgroupsListener.class));
+    }
+
+    @Test
+    public void remove_listener_unregisters_targeted_listener() {
+        listenerMultiplexer.addListener(String.class, "target", listener);
+
+        listenerMultiplexer.removeListener(listener);
+        listenerMultiplexer.dispatch(routedMessage(JgroupsRoutingHeader.toTarget(String.class, "target")));
+
+        assertThat(listenerMultiplexer.getTargetedListeners().isEmpty(), is(true));
+        verifyZeroInteractions(listener);
+    }
+
+    private static Message routedMessage(final JgroupsRoutingHeader header) {
+        return new Message(null, Codecs.defaultCodec().encode(DUMMY_PAYLOAD)).putHeader(
+                JgroupsRoutingHeader.PROTOCOL_ID, header);
+    }
+}
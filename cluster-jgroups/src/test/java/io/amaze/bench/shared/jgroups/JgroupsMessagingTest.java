@@ -15,6 +15,7 @@
  */
 package io.amaze.bench.shared.jgroups;
 
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.shared.test.IntegrationTest;
 import org.jgroups.JChannel;
 import org.jgroups.Message;
@@ -67,8 +68,8 @@ public final class JgroupsMessagingTest {
         JgroupsListener<String> jgroupsListener1 = addListener(member1);
         JgroupsListener<String> jgroupsListener2 = addListener(member2);
 
-        member1.jChannel.send(new Message(member2.jChannel.address(), MSG_FROM_1_TO_2));
-        member2.jChannel.send(new Message(member1.jChannel.address(), MSG_FROM_2_TO_1));
+        member1.jChannel.send(new Message(member2.jChannel.address(), encode(MSG_FROM_1_TO_2)));
+        member2.jChannel.send(new Message(member1.jChannel.address(), encode(MSG_FROM_2_TO_1)));
 
         verify(jgroupsListener1, TIMEOUT).onMessage(any(Message.class), eq(MSG_FROM_2_TO_1));
         verify(jgroupsListener2, TIMEOUT).onMessage(any(Message.class), eq(MSG_FROM_1_TO_2));
@@ -81,7 +82,7 @@ public final class JgroupsMessagingTest {
         JgroupsListener<String> jgroupsListener1 = addListener(member1);
         JgroupsListener<String> jgroupsListener2 = addListener(member2);
 
-        member1.jChannel.send(new Message(null, BROADCAST));
+        member1.jChannel.send(new Message(null, encode(BROADCAST)));
 
         verify(jgroupsListener1, TIMEOUT).onMessage(any(Message.class), eq(BROADCAST));
         verify(jgroupsListener2, TIMEOUT).onMessage(any(Message.class), eq(BROADCAST));
@@ -89,6 +90,10 @@ public final class JgroupsMessagingTest {
         verifyNoMoreInteractions(jgroupsListener2);
     }
 
+    private static byte[] encode(final String message) {
+        return Codecs.defaultCodec().encode(message);
+    }
+
     private JgroupsListener<String> addListener(final Member member1) {
         JgroupsListener<String> jgroupsListener = mock(JgroupsListener.class);
         member1.clusterClient.listenerMultiplexer().addListener(String.class, jgroupsListener);
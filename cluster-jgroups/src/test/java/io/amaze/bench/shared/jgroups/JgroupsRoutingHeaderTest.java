@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016-2017 Florent Weber <florent.weber@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.amaze.bench.shared.jgroups;
+
+import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.shared.test.Json;
+import org.jgroups.Message;
+import org.jgroups.util.Util;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class JgroupsRoutingHeaderTest {
+
+    @Test
+    public void null_parameters_are_invalid() {
+        NullPointerTester tester = new NullPointerTester();
+
+        tester.testAllPublicStaticMethods(JgroupsRoutingHeader.class);
+    }
+
+    @Test
+    public void header_is_read_from_a_received_message() throws Exception {
+        JgroupsRoutingHeader.register();
+        Message sent = new Message(null, new byte[]{1}).putHeader(JgroupsRoutingHeader.PROTOCOL_ID, //
+                                                                   JgroupsRoutingHeader.toTarget(String.class, "actor"));
+
+        Message received = (Message) Util.streamableFromByteBuffer(Message.class, Util.streamableToByteBuffer(sent));
+        JgroupsRoutingHeader header = received.getHeader(JgroupsRoutingHeader.PROTOCOL_ID);
+
+        assertThat(header.getType(), is(String.class.getName()));
+        assertThat(header.getTarget(), is("actor"));
+    }
+
+    @Test
+    public void header_to_all_has_no_target() {
+        assertThat(JgroupsRoutingHeader.toAll(String.class).getTarget(), is(nullValue()));
+    }
+
+    @Test
+    public void serialized_size_is_the_written_size() throws Exception {
+        assertWrittenSize(JgroupsRoutingHeader.toAll(String.class));
+        assertWrittenSize(JgroupsRoutingHeader.toTarget(String.class, "actor-é"));
+    }
+
+    @Test
+    public void toString_yields_valid_json() {
+        assertTrue(Json.isValid(JgroupsRoutingHeader.toTarget(String.class, "actor").toString()));
+    }
+
+    private static void assertWrittenSize(final JgroupsRoutingHeader header) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        header.writeTo(new DataOutputStream(bytes));
+
+        assertThat(header.serializedSize(), is(bytes.size()));
+    }
+}
@@ -16,6 +16,7 @@
 package io.amaze.bench.shared.jgroups;
 
 import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.cluster.codec.Codecs;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -46,7 +47,7 @@ public final class JgroupsStateMultiplexerTest {
 
     @Before
     public void init() {
-        stateMultiplexer = new JgroupsStateMultiplexer();
+        stateMultiplexer = new JgroupsStateMultiplexer(Codecs.defaultCodec());
         when(stateHolder.getKey()).thenReturn(STATE_KEY);
         when(stateHolder.getState()).thenReturn(STATE_VALUE);
     }
@@ -149,20 +150,22 @@ public final class JgroupsStateMultiplexerTest {
         statesByKey.put(STATE_KEY, STATE_VALUE);
         JgroupsSharedState expectedSharedState = new JgroupsSharedState(statesByKey);
 
-        byte[] serializedState;
+        byte[] encodedState = Codecs.defaultCodec().encode(expectedSharedState);
         try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-             ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
-            objectOutputStream.writeObject(expectedSharedState);
-            serializedState = outputStream.toByteArray();
+             DataOutputStream dataOutputStream = new DataOutputStream(outputStream)) {
+            dataOutputStream.writeInt(encodedState.length);
+            dataOutputStream.write(encodedState);
+            dataOutputStream.flush();
+            return outputStream.toByteArray();
         }
-        return serializedState;
     }
 
     private JgroupsSharedState readStateFromOutputStream(final ByteArrayOutputStream outputStream)
-            throws IOException, ClassNotFoundException {
-        try (ByteArrayInputStream arrayInputStream = new ByteArrayInputStream(outputStream.toByteArray());
-             ObjectInputStream inputStream = new ObjectInputStream(arrayInputStream)) {
-            return (JgroupsSharedState) inputStream.readObject();
+            throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            byte[] encodedState = new byte[inputStream.readInt()];
+            inputStream.readFully(encodedState);
+            return Codecs.defaultCodec().decode(encodedState);
         }
     }
 }
\ No newline at end of file
@@ -22,7 +22,13 @@ import io.amaze.bench.cluster.Endpoint;
 import io.amaze.bench.cluster.actor.ActorClusterClient;
 import io.amaze.bench.cluster.actor.ActorRegistrySender;
 import io.amaze.bench.cluster.actor.ActorSender;
+import io.amaze.bench.cluster.actor.CoalescingActorSender;
+import io.amaze.bench.cluster.actor.CoalescingWindow;
+import io.amaze.bench.cluster.actor.LocalDelivery;
 import io.amaze.bench.cluster.actor.RuntimeActor;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.metric.EncodedMetricValuesMessage;
+import io.amaze.bench.cluster.metric.MetricDictionary;
 import io.amaze.bench.cluster.metric.MetricValuesMessage;
 import io.amaze.bench.shared.jms.JMSClient;
 import io.amaze.bench.shared.jms.JMSEndpoint;
@@ -40,16 +46,43 @@ import static java.util.Objects.requireNonNull;
 final class JMSActorClusterClient extends JMSClusterClient implements ActorClusterClient {
 
     private final ActorKey actor;
+    private final LocalDelivery localDelivery;
+    private final CoalescingActorSender remoteSender;
+    private final MetricDictionary metricDictionary = new MetricDictionary();
+    private volatile RuntimeActor localActor;
 
     @VisibleForTesting
     JMSActorClusterClient(@NotNull final JMSClient client, @NotNull final ActorKey actor) {
+        this(client, actor, LocalDelivery.disabled());
+    }
+
+    @VisibleForTesting
+    JMSActorClusterClient(@NotNull final JMSClient client,
+                          @NotNull final ActorKey actor,
+                          @NotNull final LocalDelivery localDelivery) {
+        this(client, actor, localDelivery, CoalescingWindow.disabled());
+    }
+
+    @VisibleForTesting
+    JMSActorClusterClient(@NotNull final JMSClient client,
+                          @NotNull final ActorKey actor,
+                          @NotNull final LocalDelivery localDelivery,
+                          @NotNull final CoalescingWindow coalescingWindow) {
         super(client);
         this.actor = requireNonNull(actor);
+        this.localDelivery = requireNonNull(localDelivery);
+        this.remoteSender = coalescingWindow.coalesce(new JMSActorSender(getClient()));
     }
 
-    JMSActorClusterClient(@NotNull final JMSEndpoint endpoint, @NotNull final ActorKey actor) {
-        super(endpoint);
+    JMSActorClusterClient(@NotNull final JMSEndpoint endpoint,
+                          @NotNull final ActorKey actor,
+                          @NotNull final Codec codec,
+                          @NotNull final LocalDelivery localDelivery,
+                          @NotNull final CoalescingWindow coalescingWindow) {
+        super(endpoint, codec);
         this.actor = requireNonNull(actor);
+        this.localDelivery = requireNonNull(localDelivery);
+        this.remoteSender = coalescingWindow.coalesce(new JMSActorSender(getClient()));
     }
 
     @Override
@@ -57,21 +90,27 @@ final class JMSActorClusterClient extends JMSClusterClient implements ActorClust
         requireNonNull(actor);
 
         try {
-            getClient().addQueueListener(actor.getKey().getName(), new JMSActorMessageListener(actor));
+            getClient().addQueueListener(actor.getKey().getName(), new JMSActorMessageListener(actor, getCodec()));
             getClient().startListening();
         } catch (JMSException e) {
             throw propagate(e);
         }
+        localActor = actor;
+        localDelivery.register(actor);
     }
 
     @Override
     public void sendMetrics(@NotNull final MetricValuesMessage metricValuesMessage) {
         requireNonNull(metricValuesMessage);
 
-        try {
-            getClient().sendToTopic(METRICS_TOPIC, metricValuesMessage);
-        } catch (JMSException e) {
-            throw propagate(e);
+        synchronized (metricDictionary) {
+            try {
+                getClient().sendToTopic(METRICS_TOPIC,
+                                        EncodedMetricValuesMessage.encode(metricValuesMessage, metricDictionary));
+            } catch (JMSException | RuntimeException e) {
+                metricDictionary.reset();
+                throw propagate(e);
+            }
         }
     }
 
@@ -85,11 +124,24 @@ final class JMSActorClusterClient extends JMSClusterClient implements ActorClust
 
     @Override
     public ActorSender actorSender() {
-        return new JMSActorSender(getClient());
+        return localDelivery.localFirst(remoteSender);
     }
 
     @Override
     public ActorRegistrySender actorRegistrySender() {
         return new JMSActorRegistrySender(getClient(), actor.getName());
     }
+
+    @Override
+    public void close() {
+        RuntimeActor registered = localActor;
+        if (registered != null) {
+            localDelivery.unregister(registered);
+        }
+        try {
+            remoteSender.close();
+        } finally {
+            super.close();
+        }
+    }
 }
@@ -16,8 +16,10 @@
 package io.amaze.bench.cluster.jms;
 
 import io.amaze.bench.api.Reactor;
+import io.amaze.bench.cluster.actor.ActorInputBatch;
 import io.amaze.bench.cluster.actor.ActorInputMessage;
 import io.amaze.bench.cluster.actor.RuntimeActor;
+import io.amaze.bench.cluster.codec.Codec;
 import io.amaze.bench.shared.jms.JMSHelper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -26,39 +28,50 @@ import javax.jms.BytesMessage;
 import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.validation.constraints.NotNull;
+import java.io.Serializable;
 import java.util.Optional;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Convert received JMS messages for an actor to calls to its {@link Reactor} methods.
+ * The messages of an {@link ActorInputBatch} are handed to the actor one by one, in order.
  */
 final class JMSActorMessageListener implements MessageListener {
 
     private static final Logger log = LogManager.getLogger();
 
     private final RuntimeActor actor;
+    private final Codec codec;
 
-    JMSActorMessageListener(@NotNull final RuntimeActor actor) {
+    JMSActorMessageListener(@NotNull final RuntimeActor actor, @NotNull final Codec codec) {
         this.actor = requireNonNull(actor);
+        this.codec = requireNonNull(codec);
     }
 
     @Override
     public void onMessage(@NotNull final Message jmsMessage) {
         requireNonNull(jmsMessage);
 
-        Optional<ActorInputMessage> msg = readInputMessageFrom(jmsMessage);
+        Optional<Serializable> msg = readInputMessageFrom(jmsMessage);
         if (!msg.isPresent()) {
             return;
         }
 
-        ActorInputMessage input = msg.get();
+        if (msg.get() instanceof ActorInputBatch) {
+            ((ActorInputBatch) msg.get()).getMessages().forEach(this::dispatch);
+        } else {
+            dispatch((ActorInputMessage) msg.get());
+        }
+    }
+
+    private void dispatch(final ActorInputMessage input) {
         switch (input.getCommand()) { // NOSONAR
             case BOOTSTRAP:
                 actor.bootstrap();
                 break;
             case CLOSE:
-                actor.close();
+                actor.requestClose();
                 break;
             case DUMP_METRICS:
                 actor.dumpAndFlushMetrics();
@@ -71,9 +84,9 @@ final class JMSActorMessageListener implements MessageListener {
         }
     }
 
-    private Optional<ActorInputMessage> readInputMessageFrom(@NotNull final Message jmsMessage) {
+    private Optional<Serializable> readInputMessageFrom(@NotNull final Message jmsMessage) {
         try {
-            return Optional.of(JMSHelper.objectFromMsg((BytesMessage) jmsMessage));
+            return Optional.of(JMSHelper.objectFromMsg((BytesMessage) jmsMessage, codec));
         } catch (RuntimeException e) {
             log.error("Invalid ActorInputMessage received, jmsMessage:{}", jmsMessage, e);
             return Optional.empty();
@@ -16,6 +16,7 @@
 package io.amaze.bench.cluster.jms;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.amaze.bench.cluster.codec.Codec;
 import io.amaze.bench.cluster.registry.ActorRegistryClusterClient;
 import io.amaze.bench.cluster.registry.ActorRegistryListener;
 import io.amaze.bench.shared.jms.JMSClient;
@@ -33,8 +34,8 @@ import static java.util.Objects.requireNonNull;
  */
 public final class JMSActorRegistryClusterClient extends JMSClusterClient implements ActorRegistryClusterClient {
 
-    public JMSActorRegistryClusterClient(@NotNull final JMSEndpoint endpoint) {
-        super(endpoint);
+    public JMSActorRegistryClusterClient(@NotNull final JMSEndpoint endpoint, @NotNull final Codec codec) {
+        super(endpoint, codec);
     }
 
     @VisibleForTesting
@@ -47,7 +48,7 @@ public final class JMSActorRegistryClusterClient extends JMSClusterClient implem
         requireNonNull(actorsListener);
 
         try {
-            JMSActorRegistryTopicListener msgListener = new JMSActorRegistryTopicListener(actorsListener);
+            JMSActorRegistryTopicListener msgListener = new JMSActorRegistryTopicListener(actorsListener, getCodec());
             getClient().addTopicListener(ACTOR_REGISTRY_TOPIC, msgListener);
             getClient().startListening();
 
@@ -17,6 +17,7 @@ package io.amaze.bench.cluster.jms;
 
 import io.amaze.bench.cluster.Message;
 import io.amaze.bench.cluster.actor.ActorLifecycleMessage;
+import io.amaze.bench.cluster.codec.Codec;
 import io.amaze.bench.cluster.registry.ActorRegistryListener;
 import io.amaze.bench.shared.jms.JMSHelper;
 import org.apache.logging.log4j.LogManager;
@@ -37,9 +38,11 @@ public final class JMSActorRegistryTopicListener implements MessageListener {
     private static final Logger log = LogManager.getLogger();
 
     private final ActorRegistryListener registryListener;
+    private final Codec codec;
 
-    JMSActorRegistryTopicListener(@NotNull final ActorRegistryListener registryListener) {
+    JMSActorRegistryTopicListener(@NotNull final ActorRegistryListener registryListener, @NotNull final Codec codec) {
         this.registryListener = requireNonNull(registryListener);
+        this.codec = requireNonNull(codec);
     }
 
     @Override
@@ -63,7 +66,7 @@ public final class JMSActorRegistryTopicListener implements MessageListener {
 
     private Optional<Message> readMessage(final javax.jms.Message jmsMessage) {
         try {
-            return Optional.of(JMSHelper.objectFromMsg((BytesMessage) jmsMessage));
+            return Optional.of(JMSHelper.objectFromMsg((BytesMessage) jmsMessage, codec));
         } catch (Exception e) { // NOSONAR - We want to catch everything
             log.error("Error while reading JMS message.", e);
             return Optional.empty();
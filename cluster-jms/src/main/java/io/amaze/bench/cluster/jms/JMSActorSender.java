@@ -16,12 +16,14 @@
 package io.amaze.bench.cluster.jms;
 
 import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.cluster.actor.ActorInputBatch;
 import io.amaze.bench.cluster.actor.ActorInputMessage;
 import io.amaze.bench.cluster.actor.ActorSender;
 import io.amaze.bench.shared.jms.JMSClient;
 import io.amaze.bench.shared.jms.JMSException;
 
 import javax.validation.constraints.NotNull;
+import java.util.List;
 
 import static com.google.common.base.Throwables.propagate;
 import static java.util.Objects.requireNonNull;
@@ -54,4 +56,26 @@ public class JMSActorSender implements ActorSender {
             throw propagate(e);
         }
     }
+
+    /**
+     * Will send the given messages to the specified actor as a single {@link ActorInputBatch} JMS message.
+     *
+     * @param key      The actor name to send the messages to
+     * @param messages Contents of the messages, in sending order
+     */
+    @Override
+    public void sendBatch(@NotNull final ActorKey key, @NotNull final List<ActorInputMessage> messages) {
+        requireNonNull(key);
+        requireNonNull(messages);
+        if (messages.size() == 1) {
+            send(key, messages.get(0));
+            return;
+        }
+
+        try {
+            client.sendToQueue(key.getName(), new ActorInputBatch(messages));
+        } catch (JMSException e) {
+            throw propagate(e);
+        }
+    }
 }
@@ -22,6 +22,7 @@ import io.amaze.bench.cluster.agent.AgentClientListener;
 import io.amaze.bench.cluster.agent.AgentClusterClient;
 import io.amaze.bench.cluster.agent.AgentKey;
 import io.amaze.bench.cluster.agent.AgentRegistrySender;
+import io.amaze.bench.cluster.codec.Codec;
 import io.amaze.bench.shared.jms.JMSClient;
 import io.amaze.bench.shared.jms.JMSEndpoint;
 import io.amaze.bench.shared.jms.JMSException;
@@ -45,8 +46,10 @@ final class JMSAgentClusterClient extends JMSClusterClient implements AgentClust
         this.agent = requireNonNull(agent);
     }
 
-    JMSAgentClusterClient(@NotNull final JMSEndpoint endpoint, @NotNull final AgentKey agent) {
-        super(endpoint);
+    JMSAgentClusterClient(@NotNull final JMSEndpoint endpoint,
+                          @NotNull final AgentKey agent,
+                          @NotNull final Codec codec) {
+        super(endpoint, codec);
         this.agent = requireNonNull(agent);
     }
 
@@ -56,7 +59,7 @@ final class JMSAgentClusterClient extends JMSClusterClient implements AgentClust
         requireNonNull(listener);
 
         try {
-            getClient().addTopicListener(AGENTS_TOPIC, new JMSAgentMessageListener(agentKey, listener));
+            getClient().addTopicListener(AGENTS_TOPIC, new JMSAgentMessageListener(agentKey, listener, getCodec()));
             getClient().startListening();
         } catch (JMSException e) {
             throw propagate(e);
@@ -21,6 +21,7 @@ import io.amaze.bench.cluster.actor.ActorCreationRequest;
 import io.amaze.bench.cluster.agent.AgentClientListener;
 import io.amaze.bench.cluster.agent.AgentInputMessage;
 import io.amaze.bench.cluster.agent.AgentKey;
+import io.amaze.bench.cluster.codec.Codec;
 import io.amaze.bench.shared.jms.JMSHelper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -42,10 +43,14 @@ final class JMSAgentMessageListener implements MessageListener {
 
     private final AgentClientListener listener;
     private final AgentKey agentKey;
+    private final Codec codec;
 
-    JMSAgentMessageListener(@NotNull final AgentKey agentKey, @NotNull final AgentClientListener listener) {
+    JMSAgentMessageListener(@NotNull final AgentKey agentKey,
+                            @NotNull final AgentClientListener listener,
+                            @NotNull final Codec codec) {
         this.agentKey = requireNonNull(agentKey);
         this.listener = requireNonNull(listener);
+        this.codec = requireNonNull(codec);
     }
 
     @Override
@@ -75,9 +80,9 @@ final class JMSAgentMessageListener implements MessageListener {
         }
     }
 
-    private static Optional<AgentInputMessage> readInputMessageFrom(@NotNull final Message jmsMessage) {
+    private Optional<AgentInputMessage> readInputMessageFrom(@NotNull final Message jmsMessage) {
         try {
-            return Optional.of(JMSHelper.objectFromMsg((BytesMessage) jmsMessage));
+            return Optional.of(JMSHelper.objectFromMsg((BytesMessage) jmsMessage, codec));
         } catch (Exception e) { // NOSONAR - We want to catch everything
             log.error("Invalid AgentInputMessage received, jmsMessage:{}", jmsMessage, e);
             return Optional.empty();
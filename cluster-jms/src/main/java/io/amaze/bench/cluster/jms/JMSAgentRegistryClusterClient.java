@@ -15,6 +15,7 @@
  */
 package io.amaze.bench.cluster.jms;
 
+import io.amaze.bench.cluster.codec.Codec;
 import io.amaze.bench.cluster.registry.AgentRegistryClusterClient;
 import io.amaze.bench.cluster.registry.AgentRegistryListener;
 import io.amaze.bench.shared.jms.JMSClient;
@@ -32,8 +33,8 @@ import static java.util.Objects.requireNonNull;
  */
 public final class JMSAgentRegistryClusterClient extends JMSClusterClient implements AgentRegistryClusterClient {
 
-    public JMSAgentRegistryClusterClient(@NotNull final JMSEndpoint endpoint) {
-        super(endpoint);
+    public JMSAgentRegistryClusterClient(@NotNull final JMSEndpoint endpoint, @NotNull final Codec codec) {
+        super(endpoint, codec);
     }
 
     JMSAgentRegistryClusterClient(@NotNull final JMSClient client) {
@@ -45,7 +46,7 @@ public final class JMSAgentRegistryClusterClient extends JMSClusterClient implem
         requireNonNull(agentsListener);
 
         try {
-            JMSAgentRegistryTopicListener msgListener = new JMSAgentRegistryTopicListener(agentsListener);
+            JMSAgentRegistryTopicListener msgListener = new JMSAgentRegistryTopicListener(agentsListener, getCodec());
             getClient().addTopicListener(AGENT_REGISTRY_TOPIC, msgListener);
             getClient().startListening();
 
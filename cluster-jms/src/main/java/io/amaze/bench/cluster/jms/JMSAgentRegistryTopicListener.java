@@ -18,6 +18,7 @@ package io.amaze.bench.cluster.jms;
 import io.amaze.bench.cluster.Message;
 import io.amaze.bench.cluster.agent.AgentKey;
 import io.amaze.bench.cluster.agent.AgentLifecycleMessage;
+import io.amaze.bench.cluster.codec.Codec;
 import io.amaze.bench.cluster.registry.AgentRegistryListener;
 import io.amaze.bench.shared.jms.JMSHelper;
 import org.apache.logging.log4j.LogManager;
@@ -38,9 +39,11 @@ final class JMSAgentRegistryTopicListener implements MessageListener {
     private static final Logger log = LogManager.getLogger();
 
     private final AgentRegistryListener agentsListener;
+    private final Codec codec;
 
-    JMSAgentRegistryTopicListener(@NotNull final AgentRegistryListener agentsListener) {
+    JMSAgentRegistryTopicListener(@NotNull final AgentRegistryListener agentsListener, @NotNull final Codec codec) {
         this.agentsListener = requireNonNull(agentsListener);
+        this.codec = requireNonNull(codec);
     }
 
     @Override
@@ -62,7 +65,7 @@ final class JMSAgentRegistryTopicListener implements MessageListener {
 
     private Optional<Message> readMessage(final javax.jms.Message jmsMessage) {
         try {
-            return Optional.of(JMSHelper.objectFromMsg((BytesMessage) jmsMessage));
+            return Optional.of(JMSHelper.objectFromMsg((BytesMessage) jmsMessage, codec));
         } catch (Exception e) { // NOSONAR - We want to catch everything
             log.error("Error while reading JMS message.", e);
             return Optional.empty();
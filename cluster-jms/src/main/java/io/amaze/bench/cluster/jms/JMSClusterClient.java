@@ -17,6 +17,8 @@ package io.amaze.bench.cluster.jms;
 
 import com.google.common.annotations.VisibleForTesting;
 import io.amaze.bench.cluster.ClusterClient;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.shared.jms.FFMQClient;
 import io.amaze.bench.shared.jms.JMSClient;
 import io.amaze.bench.shared.jms.JMSEndpoint;
@@ -33,24 +35,27 @@ import static java.util.Objects.requireNonNull;
 public abstract class JMSClusterClient implements ClusterClient {
 
     private final JMSClient client;
+    private final Codec codec;
 
     @VisibleForTesting
     protected JMSClusterClient(@NotNull final JMSClient client) {
         this.client = requireNonNull(client);
+        this.codec = Codecs.defaultCodec();
     }
 
-    public JMSClusterClient(@NotNull final JMSEndpoint endpoint) {
+    public JMSClusterClient(@NotNull final JMSEndpoint endpoint, @NotNull final Codec codec) {
         requireNonNull(endpoint);
+        this.codec = requireNonNull(codec);
 
         try {
-            client = new FFMQClient(endpoint);
+            client = new FFMQClient(endpoint, codec);
         } catch (JMSException e) {
             throw propagate(e);
         }
     }
 
     @Override
-    public final void close() {
+    public void close() {
         client.close();
     }
 
@@ -58,4 +63,11 @@ public abstract class JMSClusterClient implements ClusterClient {
         return client;
     }
 
+    /**
+     * @return The codec of the messages exchanged through the client.
+     */
+    protected final Codec getCodec() {
+        return codec;
+    }
+
 }
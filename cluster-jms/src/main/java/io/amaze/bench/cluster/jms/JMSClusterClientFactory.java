@@ -22,8 +22,12 @@ import io.amaze.bench.cluster.AgentClusterClientFactory;
 import io.amaze.bench.cluster.ClusterConfigFactory;
 import io.amaze.bench.cluster.Endpoint;
 import io.amaze.bench.cluster.actor.ActorClusterClient;
+import io.amaze.bench.cluster.actor.CoalescingWindow;
+import io.amaze.bench.cluster.actor.LocalDelivery;
 import io.amaze.bench.cluster.agent.AgentClusterClient;
 import io.amaze.bench.cluster.agent.AgentKey;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.cluster.registry.ActorRegistry;
 import io.amaze.bench.cluster.registry.ActorRegistryClusterClient;
 import io.amaze.bench.cluster.registry.AgentRegistry;
@@ -43,17 +47,26 @@ public final class JMSClusterClientFactory implements AgentClusterClientFactory
 
     private final JMSEndpoint serverEndpoint;
     private final ActorRegistry actorRegistry;
+    private final Codec codec;
+    private final LocalDelivery localDelivery;
+    private final CoalescingWindow coalescingWindow;
 
     public JMSClusterClientFactory(@NotNull final Config factoryConfig, @NotNull final ActorRegistry actorRegistry) {
         requireNonNull(factoryConfig);
         this.actorRegistry = requireNonNull(actorRegistry);
         this.serverEndpoint = new JMSEndpoint(factoryConfig);
+        this.codec = Codecs.fromConfig(factoryConfig);
+        this.localDelivery = LocalDelivery.fromConfig(factoryConfig, codec);
+        this.coalescingWindow = CoalescingWindow.fromConfig(factoryConfig, codec);
     }
 
     @VisibleForTesting
     JMSClusterClientFactory(@NotNull final JMSEndpoint serverEndpoint, @NotNull final ActorRegistry actorRegistry) {
         this.serverEndpoint = requireNonNull(serverEndpoint);
         this.actorRegistry = requireNonNull(actorRegistry);
+        this.codec = Codecs.defaultCodec();
+        this.localDelivery = LocalDelivery.enabled(codec, false);
+        this.coalescingWindow = CoalescingWindow.disabled();
     }
 
     @Override
@@ -63,17 +76,17 @@ public final class JMSClusterClientFactory implements AgentClusterClientFactory
 
     @Override
     public AgentClusterClient createForAgent(@NotNull AgentKey agent) {
-        return new JMSAgentClusterClient(serverEndpoint, requireNonNull(agent));
+        return new JMSAgentClusterClient(serverEndpoint, requireNonNull(agent), codec);
     }
 
     @Override
     public ActorClusterClient createForActor(@NotNull ActorKey actor) {
-        return new JMSActorClusterClient(serverEndpoint, requireNonNull(actor));
+        return new JMSActorClusterClient(serverEndpoint, requireNonNull(actor), codec, localDelivery, coalescingWindow);
     }
 
     @Override
     public ActorRegistryClusterClient createForActorRegistry() {
-        ActorRegistryClusterClient registryClusterClient = new JMSActorRegistryClusterClient(serverEndpoint);
+        ActorRegistryClusterClient registryClusterClient = new JMSActorRegistryClusterClient(serverEndpoint, codec);
         registryClusterClient.startRegistryListener(actorRegistry.createClusterListener());
         return registryClusterClient;
     }
@@ -81,14 +94,14 @@ public final class JMSClusterClientFactory implements AgentClusterClientFactory
     @Override
     public AgentRegistryClusterClient createForAgentRegistry(@NotNull final AgentRegistry agentRegistry) {
         requireNonNull(agentRegistry);
-        AgentRegistryClusterClient agentRegistryClient = new JMSAgentRegistryClusterClient(serverEndpoint);
+        AgentRegistryClusterClient agentRegistryClient = new JMSAgentRegistryClusterClient(serverEndpoint, codec);
         agentRegistryClient.startRegistryListener(agentRegistry.createClusterListener());
         return agentRegistryClient;
     }
 
     @Override
     public ClusterConfigFactory clusterConfigFactory() {
-        return new JMSClusterConfigFactory(serverEndpoint);
+        return new JMSClusterConfigFactory(serverEndpoint, codec);
     }
 
     @Override
@@ -18,30 +18,47 @@ package io.amaze.bench.cluster.jms;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import com.typesafe.config.ConfigRenderOptions;
+import com.typesafe.config.ConfigValueFactory;
 import io.amaze.bench.api.ActorKey;
 import io.amaze.bench.cluster.ClusterClients;
 import io.amaze.bench.cluster.ClusterConfigFactory;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.shared.jms.JMSEndpoint;
 
 import javax.validation.constraints.NotNull;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * JMS implementation of ClusterConfigFactory
  */
 public final class JMSClusterConfigFactory implements ClusterConfigFactory {
 
     private final JMSEndpoint serverEndpoint;
+    private final Codec codec;
 
     public JMSClusterConfigFactory(final JMSEndpoint serverEndpoint) {
+        this(serverEndpoint, Codecs.defaultCodec());
+    }
+
+    /**
+     * @param serverEndpoint Endpoint of the JMS server.
+     * @param codec          Codec of the cluster, forked actors are configured to use the same.
+     */
+    public JMSClusterConfigFactory(final JMSEndpoint serverEndpoint, @NotNull final Codec codec) {
         this.serverEndpoint = serverEndpoint;
+        this.codec = requireNonNull(codec);
     }
 
     @Override
     public Config clusterConfigFor(@NotNull final ActorKey actorKey) {
+        Config factoryConfig = serverEndpoint.toConfig() //
+                .withValue(Codecs.CODEC, ConfigValueFactory.fromAnyRef(codec.getClass().getName()));
         return ConfigFactory.parseString("{\"" + ClusterClients.FACTORY_CLASS + "\":" + //
                                                  "\"" + JMSClusterClientFactory.class.getName() + "\"," + //
                                                  "\"" + ClusterClients.FACTORY_CONFIG + "\":" + //
-                                                 "" + serverEndpoint.toConfig().root().render(ConfigRenderOptions.concise()) + "}");
+                                                 "" + factoryConfig.root().render(ConfigRenderOptions.concise()) + "}");
     }
 
     @Override
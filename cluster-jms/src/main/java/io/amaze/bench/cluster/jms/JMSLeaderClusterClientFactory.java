@@ -19,6 +19,8 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.typesafe.config.Config;
 import io.amaze.bench.cluster.actor.ActorSender;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.cluster.leader.LeaderClusterClientFactory;
 import io.amaze.bench.cluster.leader.ResourceManagerClusterClient;
 import io.amaze.bench.cluster.metric.MetricsRepository;
@@ -42,11 +44,13 @@ public final class JMSLeaderClusterClientFactory implements LeaderClusterClientF
     private final JMSServer server;
     private final JMSEndpoint serverEndpoint;
     private final ActorRegistry actorRegistry;
+    private final Codec codec;
     private volatile JMSClient senderJmsClient;
 
     public JMSLeaderClusterClientFactory(@NotNull final Config factoryConfig,
                                          @NotNull final ActorRegistry actorRegistry) {
         this.actorRegistry = requireNonNull(actorRegistry);
+        this.codec = Codecs.fromConfig(factoryConfig);
         try {
             this.serverEndpoint = new JMSEndpoint(factoryConfig);
             this.server = new FFMQServer(serverEndpoint);
@@ -63,6 +67,7 @@ public final class JMSLeaderClusterClientFactory implements LeaderClusterClientF
         this.actorRegistry = requireNonNull(actorRegistry);
         this.serverEndpoint = requireNonNull(serverEndpoint);
         this.server = requireNonNull(server);
+        this.codec = Codecs.defaultCodec();
     }
 
     @Override
@@ -73,20 +78,20 @@ public final class JMSLeaderClusterClientFactory implements LeaderClusterClientF
 
     @Override
     public ResourceManagerClusterClient createForResourceManager() {
-        return new JMSResourceManagerClusterClient(server, serverEndpoint);
+        return new JMSResourceManagerClusterClient(server, serverEndpoint, codec);
     }
 
     @Override
     public MetricsRepositoryClusterClient createForMetricsRepository(@NotNull final MetricsRepository metricsRepository) {
         requireNonNull(metricsRepository);
-        MetricsRepositoryClusterClient clusterClient = new JMSMetricsRepositoryClusterClient(serverEndpoint);
+        MetricsRepositoryClusterClient clusterClient = new JMSMetricsRepositoryClusterClient(serverEndpoint, codec);
         clusterClient.startMetricsListener(metricsRepository.createClusterListener());
         return clusterClient;
     }
 
     @Override
     public ActorRegistryClusterClient createForActorRegistry() {
-        ActorRegistryClusterClient registryClusterClient = new JMSActorRegistryClusterClient(serverEndpoint);
+        ActorRegistryClusterClient registryClusterClient = new JMSActorRegistryClusterClient(serverEndpoint, codec);
         registryClusterClient.startRegistryListener(actorRegistry.createClusterListener());
         return registryClusterClient;
     }
@@ -94,7 +99,7 @@ public final class JMSLeaderClusterClientFactory implements LeaderClusterClientF
     @Override
     public AgentRegistryClusterClient createForAgentRegistry(@NotNull final AgentRegistry agentRegistry) {
         requireNonNull(agentRegistry);
-        AgentRegistryClusterClient agentRegistryClient = new JMSAgentRegistryClusterClient(serverEndpoint);
+        AgentRegistryClusterClient agentRegistryClient = new JMSAgentRegistryClusterClient(serverEndpoint, codec);
         agentRegistryClient.startRegistryListener(agentRegistry.createClusterListener());
         return agentRegistryClient;
     }
@@ -110,7 +115,7 @@ public final class JMSLeaderClusterClientFactory implements LeaderClusterClientF
     private JMSClient createJmsClient() {
         JMSClient client;
         try {
-            client = new FFMQClient(serverEndpoint);
+            client = new FFMQClient(serverEndpoint, codec);
         } catch (JMSException e) {
             throw Throwables.propagate(e);
         }
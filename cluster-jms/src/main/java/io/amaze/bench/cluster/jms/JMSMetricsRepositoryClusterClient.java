@@ -16,6 +16,7 @@
 package io.amaze.bench.cluster.jms;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.amaze.bench.cluster.codec.Codec;
 import io.amaze.bench.cluster.metric.MetricsRepositoryClusterClient;
 import io.amaze.bench.cluster.metric.MetricsRepositoryListener;
 import io.amaze.bench.shared.jms.JMSClient;
@@ -33,8 +34,8 @@ import static java.util.Objects.requireNonNull;
  */
 public final class JMSMetricsRepositoryClusterClient extends JMSClusterClient implements MetricsRepositoryClusterClient {
 
-    public JMSMetricsRepositoryClusterClient(@NotNull final JMSEndpoint endpoint) {
-        super(endpoint);
+    public JMSMetricsRepositoryClusterClient(@NotNull final JMSEndpoint endpoint, @NotNull final Codec codec) {
+        super(endpoint, codec);
     }
 
     @VisibleForTesting
@@ -46,7 +47,7 @@ public final class JMSMetricsRepositoryClusterClient extends JMSClusterClient im
     public void startMetricsListener(@NotNull final MetricsRepositoryListener metricsListener) {
         requireNonNull(metricsListener);
         try {
-            JMSMetricsRepositoryListener msgListener = new JMSMetricsRepositoryListener(metricsListener);
+            JMSMetricsRepositoryListener msgListener = new JMSMetricsRepositoryListener(metricsListener, getCodec());
             getClient().addTopicListener(METRICS_TOPIC, msgListener);
             getClient().startListening();
 
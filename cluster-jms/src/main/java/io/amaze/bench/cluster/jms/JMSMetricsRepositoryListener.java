@@ -15,6 +15,8 @@
  */
 package io.amaze.bench.cluster.jms;
 
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.metric.EncodedMetricValuesMessage;
 import io.amaze.bench.cluster.metric.MetricValuesMessage;
 import io.amaze.bench.cluster.metric.MetricsRepositoryListener;
 import io.amaze.bench.shared.jms.JMSHelper;
@@ -25,6 +27,7 @@ import javax.jms.BytesMessage;
 import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.validation.constraints.NotNull;
+import java.io.Serializable;
 import java.util.Optional;
 
 import static java.util.Objects.requireNonNull;
@@ -37,26 +40,34 @@ final class JMSMetricsRepositoryListener implements MessageListener {
     private static final Logger log = LogManager.getLogger();
 
     private final MetricsRepositoryListener metricsListener;
+    private final Codec codec;
 
-    JMSMetricsRepositoryListener(@NotNull final MetricsRepositoryListener metricsListener) {
+    JMSMetricsRepositoryListener(@NotNull final MetricsRepositoryListener metricsListener, @NotNull final Codec codec) {
         this.metricsListener = requireNonNull(metricsListener);
+        this.codec = requireNonNull(codec);
     }
 
     @Override
     public void onMessage(final Message jmsMessage) {
         requireNonNull(jmsMessage);
 
-        Optional<MetricValuesMessage> metrics = readMessage(jmsMessage);
+        Optional<Serializable> metrics = readMessage(jmsMessage);
         if (!metrics.isPresent()) {
             return;
         }
 
-        metricsListener.onMetricValues(metrics.get());
+        if (metrics.get() instanceof EncodedMetricValuesMessage) {
+            metricsListener.onEncodedMetricValues((EncodedMetricValuesMessage) metrics.get());
+        } else if (metrics.get() instanceof MetricValuesMessage) {
+            metricsListener.onMetricValues((MetricValuesMessage) metrics.get());
+        } else {
+            log.error("Unexpected message on metrics topic: {}", metrics.get());
+        }
     }
 
-    private Optional<MetricValuesMessage> readMessage(final Message jmsMessage) {
+    private Optional<Serializable> readMessage(final Message jmsMessage) {
         try {
-            return Optional.of(JMSHelper.objectFromMsg((BytesMessage) jmsMessage));
+            return Optional.of(JMSHelper.objectFromMsg((BytesMessage) jmsMessage, codec));
         } catch (Exception e) { // NOSONAR - We want to catch everything
             log.error("Error while reading JMS message.", e);
             return Optional.empty();
@@ -18,6 +18,7 @@ package io.amaze.bench.cluster.jms;
 import com.google.common.annotations.VisibleForTesting;
 import io.amaze.bench.api.ActorKey;
 import io.amaze.bench.cluster.agent.AgentInputMessage;
+import io.amaze.bench.cluster.codec.Codec;
 import io.amaze.bench.cluster.leader.ResourceManagerClusterClient;
 import io.amaze.bench.shared.jms.JMSClient;
 import io.amaze.bench.shared.jms.JMSEndpoint;
@@ -43,8 +44,10 @@ public final class JMSResourceManagerClusterClient extends JMSClusterClient impl
         this.server = requireNonNull(server);
     }
 
-    JMSResourceManagerClusterClient(@NotNull final JMSServer server, @NotNull final JMSEndpoint endpoint) {
-        super(endpoint);
+    JMSResourceManagerClusterClient(@NotNull final JMSServer server,
+                                    @NotNull final JMSEndpoint endpoint,
+                                    @NotNull final Codec codec) {
+        super(endpoint, codec);
         this.server = requireNonNull(server);
     }
 
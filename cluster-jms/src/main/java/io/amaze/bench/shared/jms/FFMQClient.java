@@ -17,6 +17,8 @@ package io.amaze.bench.shared.jms;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
 import net.timewalker.ffmq3.FFMQConstants;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -26,10 +28,11 @@ import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.validation.constraints.NotNull;
-import java.io.*;
+import java.io.Serializable;
 import java.util.Hashtable;
 
 import static com.google.common.base.Throwables.propagate;
+import static java.util.Objects.requireNonNull;
 
 /**
  * Created on 3/2/16.
@@ -49,8 +52,19 @@ public final class FFMQClient implements JMSClient {
     private final InitialContext context;
     private final Session session;
     private final Connection conn;
+    private final Codec codec;
 
     public FFMQClient(@NotNull final JMSEndpoint endpoint) throws JMSException {
+        this(endpoint, Codecs.defaultCodec());
+    }
+
+    /**
+     * @param endpoint Endpoint of the JMS server.
+     * @param codec    Codec used to encode the sent messages.
+     * @throws JMSException if the connection to the server failed.
+     */
+    public FFMQClient(@NotNull final JMSEndpoint endpoint, @NotNull final Codec codec) throws JMSException {
+        this.codec = requireNonNull(codec);
         try {
             context = initContext(endpoint);
             conn = initConnection();
@@ -97,7 +111,7 @@ public final class FFMQClient implements JMSClient {
     public void sendToQueue(@NotNull final String queueName, @NotNull final Serializable msg) throws JMSException {
         try {
             internalSendToQueue(queueName, msg);
-        } catch (NamingException | IOException | javax.jms.JMSException | ClassNotFoundException e) {
+        } catch (NamingException | javax.jms.JMSException | IllegalArgumentException e) {
             throw new JMSException(e);
         }
     }
@@ -106,7 +120,7 @@ public final class FFMQClient implements JMSClient {
     public void sendToTopic(@NotNull final String topicName, @NotNull final Serializable msg) throws JMSException {
         try {
             internalSendToTopic(topicName, msg);
-        } catch (NamingException | IOException | javax.jms.JMSException | ClassNotFoundException e) {
+        } catch (NamingException | javax.jms.JMSException | IllegalArgumentException e) {
             throw new JMSException(e);
         }
     }
@@ -141,7 +155,7 @@ public final class FFMQClient implements JMSClient {
     }
 
     private void internalSendToTopic(@NotNull final String topicName, @NotNull final Serializable msg)
-            throws NamingException, javax.jms.JMSException, IOException, ClassNotFoundException {
+            throws NamingException, javax.jms.JMSException {
         MessageProducer producer;
         synchronized (topicProducers) {
             producer = topicProducers.getIfPresent(topicName);
@@ -157,7 +171,7 @@ public final class FFMQClient implements JMSClient {
     }
 
     private void internalSendToQueue(@NotNull final String queueName, @NotNull final Serializable msg)
-            throws NamingException, javax.jms.JMSException, IOException, ClassNotFoundException {
+            throws NamingException, javax.jms.JMSException {
         MessageProducer producer;
         synchronized (queueProducers) {
             producer = queueProducers.getIfPresent(queueName);
@@ -172,18 +186,11 @@ public final class FFMQClient implements JMSClient {
         producer.send(objectToMessage(msg));
     }
 
-    private BytesMessage objectToMessage(final Serializable payload)
-            throws IOException, ClassNotFoundException, javax.jms.JMSException {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutput out = new ObjectOutputStream(bos)) {
-
-            out.writeObject(payload);
-            byte[] yourBytes = bos.toByteArray();
-            BytesMessage bytesMessage = session.createBytesMessage();
-            bytesMessage.setJMSDeliveryMode(DeliveryMode.NON_PERSISTENT);
-            bytesMessage.writeBytes(yourBytes);
-            return bytesMessage;
-        }
+    private BytesMessage objectToMessage(final Serializable payload) throws javax.jms.JMSException {
+        BytesMessage bytesMessage = session.createBytesMessage();
+        bytesMessage.setJMSDeliveryMode(DeliveryMode.NON_PERSISTENT);
+        codec.encodeTo(payload, bytesMessage::writeBytes);
+        return bytesMessage;
     }
 
     private Queue lookupQueue(final String queue) throws NamingException {
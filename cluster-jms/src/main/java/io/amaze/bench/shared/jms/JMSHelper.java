@@ -16,10 +16,12 @@
 package io.amaze.bench.shared.jms;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.amaze.bench.cluster.codec.Codec;
+import io.amaze.bench.cluster.codec.Codecs;
 
 import javax.jms.BytesMessage;
 import javax.validation.constraints.NotNull;
-import java.io.*;
+import java.io.Serializable;
 
 import static com.google.common.base.Throwables.propagate;
 import static java.util.Objects.requireNonNull;
@@ -29,54 +31,81 @@ import static java.util.Objects.requireNonNull;
  */
 public final class JMSHelper {
 
+    private static final int RECEIVE_BUFFER_CAPACITY = 1024;
+    private static final int MAX_POOLED_RECEIVE_BUFFER_CAPACITY = 64 * 1024;
+
+    /**
+     * Bodies are copied to a buffer of the receiving thread, decoded objects never reference it.
+     */
+    private static final ThreadLocal<byte[]> RECEIVE_BUFFERS = ThreadLocal.withInitial(
+            () -> new byte[RECEIVE_BUFFER_CAPACITY]);
+
     private JMSHelper() {
         // Helper class
     }
 
     /**
-     * Deserialize a JMS message containing a Java serialized abject.
+     * Decodes a JMS message encoded with the default codec.
      *
-     * @param message JMS input message with a serialized payload
-     * @param <T>     Type of the serialized object
-     * @return The de-serialized object
-     * @throws RuntimeException Can be thrown if deserialization fails.
+     * @param message JMS input message with an encoded payload
+     * @param <T>     Type of the encoded object
+     * @return The decoded object
+     * @throws RuntimeException Can be thrown if decoding fails.
+     * @see Codecs#defaultCodec()
      */
     public static <T extends Serializable> T objectFromMsg(@NotNull final BytesMessage message) {
+        return objectFromMsg(message, Codecs.defaultCodec());
+    }
+
+    /**
+     * Decodes a JMS message using the given codec.
+     *
+     * @param message JMS input message with an encoded payload
+     * @param codec   Codec the payload was encoded with
+     * @param <T>     Type of the encoded object
+     * @return The decoded object
+     * @throws RuntimeException Can be thrown if decoding fails.
+     */
+    public static <T extends Serializable> T objectFromMsg(@NotNull final BytesMessage message,
+                                                           @NotNull final Codec codec) {
         requireNonNull(message);
+        requireNonNull(codec);
 
         try {
-            byte[] rawData = new byte[(int) message.getBodyLength()];
-            message.readBytes(rawData);
-            return (T) convertFromBytes(rawData); // NOSONAR
+            int length = (int) message.getBodyLength();
+            byte[] buffer = receiveBuffer(length);
+            message.readBytes(buffer, length);
+            return codec.decode(buffer, 0, length);
         } catch (javax.jms.JMSException e) {
             throw propagate(e);
         }
     }
 
     /**
-     * Serialize an object to a byte buffer (payload to be de-serialized with {@link #objectFromMsg(BytesMessage)}).
+     * Encodes an object using the default codec (payload to be decoded with {@link #objectFromMsg(BytesMessage)}).
      *
      * @param object A serializable object
-     * @return The byte buffer containing the serialized object
-     * @throws RuntimeException Can be thrown if serialization fails.
+     * @return The byte buffer containing the encoded object
+     * @throws RuntimeException Can be thrown if encoding fails.
      */
-    public static byte[] convertToBytes(@NotNull final Serializable object) {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutput out = new ObjectOutputStream(bos)) {
-            out.writeObject(object);
-            return bos.toByteArray();
-        } catch (IOException e) {
-            throw propagate(e);
+    public static byte[] convertToBytes(final Serializable object) {
+        return Codecs.defaultCodec().encode(object);
+    }
+
+    private static byte[] receiveBuffer(final int length) {
+        byte[] buffer = RECEIVE_BUFFERS.get();
+        if (buffer.length >= length) {
+            return buffer;
         }
+        buffer = new byte[length];
+        if (length <= MAX_POOLED_RECEIVE_BUFFER_CAPACITY) {
+            RECEIVE_BUFFERS.set(buffer);
+        }
+        return buffer;
     }
 
     @VisibleForTesting
     static <T extends Serializable> T convertFromBytes(byte[] bytes) {
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-             ObjectInput in = new ObjectInputStream(bis)) {
-            return (T) in.readObject(); // NOSONAR
-        } catch (ClassNotFoundException | IOException e) {
-            throw propagate(e);
-        }
+        return Codecs.defaultCodec().decode(bytes);
     }
 }
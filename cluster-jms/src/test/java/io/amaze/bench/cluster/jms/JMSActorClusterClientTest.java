@@ -18,19 +18,30 @@ package io.amaze.bench.cluster.jms;
 import com.google.common.testing.NullPointerTester;
 import io.amaze.bench.api.ActorKey;
 import io.amaze.bench.cluster.actor.ActorInputMessage;
+import io.amaze.bench.cluster.actor.LocalDelivery;
 import io.amaze.bench.cluster.actor.RuntimeActor;
+import io.amaze.bench.cluster.codec.Codecs;
+import io.amaze.bench.cluster.metric.EncodedMetricValuesMessage;
+import io.amaze.bench.cluster.metric.MetricDictionary;
+import io.amaze.bench.cluster.metric.MetricValuesMessage;
 import io.amaze.bench.shared.jms.JMSClient;
 import io.amaze.bench.shared.jms.JMSException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import javax.jms.MessageListener;
+import java.io.Serializable;
+import java.util.HashMap;
 
+import static io.amaze.bench.cluster.agent.Constants.METRICS_TOPIC;
 import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
@@ -79,6 +90,22 @@ public final class JMSActorClusterClientTest {
         verifyNoMoreInteractions(jmsClient);
     }
 
+    @Test
+    public void message_to_local_actor_with_mailbox_is_not_sent_to_the_broker() throws JMSException {
+        when(actor.getKey()).thenReturn(DUMMY_ACTOR);
+        when(actor.hasMailbox()).thenReturn(true);
+        when(actor.offerMessage("from", "payload")).thenReturn(true);
+        client = new JMSActorClusterClient(jmsClient, DUMMY_ACTOR, LocalDelivery.enabled(Codecs.defaultCodec(), false));
+        client.startActorListener(actor);
+
+        client.actorSender().send(DUMMY_ACTOR, ActorInputMessage.message("from", "payload"));
+        client.close();
+        client.actorSender().send(DUMMY_ACTOR, ActorInputMessage.message("from", "payload"));
+
+        verify(actor).offerMessage("from", "payload");
+        verify(jmsClient).sendToQueue(DUMMY_ACTOR.getName(), ActorInputMessage.message("from", "payload"));
+    }
+
     @Test(expected = RuntimeException.class)
     public void start_actor_listener_and_listening_throws() throws JMSException {
         when(actor.getKey()).thenReturn(DUMMY_ACTOR);
@@ -87,6 +114,18 @@ public final class JMSActorClusterClientTest {
         client.startActorListener(actor);
     }
 
+    @Test
+    public void send_metrics_sends_encoded_values_to_metrics_topic() throws JMSException {
+        MetricValuesMessage message = new MetricValuesMessage(DUMMY_ACTOR, new HashMap<>());
+
+        client.sendMetrics(message);
+
+        ArgumentCaptor<Serializable> sent = ArgumentCaptor.forClass(Serializable.class);
+        verify(jmsClient).sendToTopic(eq(METRICS_TOPIC), sent.capture());
+        assertThat(((EncodedMetricValuesMessage) sent.getValue()).decode(new MetricDictionary()), is(message));
+        verifyNoMoreInteractions(jmsClient);
+    }
+
     @Test
     public void close_closes_jms_client() throws JMSException {
         client.close();
@@ -16,12 +16,15 @@
 package io.amaze.bench.cluster.jms;
 
 import com.google.common.testing.NullPointerTester;
+import io.amaze.bench.cluster.actor.ActorInputBatch;
 import io.amaze.bench.cluster.actor.ActorInputMessage;
 import io.amaze.bench.cluster.actor.RuntimeActor;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.shared.jms.JMSHelper;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -29,6 +32,8 @@ import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
 
 import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
 import static io.amaze.bench.shared.jms.JMSHelperTest.createTestBytesMessage;
@@ -49,7 +54,7 @@ public final class JMSActorMessageListenerTest {
 
     @Before
     public void before() {
-        listener = new JMSActorMessageListener(actor);
+        listener = new JMSActorMessageListener(actor, Codecs.defaultCodec());
     }
 
     @Test
@@ -72,7 +77,7 @@ public final class JMSActorMessageListenerTest {
 
         sendMessage(inputMsg);
 
-        verify(actor).close();
+        verify(actor).requestClose();
         verifyNoMoreInteractions(actor);
     }
 
@@ -113,7 +118,22 @@ public final class JMSActorMessageListenerTest {
         verifyNoMoreInteractions(actor);
     }
 
-    private void sendMessage(final ActorInputMessage inputMsg) throws JMSException {
+    @Test
+    public void batch_messages_are_handed_to_the_actor_in_order() throws JMSException {
+        ActorInputBatch batch = new ActorInputBatch(Arrays.asList(ActorInputMessage.message("from", "first"),
+                                                                  ActorInputMessage.message("from", "second"),
+                                                                  ActorInputMessage.dumpMetrics()));
+
+        sendMessage(batch);
+
+        InOrder inOrder = inOrder(actor);
+        inOrder.verify(actor).onMessage("from", "first");
+        inOrder.verify(actor).onMessage("from", "second");
+        inOrder.verify(actor).dumpAndFlushMetrics();
+        verifyNoMoreInteractions(actor);
+    }
+
+    private void sendMessage(final Serializable inputMsg) throws JMSException {
         final byte[] data = JMSHelper.convertToBytes(inputMsg);
         BytesMessage msg = createTestBytesMessage(data);
 
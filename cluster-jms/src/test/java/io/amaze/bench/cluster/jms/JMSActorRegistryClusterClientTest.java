@@ -21,6 +21,7 @@ import io.amaze.bench.cluster.actor.ActorInputMessage;
 import io.amaze.bench.cluster.registry.ActorRegistryClusterClient;
 import io.amaze.bench.cluster.registry.ActorRegistryListener;
 import io.amaze.bench.shared.jms.JMSClient;
+import io.amaze.bench.shared.jms.JMSEndpoint;
 import io.amaze.bench.shared.jms.JMSException;
 import org.junit.Before;
 import org.junit.Test;
@@ -52,6 +53,7 @@ public final class JMSActorRegistryClusterClientTest {
     @Test
     public void null_parameters_are_invalid() {
         NullPointerTester tester = new NullPointerTester();
+        tester.setDefault(JMSEndpoint.class, new JMSEndpoint("host", 1337));
         tester.setDefault(ActorInputMessage.class, ActorInputMessage.dumpMetrics());
         tester.setDefault(ActorKey.class, DUMMY_ACTOR);
 
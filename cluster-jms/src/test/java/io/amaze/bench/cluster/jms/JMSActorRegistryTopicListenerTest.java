@@ -18,6 +18,7 @@ package io.amaze.bench.cluster.jms;
 import com.google.common.testing.NullPointerTester;
 import io.amaze.bench.cluster.LifecycleMessage;
 import io.amaze.bench.cluster.Message;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.cluster.registry.ActorRegistryListener;
 import io.amaze.bench.shared.jms.JMSHelper;
 import org.junit.Before;
@@ -48,7 +49,7 @@ public final class JMSActorRegistryTopicListenerTest {
 
     @Before
     public void before() {
-        messageListener = new JMSActorRegistryTopicListener(actorRegistryListener);
+        messageListener = new JMSActorRegistryTopicListener(actorRegistryListener, Codecs.defaultCodec());
     }
 
     @Test
@@ -17,6 +17,7 @@ package io.amaze.bench.cluster.jms;
 
 import com.google.common.testing.NullPointerTester;
 import io.amaze.bench.api.ActorKey;
+import io.amaze.bench.cluster.actor.ActorInputBatch;
 import io.amaze.bench.cluster.actor.ActorInputMessage;
 import io.amaze.bench.shared.jms.JMSClient;
 import io.amaze.bench.shared.jms.JMSException;
@@ -29,6 +30,9 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static io.amaze.bench.runtime.actor.TestActor.DUMMY_ACTOR;
 import static org.hamcrest.CoreMatchers.is;
@@ -84,4 +88,23 @@ public final class JMSActorSenderTest {
         sender.send(DUMMY_ACTOR, DUMMY_MSG);
     }
 
+    @Test
+    public void send_batch_to_actor_sends_a_single_jms_message() throws JMSException {
+        List<ActorInputMessage> messages = Arrays.asList(ActorInputMessage.message("from", "first"),
+                                                         ActorInputMessage.message("from", "second"));
+
+        sender.sendBatch(DUMMY_ACTOR, messages);
+
+        verify(jmsClient).sendToQueue(DUMMY_ACTOR.getName(), new ActorInputBatch(messages));
+        verifyNoMoreInteractions(jmsClient);
+    }
+
+    @Test
+    public void send_batch_of_one_message_sends_the_message_alone() throws JMSException {
+        sender.sendBatch(DUMMY_ACTOR, Collections.singletonList(DUMMY_MSG));
+
+        verify(jmsClient).sendToQueue(DUMMY_ACTOR.getName(), DUMMY_MSG);
+        verifyNoMoreInteractions(jmsClient);
+    }
+
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ import com.typesafe.config.ConfigRenderOptions;
 import io.amaze.bench.cluster.ClusterClients;
 import io.amaze.bench.cluster.ClusterConfigFactory;
 import io.amaze.bench.cluster.agent.AgentConfig;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.cluster.registry.AgentRegistryClusterClient;
 import io.amaze.bench.shared.jms.JMSEndpoint;
 import io.amaze.bench.shared.jms.JMSException;
@@ -50,7 +51,7 @@ public final class JMSAgentCluster implements AgentCluster {
 
     @Override
     public AgentRegistryClusterClient agentRegistryClusterClient() {
-        return new JMSAgentRegistryClusterClient(jmsServerRule.getEndpoint());
+        return new JMSAgentRegistryClusterClient(jmsServerRule.getEndpoint(), Codecs.defaultCodec());
     }
 
     @Override
@@ -21,6 +21,7 @@ import io.amaze.bench.cluster.actor.ActorInputMessage;
 import io.amaze.bench.cluster.agent.AgentClientListener;
 import io.amaze.bench.cluster.agent.AgentKey;
 import io.amaze.bench.cluster.agent.Constants;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.shared.jms.JMSClient;
 import io.amaze.bench.shared.jms.JMSEndpoint;
 import io.amaze.bench.shared.jms.JMSException;
@@ -64,7 +65,7 @@ public final class JMSAgentClusterClientTest {
 
     @Test(expected = RuntimeException.class)
     public void invalid_hostname_throws() {
-        new JMSAgentClusterClient(new JMSEndpoint("dummyhost", 1), TEST_AGENT);
+        new JMSAgentClusterClient(new JMSEndpoint("dummyhost", 1), TEST_AGENT, Codecs.defaultCodec());
     }
 
     @Test
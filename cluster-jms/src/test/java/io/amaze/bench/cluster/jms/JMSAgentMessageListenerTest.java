@@ -20,6 +20,7 @@ import io.amaze.bench.cluster.actor.ActorCreationRequest;
 import io.amaze.bench.cluster.agent.AgentClientListener;
 import io.amaze.bench.cluster.agent.AgentInputMessage;
 import io.amaze.bench.cluster.agent.AgentKey;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.shared.jms.JMSHelper;
 import org.junit.Before;
 import org.junit.Test;
@@ -50,7 +51,7 @@ public final class JMSAgentMessageListenerTest {
 
     @Before
     public void before() {
-        listener = new JMSAgentMessageListener(DUMMY_AGENT, agentListener);
+        listener = new JMSAgentMessageListener(DUMMY_AGENT, agentListener, Codecs.defaultCodec());
     }
 
     @Test
@@ -19,6 +19,7 @@ import com.google.common.testing.NullPointerTester;
 import io.amaze.bench.cluster.registry.AgentRegistryClusterClient;
 import io.amaze.bench.cluster.registry.AgentRegistryListener;
 import io.amaze.bench.shared.jms.JMSClient;
+import io.amaze.bench.shared.jms.JMSEndpoint;
 import io.amaze.bench.shared.jms.JMSException;
 import io.amaze.bench.shared.jms.JMSServer;
 import org.junit.Before;
@@ -52,6 +53,7 @@ public final class JMSAgentRegistryClusterClientTest {
     @Test
     public void null_parameters_are_invalid() {
         NullPointerTester tester = new NullPointerTester();
+        tester.setDefault(JMSEndpoint.class, new JMSEndpoint("host", 1337));
 
         tester.testAllPublicConstructors(JMSAgentRegistryClusterClient.class);
         tester.testAllPublicInstanceMethods(agentRegistryClient);
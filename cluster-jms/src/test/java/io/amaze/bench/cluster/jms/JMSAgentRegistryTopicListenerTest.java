@@ -22,6 +22,7 @@ import io.amaze.bench.cluster.Message;
 import io.amaze.bench.cluster.agent.AgentKey;
 import io.amaze.bench.cluster.agent.AgentLifecycleMessage;
 import io.amaze.bench.cluster.agent.AgentRegistrationMessage;
+import io.amaze.bench.cluster.codec.Codecs;
 import io.amaze.bench.cluster.registry.AgentRegistryListener;
 import io.amaze.bench.shared.jms.JMSHelper;
 import org.junit.Before;
@@ -53,7 +54,7 @@ public final class JMSAgentRegistryTopicListenerTest {
 
     @Before
     public void before() {
-        messageListener = new JMSAgentRegistryTopicListener(agentRegistryListener);
+        messageListener = new JMSAgentRegistryTopicListener(agentRegistryListener, Codecs.defaultCodec());
     }
 
     @Test
@@ -18,6 +18,7 @@ package io.amaze.bench.cluster.jms;
 import com.google.common.testing.NullPointerTester;
 import io.amaze.bench.cluster.metric.MetricsRepositoryListener;
 import io.amaze.bench.shared.jms.JMSClient;
+import io.amaze.bench.shared.jms.JMSEndpoint;
 import io.amaze.bench.shared.jms.JMSException;
 import org.junit.Before;
 import org.junit.Rule;
@@ -59,6 +60,7 @@ public final class JMSMetricsRepositoryClusterClientTest {
     @Test
     public void null_parameters_are_invalid() {
         NullPointerTester tester = new NullPointerTester();
+        tester.setDefault(JMSEndpoint.class, new JMSEndpoint("host", 1337));
 
         tester.testAllPublicConstructors(JMSMetricsRepositoryClusterClient.class);
         tester.testAllPublicInstanceMethods(clusterClient);
@@ -17,6 +17,8 @@ package io.amaze.bench.cluster.jms;
 
 import com.google.common.testing.NullPointerTester;
 import io.amaze.bench.api.metric.Metric;
+import io.amaze.bench.cluster.codec.Codecs;
+import io.amaze.bench.cluster.metric.EncodedMetricValuesMessage;
 import io.amaze.bench.cluster.metric.MetricValue;
 import io.amaze.bench.cluster.metric.MetricValuesMessage;
 import io.amaze.bench.cluster.metric.MetricsRepositoryListener;
@@ -53,7 +55,7 @@ public final class JMSMetricsRepositoryListenerTest {
 
     @Before
     public void initMetricsRepository() throws JMSException {
-        jmsListener = new JMSMetricsRepositoryListener(metricsListener);
+        jmsListener = new JMSMetricsRepositoryListener(metricsListener, Codecs.defaultCodec());
     }
 
     @Test
@@ -80,6 +82,16 @@ public final class JMSMetricsRepositoryListenerTest {
         verify(metricsListener).onMetricValues(valuesMessage);
     }
 
+    @Test
+    public void onEncodedMetricValues_is_called_on_encoded_message() throws javax.jms.JMSException, IOException {
+        EncodedMetricValuesMessage encoded = EncodedMetricValuesMessage.encode(metricValuesMessage(new ArrayList<>()));
+        BytesMessage jmsMessage = createTestBytesMessage(JMSHelper.convertToBytes(encoded));
+
+        jmsListener.onMessage(jmsMessage);
+
+        verify(metricsListener).onEncodedMetricValues(encoded);
+    }
+
     private BytesMessage jmsMetricsMessage(final MetricValuesMessage valuesMessage)
             throws IOException, javax.jms.JMSException {
         final byte[] data = JMSHelper.convertToBytes(valuesMessage);
@@ -15,6 +15,7 @@
  */
 package io.amaze.bench.shared.jms;
 
+import com.google.common.base.Strings;
 import com.google.common.testing.NullPointerTester;
 import org.junit.Test;
 
@@ -25,6 +26,7 @@ import static io.amaze.bench.shared.jms.JMSHelper.*;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -43,6 +45,12 @@ public final class JMSHelperTest {
             System.arraycopy(data, 0, out, 0, out.length);
             return null;
         }).thenReturn(data.length);
+        when(msg.readBytes(any(byte[].class), anyInt())).thenAnswer(invocation -> {
+            byte[] out = (byte[]) invocation.getArguments()[0];
+            int length = (int) invocation.getArguments()[1];
+            System.arraycopy(data, 0, out, 0, length);
+            return length;
+        });
         return msg;
     }
 
@@ -71,6 +79,17 @@ public final class JMSHelperTest {
         assertThat(actual, is(expected));
     }
 
+    @Test
+    public void receive_buffer_is_reused_for_smaller_messages() throws JMSException {
+        String large = Strings.repeat("x", 4096);
+
+        String actualLarge = objectFromMsg(createTestBytesMessage(convertToBytes(large)));
+        String actualSmall = objectFromMsg(createTestBytesMessage(convertToBytes(DUMMY)));
+
+        assertThat(actualLarge, is(large));
+        assertThat(actualSmall, is(DUMMY));
+    }
+
     @Test(expected = RuntimeException.class)
     public void serialize_deserialize_corrupted_data_through_bytes_message() throws JMSException {
         BytesMessage bytesMessage = createTestBytesMessage(new byte[3]);